@@ -0,0 +1,77 @@
+package org.embulk.config;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures calls per second of getters and setters of a {@link Task} loaded from a {@link TaskSource}.
+ *
+ * <p>{@link #getDefault()} calls a getter with default implementation without a stored value, and
+ * {@link #getDefaultStored()} calls the same getter with a stored value.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")  // ModelManager is deprecated, but still the way to get a TaskSource without a session.
+public class TaskBenchmark {
+    public interface BenchmarkTask extends Task {
+        String getName();
+
+        void setName(String name);
+
+        int getSize();
+
+        void setSize(int size);
+
+        default String getLabel() {
+            return this.getName();
+        }
+
+        void setLabel(String label);
+    }
+
+    private BenchmarkTask task;
+    private BenchmarkTask taskStored;
+
+    @Setup
+    public void setup() {
+        final TaskSource taskSource = new ModelManager().newTaskSource();
+        taskSource.set("Name", "embulk");
+        taskSource.set("Size", 42);
+        this.task = taskSource.loadTask(BenchmarkTask.class);
+        this.taskStored = taskSource.loadTask(BenchmarkTask.class);
+        this.taskStored.setLabel("stored");
+    }
+
+    @Benchmark
+    public String get() {
+        return this.task.getName();
+    }
+
+    @Benchmark
+    public int getPrimitive() {
+        return this.task.getSize();
+    }
+
+    @Benchmark
+    public String getDefault() {
+        return this.task.getLabel();
+    }
+
+    @Benchmark
+    public String getDefaultStored() {
+        return this.taskStored.getLabel();
+    }
+
+    @Benchmark
+    public BenchmarkTask set() {
+        this.task.setSize(43);
+        return this.task;
+    }
+}
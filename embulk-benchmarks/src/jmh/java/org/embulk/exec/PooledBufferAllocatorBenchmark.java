@@ -0,0 +1,51 @@
+package org.embulk.exec;
+
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures allocate-and-release pairs per second of the pooled buffer allocator from 1 thread and from 8 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PooledBufferAllocatorBenchmark {
+    // 0 is the default page size. Others are larger than the page size.
+    @Param({"0", "131072"})
+    public int minimumCapacity;
+
+    private PooledBufferAllocator allocator;
+
+    @Setup
+    public void setup() {
+        this.allocator = PooledBufferAllocator.create();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int allocateAndRelease() {
+        return this.allocateAndReleaseOnce();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int allocateAndReleaseContended() {
+        return this.allocateAndReleaseOnce();
+    }
+
+    private int allocateAndReleaseOnce() {
+        final Buffer buffer = this.minimumCapacity > 0 ? this.allocator.allocate(this.minimumCapacity) : this.allocator.allocate();
+        final int capacity = buffer.capacity();
+        buffer.release();
+        return capacity;
+    }
+}
@@ -0,0 +1,69 @@
+package org.embulk.exec;
+
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Measures pages per second handed off from an input thread to an output worker thread.
+ *
+ * <p>It runs the same {@link SpscRingQueue} hand-off as an output worker of the scatter executor, without plugins.
+ * The throughput of {@code add} is pages handed off per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+public class ScatterHandOffBenchmark {
+    @Param({"1", "4", "64"})
+    public int queuePages;
+
+    private SpscRingQueue<Page> queue;
+    private Page[] batch;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.queue = new SpscRingQueue<>(this.queuePages);
+        this.batch = new Page[this.queuePages];
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        this.queue.close();
+    }
+
+    // Both sides spin instead of parking so that neither waits forever for the other at the end of an iteration.
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public boolean add(final Control control) {
+        while (!control.stopMeasurement) {
+            if (this.queue.offer(PAGE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public int drain() {
+        return this.queue.drainTo(this.batch);
+    }
+
+    private static final Page PAGE = PageImpl.allocate(0);
+}
@@ -0,0 +1,95 @@
+package org.embulk.spi;
+
+import java.time.Instant;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+
+/**
+ * Schema shapes and records shared by benchmarks of pages.
+ */
+final class BenchmarkPages {
+    private BenchmarkPages() {
+        // No instantiation.
+    }
+
+    /**
+     * Creates a schema of the shape.
+     *
+     * <ul>
+     * <li>"narrow": 4 columns of LONG, DOUBLE, STRING and TIMESTAMP.
+     * <li>"wide": 200 columns of the types above in turn.
+     * <li>"strings": 16 STRING columns.
+     * </ul>
+     */
+    static Schema newSchema(final String shape) {
+        final Type[] cycle;
+        final int columns;
+        if ("narrow".equals(shape)) {
+            cycle = MIXED;
+            columns = 4;
+        } else if ("wide".equals(shape)) {
+            cycle = MIXED;
+            columns = 200;
+        } else if ("strings".equals(shape)) {
+            cycle = STRINGS;
+            columns = 16;
+        } else {
+            throw new IllegalArgumentException("Unknown schema shape: " + shape);
+        }
+
+        final Schema.Builder builder = Schema.builder();
+        for (int i = 0; i < columns; i++) {
+            builder.add("c" + i, cycle[i % cycle.length]);
+        }
+        return builder.build();
+    }
+
+    static void setRecord(final PageBuilder builder, final Type[] types, final int record) {
+        for (int i = 0; i < types.length; i++) {
+            final Type type = types[i];
+            if (type == Types.LONG) {
+                builder.setLong(i, record);
+            } else if (type == Types.DOUBLE) {
+                builder.setDouble(i, record * 0.5);
+            } else if (type == Types.STRING) {
+                builder.setString(i, VALUES[(record + i) & 15]);
+            } else {
+                builder.setTimestamp(i, INSTANT);
+            }
+        }
+    }
+
+    static Type[] types(final Schema schema) {
+        final Type[] types = new Type[schema.getColumnCount()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = schema.getColumnType(i);
+        }
+        return types;
+    }
+
+    static final BufferAllocator ALLOCATOR = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(PAGE_SIZE);
+            }
+
+            @Override
+            public Buffer allocate(final int minimumCapacity) {
+                return BufferImpl.allocate(Math.max(PAGE_SIZE, minimumCapacity));
+            }
+        };
+
+    private static final int PAGE_SIZE = 32 * 1024;
+
+    private static final Type[] MIXED = { Types.LONG, Types.DOUBLE, Types.STRING, Types.TIMESTAMP };
+    private static final Type[] STRINGS = { Types.STRING };
+
+    private static final String[] VALUES = new String[16];
+    private static final Instant INSTANT = Instant.ofEpochSecond(1700000000L, 123456789);
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = "value-" + i;
+        }
+    }
+}
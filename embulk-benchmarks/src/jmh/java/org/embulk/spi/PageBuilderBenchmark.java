@@ -0,0 +1,70 @@
+package org.embulk.spi;
+
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.type.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures records per second of {@link PageBuilderImpl#addRecord()}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PageBuilderBenchmark {
+    private static final int RECORDS = 10000;
+
+    @Param({"narrow", "wide", "strings"})
+    public String shape;
+
+    private Schema schema;
+    private Type[] types;
+
+    @Setup
+    public void setup() {
+        this.schema = BenchmarkPages.newSchema(this.shape);
+        this.types = BenchmarkPages.types(this.schema);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void addRecord(final Blackhole blackhole) {
+        final PageBuilderImpl builder = new PageBuilderImpl(BenchmarkPages.ALLOCATOR, this.schema, new BlackholePageOutput(blackhole));
+        for (int record = 0; record < RECORDS; record++) {
+            BenchmarkPages.setRecord(builder, this.types, record);
+            builder.addRecord();
+        }
+        builder.finish();
+        builder.close();
+    }
+
+    private static class BlackholePageOutput implements PageOutput {
+        BlackholePageOutput(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void add(final Page page) {
+            this.blackhole.consume(page);
+            page.release();
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final Blackhole blackhole;
+    }
+}
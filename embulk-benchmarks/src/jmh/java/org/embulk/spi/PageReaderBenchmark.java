@@ -0,0 +1,86 @@
+package org.embulk.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures records per second of {@link PageReaderImpl#nextRecord()} with reading all the columns.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PageReaderBenchmark {
+    private static final int RECORDS = 10000;
+
+    @Param({"narrow", "wide", "strings"})
+    public String shape;
+
+    private Schema schema;
+    private Type[] types;
+    private List<Page> pages;
+
+    @Setup
+    public void setup() {
+        this.schema = BenchmarkPages.newSchema(this.shape);
+        this.types = BenchmarkPages.types(this.schema);
+        this.pages = new ArrayList<>();
+
+        final PageBuilderImpl builder = new PageBuilderImpl(BenchmarkPages.ALLOCATOR, this.schema, new PageOutput() {
+                @Override
+                public void add(final Page page) {
+                    pages.add(page);
+                }
+
+                @Override
+                public void finish() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        for (int record = 0; record < RECORDS; record++) {
+            BenchmarkPages.setRecord(builder, this.types, record);
+            builder.addRecord();
+        }
+        builder.finish();
+        builder.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void nextRecord(final Blackhole blackhole) {
+        final PageReaderImpl reader = new PageReaderImpl(this.schema);
+        for (final Page page : this.pages) {
+            // Pages are read repeatedly. Releasing them does nothing as they are allocated by BufferImpl.
+            reader.setPage(page);
+            while (reader.nextRecord()) {
+                for (int i = 0; i < this.types.length; i++) {
+                    final Type type = this.types[i];
+                    if (type == Types.LONG) {
+                        blackhole.consume(reader.getLong(i));
+                    } else if (type == Types.DOUBLE) {
+                        blackhole.consume(reader.getDouble(i));
+                    } else if (type == Types.STRING) {
+                        blackhole.consume(reader.getString(i));
+                    } else {
+                        blackhole.consume(reader.getTimestampInstant(i));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.embulk.spi.json;
+
+import java.util.concurrent.TimeUnit;
+import org.msgpack.value.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures JSON texts per second parsed by {@link JsonParser#parse(String)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")  // JsonParser is deprecated, but still used by plugins.
+public class JsonParserBenchmark {
+    @Param({"flat", "nested"})
+    public String shape;
+
+    private JsonParser parser;
+    private String json;
+
+    @Setup
+    public void setup() {
+        this.parser = new JsonParser();
+        if ("flat".equals(this.shape)) {
+            this.json = "{\"id\":12345,\"name\":\"embulk\",\"score\":3.14159,\"active\":true,\"tag\":null}";
+        } else {
+            this.json = "{\"id\":12345,\"user\":{\"name\":\"embulk\",\"roles\":[\"admin\",\"dev\"]},"
+                    + "\"events\":[{\"type\":\"load\",\"count\":10},{\"type\":\"guess\",\"count\":2}],\"meta\":{\"a\":{\"b\":{\"c\":1}}}}";
+        }
+    }
+
+    @Benchmark
+    public Value parse() {
+        return this.parser.parse(this.json);
+    }
+}
@@ -0,0 +1,63 @@
+package org.embulk.spi.time;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures timestamps per second parsed by {@link TimestampParser}, which parses a typical fixed-width pattern with
+ * {@link CompiledTimestampPattern}, and any other pattern with the delegate of {@link TimestampFormatter}.
+ *
+ * <p>{@link #parseGeneral()} parses the same text with the delegate to compare.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")  // TimestampParser is deprecated, but still used by plugins.
+public class TimestampParserBenchmark {
+    @Param({"ruby", "ruby_fixed", "java"})
+    public String format;
+
+    private TimestampParser parser;
+    private TimestampFormatterDelegate delegate;
+    private String text;
+
+    @Setup
+    public void setup() {
+        final String pattern;
+        if ("ruby".equals(this.format)) {
+            pattern = "%Y-%m-%d %H:%M:%S.%N %z";
+            this.text = "2024-01-02 03:04:05.123456789 +0900";
+        } else if ("ruby_fixed".equals(this.format)) {
+            pattern = "%Y-%m-%d %H:%M:%S";
+            this.text = "2024-01-02 03:04:05";
+        } else {
+            pattern = "java:yyyy-MM-dd HH:mm:ss.SSSSSSSSS xx";
+            this.text = "2024-01-02 03:04:05.123456789 +0900";
+        }
+        this.parser = TimestampParser.of(pattern, "UTC");
+        this.delegate = TimestampFormatterDelegate.of(pattern, pattern.startsWith("java:") ? null : "UTC");
+    }
+
+    @Benchmark
+    public Timestamp parse() {
+        return this.parser.parse(this.text);
+    }
+
+    @Benchmark
+    public Instant parseInstantOrNull() {
+        return this.parser.parseInstantOrNull(this.text);
+    }
+
+    @Benchmark
+    public Instant parseGeneral() {
+        return this.delegate.parse(this.text);
+    }
+}
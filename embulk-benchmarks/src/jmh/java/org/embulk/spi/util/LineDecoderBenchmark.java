@@ -0,0 +1,114 @@
+package org.embulk.spi.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures lines per second of {@link LineDecoder#poll()} by newlines and charsets.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")  // LineDecoder is deprecated, but still used by plugins.
+public class LineDecoderBenchmark {
+    private static final int LINES = 10000;
+    private static final int CHUNK_SIZE = 32 * 1024;
+
+    @Param({"LF", "CRLF", "CR"})
+    public String newline;
+
+    @Param({"UTF-8", "UTF-16LE", "Shift_JIS"})
+    public String charset;
+
+    private DecoderTask task;
+    private List<byte[]> chunks;
+
+    @Setup
+    public void setup() {
+        final Newline newline = Newline.valueOf(this.newline);
+        this.task = new DecoderTask(Charset.forName(this.charset), newline, LineDelimiter.valueOf(this.newline));
+
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            text.append(i).append(",embulk,\u57cb\u3081\u8fbc\u307f,2024-01-01 00:00:00,3.14159").append(newline.getString());
+        }
+        final byte[] bytes = text.toString().getBytes(this.task.getCharset());
+
+        this.chunks = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            final byte[] chunk = new byte[Math.min(CHUNK_SIZE, bytes.length - offset)];
+            System.arraycopy(bytes, offset, chunk, 0, chunk.length);
+            this.chunks.add(chunk);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void poll(final Blackhole blackhole) {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (final byte[] chunk : this.chunks) {
+            buffers.add(BufferImpl.wrap(chunk));
+        }
+        try (final LineDecoder decoder = new LineDecoder(new ListFileInput(Collections.singletonList(buffers)), this.task)) {
+            while (decoder.nextFile()) {
+                String line;
+                while ((line = decoder.poll()) != null) {
+                    blackhole.consume(line);
+                }
+            }
+        }
+    }
+
+    private static class DecoderTask implements LineDecoder.DecoderTask {
+        DecoderTask(final Charset charset, final Newline newline, final LineDelimiter lineDelimiter) {
+            this.charset = charset;
+            this.newline = newline;
+            this.lineDelimiter = lineDelimiter;
+        }
+
+        @Override
+        public Charset getCharset() {
+            return this.charset;
+        }
+
+        @Override
+        public Newline getNewline() {
+            return this.newline;
+        }
+
+        @Override
+        public Optional<LineDelimiter> getLineDelimiterRecognized() {
+            return Optional.of(this.lineDelimiter);
+        }
+
+        @Override
+        public void validate() {
+        }
+
+        @Override
+        public TaskSource dump() {
+            throw new UnsupportedOperationException("DecoderTask for benchmarks is not dumped.");
+        }
+
+        private final Charset charset;
+        private final Newline newline;
+        private final LineDelimiter lineDelimiter;
+    }
+}
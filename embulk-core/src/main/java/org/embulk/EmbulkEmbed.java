@@ -3,11 +3,13 @@ package org.embulk;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -24,6 +26,7 @@ import org.embulk.exec.PooledBufferAllocator;
 import org.embulk.exec.PreviewExecutor;
 import org.embulk.exec.PreviewResult;
 import org.embulk.exec.ResumeState;
+import org.embulk.exec.ResumeStateJournal;
 import org.embulk.exec.SimpleTempFileSpaceAllocator;
 import org.embulk.exec.TransactionStage;
 import org.embulk.spi.BufferAllocator;
@@ -297,18 +300,31 @@ public class EmbulkEmbed {
     }
 
     public ResumableResult runResumable(final ConfigSource config) {
+        return this.runResumable(config, null);
+    }
+
+    /**
+     * Runs the transaction with checkpointing its resume state into the journal so that it can be resumed even after a crash.
+     *
+     * @param resumeStateJournalPath  the path to the journal, or {@code null} not to checkpoint
+     */
+    public ResumableResult runResumable(final ConfigSource config, final Path resumeStateJournalPath) {
         logger.info("Started Embulk v" + EmbulkVersion.VERSION);
 
-        final ExecSessionInternal exec = this.newExecSessionInternal(config.deepCopy().getNestedOrGetEmpty("exec"));
+        final ExecSessionInternal exec = this.newExecSessionInternal(config.deepCopy().getNestedOrGetEmpty("exec")).forResumable();
+        final ResumeStateJournal journal = (resumeStateJournalPath == null) ? null : new ResumeStateJournal(resumeStateJournalPath);
         try {
             final ExecutionResult result;
             try {
-                result = this.bulkLoader.run(exec, config);
+                result = this.bulkLoader.run(exec, config, journal);
             } catch (PartialExecutionException partial) {
                 return new ResumableResult(partial);
             }
             return new ResumableResult(result);
         } finally {
+            if (journal != null) {
+                journal.close();
+            }
             try {
                 exec.cleanup();
             } catch (final Exception ex) {
@@ -371,6 +387,22 @@ public class EmbulkEmbed {
         return new ResumeStateAction(config, resumeState);
     }
 
+    /**
+     * Replays the resume state checkpointed in the journal.
+     *
+     * @param resumeStateJournalPath  the path to the journal
+     * @return the action to resume, or empty if the journal does not exist or has no resume state
+     */
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    public Optional<ResumeStateAction> resumeStateJournal(final ConfigSource config, final Path resumeStateJournalPath) throws IOException {
+        final Optional<ResumeState> resumeState = ResumeStateJournal.replay(resumeStateJournalPath, this.modelManager);
+        if (!resumeState.isPresent()) {
+            return Optional.empty();
+        }
+        logger.info("Started Embulk v" + EmbulkVersion.VERSION);
+        return Optional.of(new ResumeStateAction(config, resumeState.get()));
+    }
+
     public static class ResumableResult {
         public ResumableResult(final PartialExecutionException partialExecutionException) {
             this.successfulResult = null;
@@ -428,12 +460,26 @@ public class EmbulkEmbed {
         }
 
         public ResumableResult resume() {
-            final ExecSessionInternal exec = newExecSessionInternal(this.resumeState.getExecSessionConfigSource());
+            return this.resume(null);
+        }
+
+        /**
+         * Resumes the transaction with checkpointing its resume state into the journal.
+         *
+         * @param resumeStateJournalPath  the path to the journal, or {@code null} not to checkpoint
+         */
+        public ResumableResult resume(final Path resumeStateJournalPath) {
+            final ExecSessionInternal exec = newExecSessionInternal(this.resumeState.getExecSessionConfigSource()).forResumable();
+            final ResumeStateJournal journal = (resumeStateJournalPath == null) ? null : new ResumeStateJournal(resumeStateJournalPath);
             final ExecutionResult result;
             try {
-                result = bulkLoader.resume(exec, config, resumeState);
+                result = bulkLoader.resume(exec, config, resumeState, journal);
             } catch (PartialExecutionException partial) {
                 return new ResumableResult(partial);
+            } finally {
+                if (journal != null) {
+                    journal.close();
+                }
             }
             return new ResumableResult(result);
         }
@@ -469,16 +515,35 @@ public class EmbulkEmbed {
     }
 
     private static BufferAllocator createBufferAllocatorFromSystemConfig(final EmbulkSystemProperties embulkSystemProperties) {
-        final String byteSizeRepresentation = embulkSystemProperties.getProperty("page_size");
-        if (byteSizeRepresentation == null) {
-            return PooledBufferAllocator.create();
+        final String allocatorName = embulkSystemProperties.getProperty("buffer_allocator", "heap");
+        final boolean directPages;
+        if ("heap".equals(allocatorName)) {
+            directPages = false;
+        } else if ("direct".equals(allocatorName)) {
+            directPages = true;
         } else {
-            final int byteSize = parseByteSizeRepresentation(byteSizeRepresentation);
-            return PooledBufferAllocator.create(byteSize);
+            throw new IllegalArgumentException("\"buffer_allocator\" must be \"heap\" or \"direct\": " + allocatorName);
         }
+
+        final String limitRepresentation = embulkSystemProperties.getProperty("buffer_memory_limit");
+        final long memoryLimit = limitRepresentation == null ? 0L : parseLongByteSizeRepresentation(limitRepresentation);
+
+        final String byteSizeRepresentation = embulkSystemProperties.getProperty("page_size");
+        final int pageSize = byteSizeRepresentation == null
+                ? PooledBufferAllocator.DEFAULT_PAGE_SIZE
+                : parseByteSizeRepresentation(byteSizeRepresentation);
+        return PooledBufferAllocator.create(pageSize, directPages, memoryLimit);
     }
 
     private static int parseByteSizeRepresentation(final String byteSizeRepresentation) {
+        return parseByteSize(byteSizeRepresentation).intValue();
+    }
+
+    private static long parseLongByteSizeRepresentation(final String byteSizeRepresentation) {
+        return parseByteSize(byteSizeRepresentation).longValue();
+    }
+
+    private static BigDecimal parseByteSize(final String byteSizeRepresentation) {
         if (byteSizeRepresentation == null) {  // Should not happen.
             throw new NullPointerException("size is null");
         }
@@ -497,22 +562,22 @@ public class EmbulkEmbed {
         final BigDecimal number = new BigDecimal(numberPart);  // NumberFormatException extends IllegalArgumentException.
 
         if (unitPart.isEmpty()) {
-            return number.intValue();
+            return number;
         }
 
         switch (unitPart.toUpperCase(Locale.ENGLISH)) {
             case "B":
-                return number.intValue();
+                return number;
             case "KB":
-                return number.multiply(KILO).intValue();
+                return number.multiply(KILO);
             case "MB":
-                return number.multiply(MEGA).intValue();
+                return number.multiply(MEGA);
             case "GB":
-                return number.multiply(GIGA).intValue();
+                return number.multiply(GIGA);
             case "TB":
-                return number.multiply(TERA).intValue();
+                return number.multiply(TERA);
             case "PB":
-                return number.multiply(PETA).intValue();
+                return number.multiply(PETA);
             default:
                 throw new IllegalArgumentException("Unknown unit '" + unitPart + "'");
         }
@@ -9,6 +9,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 import org.embulk.config.ConfigDiff;
 import org.embulk.config.ConfigException;
@@ -275,13 +276,32 @@ public class EmbulkRunner {
             resumeConfig = null;
         }
 
+        // Committed task reports are checkpointed into the journal so that the transaction can resume even after a crash.
+        final Path resumeStateJournalPath = (resumeStatePath == null) ? null : getResumeStateJournalPath(resumeStatePath);
+        final Optional<EmbulkEmbed.ResumeStateAction> resumeJournalAction;
+        if (resumeConfig == null && resumeStatePath != null) {
+            Optional<EmbulkEmbed.ResumeStateAction> resumeJournalActionTemp = Optional.empty();
+            try {
+                resumeJournalActionTemp = this.embed.resumeStateJournal(configSource, resumeStateJournalPath);
+            } catch (final Throwable ex) {
+                rootLogger.warn("Failed to read resume state journal '" + resumeStateJournalPath.toString() + "'. Ignored.", ex);
+            }
+            resumeJournalAction = resumeJournalActionTemp;
+        } else {
+            resumeJournalAction = Optional.empty();
+        }
+
         final EmbulkEmbed.ResumableResult resumableResult;
         final ExecutionResult executionResultTemp;
         if (resumeConfig != null) {
-            resumableResult = this.embed.resumeState(configSource, resumeConfig).resume();
+            resumableResult = this.embed.resumeState(configSource, resumeConfig).resume(resumeStateJournalPath);
+            executionResultTemp = null;
+        } else if (resumeJournalAction.isPresent()) {
+            rootLogger.info("Resuming from resume state journal '" + resumeStateJournalPath.toString() + "'");
+            resumableResult = resumeJournalAction.get().resume(resumeStateJournalPath);
             executionResultTemp = null;
         } else if (resumeStatePath != null) {
-            resumableResult = this.embed.runResumable(configSource);
+            resumableResult = this.embed.runResumable(configSource, resumeStateJournalPath);
             executionResultTemp = null;
         } else {
             resumableResult = null;
@@ -300,6 +320,7 @@ public class EmbulkRunner {
                         } catch (Throwable ex) {
                             System.err.println("Failed to delete: " + resumeStatePath.toString());
                         }
+                        deleteResumeStateJournal(resumeStateJournalPath);
                     }
                 } else {
                     rootLogger.info("Writing resume state to '" + resumeStatePath.toString() + "'");
@@ -308,6 +329,8 @@ public class EmbulkRunner {
                     } catch (IOException ex) {
                         throw new RuntimeException(ex);
                     }
+                    // The resume state written is complete. The journal is needed only when the JVM crashes.
+                    deleteResumeStateJournal(resumeStateJournalPath);
                     rootLogger.info("Resume state is written. Run the transaction again with -r option to resume or use \"cleanup\" subcommand to delete intermediate data.");
                 }
                 throw new RuntimeException(resumableResult.getCause());
@@ -324,6 +347,7 @@ public class EmbulkRunner {
             } catch (Throwable ex) {
                 System.err.println("Failed to delete: " + resumeStatePath.toString());
             }
+            deleteResumeStateJournal(resumeStateJournalPath);
         }
 
         final ConfigDiff configDiff = executionResult.getConfigDiff();
@@ -404,6 +428,18 @@ public class EmbulkRunner {
         return renderedObject.toString();
     }
 
+    private static Path getResumeStateJournalPath(final Path resumeStatePath) {
+        return resumeStatePath.resolveSibling(resumeStatePath.getFileName().toString() + ".journal");
+    }
+
+    private static void deleteResumeStateJournal(final Path resumeStateJournalPath) {
+        try {
+            Files.deleteIfExists(resumeStateJournalPath);
+        } catch (Throwable ex) {
+            System.err.println("Failed to delete: " + resumeStateJournalPath.toString());
+        }
+    }
+
     private boolean checkFileWritable(final Path path) throws IOException {
         if (path != null) {
             // Open file with append mode and do nothing.
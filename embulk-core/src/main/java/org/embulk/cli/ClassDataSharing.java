@@ -0,0 +1,126 @@
+package org.embulk.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the cds subcommand of Embulk, which dumps a class data sharing (CDS) archive for faster startup.
+ *
+ * <p>It runs {@code embulk preview} with the configuration in a child Java process with {@code -XX:ArchiveClassesAtExit}
+ * (Java 13+) so that classes loaded in a typical transaction are archived. Embulk started with
+ * {@code -XX:SharedArchiveFile} of the archive maps the archived classes instead of parsing and verifying them again.
+ *
+ * <p>Note that only classes loaded from JAR files on the file system are archived, such as Java's own classes and Embulk's
+ * core classes in the executable JAR file. Classes defined from JAR resources embedded in the executable JAR file, and
+ * from plugin JAR files loaded by Embulk's plugin class loaders, are not archived by the JVM.
+ */
+class ClassDataSharing {
+    static int dumpArchive(
+            final Path archivePath,
+            final Path configPath,
+            final Properties commandLineProperties,
+            final PrintStream out) {
+        final int javaVersion = getJavaFeatureVersion();
+        if (javaVersion < 13) {
+            logger.error("'embulk cds' requires Java 13 or later to dump a class data sharing archive. "
+                         + "The running Java is: {}", System.getProperty("java.version"));
+            return 1;
+        }
+
+        final Path jarPath;
+        try {
+            jarPath = identifyRunningJarPath();
+        } catch (final IOException ex) {
+            logger.error(ex.getMessage(), ex);
+            return 1;
+        }
+
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (final String jvmArgument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // The archive should be dumped with the same JVM options as running, but archive options are replaced.
+            if (!jvmArgument.startsWith("-XX:SharedArchiveFile=")
+                    && !jvmArgument.startsWith("-XX:ArchiveClassesAtExit=")
+                    && !jvmArgument.startsWith("-Xshare:")) {
+                command.add(jvmArgument);
+            }
+        }
+        command.add("-XX:ArchiveClassesAtExit=" + archivePath.toAbsolutePath().toString());
+        command.add("-jar");
+        command.add(jarPath.toString());
+        for (final String key : commandLineProperties.stringPropertyNames()) {
+            command.add("-X");
+            command.add(key + "=" + commandLineProperties.getProperty(key));
+        }
+        command.add(Command.PREVIEW.toString());
+        command.add(configPath.toString());
+
+        logger.info("Dumping a class data sharing archive by: {}", command);
+        final int exitCode;
+        try {
+            final Process process = new ProcessBuilder(command).inheritIO().start();
+            exitCode = process.waitFor();
+        } catch (final IOException ex) {
+            logger.error("Failed to start a Java process to dump a class data sharing archive.", ex);
+            return 1;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while dumping a class data sharing archive.", ex);
+            return 1;
+        }
+
+        if (exitCode != 0) {
+            logger.error("Failed to dump a class data sharing archive. 'embulk preview' exited with: {}", exitCode);
+            return exitCode;
+        }
+        if (!Files.isRegularFile(archivePath)) {
+            logger.error("A class data sharing archive is not dumped at: {}", archivePath);
+            return 1;
+        }
+
+        out.println("Dumped a class data sharing archive at: " + archivePath);
+        out.println("Run Embulk with the archive by the same Java, for example:");
+        out.println("  java -XX:SharedArchiveFile=" + archivePath + " -jar " + jarPath + " run ...");
+        return 0;
+    }
+
+    private static int getJavaFeatureVersion() {
+        final String specificationVersion = System.getProperty("java.specification.version");
+        try {
+            if (specificationVersion.startsWith("1.")) {  // Java 8 or earlier.
+                return Integer.parseInt(specificationVersion.substring(2));
+            }
+            return Integer.parseInt(specificationVersion);
+        } catch (final RuntimeException ex) {
+            return -1;
+        }
+    }
+
+    private static Path identifyRunningJarPath() throws IOException {
+        final URI uri;
+        try {
+            uri = ClassDataSharing.class.getProtectionDomain().getCodeSource().getLocation().toURI();
+        } catch (final URISyntaxException ex) {
+            throw new IOException("URI of the Embulk installation path is invalid", ex);
+        }
+        final Path path = Paths.get(uri);
+
+        if ((!Files.exists(path)) || (!Files.isRegularFile(path))) {
+            throw new IOException("This Embulk installation is not an all-in-one JAR. \"cds\" does not work");
+        }
+        return path;
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassDataSharing.class);
+}
@@ -2,6 +2,7 @@ package org.embulk.cli;
 
 public enum Command {
     BUNDLE("bundle"),
+    CDS("cds"),
     CLEANUP("cleanup"),
     EXAMPLE("example"),
     EXEC("exec"),
@@ -63,6 +63,12 @@ public class EmbulkRun {
                     return 1;
                 }
                 return 0;
+            case CDS:
+                return ClassDataSharing.dumpArchive(
+                        Paths.get(subcommandArguments.get(0)),
+                        Paths.get(subcommandArguments.get(1)),
+                        commandLine.getCommandLineProperties(),
+                        System.out);
             case BUNDLE:
                 if (!subcommandArguments.isEmpty() && subcommandArguments.get(0).equals("new")) {
                     System.err.println("embulk: 'embulk bundle new' is no longer available. Please use 'embulk mkbundle' instead.");
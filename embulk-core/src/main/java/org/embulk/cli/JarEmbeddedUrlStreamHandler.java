@@ -11,10 +11,8 @@ import java.nio.ByteBuffer;
  * A special type of {@link java.net.URLStreamHandler} to be coupled with URLs created for a resource.
  */
 final class JarEmbeddedUrlStreamHandler extends URLStreamHandler {
-    JarEmbeddedUrlStreamHandler(final ByteBuffer buffer, final int begin, final int end) {
-        this.buffer = buffer;
-        this.begin = begin;
-        this.end = end;
+    JarEmbeddedUrlStreamHandler(final Resource resource) {
+        this.resource = resource;
     }
 
     @Override
@@ -34,12 +32,11 @@ final class JarEmbeddedUrlStreamHandler extends URLStreamHandler {
              */
             @Override
             public InputStream getInputStream() throws IOException {
-                return new ByteBufferInputStream(buffer, begin, end);
+                final ByteBuffer buffer = resource.getAdjustedByteBuffer();
+                return new ByteBufferInputStream(buffer, buffer.position(), buffer.limit());
             }
         };
     }
 
-    private final ByteBuffer buffer;
-    private final int begin;
-    private final int end;
+    private final Resource resource;
 }
@@ -1,5 +1,6 @@
 package org.embulk.cli;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
@@ -10,14 +11,10 @@ final class Resource {
     Resource(
             final String name,
             final SelfContainedJarFile jarFile,
-            final int begin,
-            final int end,
-            final CodeSigner[] codeSigners) {
+            final ZipIndex.Entry entry) {
         this.name = name;
         this.jarFile = jarFile;
-        this.begin = begin;
-        this.end = end;
-        this.codeSigners = codeSigners;
+        this.entry = entry;
     }
 
     URL getCodeSourceUrl() {
@@ -33,7 +30,7 @@ final class Resource {
                     this.getCodeSourceUrl().toString()
                             + "!" + (this.name.startsWith("/") ? "" : "/")
                             + this.name,
-                    new JarEmbeddedUrlStreamHandler(this.jarFile.getInnerResourcesBinary(), this.begin, this.end));
+                    new JarEmbeddedUrlStreamHandler(this));
         } catch (final MalformedURLException ex) {
             System.err.println("Failed to build an internal resource URL unexpectedly.");
             ex.printStackTrace();
@@ -45,28 +42,25 @@ final class Resource {
         return this.jarFile.getManifest();
     }
 
-    ByteBuffer getAdjustedByteBuffer() {
-        final ByteBuffer buffer = this.jarFile.getInnerResourcesBinary();
-
-        // limit() must be set before position().
-        // position() satisfies the condition |newPosition| must be less than the current limit.
-        buffer.limit(this.end);
-        buffer.position(this.begin);
-        return buffer;
+    /**
+     * Reads the resource on demand.
+     *
+     * @return a new read-only buffer from its position to its limit
+     */
+    ByteBuffer getAdjustedByteBuffer() throws IOException {
+        return this.jarFile.read(this.entry);
     }
 
     CodeSigner[] getCodeSigners() {
-        return this.codeSigners;
+        return null;  // Embedded JAR files are not verified.
     }
 
     @Override
     public String toString() {
-        return "[" + this.name + ":" + this.begin + "-" + this.end + "]";
+        return "[" + this.name + ":" + this.entry + "]";
     }
 
     private final String name;
     private final SelfContainedJarFile jarFile;
-    private final int begin;
-    private final int end;
-    private final CodeSigner[] codeSigners;
+    private final ZipIndex.Entry entry;
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.CodeSource;
@@ -238,8 +239,15 @@ public class SelfContainedJarAwareURLClassLoader extends URLClassLoader {
             }
         }
 
+        final ByteBuffer classBinary;
+        try {
+            classBinary = resource.getAdjustedByteBuffer();
+        } catch (final IOException ex) {
+            throw new ClassNotFoundException(className, ex);
+        }
+
         final CodeSource codeSource = new CodeSource(codeSourceUrl, resource.getCodeSigners());
-        return this.defineClass(className, resource.getAdjustedByteBuffer(), codeSource);
+        return this.defineClass(className, classBinary, codeSource);
     }
 
     private boolean checkPackageSealing(final String packageName, final Manifest manifest, final URL url) {
@@ -3,33 +3,40 @@ package org.embulk.cli;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
-import java.util.LinkedHashMap;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
+/**
+ * A self-contained JAR file embedded as a resource in the Embulk JAR file.
+ *
+ * <p>Its entries are indexed from the central directory on demand, when a resource is looked up for the first time. Each
+ * entry is then read on demand. If the Embulk JAR file is a local file, it is memory-mapped, and a stored (uncompressed)
+ * embedded JAR file is read directly from the mapped memory.
+ */
 final class SelfContainedJarFile {
     SelfContainedJarFile(final String outerResourceName) {
         if (outerResourceName == null) {
             throw new NullPointerException("null specified for SelfContainedJarFile.");
         }
+        this.outerResourceName = outerResourceName;
 
         if (CODE_SOURCE_URL_BASE == null) {
             System.err.println("org.embulk.cli.SelfContainedJarFile is loaded through invalid method or location.");
             this.codeSourceUrl = null;
-            this.manifest = null;
-            this.innerResources = null;
-            this.innerResourcesBinary = null;
             return;
         }
 
-        final URL codeSourceUrlBuilt;
+        URL codeSourceUrlBuilt = null;
         try {
             codeSourceUrlBuilt = new URL(
                     CODE_SOURCE_URL_BASE,
@@ -37,147 +44,197 @@ final class SelfContainedJarFile {
         } catch (final MalformedURLException ex) {
             System.err.println("Invalid JAR resource: " + CODE_SOURCE_URL_BASE.toString() + " : " + outerResourceName);
             ex.printStackTrace();
-            this.codeSourceUrl = null;
-            this.manifest = null;
-            this.innerResources = null;
-            this.innerResourcesBinary = null;
-            return;
         }
+        this.codeSourceUrl = codeSourceUrlBuilt;
+    }
 
-        final InputStream inputStream = SelfContainedJarFile.class.getResourceAsStream(outerResourceName);
-        if (inputStream == null) {
-            System.err.println("JAR resource not found: " + outerResourceName);
-            this.codeSourceUrl = null;
-            this.manifest = null;
-            this.innerResources = null;
-            this.innerResourcesBinary = null;
-            return;
+    URL getCodeSourceUrl() {
+        return this.codeSourceUrl;
+    }
+
+    Manifest getManifest() {
+        this.index();
+        return this.manifest;
+    }
+
+    /**
+     * Returns the resource object.
+     *
+     * @return resource if found, null otherwise
+     */
+    Resource getResource(final String resourceName) {
+        final ZipIndex index = this.index();
+        if (index == null || JarFile.MANIFEST_NAME.equals(resourceName)) {  // The manifest is not a resource as in JarInputStream.
+            return null;
+        }
+        final ZipIndex.Entry entry = index.get(resourceName);
+        if (entry == null) {
+            return null;
+        }
+        return new Resource(resourceName, this, entry);
+    }
+
+    /**
+     * Reads the uncompressed data of the entry.
+     */
+    ByteBuffer read(final ZipIndex.Entry entry) throws IOException {
+        return this.index().getData(entry);
+    }
+
+    private ZipIndex index() {
+        if (this.indexed) {
+            return this.index;
         }
+        synchronized (this) {
+            if (!this.indexed) {
+                try {
+                    this.indexOnce();
+                } finally {
+                    this.indexed = true;  // Written at last so that |index| and |manifest| are visible after |indexed|.
+                }
+            }
+            return this.index;
+        }
+    }
 
-        final JarInputStream jarInputStream;
-        try {
-            jarInputStream = new JarInputStream(inputStream, false);
-        } catch (final IOException ex) {
-            System.err.println("Invalid JAR format: " + outerResourceName);
-            ex.printStackTrace();
-            this.codeSourceUrl = null;
-            this.manifest = null;
-            this.innerResources = null;
-            this.innerResourcesBinary = null;
+    private void indexOnce() {
+        if (this.codeSourceUrl == null) {
             return;
         }
 
-        final LinkedHashMap<String, Resource> innerResourcesBuilt = new LinkedHashMap<>();
-        final ByteBuffer innerResourcesBinaryBuilt;
+        final ZipIndex indexBuilt;
         try {
-            innerResourcesBinaryBuilt = extract(outerResourceName, jarInputStream, this, innerResourcesBuilt);
+            indexBuilt = buildIndex(this.outerResourceName);
         } catch (final IOException ex) {
-            System.err.println("Failed to read JAR: " + outerResourceName);
+            System.err.println("Failed to read JAR: " + this.outerResourceName);
             ex.printStackTrace();
-            this.codeSourceUrl = null;
-            this.manifest = null;
-            this.innerResources = null;
-            this.innerResourcesBinary = null;
-            closeQuiet(jarInputStream);
+            return;
+        }
+        if (indexBuilt == null) {
+            System.err.println("JAR resource not found: " + this.outerResourceName);
             return;
         }
 
-        this.codeSourceUrl = codeSourceUrlBuilt;
-        this.manifest = jarInputStream.getManifest();
-        this.innerResources = innerResourcesBuilt;
-        this.innerResourcesBinary = innerResourcesBinaryBuilt;
+        final Manifest manifestRead;
+        final ZipIndex.Entry manifestEntry = indexBuilt.get(JarFile.MANIFEST_NAME);
+        if (manifestEntry != null) {
+            try {
+                final ByteBuffer manifestBinary = indexBuilt.getData(manifestEntry);
+                manifestRead = new Manifest(new ByteBufferInputStream(manifestBinary, 0, manifestBinary.limit()));
+            } catch (final IOException ex) {
+                System.err.println("Invalid JAR format: " + this.outerResourceName);
+                ex.printStackTrace();
+                return;
+            }
+        } else {
+            manifestRead = null;
+        }
+
+        this.index = indexBuilt;
+        this.manifest = manifestRead;
 
         if ("true".equals(System.getProperty("org.embulk.trace_embedded_jar_resources"))) {
             System.err.println(
-                    "Extracted an embedded JAR resource: ["
+                    "Indexed an embedded JAR resource: ["
                     + this.codeSourceUrl.toString()
                     + "] ("
-                    + this.innerResourcesBinary.capacity()
+                    + indexBuilt.size()
+                    + " entries in "
+                    + indexBuilt.getBinarySize()
                     + " bytes)");
         }
     }
 
-    private static void closeQuiet(final InputStream is) {
-        if (is != null) {
-            try {
-                is.close();
-            } catch (IOException e) {
-                // ignore.
-            }
-        }
-    }
-
-    URL getCodeSourceUrl() {
-        return this.codeSourceUrl;
-    }
-
-    Manifest getManifest() {
-        return this.manifest;
-    }
-
-    ByteBuffer getInnerResourcesBinary() {
-        return this.innerResourcesBinary.asReadOnlyBuffer();
-    }
-
     /**
-     * Returns the resource object.
+     * Builds an index of the embedded JAR file.
      *
-     * @return resource if found, null otherwise
+     * @return the index, or null if the embedded JAR file is not found
      */
-    Resource getResource(final String resourceName) {
-        if (this.innerResources == null) {
+    private static ZipIndex buildIndex(final String outerResourceName) throws IOException {
+        final ByteBuffer binary = readBinary(outerResourceName);
+        if (binary == null) {
             return null;
         }
-        return this.innerResources.get(resourceName);
+        try {
+            return ZipIndex.of(binary, outerResourceName);
+        } catch (final IOException ex) {
+            // Some JAR files, such as ZIP64, cannot be indexed. They are extracted as before.
+            return ZipIndex.extract(new ByteBufferInputStream(binary, binary.position(), binary.limit()), outerResourceName);
+        }
     }
 
-    private static ByteBuffer extract(
-            final String outerResourceName,
-            final JarInputStream jarInputStream,
-            final SelfContainedJarFile jar,
-            final LinkedHashMap<String, Resource> innerResources)
-            throws IOException {
-        final byte[] buffer = new byte[4096];
-        final ByteArrayOutputStream innerResourcesBinaryOutputStream = new ByteArrayOutputStream();
-
-        int index = 0;
-        while (true) {
-            final JarEntry jarEntry = (JarEntry) jarInputStream.getNextEntry();
-            if (jarEntry == null) {
-                break;  // End of embedded JAR
+    /**
+     * Reads the binary of the embedded JAR file, which is still compressed per entry.
+     *
+     * <p>It is a view of the memory-mapped Embulk JAR file if the embedded JAR file is stored in it.
+     */
+    private static ByteBuffer readBinary(final String outerResourceName) throws IOException {
+        final ZipIndex outerIndex = OuterJar.INDEX;
+        if (outerIndex != null) {
+            final ZipIndex.Entry outerEntry =
+                    outerIndex.get(outerResourceName.startsWith("/") ? outerResourceName.substring(1) : outerResourceName);
+            if (outerEntry != null) {
+                return outerIndex.getData(outerEntry);
             }
+        }
 
-            if (jarEntry.isDirectory()) {
-                continue;
-            }
-            final String entryName = jarEntry.getName();
-            if (innerResources.containsKey(entryName)) {
-                throw new IOException(String.format("Duplicated in embedded JAR: %s/%s", outerResourceName, entryName));
+        final InputStream inputStream = SelfContainedJarFile.class.getResourceAsStream(outerResourceName);
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            while (true) {
+                final int lengthRead = inputStream.read(buffer);
+                if (lengthRead < 0) {
+                    break;
+                }
+                outputStream.write(buffer, 0, lengthRead);
             }
-
-            final int lengthRead = (int) transfer(jarInputStream, innerResourcesBinaryOutputStream, buffer);
-            innerResources.put(entryName, new Resource(entryName, jar, index, index + lengthRead, jarEntry.getCodeSigners()));
-            index += lengthRead;
+            return ByteBuffer.wrap(outputStream.toByteArray()).asReadOnlyBuffer();
+        } finally {
+            closeQuiet(inputStream);
         }
+    }
 
-        // TODO: Use ByteBuffer.allocateDirect so that it does not affect GC.
-        return ByteBuffer.wrap(innerResourcesBinaryOutputStream.toByteArray()).asReadOnlyBuffer();
+    private static void closeQuiet(final InputStream is) {
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
     }
 
-    /**
-     * Does the same with Java 9+'s {@code InputStream#transferTo}.
-     */
-    private static long transfer(final InputStream inputStream, final OutputStream outputStream, final byte[] buffer) throws IOException {
-        long totalLength = 0L;
-        while (true) {
-            final int lengthRead = inputStream.read(buffer);
-            if (lengthRead < 0) {
-                break;
+    private static class OuterJar {  // Initialization-on-demand holder idiom.
+        // The index of the Embulk JAR file itself, or null if it is not a local file that can be memory-mapped.
+        static final ZipIndex INDEX;
+
+        static {
+            ZipIndex indexBuilt = null;
+            try {
+                final URL codeSourceUrl = CODE_SOURCE.getLocation();
+                if ("file".equals(codeSourceUrl.getProtocol())) {
+                    final Path path = Paths.get(codeSourceUrl.toURI());
+                    if (Files.isRegularFile(path)) {
+                        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                            // The mapping is valid after the channel is closed.
+                            indexBuilt = ZipIndex.of(
+                                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path.toString());
+                        }
+                    }
+                }
+            } catch (final Exception ex) {
+                // Falling back to reading through the class loader.
+                if ("true".equals(System.getProperty("org.embulk.trace_embedded_jar_resources"))) {
+                    System.err.println("Failed to map the Embulk JAR file. Reading embedded JAR resources as streams.");
+                    ex.printStackTrace();
+                }
             }
-            outputStream.write(buffer, 0, lengthRead);
-            totalLength += lengthRead;
+            INDEX = indexBuilt;
         }
-        return totalLength;
     }
 
     // TODO: Apply the Initialization-on-demand holder idiom.
@@ -226,8 +283,10 @@ final class SelfContainedJarFile {
     private static final CodeSource CODE_SOURCE;
     private static final URL CODE_SOURCE_URL_BASE;
 
+    private final String outerResourceName;
     private final URL codeSourceUrl;
-    private final Manifest manifest;
-    private final LinkedHashMap<String, Resource> innerResources;
-    private final ByteBuffer innerResourcesBinary;
+
+    private volatile boolean indexed;
+    private ZipIndex index;
+    private Manifest manifest;
 }
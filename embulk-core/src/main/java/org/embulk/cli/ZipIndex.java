@@ -0,0 +1,298 @@
+package org.embulk.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An index of entries in a ZIP (JAR) binary built from its central directory, to read each entry on demand.
+ *
+ * <p>It reads the central directory at the end of the binary, not all the entries. The binary may be prefixed by
+ * something else, such as the shell script prepended to the Embulk executable JAR.
+ */
+final class ZipIndex {
+    private ZipIndex(final ByteBuffer binary, final Map<String, Entry> entries) {
+        this.binary = binary;
+        this.entries = entries;
+    }
+
+    static final class Entry {
+        private Entry(
+                final String name,
+                final int method,
+                final int compressedSize,
+                final int size,
+                final int localHeaderOffset,
+                final int dataOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.dataOffset = dataOffset;
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        boolean isStored() {
+            return this.method == STORED;
+        }
+
+        int getSize() {
+            return this.size;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + this.name + ":" + this.localHeaderOffset + "(" + this.compressedSize + "/" + this.size + ")]";
+        }
+
+        private final String name;
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private final int localHeaderOffset;
+        private final int dataOffset;  // -1 if it is known only from the local header.
+    }
+
+    /**
+     * Builds an index of the ZIP binary from its central directory.
+     *
+     * @param binary  the ZIP binary, which is not modified
+     * @param description  the description of the binary for error messages
+     * @return the index
+     * @throws IOException  if the binary is not a valid ZIP, or has duplicated entries
+     */
+    static ZipIndex of(final ByteBuffer binary, final String description) throws IOException {
+        final ByteBuffer zip = binary.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new ZipIndex(zip, readCentralDirectory(zip, description));
+        } catch (final IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new IOException("Broken ZIP: " + description, ex);
+        }
+    }
+
+    /**
+     * Extracts all the entries from the JAR stream into a single buffer, and builds an index of them.
+     *
+     * <p>It is a fallback for a ZIP binary whose central directory cannot be read, such as ZIP64.
+     *
+     * @param inputStream  the JAR stream
+     * @param description  the description of the JAR for error messages
+     * @return the index
+     * @throws IOException  if the stream is not a valid JAR, or has duplicated entries
+     */
+    static ZipIndex extract(final InputStream inputStream, final String description) throws IOException {
+        final JarInputStream jarInputStream = new JarInputStream(inputStream, false);
+        final ByteArrayOutputStream binaryOutputStream = new ByteArrayOutputStream();
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        final byte[] buffer = new byte[4096];
+        int index = 0;
+        while (true) {
+            final JarEntry jarEntry = (JarEntry) jarInputStream.getNextEntry();
+            if (jarEntry == null) {
+                break;  // End of embedded JAR
+            }
+            if (jarEntry.isDirectory()) {
+                continue;
+            }
+            final String name = jarEntry.getName();
+
+            int length = 0;
+            while (true) {
+                final int lengthRead = jarInputStream.read(buffer);
+                if (lengthRead < 0) {
+                    break;
+                }
+                binaryOutputStream.write(buffer, 0, lengthRead);
+                length += lengthRead;
+            }
+            if (entries.put(name, new Entry(name, STORED, length, length, -1, index)) != null) {
+                throw new IOException(String.format("Duplicated in ZIP: %s/%s", description, name));
+            }
+            index += length;
+        }
+
+        // JarInputStream consumes the manifest. It is put back as an entry so that the index looks the same.
+        final Manifest manifest = jarInputStream.getManifest();
+        if (manifest != null && !entries.containsKey(JarFile.MANIFEST_NAME)) {
+            final ByteArrayOutputStream manifestOutputStream = new ByteArrayOutputStream();
+            manifest.write(manifestOutputStream);
+            final int length = manifestOutputStream.size();
+            manifestOutputStream.writeTo(binaryOutputStream);
+            entries.put(JarFile.MANIFEST_NAME, new Entry(JarFile.MANIFEST_NAME, STORED, length, length, -1, index));
+        }
+
+        return new ZipIndex(
+                ByteBuffer.wrap(binaryOutputStream.toByteArray()).order(ByteOrder.LITTLE_ENDIAN),
+                Collections.unmodifiableMap(entries));
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    int getBinarySize() {
+        return this.binary.capacity();
+    }
+
+    Entry get(final String name) {
+        return this.entries.get(name);
+    }
+
+    /**
+     * Returns the raw data of the entry, which is compressed unless the entry is stored.
+     */
+    ByteBuffer getRawData(final Entry entry) throws IOException {
+        if (entry.dataOffset >= 0) {
+            return this.slice(entry.dataOffset, entry.compressedSize);
+        }
+        try {
+            final int nameLength = this.binary.getShort(entry.localHeaderOffset + 26) & 0xffff;
+            final int extraLength = this.binary.getShort(entry.localHeaderOffset + 28) & 0xffff;
+            if (this.binary.getInt(entry.localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("Broken local header in ZIP: " + entry);
+            }
+            return this.slice(entry.localHeaderOffset + 30 + nameLength + extraLength, entry.compressedSize);
+        } catch (final IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new IOException("Broken ZIP entry: " + entry, ex);
+        }
+    }
+
+    /**
+     * Returns the uncompressed data of the entry.
+     *
+     * <p>A stored entry is just a read-only view of the binary, not a copy. A deflated entry is inflated into a new buffer.
+     */
+    ByteBuffer getData(final Entry entry) throws IOException {
+        final ByteBuffer raw = this.getRawData(entry);
+        if (entry.method == STORED) {
+            return raw;
+        } else if (entry.method != DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " in ZIP: " + entry);
+        }
+
+        // An extra dummy byte is required for Inflater with "nowrap".
+        final byte[] input = new byte[entry.compressedSize + 1];
+        raw.get(input, 0, entry.compressedSize);
+        final byte[] output = new byte[entry.size];
+
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int inflated = 0;
+            while (inflated < output.length) {
+                final int length = inflater.inflate(output, inflated, output.length - inflated);
+                if (length == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated in ZIP: " + entry);
+                }
+                inflated += length;
+            }
+        } catch (final DataFormatException ex) {
+            throw new IOException("Broken compressed data in ZIP: " + entry, ex);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(output).asReadOnlyBuffer();
+    }
+
+    private ByteBuffer slice(final int begin, final int length) {
+        final ByteBuffer data = this.binary.asReadOnlyBuffer();
+
+        // limit() must be set before position().
+        // position() satisfies the condition |newPosition| must be less than the current limit.
+        data.limit(begin + length);
+        data.position(begin);
+        return data.slice();
+    }
+
+    private static Map<String, Entry> readCentralDirectory(final ByteBuffer zip, final String description) throws IOException {
+        final int endPosition = findEndOfCentralDirectory(zip);
+        if (endPosition < 0) {
+            throw new IOException("Not a ZIP: " + description);
+        }
+
+        final int entryCount = zip.getShort(endPosition + 10) & 0xffff;
+        final long centralDirectorySize = zip.getInt(endPosition + 12) & 0xffffffffL;
+        final long centralDirectoryOffset = zip.getInt(endPosition + 16) & 0xffffffffL;
+        if (entryCount == 0xffff || centralDirectorySize == 0xffffffffL || centralDirectoryOffset == 0xffffffffL) {
+            throw new IOException("ZIP64 is not supported: " + description);
+        }
+
+        // The recorded offsets are shifted if the binary is prefixed.
+        final long prefixLength = endPosition - centralDirectorySize - centralDirectoryOffset;
+        if (prefixLength < 0) {
+            throw new IOException("Broken central directory in ZIP: " + description);
+        }
+
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+        int position = (int) (prefixLength + centralDirectoryOffset);
+        for (int i = 0; i < entryCount; i++) {
+            if (zip.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Broken central directory in ZIP: " + description);
+            }
+            final int method = zip.getShort(position + 10) & 0xffff;
+            final long compressedSize = zip.getInt(position + 20) & 0xffffffffL;
+            final long size = zip.getInt(position + 24) & 0xffffffffL;
+            final int nameLength = zip.getShort(position + 28) & 0xffff;
+            final int extraLength = zip.getShort(position + 30) & 0xffff;
+            final int commentLength = zip.getShort(position + 32) & 0xffff;
+            final long localHeaderOffset = zip.getInt(position + 42) & 0xffffffffL;
+            if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+                throw new IOException("ZIP64 is not supported: " + description);
+            }
+
+            final byte[] nameBytes = new byte[nameLength];
+            final ByteBuffer nameBuffer = zip.duplicate();
+            nameBuffer.position(position + 46);
+            nameBuffer.get(nameBytes);
+            final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if (!name.endsWith("/")) {  // Directories are skipped.
+                final Entry entry = new Entry(
+                        name, method, (int) compressedSize, (int) size, (int) (prefixLength + localHeaderOffset), -1);
+                if (entries.put(name, entry) != null) {
+                    throw new IOException(String.format("Duplicated in ZIP: %s/%s", description, name));
+                }
+            }
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private static int findEndOfCentralDirectory(final ByteBuffer zip) {
+        // The end of central directory record is followed by a comment up to 65535 bytes.
+        final int lowest = Math.max(0, zip.capacity() - 22 - 0xffff);
+        for (int position = zip.capacity() - 22; position >= lowest; position--) {
+            if (zip.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final ByteBuffer binary;
+    private final Map<String, Entry> entries;
+}
@@ -0,0 +1,317 @@
+package org.embulk.exec;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts buffers allocated by {@link PooledBufferAllocator}, for the allocator, and for each task running in a {@link TaskScope}.
+ *
+ * <p>If a memory limit is given, allocations wait until enough buffers are released so that the total capacity of live
+ * buffers does not exceed the limit. An allocation is not blocked when no buffer is live so that a buffer bigger than
+ * the limit can still be allocated.
+ *
+ * <p>A stack trace is recorded for one of {@code leakSamplingInterval} allocations in a task. Buffers not released
+ * at the end of the task are reported with the stack traces sampled.
+ */
+public final class BufferAccounting {
+    public BufferAccounting(final long memoryLimit) {
+        this(memoryLimit, DEFAULT_LEAK_SAMPLING_INTERVAL, DEFAULT_LIMIT_WAIT_NANOS);
+    }
+
+    BufferAccounting(final long memoryLimit, final int leakSamplingInterval, final long limitWaitNanos) {
+        this.memoryLimit = memoryLimit;
+        this.leakSamplingInterval = leakSamplingInterval;
+        this.limitWaitNanos = limitWaitNanos;
+        this.counters = new Counters();
+        this.tasks = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong(0);
+        this.limitLock = new Object();
+        this.reservedBytes = 0;
+    }
+
+    /**
+     * An allocation of a buffer. It must be released just once when the buffer is released.
+     */
+    public static final class Allocation {
+        private Allocation(final BufferAccounting accounting, final Task task, final int capacity, final Throwable allocatedAt) {
+            this.accounting = accounting;
+            this.task = task;
+            this.capacity = capacity;
+            this.allocatedAt = allocatedAt;
+        }
+
+        public void release() {
+            this.accounting.release(this);
+        }
+
+        private final BufferAccounting accounting;
+        private final Task task;
+        private final int capacity;
+        private final Throwable allocatedAt;  // null if not sampled
+    }
+
+    /**
+     * A scope in which buffers allocated by the current thread are counted for the task.
+     */
+    public static final class TaskScope implements AutoCloseable {
+        private TaskScope(final BufferAccounting accounting, final Task task) {
+            this.accounting = accounting;
+            this.task = task;
+            this.previous = task != null ? CURRENT_TASK.get() : null;
+            if (task != null) {
+                CURRENT_TASK.set(task);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (this.task == null) {
+                return;
+            }
+            if (this.previous != null) {
+                CURRENT_TASK.set(this.previous);
+            } else {
+                CURRENT_TASK.remove();
+            }
+            this.accounting.finishTask(this.task);
+        }
+
+        private final BufferAccounting accounting;
+        private final Task task;
+        private final Task previous;
+    }
+
+    /**
+     * Returns a scope which does not count buffers for any task.
+     */
+    public static TaskScope noTaskScope() {
+        return NO_TASK_SCOPE;
+    }
+
+    /**
+     * Wraps a {@link Callable} so that buffers allocated in it are counted for the task of the current thread.
+     *
+     * <p>It is for worker threads which run a part of a task, such as pipeline stages.
+     */
+    public static <T> Callable<T> propagate(final Callable<T> callable) {
+        final Task task = CURRENT_TASK.get();
+        if (task == null) {
+            return callable;
+        }
+        return () -> {
+            final Task previous = CURRENT_TASK.get();
+            CURRENT_TASK.set(task);
+            try {
+                return callable.call();
+            } finally {
+                if (previous != null) {
+                    CURRENT_TASK.set(previous);
+                } else {
+                    CURRENT_TASK.remove();
+                }
+            }
+        };
+    }
+
+    public TaskScope openTask(final String name) {
+        final Task task = new Task(this, name);
+        this.tasks.put(task, Boolean.TRUE);
+        return new TaskScope(this, task);
+    }
+
+    /**
+     * Counts an allocation of a buffer, waiting for the memory limit if needed.
+     *
+     * @throws BufferMemoryLimitExceededException if enough buffers are not released while waiting
+     */
+    public Allocation allocate(final int capacity) {
+        this.acquireMemory(capacity);
+
+        final Task current = CURRENT_TASK.get();
+        final Task task = (current != null && current.accounting == this) ? current : null;
+
+        this.counters.allocated(capacity);
+        Throwable allocatedAt = null;
+        if (task != null) {
+            task.counters.allocated(capacity);
+            if (this.leakSamplingInterval > 0 && this.sequence.getAndIncrement() % this.leakSamplingInterval == 0) {
+                allocatedAt = new Throwable("A buffer was allocated at:");
+            }
+        }
+
+        final Allocation allocation = new Allocation(this, task, capacity, allocatedAt);
+        if (allocatedAt != null) {
+            task.sampled.add(allocation);
+        }
+        return allocation;
+    }
+
+    /**
+     * Cancels an allocation counted if the buffer has failed to be allocated actually.
+     */
+    public void cancel(final Allocation allocation) {
+        this.release(allocation);
+    }
+
+    public BufferMetrics getMetrics(final long pooledBytes, final double pooledAllocationRatio) {
+        return this.counters.snapshot(pooledBytes, pooledAllocationRatio);
+    }
+
+    /**
+     * Returns metrics of tasks running, keyed by the task names.
+     */
+    public Map<String, BufferMetrics> getTaskMetrics() {
+        final LinkedHashMap<String, BufferMetrics> metrics = new LinkedHashMap<>();
+        for (final Task task : this.tasks.keySet()) {
+            metrics.put(task.name, task.counters.snapshot(-1L, Double.NaN));
+        }
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    public static class BufferMemoryLimitExceededException extends IllegalStateException {
+        public BufferMemoryLimitExceededException(final String message) {
+            super(message);
+        }
+    }
+
+    private void release(final Allocation allocation) {
+        this.counters.released(allocation.capacity);
+        if (allocation.task != null) {
+            allocation.task.counters.released(allocation.capacity);
+            if (allocation.allocatedAt != null) {
+                allocation.task.sampled.remove(allocation);
+            }
+        }
+        this.releaseMemory(allocation.capacity);
+    }
+
+    private void acquireMemory(final int capacity) {
+        if (this.memoryLimit <= 0) {
+            return;
+        }
+        synchronized (this.limitLock) {
+            long remainingNanos = this.limitWaitNanos;
+            while (this.reservedBytes > 0 && this.reservedBytes + capacity > this.memoryLimit) {
+                if (remainingNanos <= 0) {
+                    throw new BufferMemoryLimitExceededException(String.format(
+                            "Buffers of %d bytes were not released in %d seconds to allocate %d bytes under \"buffer_memory_limit\" %d bytes.",
+                            this.reservedBytes, TimeUnit.NANOSECONDS.toSeconds(this.limitWaitNanos), capacity, this.memoryLimit));
+                }
+                final long startedAt = System.nanoTime();
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this.limitLock, remainingNanos);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                }
+                remainingNanos -= System.nanoTime() - startedAt;
+            }
+            this.reservedBytes += capacity;
+        }
+    }
+
+    private void releaseMemory(final int capacity) {
+        if (this.memoryLimit <= 0) {
+            return;
+        }
+        synchronized (this.limitLock) {
+            this.reservedBytes -= capacity;
+            this.limitLock.notifyAll();
+        }
+    }
+
+    private void finishTask(final Task task) {
+        this.tasks.remove(task);
+
+        final BufferMetrics metrics = task.counters.snapshot(-1L, Double.NaN);
+        logger.debug("Buffers in {}: {}", task.name, metrics);
+        if (metrics.getLiveBuffers() > 0) {
+            logger.warn("{} buffer(s) of {} bytes allocated in {} have not been released at the end of the task.",
+                        metrics.getLiveBuffers(), metrics.getLiveBytes(), task.name);
+            for (final Allocation allocation : task.sampled) {
+                logger.warn("A buffer of {} bytes not released in {} (sampled):", allocation.capacity, task.name, allocation.allocatedAt);
+            }
+        }
+    }
+
+    private static final class Task {
+        private Task(final BufferAccounting accounting, final String name) {
+            this.accounting = accounting;
+            this.name = name;
+            this.counters = new Counters();
+            this.sampled = ConcurrentHashMap.newKeySet();
+        }
+
+        private final BufferAccounting accounting;
+        private final String name;
+        private final Counters counters;
+        private final Set<Allocation> sampled;
+    }
+
+    private static final class Counters {
+        private Counters() {
+            this.allocations = new LongAdder();
+            this.allocatedBytes = new LongAdder();
+            this.liveBuffers = new AtomicLong(0);
+            this.liveBytes = new AtomicLong(0);
+            this.peakLiveBytes = new AtomicLong(0);
+        }
+
+        private void allocated(final int capacity) {
+            this.allocations.increment();
+            this.allocatedBytes.add(capacity);
+            this.liveBuffers.incrementAndGet();
+            final long live = this.liveBytes.addAndGet(capacity);
+            this.peakLiveBytes.accumulateAndGet(live, Math::max);
+        }
+
+        private void released(final int capacity) {
+            this.liveBuffers.decrementAndGet();
+            this.liveBytes.addAndGet(-capacity);
+        }
+
+        private BufferMetrics snapshot(final long pooledBytes, final double pooledAllocationRatio) {
+            return new BufferMetrics(
+                    this.allocations.sum(),
+                    this.allocatedBytes.sum(),
+                    this.liveBuffers.get(),
+                    this.liveBytes.get(),
+                    this.peakLiveBytes.get(),
+                    pooledBytes,
+                    pooledAllocationRatio);
+        }
+
+        private final LongAdder allocations;
+        private final LongAdder allocatedBytes;
+        private final AtomicLong liveBuffers;
+        private final AtomicLong liveBytes;
+        private final AtomicLong peakLiveBytes;
+    }
+
+    private static final int DEFAULT_LEAK_SAMPLING_INTERVAL = 128;
+    private static final long DEFAULT_LIMIT_WAIT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static final ThreadLocal<Task> CURRENT_TASK = new ThreadLocal<>();
+    private static final TaskScope NO_TASK_SCOPE = new TaskScope(null, null);
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferAccounting.class);
+
+    private final long memoryLimit;
+    private final int leakSamplingInterval;
+    private final long limitWaitNanos;
+    private final Counters counters;
+    private final ConcurrentHashMap<Task, Boolean> tasks;
+    private final AtomicLong sequence;
+
+    private final Object limitLock;
+    private long reservedBytes;  // Guarded by limitLock.
+}
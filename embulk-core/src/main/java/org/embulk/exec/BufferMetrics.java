@@ -0,0 +1,97 @@
+package org.embulk.exec;
+
+/**
+ * A snapshot of counters of buffers allocated by {@link PooledBufferAllocator}, for the allocator or for a task.
+ */
+public final class BufferMetrics {
+    BufferMetrics(
+            final long allocations,
+            final long allocatedBytes,
+            final long liveBuffers,
+            final long liveBytes,
+            final long peakLiveBytes,
+            final long pooledBytes,
+            final double pooledAllocationRatio) {
+        this.allocations = allocations;
+        this.allocatedBytes = allocatedBytes;
+        this.liveBuffers = liveBuffers;
+        this.liveBytes = liveBytes;
+        this.peakLiveBytes = peakLiveBytes;
+        this.pooledBytes = pooledBytes;
+        this.pooledAllocationRatio = pooledAllocationRatio;
+    }
+
+    /**
+     * Returns the number of buffers allocated so far.
+     */
+    public long getAllocations() {
+        return this.allocations;
+    }
+
+    /**
+     * Returns the total capacity of buffers allocated so far.
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Returns the number of buffers allocated, and not released yet.
+     */
+    public long getLiveBuffers() {
+        return this.liveBuffers;
+    }
+
+    /**
+     * Returns the total capacity of buffers allocated, and not released yet.
+     */
+    public long getLiveBytes() {
+        return this.liveBytes;
+    }
+
+    public long getPeakLiveBytes() {
+        return this.peakLiveBytes;
+    }
+
+    /**
+     * Returns the bytes of memory reserved by the pool, or {@code -1} if unknown. It is unknown for a task.
+     */
+    public long getPooledBytes() {
+        return this.pooledBytes;
+    }
+
+    /**
+     * Returns the ratio of allocations from chunks of the pool, or {@code NaN} if unknown. It is unknown for a task.
+     *
+     * <p>Allocations bigger than a chunk of the pool are not pooled. It is not a ratio of cache hits. A pooled allocation
+     * may still allocate a new chunk when the pool does not have enough free memory.
+     */
+    public double getPooledAllocationRatio() {
+        return this.pooledAllocationRatio;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("allocations=").append(this.allocations);
+        builder.append(", allocated_bytes=").append(this.allocatedBytes);
+        builder.append(", live_buffers=").append(this.liveBuffers);
+        builder.append(", live_bytes=").append(this.liveBytes);
+        builder.append(", peak_live_bytes=").append(this.peakLiveBytes);
+        if (this.pooledBytes >= 0) {
+            builder.append(", pooled_bytes=").append(this.pooledBytes);
+        }
+        if (!Double.isNaN(this.pooledAllocationRatio)) {
+            builder.append(", pooled_allocation_ratio=").append(String.format("%.3f", this.pooledAllocationRatio));
+        }
+        return builder.toString();
+    }
+
+    private final long allocations;
+    private final long allocatedBytes;
+    private final long liveBuffers;
+    private final long liveBytes;
+    private final long peakLiveBytes;
+    private final long pooledBytes;
+    private final double pooledAllocationRatio;
+}
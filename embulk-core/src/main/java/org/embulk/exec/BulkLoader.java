@@ -78,6 +78,9 @@ public class BulkLoader {
         private volatile List<TaskState> inputTaskStates;
         private volatile List<TaskState> outputTaskStates;
 
+        private volatile ResumeStateJournal resumeStateJournal;
+        private volatile boolean resumeStateJournalStarted;
+
         public LoaderState(Logger logger, ProcessPluginSet plugins) {
             this.logger = logger;
             this.plugins = plugins;
@@ -111,6 +114,21 @@ public class BulkLoader {
             this.filterTaskSources = filterTaskSources;
         }
 
+        public void setResumeStateJournal(ResumeStateJournal resumeStateJournal) {
+            this.resumeStateJournal = resumeStateJournal;
+        }
+
+        /**
+         * Starts checkpointing task reports committed from now on, with the resume state including ones committed so far.
+         */
+        @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+        public void startResumeStateJournal(ExecSessionInternal exec) {
+            if (resumeStateJournal != null && !resumeStateJournalStarted) {
+                resumeStateJournal.start(buildResumeState(exec), exec.getModelManager());
+                resumeStateJournalStarted = true;
+            }
+        }
+
         public ProcessTask buildProcessTask() {
             return new ProcessTask(
                     plugins.getInputPluginType(), plugins.getOutputPluginType(), plugins.getFilterPluginTypes(),
@@ -131,10 +149,10 @@ public class BulkLoader {
                 final ArrayList<TaskState> inputTaskStates = new ArrayList<>();
                 final ArrayList<TaskState> outputTaskStates = new ArrayList<>();
                 for (int i = 0; i < inputTaskCount; i++) {
-                    inputTaskStates.add(new TaskState());
+                    inputTaskStates.add(new JournaledTaskState(true, i));
                 }
                 for (int i = 0; i < outputTaskCount; i++) {
-                    outputTaskStates.add(new TaskState());
+                    outputTaskStates.add(new JournaledTaskState(false, i));
                 }
                 this.inputTaskStates = Collections.unmodifiableList(inputTaskStates);
                 this.outputTaskStates = Collections.unmodifiableList(outputTaskStates);
@@ -339,6 +357,29 @@ public class BulkLoader {
         public PartialExecutionException buildPartialExecuteException(Throwable cause, ExecSessionInternal exec) {
             return new PartialExecutionException(cause, buildResumeState(exec), transactionStage);
         }
+
+        // Appends the task report into the resume state journal when the task is committed.
+        private class JournaledTaskState extends TaskState {
+            JournaledTaskState(final boolean input, final int taskIndex) {
+                this.input = input;
+                this.taskIndex = taskIndex;
+            }
+
+            @Override
+            public void setTaskReport(final TaskReport taskReport) {
+                super.setTaskReport(taskReport);
+                if (resumeStateJournalStarted) {
+                    if (input) {
+                        resumeStateJournal.appendInputTaskReport(taskIndex, taskReport);
+                    } else {
+                        resumeStateJournal.appendOutputTaskReport(taskIndex, taskReport);
+                    }
+                }
+            }
+
+            private final boolean input;
+            private final int taskIndex;
+        }
     }
 
     protected LoaderState newLoaderState(Logger logger, ProcessPluginSet plugins) {
@@ -346,11 +387,20 @@ public class BulkLoader {
     }
 
     public ExecutionResult run(ExecSessionInternal exec, final ConfigSource config) {
+        return run(exec, config, null);
+    }
+
+    /**
+     * Runs the transaction with checkpointing committed task reports into the resume state journal.
+     *
+     * @param resumeStateJournal  the journal, or {@code null} not to checkpoint
+     */
+    public ExecutionResult run(ExecSessionInternal exec, final ConfigSource config, final ResumeStateJournal resumeStateJournal) {
         try {
             return ExecInternal.doWith(exec, new ExecAction<ExecutionResult>() {
                     public ExecutionResult run() {
                         try (SetCurrentThreadName dontCare = new SetCurrentThreadName("transaction")) {
-                            return doRun(config);
+                            return doRun(config, resumeStateJournal);
                         }
                     }
                 });
@@ -374,11 +424,21 @@ public class BulkLoader {
     }
 
     public ExecutionResult resume(final ExecSessionInternal exec, final ConfigSource config, final ResumeState resume) {
+        return resume(exec, config, resume, null);
+    }
+
+    /**
+     * Resumes the transaction with checkpointing committed task reports into the resume state journal.
+     *
+     * @param resumeStateJournal  the journal, or {@code null} not to checkpoint
+     */
+    public ExecutionResult resume(
+            final ExecSessionInternal exec, final ConfigSource config, final ResumeState resume, final ResumeStateJournal resumeStateJournal) {
         try {
             ExecutionResult result = ExecInternal.doWith(exec, new ExecAction<ExecutionResult>() {
                     public ExecutionResult run() {
                         try (SetCurrentThreadName dontCare = new SetCurrentThreadName("resume")) {
-                            return doResume(config, resume);
+                            return doResume(config, resume, resumeStateJournal);
                         }
                     }
                 });
@@ -509,13 +569,14 @@ public class BulkLoader {
                 task.getExecConfig().get(PluginType.class, "type", PluginType.LOCAL));
     }
 
-    private ExecutionResult doRun(ConfigSource config) {
+    private ExecutionResult doRun(ConfigSource config, ResumeStateJournal resumeStateJournal) {
         final BulkLoaderTask task = loadBulkLoaderTask(config);
 
         final ExecutorPlugin exec = newExecutorPlugin(task);
         final ProcessPluginSet plugins = new ProcessPluginSet(task);
 
         final LoaderState state = newLoaderState(logger, plugins);
+        state.setResumeStateJournal(resumeStateJournal);
         state.setTransactionStage(TransactionStage.INPUT_BEGIN);
         try {
             ConfigDiff inputConfigDiff = plugins.getInputPlugin().transaction(task.getInputConfig(), new InputPlugin.Control() {
@@ -536,6 +597,7 @@ public class BulkLoader {
                                         public List<TaskReport> run(final TaskSource outputTask) {
                                             state.setOutputTaskSource(outputTask);
                                             state.initialize(inputTaskCount, outputTaskCount);
+                                            state.startResumeStateJournal(ExecInternal.sessionInternal());
                                             state.setTransactionStage(TransactionStage.RUN);
 
                                             if (!state.isAllTasksCommitted()) {  // inputTaskCount == 0
@@ -581,13 +643,14 @@ public class BulkLoader {
         }
     }
 
-    private ExecutionResult doResume(ConfigSource config, final ResumeState resume) {
+    private ExecutionResult doResume(ConfigSource config, final ResumeState resume, ResumeStateJournal resumeStateJournal) {
         final BulkLoaderTask task = loadBulkLoaderTask(config);
 
         final ExecutorPlugin exec = newExecutorPlugin(task);
         final ProcessPluginSet plugins = new ProcessPluginSet(task);
 
         final LoaderState state = newLoaderState(logger, plugins);
+        state.setResumeStateJournal(resumeStateJournal);
         state.setTransactionStage(TransactionStage.INPUT_BEGIN);
         try {
             @SuppressWarnings("checkstyle:LineLength")
@@ -613,6 +676,7 @@ public class BulkLoader {
                                             // TODO validate outputTask?
                                             state.setOutputTaskSource(outputTask);
                                             restoreResumedTaskReports(resume, state);
+                                            state.startResumeStateJournal(ExecInternal.sessionInternal());
                                             state.setTransactionStage(TransactionStage.RUN);
 
                                             if (!state.isAllTasksCommitted()) {
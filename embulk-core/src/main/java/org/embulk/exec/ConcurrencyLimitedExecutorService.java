@@ -0,0 +1,64 @@
+package org.embulk.exec;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on threads from another {@link java.util.concurrent.ExecutorService}, but only up to a number of tasks at a time.
+ *
+ * <p>It is for threads that are cheap to create, such as virtual threads. Every submitted task gets its own thread
+ * immediately, and the thread waits for a permit before running the task.
+ */
+final class ConcurrencyLimitedExecutorService extends AbstractExecutorService {
+    ConcurrencyLimitedExecutorService(final ExecutorService delegate, final int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        this.delegate.execute(() -> {
+            // A cancelled FutureTask returns immediately from run() after it gets a permit.
+            this.permits.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                this.permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.delegate.awaitTermination(timeout, unit);
+    }
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+}
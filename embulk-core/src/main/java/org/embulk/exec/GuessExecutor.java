@@ -2,9 +2,15 @@ package org.embulk.exec;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalInt;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import org.embulk.EmbulkSystemProperties;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
@@ -43,6 +49,18 @@ public class GuessExecutor {
         @Config("guess_sample_buffer_bytes")
         @ConfigDefault("null")
         public OptionalInt getSampleBufferBytes();
+
+        @Config("guess_sample_threads")
+        @ConfigDefault("null")
+        public OptionalInt getSampleThreads();
+
+        @Config("guess_sample_max_tasks")
+        @ConfigDefault("null")
+        public OptionalInt getSampleMaxTasks();
+
+        @Config("guess_plugin_threads")
+        @ConfigDefault("null")
+        public OptionalInt getGuessPluginThreads();
     }
 
     // Used by FileInputRunner#guess(..)
@@ -51,9 +69,18 @@ public class GuessExecutor {
         final GuessExecutorTask execTask = loadGuessExecutorTask(execConfig);
         final OptionalInt systemGuessSampleBufferBytes =
                 embulkSystemProperties.getPropertyAsOptionalInt("guess_sample_buffer_bytes");
-        return Exec.newConfigSource().set(
-                "sample_buffer_bytes",
-                execTask.getSampleBufferBytes().orElse(systemGuessSampleBufferBytes.orElse(DEAULT_SAMPLE_BUFFER_BYTES)));
+        final OptionalInt systemGuessSampleThreads = embulkSystemProperties.getPropertyAsOptionalInt("guess_sample_threads");
+        final OptionalInt systemGuessSampleMaxTasks = embulkSystemProperties.getPropertyAsOptionalInt("guess_sample_max_tasks");
+        final ConfigSource sampleBufferConfig = Exec.newConfigSource()
+                .set("sample_buffer_bytes",
+                     execTask.getSampleBufferBytes().orElse(systemGuessSampleBufferBytes.orElse(DEAULT_SAMPLE_BUFFER_BYTES)))
+                .set("sample_threads",
+                     execTask.getSampleThreads().orElse(systemGuessSampleThreads.orElse(DEFAULT_SAMPLE_THREADS)));
+        final OptionalInt sampleMaxTasks = execTask.getSampleMaxTasks().isPresent() ? execTask.getSampleMaxTasks() : systemGuessSampleMaxTasks;
+        if (sampleMaxTasks.isPresent()) {
+            sampleBufferConfig.set("sample_max_tasks", sampleMaxTasks.getAsInt());
+        }
+        return sampleBufferConfig;
     }
 
     public GuessExecutor(final EmbulkSystemProperties embulkSystemProperties) {
@@ -61,6 +88,7 @@ public class GuessExecutor {
         final String defaultGuessPlugins = embulkSystemProperties.getProperty("default_guess_plugins", null);
         final String guessPlugins = embulkSystemProperties.getProperty("guess_plugins", null);
         this.systemGuessSampleBufferBytes = embulkSystemProperties.getPropertyAsOptionalInt("guess_sample_buffer_bytes");
+        this.systemGuessPluginThreads = embulkSystemProperties.getPropertyAsOptionalInt("guess_plugin_threads");
 
         final ArrayList<PluginType> guessPluginsBuilt = new ArrayList<>();
 
@@ -135,63 +163,166 @@ public class GuessExecutor {
         guessPlugins.removeAll(task.getExcludeGuessPlugins());
         final int guessParserSampleBufferBytes =
                 task.getSampleBufferBytes().orElse(this.systemGuessSampleBufferBytes.orElse(DEAULT_SAMPLE_BUFFER_BYTES));
+        final int guessPluginThreads = task.getGuessPluginThreads().orElse(this.systemGuessPluginThreads.orElse(DEFAULT_GUESS_PLUGIN_THREADS));
 
-        return guessParserConfig(sample, inputConfig, guessPlugins, guessParserSampleBufferBytes);
+        return guessParserConfig(sample, inputConfig, guessPlugins, guessParserSampleBufferBytes, guessPluginThreads);
     }
 
-    private ConfigDiff guessParserConfig(Buffer sample, ConfigSource config, List<PluginType> guessPlugins, final int guessParserSampleBufferBytes) {
-        // repeat guessing upto 10 times
-        ConfigDiff lastGuessed = Exec.newConfigDiff();
-        for (int i = 0; i < 10; i++) {
-            // include last-guessed config to run guess input
-            ConfigSource originalConfig = config.deepCopy().merge(lastGuessed);
-            ConfigSource guessInputConfig = originalConfig.deepCopy();
-            guessInputConfig.getNestedOrSetEmpty("parser")
-                    .set("type", "system_guess")  // override in.parser.type so that FileInputRunner.run uses GuessParserPlugin
-                    .set("guess_plugins", guessPlugins)
-                    .set("orig_config", originalConfig)
-                    .set("guess_parser_sample_buffer_bytes", guessParserSampleBufferBytes);
-
-            // run FileInputPlugin
-            final FileInputRunner input = new FileInputRunner(new BufferFileInputPlugin(sample), this.embulkSystemProperties);
-            ConfigDiff guessed;
-            try {
-                input.transaction(guessInputConfig, new InputPlugin.Control() {
-                        public List<TaskReport> run(TaskSource inputTaskSource, Schema schema, int taskCount) {
-                            if (taskCount == 0) {
-                                throw new NoSampleException("No input files to guess");
-                            }
-                            input.run(inputTaskSource, null, 0, new PageOutput() {
-                                    @Override
-                                    public void add(Page page) {
-                                        throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
-                                    }
-
-                                    @Override
-                                    public void finish() {}
-
-                                    @Override
-                                    public void close() {}
-                                });
-                            throw new AssertionError("Guess executor must throw GuessedNoticeError");
-                        }
-                    });
+    /**
+     * Guesses the parser config in rounds until the guessed config does not change, up to 10 rounds.
+     *
+     * <p>Guess plugins are instantiated once for all the rounds. The sample is decoded once for each decoder config guessed.
+     * In each round, all the guess plugins guess from the same config and the same decoded sample, then they run in
+     * parallel. Their results are merged in the order of the plugins, and the round ends at the first result which changes
+     * the config as if they ran one by one.
+     */
+    private ConfigDiff guessParserConfig(
+            final Buffer sample,
+            final ConfigSource config,
+            final List<PluginType> guessPlugins,
+            final int guessParserSampleBufferBytes,
+            final int guessPluginThreads) {
+        final ArrayList<GuessPlugin> guessesBuilt = new ArrayList<>();
+        for (final PluginType guessType : guessPlugins) {
+            guessesBuilt.add(ExecInternal.newPlugin(GuessPlugin.class, guessType));
+        }
+        final List<GuessPlugin> guesses = Collections.unmodifiableList(guessesBuilt);
+        final Map<List<ConfigSource>, Buffer> decodedSamples = new HashMap<>();
+
+        // Threads are created from the current thread so that they inherit the Exec session.
+        final ExecutorService executor;
+        if (guessPluginThreads > 1 && guesses.size() > 1) {
+            final AtomicLong count = new AtomicLong(0);
+            executor = Executors.newFixedThreadPool(Math.min(guessPluginThreads, guesses.size()), runnable -> {
+                final Thread thread = new Thread(runnable, "embulk-guess-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executor = null;
+        }
 
-                throw new AssertionError("Guess executor must throw GuessedNoticeError");
+        try {
+            // repeat guessing upto 10 times
+            ConfigDiff lastGuessed = Exec.newConfigDiff();
+            for (int i = 0; i < 10; i++) {
+                // include last-guessed config to run guess input
+                final ConfigSource originalConfig = config.deepCopy().merge(lastGuessed);
+
+                final List<ConfigSource> decoders = originalConfig.get(
+                        GuessParserPlugin.ConfigSourceList.class, "decoders", new GuessParserPlugin.ConfigSourceList());
+                Buffer decodedSample = decodedSamples.get(decoders);
+                if (decodedSample == null) {
+                    decodedSample = this.decodeSample(sample, originalConfig, guessParserSampleBufferBytes);
+                    decodedSamples.put(decoders, decodedSample);
+                }
+
+                final ConfigDiff guessed = lastGuessed.deepCopy().merge(runGuessPlugins(guesses, originalConfig, decodedSample, executor));
+
+                // merge to the last-guessed config
+                if (lastGuessed.equals(guessed)) {
+                    // not changed
+                    return lastGuessed;
+                }
+                lastGuessed = guessed;
+            }
+
+            return lastGuessed;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    // Runs the decoders in the config over the sample, and returns the decoded sample.
+    private Buffer decodeSample(final Buffer sample, final ConfigSource originalConfig, final int guessParserSampleBufferBytes) {
+        final ConfigSource decodeInputConfig = originalConfig.deepCopy();
+        decodeInputConfig.getNestedOrSetEmpty("parser")
+                .set("type", "system_guess")  // override in.parser.type so that FileInputRunner.run uses GuessParserPlugin
+                .set("guess_plugins", Collections.emptyList())
+                .set("orig_config", originalConfig)
+                .set("guess_parser_sample_buffer_bytes", guessParserSampleBufferBytes)
+                .set("guess_parser_decode_only", true);
+
+        final FileInputRunner input = new FileInputRunner(new BufferFileInputPlugin(sample), this.embulkSystemProperties);
+        try {
+            input.transaction(decodeInputConfig, new InputPlugin.Control() {
+                    public List<TaskReport> run(TaskSource inputTaskSource, Schema schema, int taskCount) {
+                        if (taskCount == 0) {
+                            throw new NoSampleException("No input files to guess");
+                        }
+                        input.run(inputTaskSource, null, 0, new PageOutput() {
+                                @Override
+                                public void add(Page page) {
+                                    throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
+                                }
+
+                                @Override
+                                public void finish() {}
+
+                                @Override
+                                public void close() {}
+                            });
+                        throw new AssertionError("Guess executor must throw DecodedNoticeError");
+                    }
+                });
+            throw new AssertionError("Guess executor must throw DecodedNoticeError");
+        } catch (DecodedNoticeError notice) {
+            return notice.getDecodedSample();
+        }
+    }
 
-            } catch (GuessedNoticeError error) {
-                guessed = lastGuessed.deepCopy().merge(error.getGuessedConfig());
+    /**
+     * Runs guess plugins with the same config and sample, and merges their results in order until a result changes the config.
+     */
+    private static ConfigDiff runGuessPlugins(
+            final List<GuessPlugin> guesses, final ConfigSource originalConfig, final Buffer sample, final ExecutorService executor) {
+        final List<Future<ConfigDiff>> futures = new ArrayList<>();
+        if (executor != null) {
+            for (final GuessPlugin guess : guesses) {
+                futures.add(executor.submit(BufferAccounting.propagate(() -> guess.guess(originalConfig, sample))));
             }
+        }
 
-            // merge to the last-guessed config
-            if (lastGuessed.equals(guessed)) {
-                // not changed
-                return lastGuessed;
+        try {
+            final ConfigSource mergedConfig = originalConfig.deepCopy();
+            final ConfigDiff mergedGuessed = Exec.newConfigDiff();
+            for (int i = 0; i < guesses.size(); i++) {
+                ConfigDiff guessed = (executor != null) ? join(futures.get(i)) : guesses.get(i).guess(originalConfig, sample);
+                guessed = GuessParserPlugin.addAssumedDecoderConfigs(originalConfig, guessed);
+                mergedGuessed.merge(guessed);
+                mergedConfig.merge(mergedGuessed);
+                if (!mergedConfig.equals(originalConfig)) {
+                    // config updated
+                    return mergedGuessed;
+                }
+            }
+            return mergedGuessed;
+        } finally {
+            // Results after the first change are not used as guess plugins after it would not run one by one. Guess plugins
+            // running are not interrupted. Some guess plugins, such as Ruby ones, may not expect interruptions.
+            for (final Future<ConfigDiff> future : futures) {
+                future.cancel(false);
             }
-            lastGuessed = guessed;
         }
+    }
 
-        return lastGuessed;
+    private static ConfigDiff join(final Future<ConfigDiff> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
     }
 
     public static class GuessParserPlugin implements ParserPlugin {
@@ -204,6 +335,11 @@ public class GuessExecutor {
 
             @Config("guess_parser_sample_buffer_bytes")
             public int getGuessParserSampleBufferBytes();
+
+            // Only decodes the sample, and throws DecodedNoticeError without running guess plugins.
+            @Config("guess_parser_decode_only")
+            @ConfigDefault("false")
+            public boolean getGuessParserDecodeOnly();
         }
 
         @Override
@@ -220,6 +356,9 @@ public class GuessExecutor {
 
             // get sample buffer
             Buffer sample = readSample(input, guessParserSampleBufferBytes);
+            if (task.getGuessParserDecodeOnly()) {
+                throw new DecodedNoticeError(sample);
+            }
 
             // load guess plugins
             final ArrayList<GuessPlugin> builder = new ArrayList<>();
@@ -260,9 +399,9 @@ public class GuessExecutor {
             throw new NoSampleException("No input buffer to guess");
         }
 
-        private static class ConfigSourceList extends ArrayList<ConfigSource> {}
+        static class ConfigSourceList extends ArrayList<ConfigSource> {}
 
-        private static ConfigDiff addAssumedDecoderConfigs(ConfigSource originalConfig, ConfigDiff guessed) {
+        static ConfigDiff addAssumedDecoderConfigs(ConfigSource originalConfig, ConfigDiff guessed) {
             List<ConfigSource> guessedDecoders = guessed.get(ConfigSourceList.class, "decoders", null);
             if (guessedDecoders == null) {
                 return guessed;
@@ -288,6 +427,21 @@ public class GuessExecutor {
         }
     }
 
+    /**
+     * Notifies the sample decoded by the decoders in the config.
+     */
+    public static class DecodedNoticeError extends Error {
+        private final Buffer decodedSample;
+
+        public DecodedNoticeError(Buffer decodedSample) {
+            this.decodedSample = decodedSample;
+        }
+
+        public Buffer getDecodedSample() {
+            return decodedSample;
+        }
+    }
+
     public static class GuessedNoticeError extends Error {
         private final ConfigDiff guessedConfig;
 
@@ -306,8 +460,11 @@ public class GuessExecutor {
     }
 
     private static final int DEAULT_SAMPLE_BUFFER_BYTES = 32768;  // 32 * 1024
+    private static final int DEFAULT_SAMPLE_THREADS = 1;
+    private static final int DEFAULT_GUESS_PLUGIN_THREADS = 1;
 
     private final List<PluginType> defaultGuessPlugins;
     private final EmbulkSystemProperties embulkSystemProperties;
     private final OptionalInt systemGuessSampleBufferBytes;
+    private final OptionalInt systemGuessPluginThreads;
 }
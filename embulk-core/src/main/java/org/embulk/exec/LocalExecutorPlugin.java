@@ -4,19 +4,24 @@ import java.util.ArrayList;
 import java.util.IllegalFormatException;
 import java.util.List;
 import java.util.MissingFormatArgumentException;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
 import org.embulk.spi.AbortTransactionResource;
+import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.CloseResource;
+import org.embulk.spi.ColumnarPages;
 import org.embulk.spi.Exec;
 import org.embulk.spi.ExecInternal;
 import org.embulk.spi.ExecSessionInternal;
@@ -40,11 +45,17 @@ import org.slf4j.LoggerFactory;
 public class LocalExecutorPlugin implements ExecutorPlugin {
     private int defaultMaxThreads;
     private int defaultMinThreads;
+    private int defaultScatterQueuePages;
+    private String defaultScatterRouting;
+    private String defaultThreadKind;
 
     public LocalExecutorPlugin(final EmbulkSystemProperties embulkSystemProperties) {
         int cores = Runtime.getRuntime().availableProcessors();
         this.defaultMaxThreads = embulkSystemProperties.getPropertyAsInteger("max_threads", cores * 2);
         this.defaultMinThreads = embulkSystemProperties.getPropertyAsInteger("min_output_tasks", cores);
+        this.defaultScatterQueuePages = embulkSystemProperties.getPropertyAsInteger("scatter_queue_pages", DEFAULT_SCATTER_QUEUE_PAGES);
+        this.defaultScatterRouting = embulkSystemProperties.getProperty("scatter_routing", ScatterRouting.ROUND_ROBIN.toString());
+        this.defaultThreadKind = embulkSystemProperties.getProperty("thread_kind", "platform");
     }
 
     @Override
@@ -58,17 +69,119 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
     private AbstractLocalExecutor newExecutor(ConfigSource config, int inputTaskCount) {
         int maxThreads = config.get(Integer.class, "max_threads", defaultMaxThreads);
         int minThreads = config.get(Integer.class, "min_output_tasks", defaultMinThreads);
+        String mode = config.get(String.class, "mode", "auto");
+        // 0 means that pipeline stages are disabled.
+        int pipelineQueuePages = 0;
+        if (config.get(Boolean.class, "pipeline_stages", false)) {
+            pipelineQueuePages = config.get(Integer.class, "pipeline_queue_pages", DEFAULT_PIPELINE_QUEUE_PAGES);
+            if (pipelineQueuePages <= 0) {
+                throw new ConfigException("\"pipeline_queue_pages\" must be positive: " + pipelineQueuePages);
+            }
+        }
+        boolean useVirtualThreads = useVirtualThreads(config.get(String.class, "thread_kind", defaultThreadKind));
+        if ("work_stealing".equals(mode)) {
+            if (useVirtualThreads) {
+                logger.info("\"thread_kind: virtual\" is ignored in the work-stealing mode.");
+            }
+            long fileBufferBytes = config.get(Long.class, "work_stealing_file_buffer_bytes", DEFAULT_WORK_STEALING_FILE_BUFFER_BYTES);
+            logger.info("Using local work-stealing executor with max_threads={} / tasks={} / work_stealing_file_buffer_bytes={}"
+                            + " / pipeline_queue_pages={}",
+                        maxThreads, inputTaskCount, fileBufferBytes, pipelineQueuePages);
+            return new WorkStealingExecutor(maxThreads, inputTaskCount, fileBufferBytes, pipelineQueuePages);
+        } else if (!"auto".equals(mode)) {
+            throw new ConfigException("\"mode\" of the local executor must be \"auto\" or \"work_stealing\": \"" + mode + "\"");
+        }
         if (inputTaskCount > 0 && inputTaskCount < minThreads) {
             int scatterCount = (minThreads + inputTaskCount - 1) / inputTaskCount;
-            logger.info("Using local thread executor with max_threads={} / output tasks {} = input tasks {} * {}",
-                        maxThreads, inputTaskCount * scatterCount, inputTaskCount, scatterCount);
-            return new ScatterExecutor(maxThreads, inputTaskCount, scatterCount);
+            int scatterQueuePages = config.get(Integer.class, "scatter_queue_pages", defaultScatterQueuePages);
+            if (scatterQueuePages <= 0) {
+                throw new ConfigException("\"scatter_queue_pages\" must be positive: " + scatterQueuePages);
+            }
+            ScatterRouting scatterRouting = ScatterRouting.of(config.get(String.class, "scatter_routing", defaultScatterRouting));
+            if (scatterRouting != ScatterRouting.ROUND_ROBIN && ExecInternal.sessionInternal().isResumable()) {
+                // Pages for committed output tasks are skipped when resuming. It works only when pages are routed
+                // in the same way in every attempt, but load-aware routing depends on timing.
+                throw new ConfigException(
+                        "\"scatter_routing: " + scatterRouting + "\" is not available when the transaction is resumable."
+                        + " Use \"round_robin\" instead.");
+            }
+            if (pipelineQueuePages > 0) {
+                // Filters and outputs already run on output worker threads separately from the input.
+                logger.info("\"pipeline_stages\" is ignored when pages are scattered into multiple output tasks.");
+            }
+            if (useVirtualThreads) {
+                int concurrency = getVirtualThreadConcurrency(config, maxThreads);
+                logger.info("Using local virtual thread executor with virtual_thread_concurrency={} / output tasks {} = input tasks {} * {}"
+                                + " / scatter_queue_pages={} / scatter_routing={}",
+                            concurrency, inputTaskCount * scatterCount, inputTaskCount, scatterCount, scatterQueuePages, scatterRouting);
+                return new ScatterExecutor(inputTaskCount, scatterCount, scatterQueuePages, scatterRouting,
+                                           newTaskExecutor(true, Math.max(concurrency / scatterCount, 1), "embulk-input-executor-%d"),
+                                           newWorkerExecutor(true, "embulk-output-executor-%d"));
+            }
+            logger.info("Using local thread executor with max_threads={} / output tasks {} = input tasks {} * {}"
+                            + " / scatter_queue_pages={} / scatter_routing={}",
+                        maxThreads, inputTaskCount * scatterCount, inputTaskCount, scatterCount, scatterQueuePages, scatterRouting);
+            return new ScatterExecutor(maxThreads, inputTaskCount, scatterCount, scatterQueuePages, scatterRouting);
         } else {
-            logger.info("Using local thread executor with max_threads={} / tasks={}", maxThreads, inputTaskCount);
-            return new DirectExecutor(maxThreads, inputTaskCount);
+            if (useVirtualThreads) {
+                int concurrency = getVirtualThreadConcurrency(config, maxThreads);
+                logger.info("Using local virtual thread executor with virtual_thread_concurrency={} / tasks={} / pipeline_queue_pages={}",
+                            concurrency, inputTaskCount, pipelineQueuePages);
+                return new DirectExecutor(inputTaskCount,
+                                          newTaskExecutor(true, concurrency, "embulk-executor-%d"),
+                                          pipelineQueuePages > 0 ? newWorkerExecutor(true, "embulk-pipeline-executor-%d") : null,
+                                          pipelineQueuePages);
+            }
+            logger.info("Using local thread executor with max_threads={} / tasks={} / pipeline_queue_pages={}",
+                        maxThreads, inputTaskCount, pipelineQueuePages);
+            return new DirectExecutor(maxThreads, inputTaskCount, pipelineQueuePages);
         }
     }
 
+    private static boolean useVirtualThreads(String threadKind) {
+        if ("platform".equals(threadKind)) {
+            return false;
+        } else if ("virtual".equals(threadKind)) {
+            if (VirtualThreads.isSupported()) {
+                return true;
+            }
+            logger.warn("Using platform threads instead because virtual threads are not supported in this JVM.");
+            return false;
+        }
+        throw new ConfigException("\"thread_kind\" must be \"platform\" or \"virtual\": \"" + threadKind + "\"");
+    }
+
+    private static int getVirtualThreadConcurrency(ConfigSource config, int maxThreads) {
+        int concurrency = config.get(Integer.class, "virtual_thread_concurrency", maxThreads);
+        if (concurrency <= 0) {
+            throw new ConfigException("\"virtual_thread_concurrency\" must be positive: " + concurrency);
+        }
+        return concurrency;
+    }
+
+    // Creates an ExecutorService to run tasks up to maxConcurrency at a time.
+    private static ExecutorService newTaskExecutor(boolean virtual, int maxConcurrency, String nameFormat) {
+        if (virtual) {
+            final Optional<ThreadFactory> factory = VirtualThreads.newThreadFactory(nameFormat.replace("%d", ""));
+            if (factory.isPresent()) {
+                // Each task gets its own virtual thread. The number of tasks running at a time is limited by permits.
+                return new ConcurrencyLimitedExecutorService(Executors.newCachedThreadPool(factory.get()), maxConcurrency);
+            }
+        }
+        return Executors.newFixedThreadPool(maxConcurrency, new ExecutorThreadFactory(nameFormat));
+    }
+
+    // Creates an ExecutorService to run workers accompanying tasks, such as scatter output workers and pipeline stages.
+    private static ExecutorService newWorkerExecutor(boolean virtual, String nameFormat) {
+        if (virtual) {
+            final Optional<ThreadFactory> factory = VirtualThreads.newThreadFactory(nameFormat.replace("%d", ""));
+            if (factory.isPresent()) {
+                return Executors.newCachedThreadPool(factory.get());
+            }
+        }
+        return Executors.newCachedThreadPool(new ExecutorThreadFactory(nameFormat));
+    }
+
     private static class ExecutorThreadFactory implements ThreadFactory {
         private ExecutorThreadFactory(final String nameFormat) {
             try {
@@ -170,15 +283,41 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
 
     public static class DirectExecutor extends AbstractLocalExecutor {
         protected final ExecutorService executor;
+        private final ExecutorService pipelineExecutor;
+        private final int pipelineQueuePages;
 
         public DirectExecutor(int maxThreads, int taskCount) {
+            this(maxThreads, taskCount, 0);
+        }
+
+        /**
+         * Creates an executor.
+         *
+         * @param maxThreads  the maximum number of threads to run tasks
+         * @param taskCount  the number of tasks
+         * @param pipelineQueuePages  the number of pages queued between pipeline stages, or 0 not to run filters and
+         *     the output in pipeline stages
+         */
+        public DirectExecutor(int maxThreads, int taskCount, int pipelineQueuePages) {
+            this(taskCount,
+                 newTaskExecutor(false, maxThreads, "embulk-executor-%d"),
+                 pipelineQueuePages > 0 ? newWorkerExecutor(false, "embulk-pipeline-executor-%d") : null,
+                 pipelineQueuePages);
+        }
+
+        protected DirectExecutor(int taskCount, ExecutorService executor, ExecutorService pipelineExecutor, int pipelineQueuePages) {
             super(taskCount, taskCount);
-            this.executor = Executors.newFixedThreadPool(maxThreads, new ExecutorThreadFactory("embulk-executor-%d"));
+            this.executor = executor;
+            this.pipelineExecutor = pipelineExecutor;
+            this.pipelineQueuePages = pipelineQueuePages;
         }
 
         @Override
         public void close() {
             executor.shutdown();
+            if (pipelineExecutor != null) {
+                pipelineExecutor.shutdown();
+            }
         }
 
         @Override
@@ -190,8 +329,11 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
 
             return executor.submit(new Callable<Throwable>() {
                     public Throwable call() {
-                        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
-                            ExecutorsInternal.process(ExecInternal.sessionInternal(), task, taskIndex, new ProcessStateCallback() {
+                        final String taskName = String.format("task-%04d", taskIndex);
+                        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(taskName);
+                                BufferAccounting.TaskScope bufferScope =
+                                        PooledBufferAllocator.openTaskScope(ExecInternal.sessionInternal().getBufferAllocator(), taskName)) {
+                            final ProcessStateCallback callback = new ProcessStateCallback() {
                                     public void started() {
                                         state.getInputTaskState(taskIndex).start();
                                         state.getOutputTaskState(taskIndex).start();
@@ -204,7 +346,13 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                                     public void outputCommitted(TaskReport report) {
                                         state.getOutputTaskState(taskIndex).setTaskReport(report);
                                     }
-                                });
+                                };
+                            if (pipelineExecutor != null) {
+                                ExecutorsInternal.processPipelined(
+                                        ExecInternal.sessionInternal(), task, taskIndex, pipelineExecutor, pipelineQueuePages, callback);
+                            } else {
+                                ExecutorsInternal.process(ExecInternal.sessionInternal(), task, taskIndex, callback);
+                            }
                             return null;
                         } finally {
                             state.getInputTaskState(taskIndex).finish();
@@ -215,19 +363,54 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         }
     }
 
+    /**
+     * Runs each input task with its output task in the same way as {@link DirectExecutor}, but on a {@link WorkStealingForkJoinPool}.
+     *
+     * <p>Input tasks can fork a part of their work, such as parsing remaining files in {@link org.embulk.spi.FileInputRunner},
+     * so that threads which have finished small input tasks steal the work from a large input task. Pages from the forked
+     * work are still sent to the output task of the original input task. The numbers of input and output tasks are the same
+     * as {@link DirectExecutor} so that tasks are resumed in the same way.
+     */
+    public static class WorkStealingExecutor extends DirectExecutor {
+        public WorkStealingExecutor(int maxThreads, int taskCount, long fileBufferBytes, int pipelineQueuePages) {
+            super(taskCount,
+                  new WorkStealingForkJoinPool(maxThreads, fileBufferBytes),
+                  pipelineQueuePages > 0 ? newWorkerExecutor(false, "embulk-pipeline-executor-%d") : null,
+                  pipelineQueuePages);
+        }
+    }
+
     public static class ScatterExecutor extends AbstractLocalExecutor {
         private final int scatterCount;
+        private final int scatterQueuePages;
+        private final ScatterRouting scatterRouting;
         private final int inputTaskCount;
         private final ExecutorService inputExecutor;
         private final ExecutorService outputExecutor;
 
         public ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount) {
+            this(maxThreads, inputTaskCount, scatterCount, DEFAULT_SCATTER_QUEUE_PAGES);
+        }
+
+        public ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount, int scatterQueuePages) {
+            this(maxThreads, inputTaskCount, scatterCount, scatterQueuePages, ScatterRouting.ROUND_ROBIN);
+        }
+
+        ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount, int scatterQueuePages, ScatterRouting scatterRouting) {
+            this(inputTaskCount, scatterCount, scatterQueuePages, scatterRouting,
+                 newTaskExecutor(false, Math.max(maxThreads / scatterCount, 1), "embulk-input-executor-%d"),
+                 newWorkerExecutor(false, "embulk-output-executor-%d"));
+        }
+
+        ScatterExecutor(int inputTaskCount, int scatterCount, int scatterQueuePages, ScatterRouting scatterRouting,
+                        ExecutorService inputExecutor, ExecutorService outputExecutor) {
             super(inputTaskCount, inputTaskCount * scatterCount);
             this.inputTaskCount = inputTaskCount;
             this.scatterCount = scatterCount;
-            this.inputExecutor = Executors.newFixedThreadPool(
-                    Math.max(maxThreads / scatterCount, 1), new ExecutorThreadFactory("embulk-input-executor-%d"));
-            this.outputExecutor = Executors.newCachedThreadPool(new ExecutorThreadFactory("embulk-output-executor-%d"));
+            this.scatterQueuePages = scatterQueuePages;
+            this.scatterRouting = scatterRouting;
+            this.inputExecutor = inputExecutor;
+            this.outputExecutor = outputExecutor;
         }
 
         @Override
@@ -245,7 +428,10 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
 
             return inputExecutor.submit(new Callable<Throwable>() {
                     public Throwable call() {
-                        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
+                        final String taskName = String.format("task-%04d", taskIndex);
+                        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(taskName);
+                                BufferAccounting.TaskScope bufferScope =
+                                        PooledBufferAllocator.openTaskScope(ExecInternal.sessionInternal().getBufferAllocator(), taskName)) {
                             runInputTask(ExecInternal.sessionInternal(), task, state, taskIndex);
                             return null;
                         }
@@ -268,13 +454,15 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             List<FilterPlugin> filterPlugins = FiltersInternal.newFilterPlugins(exec, task.getFilterPluginTypes());
             OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
 
-            try (ScatterTransactionalPageOutput tran = new ScatterTransactionalPageOutput(state, taskIndex, scatterCount)) {
+            try (ScatterTransactionalPageOutput tran = new ScatterTransactionalPageOutput(state, taskIndex, scatterCount, scatterRouting)) {
                 tran.openOutputs(outputPlugin, task.getOutputSchema(), task.getOutputTaskSource());
 
                 try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
-                    tran.openFilters(filterPlugins, task.getFilterSchemas(), task.getFilterTaskSources());
+                    final BufferAllocator columnarAllocator =
+                            ColumnarPages.isSupportedByAll(filterPlugins, outputPlugin) ? exec.getBufferAllocator() : null;
+                    tran.openFilters(filterPlugins, task.getFilterSchemas(), task.getFilterTaskSources(), columnarAllocator);
 
-                    tran.startWorkers(outputExecutor);
+                    tran.startWorkers(outputExecutor, scatterQueuePages);
 
                     // started
                     state.getInputTaskState(taskIndex).start();
@@ -301,50 +489,42 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         }
     }
 
-    private static class ScatterTransactionalPageOutput implements TransactionalPageOutput {
+    static class ScatterTransactionalPageOutput implements TransactionalPageOutput {
         private static final Page DONE_PAGE = PageImpl.allocate(0);
 
         private static class OutputWorker implements Callable<Throwable> {
             private final PageOutput output;
+            private final SpscRingQueue<Page> queue;
             private final Future<Throwable> future;
-            private volatile int addWaiting;
-            private volatile Page queued;
 
-            public OutputWorker(PageOutput output, ExecutorService executor) {
+            // Updated only by the input thread.
+            private long addedPages;
+            private long addedBytes;
+
+            // Updated only by the worker thread. Read after the worker stops.
+            private long outputNanos;
+
+            public OutputWorker(PageOutput output, int queuePages, ExecutorService executor) {
                 this.output = output;
-                this.addWaiting = 0;
-                this.future = executor.submit(this);
-            }
-
-            public synchronized void done() throws InterruptedException {
-                while (true) {
-                    if (queued == null && addWaiting == 0) {
-                        queued = DONE_PAGE;
-                        notifyAll();
-                        return;
-                    } else if (queued == DONE_PAGE) {
-                        return;
-                    }
-                    wait();
-                }
+                this.queue = new SpscRingQueue<>(queuePages);
+                this.addedPages = 0;
+                this.addedBytes = 0;
+                this.outputNanos = 0;
+                this.future = executor.submit(BufferAccounting.propagate(this));
             }
 
-            public synchronized void add(Page page) throws InterruptedException {
-                addWaiting++;
-                try {
-                    while (true) {
-                        if (queued == null) {
-                            queued = page;
-                            notifyAll();
-                            return;
-                        } else if (queued == DONE_PAGE) {
-                            page.release();
-                            return;
-                        }
-                        wait();
-                    }
-                } finally {
-                    addWaiting--;
+            public void done() throws InterruptedException {
+                queue.put(DONE_PAGE);
+            }
+
+            public void add(Page page) throws InterruptedException {
+                final int bytes = page.buffer().limit();
+                if (queue.put(page)) {
+                    addedPages++;
+                    addedBytes += bytes;
+                } else {
+                    // The worker has already stopped.
+                    page.release();
                 }
             }
 
@@ -356,30 +536,69 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                 }
             }
 
+            // It must be called only after the worker has stopped.
+            public void releaseRemaining() {
+                Page page;
+                while ((page = queue.poll()) != null) {
+                    if (page != DONE_PAGE) {
+                        page.release();
+                    }
+                }
+            }
+
+            public int getQueuedPages() {
+                return queue.size();
+            }
+
+            public long getAddedPages() {
+                return addedPages;
+            }
+
+            public long getAddedBytes() {
+                return addedBytes;
+            }
+
+            public long getOutputNanos() {
+                return outputNanos;
+            }
+
+            public long getProducerStallCount() {
+                return queue.getProducerStallCount();
+            }
+
+            public long getProducerStallNanos() {
+                return queue.getProducerStallNanos();
+            }
+
             @Override
-            public synchronized Throwable call() throws InterruptedException {
+            public Throwable call() throws InterruptedException {
+                final Page[] batch = new Page[queue.capacity()];
                 try {
                     while (true) {
-                        if (queued != null) {
-                            if (queued == DONE_PAGE) {
+                        final int count = queue.take(batch);
+                        for (int i = 0; i < count; i++) {
+                            final Page page = batch[i];
+                            batch[i] = null;
+                            if (page == DONE_PAGE) {
                                 return null;
                             }
-                            output.add(queued);
-                            queued = null;
-                            notifyAll();
+                            final long startedAt = System.nanoTime();
+                            try {
+                                output.add(page);
+                            } finally {
+                                outputNanos += System.nanoTime() - startedAt;
+                            }
                         }
-                        wait();
                     }
                 } finally {
-                    try {
-                        if (queued != null && queued != DONE_PAGE) {
-                            queued.release();
-                            queued = null;
+                    queue.close();
+                    for (int i = 0; i < batch.length; i++) {
+                        if (batch[i] != null && batch[i] != DONE_PAGE) {
+                            batch[i].release();
                         }
-                    } finally {
-                        queued = DONE_PAGE;
+                        batch[i] = null;
                     }
-                    notifyAll();
+                    releaseRemaining();
                 }
             }
         }
@@ -393,13 +612,17 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         private final CloseResource[] closeThese;
 
         private final OutputWorker[] outputWorkers;
+        private final ScatterRouting.Workers routingView;
+        private final TaskReport[] workerReports;
 
+        private final ScatterRouting routing;
         private long pageCount;
 
-        public ScatterTransactionalPageOutput(ProcessState state, int taskIndex, int scatterCount) {
+        public ScatterTransactionalPageOutput(ProcessState state, int taskIndex, int scatterCount, ScatterRouting routing) {
             this.state = state;
             this.taskIndex = taskIndex;
             this.scatterCount = scatterCount;
+            this.routing = routing;
 
             this.trans = new TransactionalPageOutput[scatterCount];
             this.filtereds = new PageOutput[scatterCount];
@@ -408,6 +631,8 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                 closeThese[i] = new CloseResource();
             }
             this.outputWorkers = new OutputWorker[scatterCount];
+            this.routingView = new RoutingView();
+            this.workerReports = new TaskReport[scatterCount];
         }
 
         public void openOutputs(OutputPlugin outputPlugin, Schema outputSchema, TaskSource outputTaskSource) {
@@ -417,38 +642,51 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                     final TransactionalPageOutput tran = outputPlugin.open(outputTaskSource, outputSchema, outputTaskIndex);
                     trans[i] = tran;
                     closeThese[i].closeThis(tran);
+                } else if (routing != ScatterRouting.ROUND_ROBIN) {
+                    // Pages for committed output tasks are skipped when resuming. It works only when
+                    // pages are routed in the same way as the previous attempt.
+                    throw new IllegalStateException(
+                            "Input task " + taskIndex + " cannot be resumed partially with scatter_routing: " + routing);
                 }
             }
         }
 
-        public void openFilters(List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources) {
+        public void openFilters(List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources,
+                BufferAllocator columnarAllocator) {
             for (int i = 0; i < scatterCount; i++) {
                 TransactionalPageOutput tran = trans[i];
                 if (tran != null) {
-                    PageOutput filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, trans[i]);
+                    PageOutput filtered;
+                    if (columnarAllocator != null) {
+                        filtered = FiltersInternal.openColumnar(columnarAllocator, filterPlugins, filterTaskSources, filterSchemas, trans[i]);
+                    } else {
+                        filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, trans[i]);
+                    }
                     filtereds[i] = filtered;
                     closeThese[i].closeThis(filtered);
                 }
             }
         }
 
-        public void startWorkers(ExecutorService outputExecutor) {
+        public void startWorkers(ExecutorService outputExecutor, int queuePages) {
             for (int i = 0; i < scatterCount; i++) {
                 PageOutput filtered = filtereds[i];
                 if (filtered != null) {
-                    outputWorkers[i] = new OutputWorker(filtered, outputExecutor);
+                    outputWorkers[i] = new OutputWorker(filtered, queuePages, outputExecutor);
                 }
             }
         }
 
         public void add(Page page) {
-            OutputWorker worker = outputWorkers[(int) (pageCount % scatterCount)];
+            OutputWorker worker = outputWorkers[routing.route(routingView, pageCount)];
             if (worker != null) {
                 try {
                     worker.add(page);
                 } catch (InterruptedException ex) {
                     throw new RuntimeException(ex);
                 }
+            } else {
+                page.release();
             }
             pageCount++;
         }
@@ -488,6 +726,9 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                     if (outputTaskReport == null) {
                         outputTaskReport = Exec.newTaskReport();
                     }
+                    if (workerReports[i] != null) {
+                        outputTaskReport.setNested("scatter", workerReports[i]);
+                    }
                     state.getOutputTaskState(outputTaskIndex).setTaskReport(outputTaskReport);
                 }
             }
@@ -506,10 +747,19 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                     Throwable error = null;
                     try {
                         error = worker.join();
+                        // Pages may be left if they are added while the worker is stopping.
+                        worker.releaseRemaining();
                     } catch (InterruptedException ex) {
                         error = ex;
                     }
                     outputWorkers[i] = null;
+                    workerReports[i] = newWorkerReport(worker);
+                    if (worker.getProducerStallCount() > 0) {
+                        logger.debug("Input task {} stalled {} times for {} ms in total to hand off pages to output task {}.",
+                                     taskIndex, worker.getProducerStallCount(),
+                                     TimeUnit.NANOSECONDS.toMillis(worker.getProducerStallNanos()),
+                                     taskIndex * scatterCount + i);
+                    }
                     if (error != null) {
                         if (error instanceof RuntimeException) {
                             throw (RuntimeException) error;
@@ -522,7 +772,51 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                 }
             }
         }
+
+        private TaskReport newWorkerReport(OutputWorker worker) {
+            final long outputMillis = TimeUnit.NANOSECONDS.toMillis(worker.getOutputNanos());
+            final TaskReport report = Exec.newTaskReport();
+            report.set("routing", routing.toString());
+            report.set("pages", worker.getAddedPages());
+            report.set("bytes", worker.getAddedBytes());
+            report.set("output_millis", outputMillis);
+            report.set("bytes_per_second", outputMillis > 0 ? worker.getAddedBytes() * 1000 / outputMillis : 0L);
+            report.set("input_stall_count", worker.getProducerStallCount());
+            report.set("input_stall_millis", TimeUnit.NANOSECONDS.toMillis(worker.getProducerStallNanos()));
+            return report;
+        }
+
+        private class RoutingView implements ScatterRouting.Workers {
+            @Override
+            public int count() {
+                return scatterCount;
+            }
+
+            @Override
+            public boolean isAvailable(int index) {
+                return outputWorkers[index] != null;
+            }
+
+            @Override
+            public int getQueuedPages(int index) {
+                return outputWorkers[index] != null ? outputWorkers[index].getQueuedPages() : Integer.MAX_VALUE;
+            }
+
+            @Override
+            public long getAddedBytes(int index) {
+                return outputWorkers[index] != null ? outputWorkers[index].getAddedBytes() : Long.MAX_VALUE;
+            }
+        }
     }
 
+    // The maximum bytes of a file to be read ahead to hand off its parsing to another thread in the work-stealing mode by default.
+    private static final long DEFAULT_WORK_STEALING_FILE_BUFFER_BYTES = 32L * 1024 * 1024;
+
+    // The number of pages queued between pipeline stages by default.
+    private static final int DEFAULT_PIPELINE_QUEUE_PAGES = 4;
+
+    // The number of pages buffered for each scatter output worker by default.
+    private static final int DEFAULT_SCATTER_QUEUE_PAGES = 4;
+
     private static final Logger logger = LoggerFactory.getLogger(LocalExecutorPlugin.class);
 }
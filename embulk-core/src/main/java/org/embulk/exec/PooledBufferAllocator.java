@@ -2,14 +2,41 @@ package org.embulk.exec;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
 import org.embulk.EmbulkDependencyClassLoader;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferAllocator;
 
 public abstract class PooledBufferAllocator implements BufferAllocator {
+    protected PooledBufferAllocator() {
+        this(0L);
+    }
+
+    /**
+     * @param memoryLimit  the maximum total capacity of buffers live at the same time, or {@code 0} for no limit
+     */
+    protected PooledBufferAllocator(final long memoryLimit) {
+        this.accounting = new BufferAccounting(memoryLimit);
+    }
+
     public static PooledBufferAllocator create(final int pageSize) {
+        return create(pageSize, false);
+    }
+
+    public static PooledBufferAllocator create(final int pageSize, final boolean directPages) {
+        return create(pageSize, directPages, 0L);
+    }
+
+    /**
+     * Creates an allocator.
+     *
+     * @param pageSize  the default size of buffers
+     * @param directPages  {@code true} to allocate buffers of pages on off-heap memory as {@link org.embulk.spi.DirectBuffer}
+     * @param memoryLimit  the maximum total capacity of buffers live at the same time, or {@code 0} for no limit
+     */
+    public static PooledBufferAllocator create(final int pageSize, final boolean directPages, final long memoryLimit) {
         try {
-            return CONSTRUCTOR.newInstance(pageSize);
+            return CONSTRUCTOR.newInstance(pageSize, directPages, memoryLimit);
         } catch (final IllegalAccessException | IllegalArgumentException | InstantiationException ex) {
             throw new LinkageError("Dependencies for Buffer are not loaded correctly: " + CLASS_NAME, ex);
         } catch (final InvocationTargetException ex) {
@@ -34,6 +61,53 @@ public abstract class PooledBufferAllocator implements BufferAllocator {
     @Override
     public abstract Buffer allocate(final int minimumCapacity);
 
+    /**
+     * Allocates a buffer for a page.
+     *
+     * <p>It is on off-heap memory if the allocator is created for direct pages. Other buffers, such as file buffers
+     * that plugins access through {@link Buffer#array()}, are always on the Java heap.
+     */
+    public Buffer allocatePageBuffer(final int minimumCapacity) {
+        return this.allocate(minimumCapacity);
+    }
+
+    /**
+     * Returns metrics of buffers allocated by this allocator.
+     */
+    public BufferMetrics getMetrics() {
+        return this.accounting.getMetrics(-1L, Double.NaN);
+    }
+
+    /**
+     * Returns metrics of buffers allocated in tasks running, keyed by the task names.
+     */
+    public Map<String, BufferMetrics> getTaskMetrics() {
+        return this.accounting.getTaskMetrics();
+    }
+
+    /**
+     * Starts counting buffers allocated by the current thread for a task, until the returned scope is closed.
+     *
+     * <p>Buffers allocated in the task and not released are reported when the scope is closed.
+     */
+    public BufferAccounting.TaskScope openTaskScope(final String taskName) {
+        return this.accounting.openTask(taskName);
+    }
+
+    /**
+     * Starts counting buffers for a task if the allocator is a {@link PooledBufferAllocator}.
+     */
+    public static BufferAccounting.TaskScope openTaskScope(final BufferAllocator allocator, final String taskName) {
+        if (allocator instanceof PooledBufferAllocator) {
+            return ((PooledBufferAllocator) allocator).openTaskScope(taskName);
+        }
+        return BufferAccounting.noTaskScope();
+    }
+
+    protected final BufferAccounting accounting() {
+        return this.accounting;
+    }
+
     @SuppressWarnings("unchecked")
     private static Class<PooledBufferAllocator> loadImplClass() {
         try {
@@ -43,7 +117,7 @@ public abstract class PooledBufferAllocator implements BufferAllocator {
         }
     }
 
-    private static final int DEFAULT_PAGE_SIZE = 32 * 1024;
+    public static final int DEFAULT_PAGE_SIZE = 32 * 1024;
 
     private static final ClassLoader CLASS_LOADER = EmbulkDependencyClassLoader.get();
     private static final String CLASS_NAME = "org.embulk.deps.buffer.PooledBufferAllocatorImpl";
@@ -51,11 +125,13 @@ public abstract class PooledBufferAllocator implements BufferAllocator {
     static {
         final Class<PooledBufferAllocator> clazz = loadImplClass();
         try {
-            CONSTRUCTOR = clazz.getConstructor(int.class);
+            CONSTRUCTOR = clazz.getConstructor(int.class, boolean.class, long.class);
         } catch (final NoSuchMethodException ex) {
             throw new LinkageError("Dependencies for Buffer are not loaded correctly: " + CLASS_NAME, ex);
         }
     }
 
     private static final Constructor<PooledBufferAllocator> CONSTRUCTOR;
+
+    private final BufferAccounting accounting;
 }
@@ -0,0 +1,263 @@
+package org.embulk.exec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.config.TaskReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checkpoints {@link ResumeState} into a file while tasks are running so that a transaction can be resumed even after the
+ * JVM crashes.
+ *
+ * <p>The file is a journal of lines in UTF-8. The first line is the resume state when tasks start running, which contains
+ * task reports already committed before. Each of the following lines is a task report appended when a task is committed.
+ * Every line is forced to the storage before the task is regarded as checkpointed.
+ *
+ * <p>The journal is compacted into a single resume state line every {@value #COMPACTION_INTERVAL} task reports, and when
+ * tasks start running again. Compaction writes a new file, and replaces the journal with it atomically.
+ *
+ * <p>A checkpoint is best-effort. Once writing the journal fails, it stops checkpointing with a warning, and the
+ * transaction continues.
+ *
+ * <p>It is internal for the Embulk runner. Plugins MUST NOT use this class. No any compatibility is guaranteed.
+ */
+public final class ResumeStateJournal {
+    public ResumeStateJournal(final Path path) {
+        this.path = path;
+        this.channel = null;
+        this.failed = false;
+    }
+
+    /**
+     * Replays the journal into a resume state.
+     *
+     * <p>A last line which is not terminated, or cannot be read, is ignored as it was being written when the JVM stopped.
+     *
+     * @param path  the path to the journal
+     * @param model  the model manager to deserialize the resume state and task reports
+     * @return the resume state, or empty if the journal does not exist or has no resume state
+     */
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    public static Optional<ResumeState> replay(final Path path, final org.embulk.config.ModelManager model) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            final StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (c == '\n') {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                }
+            }
+            // An unterminated line is being written.
+        } catch (final NoSuchFileException ex) {
+            return Optional.empty();
+        }
+
+        if (lines.isEmpty() || !lines.get(0).startsWith(STATE)) {
+            return Optional.empty();
+        }
+        final ResumeState header = model.readObject(ResumeState.class, lines.get(0).substring(STATE.length()));
+        final ArrayList<Optional<TaskReport>> inputTaskReports = new ArrayList<>(header.getInputTaskReports());
+        final ArrayList<Optional<TaskReport>> outputTaskReports = new ArrayList<>(header.getOutputTaskReports());
+
+        for (int i = 1; i < lines.size(); i++) {
+            final String line = lines.get(i);
+            try {
+                final List<Optional<TaskReport>> reports;
+                if (line.startsWith(INPUT)) {
+                    reports = inputTaskReports;
+                } else if (line.startsWith(OUTPUT)) {
+                    reports = outputTaskReports;
+                } else {
+                    throw new IllegalStateException("Unknown line in resume state journal");
+                }
+                final int separator = line.indexOf(' ', 2);
+                final int taskIndex = Integer.parseInt(line.substring(2, separator));
+                reports.set(taskIndex, Optional.of(model.readObject(TaskReport.class, line.substring(separator + 1))));
+            } catch (final RuntimeException ex) {
+                if (i == lines.size() - 1) {
+                    logger.warn("Ignored the last broken line in resume state journal: {}", path);
+                    break;
+                }
+                throw new IOException("Broken resume state journal at line " + (i + 1) + ": " + path, ex);
+            }
+        }
+
+        return Optional.of(new ResumeState(
+                header.getExecSessionConfigSource(),
+                header.getInputTaskSource(),
+                header.getOutputTaskSource(),
+                header.getInputSchema(),
+                header.getOutputSchema(),
+                Collections.unmodifiableList(inputTaskReports),
+                Collections.unmodifiableList(outputTaskReports)));
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Starts the journal with the resume state when tasks start running, replacing the existing journal.
+     */
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    synchronized void start(final ResumeState state, final org.embulk.config.ModelManager model) {
+        this.model = model;
+        this.header = state;
+        this.inputTaskReports = new ArrayList<>(state.getInputTaskReports());
+        this.outputTaskReports = new ArrayList<>(state.getOutputTaskReports());
+        this.failed = false;
+        try {
+            this.compact();
+        } catch (final IOException | RuntimeException ex) {
+            this.fail(ex);
+        }
+    }
+
+    synchronized void appendInputTaskReport(final int taskIndex, final TaskReport report) {
+        this.append(INPUT, this.inputTaskReports, taskIndex, report);
+    }
+
+    synchronized void appendOutputTaskReport(final int taskIndex, final TaskReport report) {
+        this.append(OUTPUT, this.outputTaskReports, taskIndex, report);
+    }
+
+    /**
+     * Closes the journal, and deletes its file.
+     */
+    public synchronized void delete() throws IOException {
+        this.closeChannel();
+        this.header = null;
+        Files.deleteIfExists(this.path);
+    }
+
+    /**
+     * Closes the journal, and keeps its file.
+     */
+    public synchronized void close() {
+        this.closeChannel();
+        this.header = null;
+    }
+
+    private void append(final String kind, final List<Optional<TaskReport>> reports, final int taskIndex, final TaskReport report) {
+        if (this.header == null || this.failed) {
+            return;
+        }
+        try {
+            reports.set(taskIndex, Optional.of(report));
+            if (++this.appendedSinceCompaction >= COMPACTION_INTERVAL) {
+                this.compact();
+            } else {
+                this.write(this.channel, kind + taskIndex + " " + this.model.writeObject(report) + "\n");
+                this.channel.force(false);
+            }
+        } catch (final IOException | RuntimeException ex) {
+            this.fail(ex);
+        }
+    }
+
+    // Rewrites the journal with a single resume state line.
+    private void compact() throws IOException {
+        final ResumeState compacted = new ResumeState(
+                this.header.getExecSessionConfigSource(),
+                this.header.getInputTaskSource(),
+                this.header.getOutputTaskSource(),
+                this.header.getInputSchema(),
+                this.header.getOutputSchema(),
+                Collections.unmodifiableList(new ArrayList<>(this.inputTaskReports)),
+                Collections.unmodifiableList(new ArrayList<>(this.outputTaskReports)));
+
+        final Path temporary = this.path.resolveSibling(this.path.getFileName().toString() + ".tmp");
+        try (final FileChannel temporaryChannel = FileChannel.open(
+                temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.write(temporaryChannel, STATE + this.model.writeObject(compacted) + "\n");
+            temporaryChannel.force(true);
+        }
+
+        this.closeChannel();
+        try {
+            Files.move(temporary, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(this.path);
+
+        this.channel = FileChannel.open(this.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.appendedSinceCompaction = 0;
+    }
+
+    private void write(final FileChannel target, final String line) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private void fail(final Throwable ex) {
+        this.failed = true;
+        this.closeChannel();
+        logger.warn("Stopped checkpointing resume state into '" + this.path + "'. The transaction continues.", ex);
+    }
+
+    private void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (final IOException ex) {
+                logger.debug("Failed to close resume state journal: {}", this.path, ex);
+            }
+            this.channel = null;
+        }
+    }
+
+    // Forces the rename into the storage. Some platforms do not allow opening a directory, and it is just skipped there.
+    private static void forceDirectory(final Path file) {
+        final Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (final FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (final IOException ex) {
+            logger.debug("Failed to force directory: {}", directory, ex);
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumeStateJournal.class);
+
+    private static final int COMPACTION_INTERVAL = 1000;
+
+    private static final String STATE = "S ";
+    private static final String INPUT = "I ";
+    private static final String OUTPUT = "O ";
+
+    private final Path path;
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private org.embulk.config.ModelManager model;
+
+    private ResumeState header;
+    private List<Optional<TaskReport>> inputTaskReports;
+    private List<Optional<TaskReport>> outputTaskReports;
+    private int appendedSinceCompaction;
+
+    private FileChannel channel;
+    private boolean failed;
+}
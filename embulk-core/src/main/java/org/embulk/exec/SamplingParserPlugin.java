@@ -4,16 +4,26 @@ import static java.util.Locale.ENGLISH;
 import static org.embulk.spi.util.Inputs.each;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
+import org.embulk.plugin.PluginType;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferImpl;
 import org.embulk.spi.Exec;
+import org.embulk.spi.ExecInternal;
 import org.embulk.spi.FileInput;
 import org.embulk.spi.FileInputRunner;
 import org.embulk.spi.InputPlugin;
@@ -33,6 +43,19 @@ public class SamplingParserPlugin implements ParserPlugin {
     }
 
     public static Buffer runFileInputSampling(final FileInputRunner runner, ConfigSource inputConfig, ConfigSource sampleBufferConfig) {
+        return runFileInputSampling(runner, () -> newFileInputRunner(inputConfig), inputConfig, sampleBufferConfig);
+    }
+
+    /**
+     * Samples as {@link #runFileInputSampling(FileInputRunner, ConfigSource, ConfigSource)} does. When tasks are sampled in
+     * parallel, each thread runs them with its own {@link FileInputRunner} from {@code runnerFactory} so that an input plugin
+     * is not used by multiple threads at a time.
+     */
+    static Buffer runFileInputSampling(
+            final FileInputRunner runner,
+            final Supplier<FileInputRunner> runnerFactory,
+            final ConfigSource inputConfig,
+            final ConfigSource sampleBufferConfig) {
         final SampleBufferTask sampleBufferTask = loadSampleBufferTask(sampleBufferConfig);
 
         // override in.parser.type so that FileInputRunner creates SamplingParserPlugin
@@ -48,47 +71,15 @@ public class SamplingParserPlugin implements ParserPlugin {
                         if (taskCount == 0) {
                             throw new NoSampleException("No input files to read sample data");
                         }
-                        int maxSize = -1;
-                        int maxSizeTaskIndex = -1;
-                        for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
-                            try {
-                                runner.run(taskSource, schema, taskIndex, new PageOutput() {
-                                        @Override
-                                        public void add(Page page) {
-                                            throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
-                                        }
-
-                                        public void finish() {}
-
-                                        public void close() {}
-                                    });
-                            } catch (NotEnoughSampleError ex) {
-                                if (maxSize < ex.getSize()) {
-                                    maxSize = ex.getSize();
-                                    maxSizeTaskIndex = taskIndex;
-                                }
-                                continue;
-                            }
-                        }
-                        if (maxSize <= 0) {
-                            throw new NoSampleException("All input files are empty");
+                        final int sampledTaskCount = Math.min(taskCount, sampleBufferTask.getSampleMaxTasks().orElse(taskCount));
+                        final int threads = Math.min(sampledTaskCount, sampleBufferTask.getSampleThreads());
+                        final Buffer sample;
+                        if (threads <= 1) {
+                            sample = sampleTasksInSequence(runner, taskSource, schema, sampledTaskCount);
+                        } else {
+                            sample = sampleTasksInParallel(runnerFactory, taskSource, schema, sampledTaskCount, threads);
                         }
-                        taskSource.getNested("ParserTaskSource").set("force", true);
-                        try {
-                            runner.run(taskSource, schema, maxSizeTaskIndex, new PageOutput() {
-                                    @Override
-                                    public void add(Page page) {
-                                        throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
-                                    }
-
-                                    public void finish() {}
-
-                                    public void close() {}
-                                });
-                        } catch (NotEnoughSampleError ex) {
-                            throw new NoSampleException("All input files are smaller than minimum sampling size");
-                        }
-                        throw new NoSampleException("All input files are smaller than minimum sampling size");
+                        throw new SampledNoticeError(sample);
                     }
                 });
             throw new AssertionError("SamplingParserPlugin must throw SampledNoticeError");
@@ -97,6 +88,176 @@ public class SamplingParserPlugin implements ParserPlugin {
         }
     }
 
+    // Returns the sample of the first task which reads enough sample, or the largest sample of all the tasks otherwise.
+    private static Buffer sampleTasksInSequence(final FileInputRunner runner, final TaskSource taskSource, final Schema schema, final int taskCount) {
+        final LargestSample largest = new LargestSample();
+        for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
+            final SampleResult result = sampleTask(runner, taskSource, schema, taskIndex);
+            if (result.enough) {
+                largest.release();
+                return result.sample;
+            }
+            largest.offer(result);
+        }
+        return largest.get();
+    }
+
+    /**
+     * Samples tasks on a bounded thread pool, and returns the same sample as {@link #sampleTasksInSequence}.
+     *
+     * <p>Results are examined in the order of tasks. Once a task reads enough sample, tasks after it are cancelled unless
+     * they have started.
+     */
+    private static Buffer sampleTasksInParallel(
+            final Supplier<FileInputRunner> runnerFactory,
+            final TaskSource taskSource,
+            final Schema schema,
+            final int taskCount,
+            final int threads) {
+        // Threads are created from the current thread so that they inherit the Exec session.
+        final AtomicLong count = new AtomicLong(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "embulk-sampling-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Created in each thread. They are dropped with the threads.
+        final ThreadLocal<FileInputRunner> runners = ThreadLocal.withInitial(runnerFactory);
+
+        final List<Future<SampleResult>> futures = new ArrayList<>();
+        final LargestSample largest = new LargestSample();
+        int taskIndex = 0;
+        try {
+            for (int i = 0; i < taskCount; i++) {
+                final int index = i;
+                futures.add(executor.submit(BufferAccounting.propagate(() -> sampleTask(runners.get(), taskSource, schema, index))));
+            }
+            for (; taskIndex < taskCount; taskIndex++) {
+                final SampleResult result = join(futures.get(taskIndex));
+                if (result.enough) {
+                    largest.release();
+                    return result.sample;
+                }
+                largest.offer(result);
+            }
+            return largest.get();
+        } finally {
+            // Cancels tasks not started yet, and releases samples of tasks not examined.
+            for (int i = taskIndex + 1; i < futures.size(); i++) {
+                futures.get(i).cancel(false);
+            }
+            executor.shutdown();
+            for (int i = taskIndex + 1; i < futures.size(); i++) {
+                final Future<SampleResult> future = futures.get(i);
+                if (!future.isCancelled()) {
+                    try {
+                        join(future).sample.release();
+                    } catch (final RuntimeException | Error ex) {
+                        // Ignored as the task is not needed.
+                    }
+                }
+            }
+        }
+    }
+
+    private static FileInputRunner newFileInputRunner(final ConfigSource inputConfig) {
+        final InputPlugin inputPlugin = ExecInternal.newPlugin(InputPlugin.class, inputConfig.get(PluginType.class, "type"));
+        if (!(inputPlugin instanceof FileInputRunner)) {
+            throw new IllegalStateException("Input plugin must be a FileInputPlugin to sample: " + inputConfig.get(String.class, "type"));
+        }
+        return (FileInputRunner) inputPlugin;
+    }
+
+    private static SampleResult join(final Future<SampleResult> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                } catch (final ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static SampleResult sampleTask(final FileInputRunner runner, final TaskSource taskSource, final Schema schema, final int taskIndex) {
+        try {
+            runner.run(taskSource, schema, taskIndex, new PageOutput() {
+                    @Override
+                    public void add(Page page) {
+                        throw new RuntimeException("Input plugin must be a FileInputPlugin to guess parser configuration");  // TODO exception class
+                    }
+
+                    public void finish() {}
+
+                    public void close() {}
+                });
+        } catch (SampledNoticeError ex) {
+            return new SampleResult(ex.getSample(), true);
+        } catch (NotEnoughSampleError ex) {
+            return new SampleResult(ex.getSample(), false);
+        }
+        return new SampleResult(BufferImpl.EMPTY, false);
+    }
+
+    private static class SampleResult {
+        SampleResult(final Buffer sample, final boolean enough) {
+            this.sample = sample;
+            this.enough = enough;
+        }
+
+        private final Buffer sample;
+        private final boolean enough;
+    }
+
+    /**
+     * Keeps the largest sample smaller than the minimum sampling size, the earliest one among the same size.
+     */
+    private static class LargestSample {
+        LargestSample() {
+            this.sample = null;
+        }
+
+        void offer(final SampleResult result) {
+            if (this.sample == null || this.sample.limit() < result.sample.limit()) {
+                this.release();
+                this.sample = result.sample;
+            } else {
+                result.sample.release();
+            }
+        }
+
+        Buffer get() {
+            if (this.sample == null || this.sample.limit() <= 0) {
+                throw new NoSampleException("All input files are empty");
+            }
+            return this.sample;
+        }
+
+        void release() {
+            if (this.sample != null) {
+                this.sample.release();
+                this.sample = null;
+            }
+        }
+
+        private Buffer sample;
+    }
+
     public static class SampledNoticeError extends Error {
         private final Buffer sample;
 
@@ -111,14 +272,29 @@ public class SamplingParserPlugin implements ParserPlugin {
 
     public static class NotEnoughSampleError extends Error {
         private final int size;
+        private final Buffer sample;
 
         public NotEnoughSampleError(int size) {
             this.size = size;
+            this.sample = BufferImpl.EMPTY;
+        }
+
+        /**
+         * Notifies the sample smaller than the minimum sampling size so that it is used without reading it again if no other
+         * input tasks read enough sample.
+         */
+        public NotEnoughSampleError(Buffer sample) {
+            this.size = sample.limit();
+            this.sample = sample;
         }
 
         public int getSize() {
             return size;
         }
+
+        public Buffer getSample() {
+            return sample;
+        }
     }
 
     private static final Logger logger = LoggerFactory.getLogger(SamplingParserPlugin.class);
@@ -132,6 +308,16 @@ public class SamplingParserPlugin implements ParserPlugin {
         @Config("sample_buffer_bytes")
         @ConfigDefault("32768") // 32 * 1024
         public int getSampleBufferBytes();
+
+        // The number of input tasks sampled at the same time.
+        @Config("sample_threads")
+        @ConfigDefault("1")
+        public int getSampleThreads();
+
+        // Only the first input tasks are sampled if set.
+        @Config("sample_max_tasks")
+        @ConfigDefault("null")
+        public OptionalInt getSampleMaxTasks();
     }
 
     public SamplingParserPlugin() {
@@ -155,7 +341,7 @@ public class SamplingParserPlugin implements ParserPlugin {
         Buffer buffer = readSample(input, task.getSampleBufferBytes());
         if (!taskSource.get(boolean.class, "force", false)) {
             if (buffer.limit() < minSampleBufferBytes) {
-                throw new NotEnoughSampleError(buffer.limit());
+                throw new NotEnoughSampleError(buffer);
             }
         }
         throw new SampledNoticeError(buffer);
@@ -0,0 +1,121 @@
+package org.embulk.exec;
+
+import java.util.Locale;
+import org.embulk.config.ConfigException;
+
+/**
+ * Policies to choose an output worker for each page scattered from an input task.
+ *
+ * <p>It is configured by {@code scatter_routing} in the {@code exec:} section.
+ */
+enum ScatterRouting {
+    /**
+     * Sends pages to output workers one by one in order, regardless of how busy they are.
+     *
+     * <p>It is the only policy that distributes pages deterministically.
+     */
+    ROUND_ROBIN("round_robin") {
+        @Override
+        int route(final Workers workers, final long pageCount) {
+            return (int) (pageCount % workers.count());
+        }
+    },
+
+    /**
+     * Sends a page to the available output worker with the fewest pages queued.
+     */
+    LEAST_QUEUED("least_queued") {
+        @Override
+        int route(final Workers workers, final long pageCount) {
+            final int count = workers.count();
+            final int start = (int) (pageCount % count);
+            int selected = -1;
+            int selectedQueuedPages = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                final int index = (start + i) % count;
+                if (!workers.isAvailable(index)) {
+                    continue;
+                }
+                final int queuedPages = workers.getQueuedPages(index);
+                if (queuedPages < selectedQueuedPages) {
+                    selected = index;
+                    selectedQueuedPages = queuedPages;
+                    if (queuedPages == 0) {
+                        break;
+                    }
+                }
+            }
+            return selected < 0 ? start : selected;
+        }
+    },
+
+    /**
+     * Sends a page to the available output worker which has received the fewest bytes so far.
+     */
+    BYTES_BALANCED("bytes_balanced") {
+        @Override
+        int route(final Workers workers, final long pageCount) {
+            final int count = workers.count();
+            final int start = (int) (pageCount % count);
+            int selected = -1;
+            long selectedAddedBytes = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                final int index = (start + i) % count;
+                if (!workers.isAvailable(index)) {
+                    continue;
+                }
+                final long addedBytes = workers.getAddedBytes(index);
+                if (addedBytes < selectedAddedBytes) {
+                    selected = index;
+                    selectedAddedBytes = addedBytes;
+                }
+            }
+            return selected < 0 ? start : selected;
+        }
+    },
+    ;
+
+    /**
+     * A view of output workers that a policy looks into.
+     */
+    interface Workers {
+        int count();
+
+        boolean isAvailable(int index);
+
+        int getQueuedPages(int index);
+
+        long getAddedBytes(int index);
+    }
+
+    private ScatterRouting(final String name) {
+        this.name = name;
+    }
+
+    static ScatterRouting of(final String name) {
+        final String normalized = name.toLowerCase(Locale.ENGLISH);
+        for (final ScatterRouting routing : values()) {
+            if (routing.name.equals(normalized)) {
+                return routing;
+            }
+        }
+        throw new ConfigException(
+                "\"scatter_routing\" must be one of \"round_robin\", \"least_queued\", or \"bytes_balanced\": \"" + name + "\"");
+    }
+
+    /**
+     * Chooses the index of the output worker to send the next page.
+     *
+     * @param workers  the output workers
+     * @param pageCount  the number of pages routed so far from the input task
+     * @return the index of the output worker
+     */
+    abstract int route(Workers workers, long pageCount);
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    private final String name;
+}
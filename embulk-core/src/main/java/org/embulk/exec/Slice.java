@@ -35,6 +35,8 @@ package org.embulk.exec;
 
 import java.lang.reflect.Field;
 import java.util.Objects;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DirectBuffer;
 import sun.misc.Unsafe;
 
 @SuppressWarnings("sunapi")
@@ -74,6 +76,32 @@ public final class Slice {
         return new Slice(array, offset, length);
     }
 
+    /**
+     * Creates a slice over the specified range of off-heap memory.
+     *
+     * <p>The memory must stay allocated while the slice is in use. It is not checked.
+     *
+     * @param address the absolute memory address at which the slice begins
+     * @param length the number of bytes to include in the slice
+     */
+    public static Slice wrappedAddress(final long address, final int length) {
+        if (length == 0) {
+            return EMPTY_SLICE;
+        }
+        return new Slice(address, length);
+    }
+
+    /**
+     * Creates a slice over the whole capacity of the specified buffer, through its address if it is a {@link DirectBuffer}.
+     */
+    @SuppressWarnings("deprecation")  // Calling Buffer#array().
+    public static Slice wrappedBuffer(final Buffer buffer) {
+        if (buffer instanceof DirectBuffer) {
+            return wrappedAddress(((DirectBuffer) buffer).memoryAddress() + buffer.offset(), buffer.capacity());
+        }
+        return wrappedBuffer(buffer.array(), buffer.offset(), buffer.capacity());
+    }
+
     /**
      * Creates an empty slice.
      */
@@ -98,6 +126,22 @@ public final class Slice {
         this.size = length;
     }
 
+    /**
+     * Creates a slice over the specified range of off-heap memory.
+     */
+    private Slice(final long address, final int length) {
+        if (address == 0) {
+            throw new IllegalArgumentException("address is 0");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length: " + length);
+        }
+
+        this.base = null;
+        this.address = address;
+        this.size = length;
+    }
+
     /**
      * Length of this slice.
      */
@@ -184,6 +228,34 @@ public final class Slice {
         copyMemory(this.base, this.address + index, destination, (long) Unsafe.ARRAY_BYTE_BASE_OFFSET + destinationIndex, length);
     }
 
+    /**
+     * Transfers portion of data from this slice into the specified destination slice.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code index} is less than {@code 0},
+     * if the specified {@code destinationIndex} is less than {@code 0},
+     * if {@code index + length} is greater than
+     * {@code this.length()}, or
+     * if {@code destinationIndex + length} is greater than
+     * {@code destination.length()}
+     */
+    public void getBytes(final int index, final Slice destination, final int destinationIndex, final int length) {
+        this.checkIndexLength(index, length);
+        destination.checkIndexLength(destinationIndex, length);
+
+        copyMemory(this.base, this.address + index, destination.base, destination.address + destinationIndex, length);
+    }
+
+    /**
+     * Sets {@code length} bytes from the specified absolute {@code index} in this buffer to zero.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code index} is less than {@code 0} or
+     * {@code index + length} is greater than {@code this.length()}
+     */
+    public void setZero(final int index, final int length) {
+        this.checkIndexLength(index, length);
+        Holder.unsafe.setMemory(this.base, this.address + index, length, (byte) 0);
+    }
+
     /**
      * Sets the specified byte at the specified absolute {@code index} in this
      * buffer.  The 24 high-order bits of the specified value are ignored.
@@ -0,0 +1,238 @@
+package org.embulk.exec;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer single-consumer ring queue to hand off elements between two threads.
+ *
+ * <p>Enqueueing and dequeueing are lock-free. Only the blocking methods park the calling thread while the ring
+ * is full, or empty, and the other side unparks it.
+ *
+ * <p>Only one thread may call the producer-side methods ({@link #offer}, {@link #put}) at a time, and only one
+ * thread may call the consumer-side methods ({@link #poll}, {@link #drainTo}, {@link #take}, {@link #close}) at
+ * a time. The producer can take over the consumer side only after the consumer thread has terminated.
+ *
+ * <p>It is internal for Embulk's executors. Plugins MUST NOT use this class. No any compatibility is guaranteed.
+ *
+ * @param <E> the type of elements to hand off
+ */
+public final class SpscRingQueue<E> {
+    public SpscRingQueue(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("SpscRingQueue must have a positive capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.head = new AtomicLong(0L);
+        this.tail = new AtomicLong(0L);
+        this.closed = false;
+        this.waitingProducer = null;
+        this.waitingConsumer = null;
+        this.producerStallCount = 0L;
+        this.producerStallNanos = 0L;
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of elements in the queue at the moment.
+     *
+     * <p>It can be called from any thread. The value is just a snapshot.
+     *
+     * @return the number of elements in the queue
+     */
+    public int size() {
+        final long currentHead = this.head.get();
+        final long currentTail = this.tail.get();
+        return (int) Math.max(0L, Math.min(currentTail - currentHead, (long) this.capacity));
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Enqueues an element if the ring has room for it, without blocking.
+     *
+     * @param element  the element to enqueue
+     * @return {@code true} if enqueued
+     */
+    public boolean offer(final E element) {
+        Objects.requireNonNull(element, "SpscRingQueue does not accept null.");
+        final long currentTail = this.tail.get();
+        if (currentTail - this.head.get() >= this.capacity) {
+            return false;
+        }
+        this.ring.lazySet(this.indexOf(currentTail), element);
+        this.tail.set(currentTail + 1);
+        LockSupport.unpark(this.waitingConsumer);
+        return true;
+    }
+
+    /**
+     * Enqueues an element, waiting for room if the ring is full.
+     *
+     * <p>Time spent for waiting is accounted as a producer stall.
+     *
+     * @param element  the element to enqueue
+     * @return {@code true} if enqueued, or {@code false} if the consumer has closed the queue
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public boolean put(final E element) throws InterruptedException {
+        if (this.closed) {
+            return false;
+        }
+        if (this.offer(element)) {
+            return true;
+        }
+
+        final long startedAt = System.nanoTime();
+        try {
+            this.waitingProducer = Thread.currentThread();
+            while (true) {
+                if (this.closed) {
+                    return false;
+                }
+                if (this.offer(element)) {
+                    return true;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            this.waitingProducer = null;
+            this.producerStallCount++;
+            this.producerStallNanos += System.nanoTime() - startedAt;
+        }
+    }
+
+    /**
+     * Dequeues an element if any, without blocking.
+     *
+     * @return the dequeued element, or {@code null} if empty
+     */
+    public E poll() {
+        final long currentHead = this.head.get();
+        if (currentHead >= this.tail.get()) {
+            return null;
+        }
+        final int index = this.indexOf(currentHead);
+        final E element = this.ring.get(index);
+        this.ring.lazySet(index, null);
+        this.head.set(currentHead + 1);
+        LockSupport.unpark(this.waitingProducer);
+        return element;
+    }
+
+    /**
+     * Dequeues elements available at the moment into {@code destination} in a batch, without blocking.
+     *
+     * @param destination  the array to store dequeued elements from its beginning
+     * @return the number of dequeued elements
+     */
+    public int drainTo(final E[] destination) {
+        final long currentHead = this.head.get();
+        final long available = Math.min(this.tail.get() - currentHead, (long) destination.length);
+        if (available <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < available; i++) {
+            final int index = this.indexOf(currentHead + i);
+            destination[i] = this.ring.get(index);
+            this.ring.lazySet(index, null);
+        }
+        this.head.set(currentHead + available);
+        LockSupport.unpark(this.waitingProducer);
+        return (int) available;
+    }
+
+    /**
+     * Dequeues elements into {@code destination} in a batch, waiting for at least one element if empty.
+     *
+     * @param destination  the array to store dequeued elements from its beginning
+     * @return the number of dequeued elements, at least one
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public int take(final E[] destination) throws InterruptedException {
+        if (destination.length == 0) {
+            throw new IllegalArgumentException("SpscRingQueue#take requires a non-empty destination.");
+        }
+        final int drained = this.drainTo(destination);
+        if (drained > 0) {
+            return drained;
+        }
+
+        try {
+            this.waitingConsumer = Thread.currentThread();
+            while (true) {
+                final int drainedAfterWait = this.drainTo(destination);
+                if (drainedAfterWait > 0) {
+                    return drainedAfterWait;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            this.waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Stops accepting elements from the producer, and wakes up the producer if it is waiting.
+     *
+     * <p>Elements already in the queue are kept. The consumer, or the producer after the consumer has terminated,
+     * is responsible to drain and dispose them.
+     */
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.waitingProducer);
+    }
+
+    /**
+     * Returns how many times the producer has waited for room. It should be read from the producer thread.
+     *
+     * @return the number of producer stalls
+     */
+    public long getProducerStallCount() {
+        return this.producerStallCount;
+    }
+
+    /**
+     * Returns how long the producer has waited for room in total. It should be read from the producer thread.
+     *
+     * @return the total producer stall time in nanoseconds
+     */
+    public long getProducerStallNanos() {
+        return this.producerStallNanos;
+    }
+
+    private int indexOf(final long sequence) {
+        return (int) (sequence % this.capacity);
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<E> ring;
+
+    // The next sequence to dequeue. Written only by the consumer.
+    private final AtomicLong head;
+
+    // The next sequence to enqueue. Written only by the producer.
+    private final AtomicLong tail;
+
+    private volatile boolean closed;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    // Written and read only by the producer.
+    private long producerStallCount;
+    private long producerStallNanos;
+}
@@ -0,0 +1,60 @@
+package org.embulk.exec;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads if the running JVM supports them.
+ *
+ * <p>Embulk is built for Java 8, so virtual threads (Java 21+) are accessed through reflection.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+        // No instantiation.
+    }
+
+    static boolean isSupported() {
+        return OF_VIRTUAL.isPresent();
+    }
+
+    /**
+     * Creates a {@link java.util.concurrent.ThreadFactory} of virtual threads named with the prefix and a counter.
+     *
+     * @param namePrefix  the prefix of thread names
+     * @return the thread factory, or empty if virtual threads are not supported
+     */
+    static Optional<ThreadFactory> newThreadFactory(final String namePrefix) {
+        if (!OF_VIRTUAL.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            final Object builder = OF_VIRTUAL.get().invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder));
+        } catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Method> findOfVirtual() {
+        final Method ofVirtual;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (final NoSuchMethodException ex) {
+            return Optional.empty();
+        }
+
+        // Virtual threads are a preview feature in Java 19 and 20. ofVirtual() throws unless the preview is enabled.
+        try {
+            ofVirtual.invoke(null);
+        } catch (final IllegalAccessException | InvocationTargetException ex) {
+            return Optional.empty();
+        }
+        return Optional.of(ofVirtual);
+    }
+
+    private static final Optional<Method> OF_VIRTUAL = findOfVirtual();
+}
@@ -0,0 +1,70 @@
+package org.embulk.exec;
+
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link java.util.concurrent.ForkJoinPool} to run tasks of {@link LocalExecutorPlugin} in the {@code work_stealing} mode.
+ *
+ * <p>Components running in an input task, such as {@link org.embulk.spi.FileInputRunner}, can find the pool with
+ * {@link #current()}, and fork a part of their work so that idle threads can steal it.
+ *
+ * <p>It is internal for Embulk's executors. Plugins MUST NOT use this class. No any compatibility is guaranteed.
+ */
+public final class WorkStealingForkJoinPool extends ForkJoinPool {
+    public WorkStealingForkJoinPool(final int parallelism, final long fileBufferBytes) {
+        super(parallelism, new WorkerThreadFactory("embulk-executor-%d"), null, false);
+        this.fileBufferBytes = fileBufferBytes;
+    }
+
+    /**
+     * Returns the pool running the current thread if it is a worker thread of {@link WorkStealingForkJoinPool}.
+     *
+     * @return the pool, or empty if the current thread is not its worker thread
+     */
+    public static Optional<WorkStealingForkJoinPool> current() {
+        final ForkJoinPool pool = ForkJoinTask.getPool();
+        if (pool instanceof WorkStealingForkJoinPool && ForkJoinTask.inForkJoinPool()) {
+            return Optional.of((WorkStealingForkJoinPool) pool);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the maximum bytes of a file to be read ahead in an input task to hand off its parsing to another thread.
+     *
+     * @return the maximum bytes of a file to hand off
+     */
+    public long getFileBufferBytes() {
+        return this.fileBufferBytes;
+    }
+
+    private static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private WorkerThreadFactory(final String nameFormat) {
+            this.nameFormat = nameFormat;
+            this.count = new AtomicLong(0);
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = new WorkerThread(pool);
+            thread.setName(String.format(this.nameFormat, this.count.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        private final String nameFormat;
+        private final AtomicLong count;
+    }
+
+    private static class WorkerThread extends ForkJoinWorkerThread {
+        private WorkerThread(final ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+
+    private final long fileBufferBytes;
+}
@@ -0,0 +1,76 @@
+package org.embulk.plugin;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Caches loaded plugin classes by key, loading a class only once per key even when it is looked up concurrently.
+ *
+ * <p>A lookup of a cached key does not lock. Only lookups of the same key wait for the first one to load the class. Loads
+ * of different keys run in parallel. A failed load is not cached so that the next lookup tries loading again.
+ *
+ * <p>It is internal for plugin sources. Plugins MUST NOT use this class. No any compatibility is guaranteed.
+ *
+ * @param <K>  the type of keys
+ */
+public final class PluginClassCache<K> {
+    public PluginClassCache() {
+        this.futures = new ConcurrentHashMap<>();
+    }
+
+    public interface Loader {
+        Class<?> load() throws PluginSourceNotMatchException;
+    }
+
+    /**
+     * Returns the class cached for the key, or loads it by the loader.
+     */
+    public Class<?> computeIfAbsent(final K key, final Loader loader) throws PluginSourceNotMatchException {
+        Future<Class<?>> future = this.futures.get(key);
+        if (future == null) {
+            final FutureTask<Class<?>> task = new FutureTask<>(loader::load);
+            future = this.futures.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();  // Loaded in the current thread. The other threads looking up the key wait for it.
+            }
+        }
+
+        try {
+            return getUninterruptibly(future);
+        } catch (final ExecutionException ex) {
+            this.futures.remove(key, future);
+            final Throwable cause = ex.getCause();
+            if (cause instanceof PluginSourceNotMatchException) {
+                throw (PluginSourceNotMatchException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PluginSourceNotMatchException(cause);
+        }
+    }
+
+    // Class loading is not cancelled by an interrupt as the other threads may wait for it.
+    private static Class<?> getUninterruptibly(final Future<Class<?>> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<K, Future<Class<?>>> futures;
+}
@@ -3,8 +3,12 @@ package org.embulk.plugin;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import org.embulk.EmbulkSystemProperties;
 import org.embulk.config.ConfigException;
 import org.embulk.exec.GuessExecutor;
@@ -27,6 +31,14 @@ public class PluginManager {
         this.mavenSource = mavenSource;
         this.selfContainedSource = selfContainedSource;
         this.jrubySource = jrubySource;
+
+        // The order is intentional.
+        // * BuiltinPluginSource comes first because "built-in" ones are there always much intentionally (e.g. for testing).
+        // * MavenPluginSource comes second so that newly-installed Maven-based plugins can override self-contained ones.
+        // * JRubyPluginSource comes last because JRuby is optional, and RubyGem-based plugins are the last choice.
+        this.sources = Collections.unmodifiableList(Arrays.<PluginSource>asList(
+                this.builtinSource, this.mavenSource, this.selfContainedSource, this.jrubySource));
+        this.resolvedSources = new ConcurrentHashMap<>();
     }
 
     public static PluginManager with(
@@ -67,33 +79,27 @@ public class PluginManager {
             return iface.cast(new LocalExecutorPlugin(this.embulkSystemProperties));
         }
 
-        // The order is intentional.
-        // * BuiltinPluginSource comes first because "built-in" ones are there always much intentionally (e.g. for testing).
-        // * MavenPluginSource comes second so that newly-installed Maven-based plugins can override self-contained ones.
-        // * JRubyPluginSource comes last because JRuby is optional, and RubyGem-based plugins are the last choice.
-
-        try {
-            return this.builtinSource.newPlugin(iface, type);
-        } catch (final PluginSourceNotMatchException e) {
-            exceptions.add(e);
-        }
-
-        try {
-            return this.mavenSource.newPlugin(iface, type);
-        } catch (final PluginSourceNotMatchException e) {
-            exceptions.add(e);
-        }
-
-        try {
-            return this.selfContainedSource.newPlugin(iface, type);
-        } catch (final PluginSourceNotMatchException e) {
-            exceptions.add(e);
+        // The plugin source which has found the plugin type is cached so that plugins are created for every task without
+        // looking up the plugin sources before it again.
+        final ResolvedKey key = new ResolvedKey(iface, type);
+        final PluginSource resolvedSource = this.resolvedSources.get(key);
+        if (resolvedSource != null) {
+            try {
+                return resolvedSource.newPlugin(iface, type);
+            } catch (final PluginSourceNotMatchException e) {
+                this.resolvedSources.remove(key, resolvedSource);
+                // Pass-through to look up all the plugin sources again.
+            }
         }
 
-        try {
-            return this.jrubySource.newPlugin(iface, type);
-        } catch (final PluginSourceNotMatchException e) {
-            exceptions.add(e);
+        for (final PluginSource source : this.sources) {
+            try {
+                final T plugin = source.newPlugin(iface, type);
+                this.resolvedSources.put(key, source);
+                return plugin;
+            } catch (final PluginSourceNotMatchException e) {
+                exceptions.add(e);
+            }
         }
 
         throw buildPluginNotFoundException(iface, type, exceptions);
@@ -159,9 +165,36 @@ public class PluginManager {
         return e;
     }
 
+    private static final class ResolvedKey {
+        ResolvedKey(final Class<?> iface, final PluginType type) {
+            this.iface = iface;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(final Object otherObject) {
+            if (!(otherObject instanceof ResolvedKey)) {
+                return false;
+            }
+            final ResolvedKey other = (ResolvedKey) otherObject;
+            return this.iface.equals(other.iface) && this.type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.iface, this.type);
+        }
+
+        private final Class<?> iface;
+        private final PluginType type;
+    }
+
     private final EmbulkSystemProperties embulkSystemProperties;
     private final BuiltinPluginSource builtinSource;
     private final MavenPluginSource mavenSource;
     private final SelfContainedPluginSource selfContainedSource;
     private final JRubyPluginSource jrubySource;
+
+    private final List<PluginSource> sources;
+    private final ConcurrentHashMap<ResolvedKey, PluginSource> resolvedSources;
 }
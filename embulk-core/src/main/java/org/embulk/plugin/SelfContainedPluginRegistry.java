@@ -33,7 +33,7 @@ final class SelfContainedPluginRegistry {
             final String category,
             final EmbulkSystemProperties embulkSystemProperties,
             final PluginClassLoaderFactory pluginClassLoaderFactory) {
-        this.cacheMap = new HashMap<DefaultPluginType, Class<?>>();
+        this.cache = new PluginClassCache<>();
 
         this.pluginInterface = pluginInterface;
         this.category = category;
@@ -55,16 +55,7 @@ final class SelfContainedPluginRegistry {
     }
 
     Class<?> lookup(final DefaultPluginType pluginType) throws PluginSourceNotMatchException  {
-        synchronized (this.cacheMap) {  // Synchronize between this.cacheMap.get() and this.cacheMap.put().
-            final Class<?> pluginMainClass = this.cacheMap.get(pluginType);
-            if (pluginMainClass != null) {
-                return pluginMainClass;
-            }
-
-            final Class<?> loadedPluginMainClass = this.search(pluginType);
-            this.cacheMap.put(pluginType, loadedPluginMainClass);
-            return loadedPluginMainClass;
-        }
+        return this.cache.computeIfAbsent(pluginType, () -> this.search(pluginType));
     }
 
     String getCategory() {
@@ -105,7 +96,7 @@ final class SelfContainedPluginRegistry {
 
     private static final Logger logger = LoggerFactory.getLogger(SelfContainedPluginRegistry.class);
 
-    private final HashMap<DefaultPluginType, Class<?>> cacheMap;
+    private final PluginClassCache<DefaultPluginType> cache;
 
     private final Class<?> pluginInterface;  // InputPlugin, OutputPlugin, FilterPlugin, ...
     private final String category;
@@ -9,6 +9,7 @@ import java.util.Map;
 import org.embulk.EmbulkSystemProperties;
 import org.embulk.plugin.DefaultPluginType;
 import org.embulk.plugin.MavenPluginType;
+import org.embulk.plugin.PluginClassCache;
 import org.embulk.plugin.PluginClassLoaderFactory;
 import org.embulk.plugin.PluginSource;
 import org.embulk.plugin.PluginSourceNotMatchException;
@@ -38,7 +39,8 @@ final class MavenPluginRegistry {
             final String category,
             final EmbulkSystemProperties embulkSystemProperties,
             final PluginClassLoaderFactory pluginClassLoaderFactory) {
-        this.cacheMap = new HashMap<MavenPluginType, Class<?>>();
+        this.cacheByPluginType = new PluginClassCache<>();
+        this.cacheByMavenPluginType = new PluginClassCache<>();
 
         this.pluginInterface = pluginInterface;
         this.category = category;
@@ -60,15 +62,16 @@ final class MavenPluginRegistry {
     }
 
     Class<?> lookup(final PluginType pluginType) throws PluginSourceNotMatchException {
+        // The requested plugin type is cached so that a cached plugin is returned without finding its JAR files again.
+        return this.cacheByPluginType.computeIfAbsent(pluginType, () -> this.load(pluginType));
+    }
+
+    private Class<?> load(final PluginType pluginType) throws PluginSourceNotMatchException {
         final MavenPluginPaths pluginPaths = this.findPluginPaths(pluginType);
         final MavenPluginType mavenPluginType = pluginPaths.getPluginType();
 
-        synchronized (this.cacheMap) {  // Synchronize between this.cacheMap.get() and this.cacheMap.put().
-            final Class<?> pluginMainClass = this.cacheMap.get(mavenPluginType);
-            if (pluginMainClass != null) {
-                return pluginMainClass;
-            }
-
+        // Different requested plugin types may be resolved to the same Maven artifact.
+        return this.cacheByMavenPluginType.computeIfAbsent(mavenPluginType, () -> {
             final Class<?> loadedPluginMainClass;
             try (final JarPluginLoader loader = JarPluginLoader.load(
                      pluginPaths.getPluginJarPath(),
@@ -82,10 +85,8 @@ final class MavenPluginRegistry {
             logger.info("Loaded plugin {} ({})",
                         "embulk-" + this.category + "-" + mavenPluginType.getName(),
                         mavenPluginType.getFullName());
-
-            this.cacheMap.put(mavenPluginType, loadedPluginMainClass);
             return loadedPluginMainClass;
-        }
+        });
     }
 
     String getCategory() {
@@ -171,7 +172,8 @@ final class MavenPluginRegistry {
 
     private static final Logger logger = LoggerFactory.getLogger(MavenPluginRegistry.class);
 
-    private final HashMap<MavenPluginType, Class<?>> cacheMap;
+    private final PluginClassCache<PluginType> cacheByPluginType;
+    private final PluginClassCache<MavenPluginType> cacheByMavenPluginType;
 
     private final Class<?> pluginInterface;  // InputPlugin, OutputPlugin, FilterPlugin, ...
     private final String category;
@@ -0,0 +1,413 @@
+package org.embulk.spi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.BufferAccounting;
+import org.embulk.exec.WorkStealingForkJoinPool;
+import org.embulk.spi.util.LineBoundaries;
+import org.embulk.spi.util.SeekableFileInput;
+
+/**
+ * Parses files from a {@link SeekableFileInput} in an input task, with splitting a large file into ranges of lines to be
+ * parsed on multiple threads.
+ *
+ * <p>A file at least twice as large as the chunk size is split at the first line delimiter after every chunk size. Each
+ * range is parsed by its own {@link ParserPlugin}. Header lines are prepended to every range except for the first one so
+ * that the parser skips them as well. Smaller files, and files whose size is unknown, are parsed in the input task as usual.
+ *
+ * <p>Up to {@code parallelism} ranges are parsed at a time, on the {@link WorkStealingForkJoinPool} if the input task runs
+ * on it, or on threads created for the input task otherwise. If the order is preserved, pages from a range are held until
+ * pages from all the preceding ranges are sent. {@link PageOutput#finish()} is called only once after all the files are parsed.
+ *
+ * <p>It is only for a parser plugin which implements {@link org.embulk.spi.util.LineSplittableParserPlugin}. Records must
+ * not contain line delimiters in them, such as in quoted values of CSV.
+ */
+final class ChunkedFileParser {
+    ChunkedFileParser(
+            final Supplier<ParserPlugin> parserPluginFactory,
+            final TaskSource parserTaskSource,
+            final Schema schema,
+            final byte[] delimiter,
+            final boolean delimiterExplicit,
+            final int headerLines,
+            final long chunkBytes,
+            final int parallelism,
+            final boolean preserveOrder) {
+        this.parserPluginFactory = parserPluginFactory;
+        this.parserTaskSource = parserTaskSource;
+        this.schema = schema;
+        this.delimiter = delimiter;
+        this.delimiterExplicit = delimiterExplicit;
+        this.headerLines = headerLines;
+        this.chunkBytes = chunkBytes;
+        this.parallelism = parallelism;
+        this.preserveOrder = preserveOrder;
+        this.executor = null;
+    }
+
+    void run(final ParserPlugin parserPlugin, final SeekableFileInput input, final PageOutput output) {
+        try {
+            while (input.nextFile()) {
+                final OptionalLong size = input.sizeOfCurrentFile();
+                if (size.isPresent() && size.getAsLong() >= this.chunkBytes * 2) {
+                    this.runInRanges(input, size.getAsLong(), output);
+                } else {
+                    parserPlugin.run(this.parserTaskSource, this.schema, new CurrentFileInput(input), new UnfinishedPageOutput(output));
+                }
+            }
+        } finally {
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+            }
+        }
+        output.finish();
+    }
+
+    private void runInRanges(final SeekableFileInput input, final long size, final PageOutput output) {
+        final long headerEnd = this.findHeaderEnd(input, size);
+        final PageOutput sharedOutput = new SharedPageOutput(output);
+        final ArrayDeque<Future<List<Page>>> running = new ArrayDeque<>();
+
+        Throwable error = null;
+        try {
+            long start = 0;
+            while (start < size) {
+                // A range is longer than the delimiter so that a range of an empty line is not dropped to nothing.
+                final long next = Math.max(start, headerEnd) + Math.max(this.chunkBytes, this.delimiter.length + 1);
+                final long end = (next + this.chunkBytes <= size) ? LineBoundaries.next(input, next, size, this.delimiter) : size;
+
+                // An explicit delimiter at the end of a range is dropped so that the parser does not find an empty line after it.
+                // Any of CR, LF, and CRLF ends a line otherwise. The last delimiter is kept so that an empty line before it remains.
+                final long length = (end < size && this.delimiterExplicit ? end - this.delimiter.length : end) - start;
+
+                if (running.size() >= this.parallelism) {
+                    addAll(output, join(running.removeFirst()));
+                }
+                running.addLast(this.submit(this.openRange(input, start, length, headerEnd), this.preserveOrder ? null : sharedOutput));
+                start = end;
+            }
+            while (!running.isEmpty()) {
+                addAll(output, join(running.removeFirst()));
+            }
+        } catch (final RuntimeException | Error ex) {
+            error = ex;
+        }
+
+        while (!running.isEmpty()) {
+            final Future<List<Page>> future = running.removeFirst();
+            try {
+                releaseAll(join(future));
+            } catch (final RuntimeException | Error ex) {
+                error.addSuppressed(ex);
+            }
+        }
+
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    // Returns the position just after the header lines, or 0 if no header lines are skipped.
+    private long findHeaderEnd(final SeekableFileInput input, final long size) {
+        long headerEnd = 0;
+        for (int i = 0; i < this.headerLines && headerEnd < size; i++) {
+            headerEnd = LineBoundaries.next(input, headerEnd + 1, size, this.delimiter);
+        }
+        return headerEnd;
+    }
+
+    private FileInput openRange(final SeekableFileInput input, final long start, final long length, final long headerEnd) {
+        final FileInput body = input.openRangeOfCurrentFile(start, length);
+        if (start == 0 || headerEnd == 0) {
+            return new RangeFileInput(null, body);
+        }
+        return new RangeFileInput(input.openRangeOfCurrentFile(0, headerEnd), body);
+    }
+
+    // Parses the range into pages to be returned if sharedOutput is null, or into sharedOutput otherwise.
+    private Future<List<Page>> submit(final FileInput range, final PageOutput sharedOutput) {
+        final Callable<List<Page>> parse = BufferAccounting.propagate(() -> {
+            final PageOutput rangeOutput = sharedOutput != null ? sharedOutput : new CollectingPageOutput();
+            try (final FileInput file = range) {
+                this.parserPluginFactory.get().run(this.parserTaskSource, this.schema, file, rangeOutput);
+            } catch (final RuntimeException | Error ex) {
+                rangeOutput.close();
+                throw ex;
+            }
+            return sharedOutput != null ? new ArrayList<>() : ((CollectingPageOutput) rangeOutput).pages;
+        });
+
+        try {
+            if (WorkStealingForkJoinPool.current().isPresent()) {
+                return ForkJoinTask.adapt(parse).fork();
+            }
+            if (this.executor == null) {
+                this.executor = newExecutor(this.parallelism);
+            }
+            return this.executor.submit(parse);
+        } catch (final RuntimeException | Error ex) {
+            range.close();
+            throw ex;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Page> join(final Future<List<Page>> future) {
+        if (future instanceof ForkJoinTask) {
+            return ((ForkJoinTask<List<Page>>) future).join();
+        }
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new RuntimeException(ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void addAll(final PageOutput output, final List<Page> pages) {
+        for (int i = 0; i < pages.size(); i++) {
+            try {
+                output.add(pages.get(i));
+            } catch (final RuntimeException | Error ex) {
+                releaseAll(pages.subList(i + 1, pages.size()));
+                throw ex;
+            }
+        }
+    }
+
+    private static void releaseAll(final List<Page> pages) {
+        for (final Page page : pages) {
+            page.release();
+        }
+    }
+
+    private static ExecutorService newExecutor(final int parallelism) {
+        final AtomicLong count = new AtomicLong(0);
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            final Thread thread = new Thread(runnable, "embulk-chunk-parser-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Holds pages from a range until they are sent in order.
+     */
+    private static class CollectingPageOutput implements PageOutput {
+        CollectingPageOutput() {
+            this.pages = new ArrayList<>();
+        }
+
+        @Override
+        public void add(final Page page) {
+            this.pages.add(page);
+        }
+
+        @Override
+        public void finish() {
+            // Pages are sent by ChunkedFileParser.
+        }
+
+        @Override
+        public void close() {
+            releaseAll(this.pages);
+            this.pages.clear();
+        }
+
+        private final List<Page> pages;
+    }
+
+    /**
+     * Serializes pages from parsers running concurrently, and leaves {@code finish} and {@code close} to the input task.
+     */
+    private static class SharedPageOutput implements PageOutput {
+        SharedPageOutput(final PageOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public synchronized void add(final Page page) {
+            this.output.add(page);
+        }
+
+        @Override
+        public void finish() {
+            // Finished by ChunkedFileParser after all parsers.
+        }
+
+        @Override
+        public void close() {
+            // Closed by the input task.
+        }
+
+        private final PageOutput output;
+    }
+
+    /**
+     * Leaves {@code finish} and {@code close} to the input task for a file parsed in the input task.
+     */
+    private static class UnfinishedPageOutput implements PageOutput {
+        UnfinishedPageOutput(final PageOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public void add(final Page page) {
+            this.output.add(page);
+        }
+
+        @Override
+        public void finish() {
+            // Finished by ChunkedFileParser after all files.
+        }
+
+        @Override
+        public void close() {
+            // Closed by the input task.
+        }
+
+        private final PageOutput output;
+    }
+
+    /**
+     * A range of a file, optionally after the header lines of the file.
+     */
+    private static class RangeFileInput implements FileInput {
+        RangeFileInput(final FileInput header, final FileInput body) {
+            this.header = header;
+            this.body = body;
+            this.started = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.started) {
+                return false;
+            }
+            this.started = true;
+            if (this.header != null && !this.header.nextFile()) {
+                this.header.close();
+                this.header = null;
+            }
+            return this.body.nextFile();
+        }
+
+        @Override
+        public Buffer poll() {
+            if (!this.started) {
+                throw new IllegalStateException("nextFile() must be called before poll()");
+            }
+            if (this.header != null) {
+                final Buffer buffer = this.header.poll();
+                if (buffer != null) {
+                    return buffer;
+                }
+                this.header.close();
+                this.header = null;
+            }
+            return this.body.poll();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (this.header != null) {
+                    this.header.close();
+                    this.header = null;
+                }
+            } finally {
+                this.body.close();
+            }
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return this.body.hintOfCurrentInputFileNameForLogging();
+        }
+
+        private FileInput header;
+        private final FileInput body;
+        private boolean started;
+    }
+
+    /**
+     * The current file of the original {@link FileInput} as a single file.
+     */
+    private static class CurrentFileInput implements FileInput {
+        CurrentFileInput(final FileInput input) {
+            this.input = input;
+            this.started = false;
+            this.finished = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.started) {
+                this.finished = true;
+                return false;
+            }
+            this.started = true;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            if (!this.started) {
+                throw new IllegalStateException("nextFile() must be called before poll()");
+            }
+            if (this.finished) {
+                return null;
+            }
+            return this.input.poll();
+        }
+
+        @Override
+        public void close() {
+            // The original FileInput is closed by the input task.
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return this.input.hintOfCurrentInputFileNameForLogging();
+        }
+
+        private final FileInput input;
+        private boolean started;
+        private boolean finished;
+    }
+
+    private final Supplier<ParserPlugin> parserPluginFactory;
+    private final TaskSource parserTaskSource;
+    private final Schema schema;
+    private final byte[] delimiter;
+    private final boolean delimiterExplicit;
+    private final int headerLines;
+    private final long chunkBytes;
+    private final int parallelism;
+    private final boolean preserveOrder;
+
+    private ExecutorService executor;  // Created at the first range to parse out of WorkStealingForkJoinPool.
+}
@@ -0,0 +1,51 @@
+package org.embulk.spi;
+
+import org.embulk.spi.type.Type;
+
+abstract class ColumnarPageFormat {
+    // Page
+    // +---+----------+----------+-----
+    // | 4 | column 0 | column 1 | ...
+    // +---+----------+----------+-----
+    // count (number of records)
+    //
+    // Column
+    // +-----------------+----------------------------+
+    // | (count + 7) / 8 | count * fixed storage size |
+    // +-----------------+----------------------------+
+    // null bitmap         vector
+    //
+    // A TIMESTAMP vector is epoch seconds (count * 8 bytes) followed by nanoseconds (count * 4 bytes).
+    // A STRING or JSON vector is indexes to the references of the page. Strings are deduplicated in a page
+    // so that the string references work as a dictionary.
+
+    private ColumnarPageFormat() {}
+
+    static final int PAGE_HEADER_SIZE = 4;
+
+    static int nullBitmapSize(final int count) {
+        return (count + 7) / 8;
+    }
+
+    static int columnSize(final Type type, final int count) {
+        return nullBitmapSize(count) + count * type.getFixedStorageSize();
+    }
+
+    static int[] columnOffsets(final Schema schema, final int count) {
+        final int[] offsets = new int[schema.getColumnCount()];
+        int offset = PAGE_HEADER_SIZE;
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            offsets[i] = offset;
+            offset += columnSize(schema.getColumnType(i), count);
+        }
+        return offsets;
+    }
+
+    static int pageSize(final Schema schema, final int count) {
+        int size = PAGE_HEADER_SIZE;
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            size += columnSize(schema.getColumnType(i), count);
+        }
+        return size;
+    }
+}
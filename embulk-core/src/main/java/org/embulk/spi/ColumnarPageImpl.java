@@ -0,0 +1,12 @@
+package org.embulk.spi;
+
+/**
+ * A {@link Page} whose records are laid out column by column in {@link ColumnarPageFormat}.
+ *
+ * <p>It is read by {@link ColumnarPageReader}. {@link PageReaderImpl} converts it back to rows.
+ */
+final class ColumnarPageImpl extends PageImpl {
+    ColumnarPageImpl(final Buffer buffer) {
+        super(buffer);
+    }
+}
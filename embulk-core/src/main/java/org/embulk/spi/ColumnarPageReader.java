@@ -0,0 +1,180 @@
+package org.embulk.spi;
+
+import java.time.Instant;
+import org.embulk.exec.Slice;
+import org.embulk.spi.json.JsonValue;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+
+/**
+ * Reads a page column by column into arrays.
+ *
+ * <p>Pages in the row layout are converted into the columnar layout when they are set. Vector accessors fill the array
+ * from index 0 with values of all the records in the page, and return the number of records. A null value is read
+ * as {@code null} for reference types, and as {@code false} or {@code 0} for primitive types.
+ */
+public class ColumnarPageReader implements AutoCloseable {
+    public ColumnarPageReader(final Schema schema) {
+        this(schema, null);
+    }
+
+    public ColumnarPageReader(final Schema schema, final BufferAllocator allocator) {
+        this.schema = schema;
+        this.allocator = allocator;
+        this.page = null;
+        this.pageSlice = null;
+        this.recordCount = 0;
+        this.columnOffsets = new int[schema.getColumnCount()];
+        this.bitmapSize = 0;
+    }
+
+    public Schema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Sets a page to read. The page previously set is released.
+     */
+    public void setPage(final Page page) {
+        this.releasePage();
+
+        final Page columnarPage;
+        if (ColumnarPages.isColumnar(page)) {
+            columnarPage = page;
+        } else {
+            columnarPage = ColumnarPages.toColumnar(this.schema, page, this.allocator != null ? this.allocator : Exec.getBufferAllocator());
+        }
+
+        final Buffer pageBuffer = columnarPage.buffer();
+        this.pageSlice = Slice.wrappedBuffer(pageBuffer);
+        this.recordCount = this.pageSlice.getInt(0);  // see page format
+        this.columnOffsets = ColumnarPageFormat.columnOffsets(this.schema, this.recordCount);
+        this.bitmapSize = ColumnarPageFormat.nullBitmapSize(this.recordCount);
+        this.page = columnarPage;
+    }
+
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    public boolean isNull(final Column column, final int record) {
+        final int columnIndex = column.getIndex();
+        return (this.pageSlice.getByte(this.columnOffsets[columnIndex] + (record >>> 3)) & (1 << (record & 7))) != 0;
+    }
+
+    public int getNulls(final Column column, final boolean[] destination) {
+        this.checkDestination(destination.length);
+        final int bitmap = this.columnOffsets[column.getIndex()];
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = (this.pageSlice.getByte(bitmap + (i >>> 3)) & (1 << (i & 7))) != 0;
+        }
+        return this.recordCount;
+    }
+
+    public int getBooleans(final Column column, final boolean[] destination) {
+        final int vector = this.vector(column, Types.BOOLEAN, destination.length);
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.pageSlice.getByte(vector + i) != (byte) 0;
+        }
+        return this.recordCount;
+    }
+
+    public int getLongs(final Column column, final long[] destination) {
+        final int vector = this.vector(column, Types.LONG, destination.length);
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.pageSlice.getLong(vector + i * 8);
+        }
+        return this.recordCount;
+    }
+
+    public int getDoubles(final Column column, final double[] destination) {
+        final int vector = this.vector(column, Types.DOUBLE, destination.length);
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.pageSlice.getDouble(vector + i * 8);
+        }
+        return this.recordCount;
+    }
+
+    public int getStrings(final Column column, final String[] destination) {
+        final int vector = this.vector(column, Types.STRING, destination.length);
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.isNull(column, i) ? null : this.page.getStringReference(this.pageSlice.getInt(vector + i * 4));
+        }
+        return this.recordCount;
+    }
+
+    public int getJsonValues(final Column column, final JsonValue[] destination) {
+        final int vector = this.vector(column, Types.JSON, destination.length);
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.isNull(column, i) ? null : this.page.getJsonValueReference(this.pageSlice.getInt(vector + i * 4));
+        }
+        return this.recordCount;
+    }
+
+    public int getTimestampEpochSeconds(final Column column, final long[] destination) {
+        final int vector = this.vector(column, Types.TIMESTAMP, destination.length);
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.pageSlice.getLong(vector + i * 8);
+        }
+        return this.recordCount;
+    }
+
+    public int getTimestampNanos(final Column column, final int[] destination) {
+        final int vector = this.vector(column, Types.TIMESTAMP, destination.length) + this.recordCount * 8;
+        for (int i = 0; i < this.recordCount; i++) {
+            destination[i] = this.pageSlice.getInt(vector + i * 4);
+        }
+        return this.recordCount;
+    }
+
+    public int getTimestampInstants(final Column column, final Instant[] destination) {
+        final int vector = this.vector(column, Types.TIMESTAMP, destination.length);
+        final int nanos = vector + this.recordCount * 8;
+        for (int i = 0; i < this.recordCount; i++) {
+            if (this.isNull(column, i)) {
+                destination[i] = null;
+            } else {
+                destination[i] = Instant.ofEpochSecond(this.pageSlice.getLong(vector + i * 8), this.pageSlice.getInt(nanos + i * 4));
+            }
+        }
+        return this.recordCount;
+    }
+
+    @Override
+    public void close() {
+        this.releasePage();
+    }
+
+    private int vector(final Column column, final Type expectedType, final int destinationLength) {
+        if (!column.getType().equals(expectedType)) {
+            throw new IllegalArgumentException(
+                    "Reading " + expectedType.getName() + " values from a " + column.getType().getName() + " column: " + column.getName());
+        }
+        this.checkDestination(destinationLength);
+        return this.columnOffsets[column.getIndex()] + this.bitmapSize;
+    }
+
+    private void checkDestination(final int destinationLength) {
+        if (destinationLength < this.recordCount) {
+            throw new IllegalArgumentException(
+                    "Destination array is too short: " + destinationLength + " for " + this.recordCount + " records");
+        }
+    }
+
+    private void releasePage() {
+        if (this.page != null) {
+            this.page.release();
+            this.page = null;
+            this.pageSlice = null;
+            this.recordCount = 0;
+        }
+    }
+
+    private final Schema schema;
+    private final BufferAllocator allocator;
+    private Page page;
+    private Slice pageSlice;
+    private int recordCount;
+    private int[] columnOffsets;
+    private int bitmapSize;
+}
@@ -0,0 +1,13 @@
+package org.embulk.spi;
+
+/**
+ * Declares that a {@link FilterPlugin} or an {@link OutputPlugin} accepts pages in the columnar layout.
+ *
+ * <p>When all the filter plugins and the output plugin in a task implement this interface, the executor converts pages
+ * from the input plugin, and from each filter plugin, into the columnar layout. Such plugins should read pages with
+ * {@link ColumnarPageReader}. {@link PageReaderImpl} still reads them, with converting them back to rows.
+ *
+ * <p>This is an experimental interface of Embulk core, not a part of the Embulk SPI.
+ */
+public interface ColumnarPageSupport {
+}
@@ -0,0 +1,268 @@
+package org.embulk.spi;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.embulk.exec.Slice;
+import org.embulk.spi.json.JsonValue;
+
+/**
+ * Converts pages between the row layout and the columnar layout.
+ *
+ * <p>Conversions take over the given page. The given page is released, or returned as-is if it is already in the layout.
+ */
+public final class ColumnarPages {
+    private ColumnarPages() {
+        // No instantiation.
+    }
+
+    public static boolean isColumnar(final Page page) {
+        return page instanceof ColumnarPageImpl;
+    }
+
+    /**
+     * Returns true if all the filter plugins and the output plugin accept columnar pages.
+     */
+    public static boolean isSupportedByAll(final List<FilterPlugin> filterPlugins, final OutputPlugin outputPlugin) {
+        for (final FilterPlugin filterPlugin : filterPlugins) {
+            if (!(filterPlugin instanceof ColumnarPageSupport)) {
+                return false;
+            }
+        }
+        return outputPlugin instanceof ColumnarPageSupport;
+    }
+
+    public static Page toColumnar(final Schema schema, final Page page, final BufferAllocator allocator) {
+        if (isColumnar(page)) {
+            return page;
+        }
+
+        final int count = PageReaderImpl.getRecordCount(page);
+        final int size = ColumnarPageFormat.pageSize(schema, count);
+        final Buffer buffer = PageImpl.allocateBuffer(allocator, size);
+        final Slice slice = Slice.wrappedBuffer(buffer);
+        // Buffers may be reused from a pool. Null bitmaps, and vector slots of nulls, are expected to be zero.
+        slice.setZero(0, size);
+        slice.setInt(0, count);
+
+        final RowToColumnVisitor visitor = new RowToColumnVisitor(schema, count, slice);
+        final PageReaderImpl reader = new PageReaderImpl(schema);
+        try {
+            reader.setPage(page);
+            while (reader.nextRecord()) {
+                visitor.visitRecord(reader);
+            }
+        } finally {
+            reader.close();  // Releases the row page.
+        }
+
+        buffer.limit(size);
+        final ColumnarPageImpl columnarPage = new ColumnarPageImpl(buffer);
+        columnarPage.setStringReferencesInternal(visitor.stringReferences);
+        columnarPage.setJsonValueReferencesInternal(visitor.jsonValueReferences);
+        return columnarPage;
+    }
+
+    public static Page toRows(final Schema schema, final Page page, final BufferAllocator allocator) {
+        if (!isColumnar(page)) {
+            return page;
+        }
+        final ColumnarPageImpl columnarPage = (ColumnarPageImpl) page;
+
+        final Buffer columnarBuffer = columnarPage.buffer();
+        final Slice columnarSlice = Slice.wrappedBuffer(columnarBuffer);
+        final int count = columnarSlice.getInt(0);
+
+        final int fixedRecordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
+        final int size = PageFormat.PAGE_HEADER_SIZE + count * fixedRecordSize;
+        final Buffer buffer = PageImpl.allocateBuffer(allocator, size);
+        final Slice slice = Slice.wrappedBuffer(buffer);
+        slice.setInt(0, count);
+
+        final int[] rowOffsets = PageFormat.columnOffsets(schema);
+        final int[] columnOffsets = ColumnarPageFormat.columnOffsets(schema, count);
+        final int bitmapSize = ColumnarPageFormat.nullBitmapSize(count);
+        final byte[] nullBitSet = new byte[PageFormat.nullBitSetSize(schema)];
+
+        for (int row = 0; row < count; row++) {
+            final int position = PageFormat.PAGE_HEADER_SIZE + row * fixedRecordSize;
+            Arrays.fill(nullBitSet, (byte) 0);
+            for (final Column column : schema.getColumns()) {
+                final int i = column.getIndex();
+                final int columnOffset = columnOffsets[i];
+                if ((columnarSlice.getByte(columnOffset + (row >>> 3)) & (1 << (row & 7))) != 0) {
+                    nullBitSet[i >>> 3] |= (1 << (i & 7));
+                    continue;
+                }
+                final int vector = columnOffset + bitmapSize;
+                final int offset = position + rowOffsets[i];
+                switch (column.getType().getFixedStorageSize()) {
+                    case 1:  // BOOLEAN
+                        slice.setByte(offset, columnarSlice.getByte(vector + row));
+                        break;
+                    case 4:  // STRING and JSON
+                        slice.setInt(offset, columnarSlice.getInt(vector + row * 4));
+                        break;
+                    case 8:  // LONG and DOUBLE
+                        slice.setLong(offset, columnarSlice.getLong(vector + row * 8));
+                        break;
+                    case 12:  // TIMESTAMP
+                        slice.setLong(offset, columnarSlice.getLong(vector + row * 8));
+                        slice.setInt(offset + 8, columnarSlice.getInt(vector + count * 8 + row * 4));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported type " + column.getType().getName());
+                }
+            }
+            slice.setInt(position, fixedRecordSize);
+            slice.setBytes(position + 4, nullBitSet);
+        }
+
+        buffer.limit(size);
+        final PageImpl rowPage = PageImpl.wrap(buffer)
+                .setStringReferencesInternal(columnarPage.getStringReferencesInternal())
+                .setJsonValueReferencesInternal(columnarPage.getJsonValueReferencesInternal());
+        columnarPage.release();
+        return rowPage;
+    }
+
+    /**
+     * Creates a {@link PageOutput} which converts pages into the columnar layout before passing them to {@code output}.
+     */
+    public static PageOutput newColumnarPageOutput(final Schema schema, final BufferAllocator allocator, final PageOutput output) {
+        return new ColumnarPageOutput(schema, allocator, output);
+    }
+
+    private static class ColumnarPageOutput implements PageOutput {
+        ColumnarPageOutput(final Schema schema, final BufferAllocator allocator, final PageOutput output) {
+            this.schema = schema;
+            this.allocator = allocator;
+            this.output = output;
+        }
+
+        @Override
+        public void add(final Page page) {
+            this.output.add(toColumnar(this.schema, page, this.allocator));
+        }
+
+        @Override
+        public void finish() {
+            this.output.finish();
+        }
+
+        @Override
+        public void close() {
+            this.output.close();
+        }
+
+        private final Schema schema;
+        private final BufferAllocator allocator;
+        private final PageOutput output;
+    }
+
+    private static class RowToColumnVisitor implements ColumnVisitor {
+        RowToColumnVisitor(final Schema schema, final int count, final Slice slice) {
+            this.schema = schema;
+            this.count = count;
+            this.slice = slice;
+            this.columnOffsets = ColumnarPageFormat.columnOffsets(schema, count);
+            this.bitmapSize = ColumnarPageFormat.nullBitmapSize(count);
+            this.dictionary = new HashMap<>();
+            this.stringReferences = new ArrayList<>();
+            this.jsonValueReferences = new ArrayList<>();
+            this.row = 0;
+        }
+
+        void visitRecord(final PageReader reader) {
+            this.reader = reader;
+            this.schema.visitColumns(this);
+            this.row++;
+        }
+
+        @Override
+        public void booleanColumn(final Column column) {
+            if (this.setNullIfNull(column)) {
+                return;
+            }
+            this.slice.setByte(this.vector(column) + this.row, this.reader.getBoolean(column) ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public void longColumn(final Column column) {
+            if (this.setNullIfNull(column)) {
+                return;
+            }
+            this.slice.setLong(this.vector(column) + this.row * 8, this.reader.getLong(column));
+        }
+
+        @Override
+        public void doubleColumn(final Column column) {
+            if (this.setNullIfNull(column)) {
+                return;
+            }
+            this.slice.setDouble(this.vector(column) + this.row * 8, this.reader.getDouble(column));
+        }
+
+        @Override
+        public void stringColumn(final Column column) {
+            if (this.setNullIfNull(column)) {
+                return;
+            }
+            final String value = this.reader.getString(column);
+            Integer index = this.dictionary.get(value);
+            if (index == null) {
+                index = this.stringReferences.size();
+                this.stringReferences.add(value);
+                this.dictionary.put(value, index);
+            }
+            this.slice.setInt(this.vector(column) + this.row * 4, index);
+        }
+
+        @Override
+        public void jsonColumn(final Column column) {
+            if (this.setNullIfNull(column)) {
+                return;
+            }
+            final int index = this.jsonValueReferences.size();
+            this.jsonValueReferences.add(this.reader.getJsonValue(column));
+            this.slice.setInt(this.vector(column) + this.row * 4, index);
+        }
+
+        @Override
+        public void timestampColumn(final Column column) {
+            if (this.setNullIfNull(column)) {
+                return;
+            }
+            final Instant value = this.reader.getTimestampInstant(column);
+            final int vector = this.vector(column);
+            this.slice.setLong(vector + this.row * 8, value.getEpochSecond());
+            this.slice.setInt(vector + this.count * 8 + this.row * 4, value.getNano());
+        }
+
+        private boolean setNullIfNull(final Column column) {
+            if (!this.reader.isNull(column)) {
+                return false;
+            }
+            final int offset = this.columnOffsets[column.getIndex()] + (this.row >>> 3);
+            this.slice.setByte(offset, this.slice.getByte(offset) | (1 << (this.row & 7)));
+            return true;
+        }
+
+        private int vector(final Column column) {
+            return this.columnOffsets[column.getIndex()] + this.bitmapSize;
+        }
+
+        private final Schema schema;
+        private final int count;
+        private final Slice slice;
+        private final int[] columnOffsets;
+        private final int bitmapSize;
+        private final HashMap<String, Integer> dictionary;
+        private final List<String> stringReferences;
+        private final List<JsonValue> jsonValueReferences;
+        private PageReader reader;
+        private int row;
+    }
+}
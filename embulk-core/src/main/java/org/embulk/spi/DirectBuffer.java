@@ -0,0 +1,89 @@
+package org.embulk.spi;
+
+import org.embulk.exec.Slice;
+
+/**
+ * A {@link Buffer} on off-heap memory.
+ *
+ * <p>It has no backing {@code byte[]}. {@link #array()} throws {@link UnsupportedOperationException}. Its bytes are
+ * accessed through {@link #getBytes} and {@link #setBytes}, or through {@link Slice#wrappedBuffer(Buffer)}.
+ *
+ * <p>Subclasses must keep the memory allocated until {@link #release()} is called.
+ */
+public abstract class DirectBuffer extends Buffer {
+    protected DirectBuffer(final long memoryAddress, final int capacity) {
+        this.memoryAddress = memoryAddress;
+        this.capacity = capacity;
+        this.offset = 0;
+        this.filled = 0;
+    }
+
+    /**
+     * Returns the absolute memory address of the index {@code 0} of this buffer, not counting {@link #offset()}.
+     */
+    public long memoryAddress() {
+        return this.memoryAddress;
+    }
+
+    @Deprecated
+    @Override
+    public byte[] array() {
+        throw new UnsupportedOperationException(
+                "Buffer#array() is not available on an off-heap buffer. Set the system property \"buffer_allocator\" to \"heap\".");
+    }
+
+    @Override
+    public int offset() {
+        return this.offset;
+    }
+
+    @Override
+    public Buffer offset(final int offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    @Override
+    public int limit() {
+        return this.filled - this.offset;
+    }
+
+    @Override
+    public Buffer limit(final int limit) {
+        if (this.capacity < limit) {
+            throw new IllegalStateException("limit index out of bound: capacity=" + this.capacity + " limit=" + limit);
+        }
+        this.filled = this.offset + limit;
+        return this;
+    }
+
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public void setBytes(final int index, final byte[] source, final int sourceIndex, final int length) {
+        Slice.wrappedBuffer(this).setBytes(index, source, sourceIndex, length);
+    }
+
+    @Override
+    public void setBytes(final int index, final Buffer source, final int sourceIndex, final int length) {
+        Slice.wrappedBuffer(source).getBytes(sourceIndex, Slice.wrappedBuffer(this), index, length);
+    }
+
+    @Override
+    public void getBytes(final int index, final byte[] destination, final int destinationIndex, final int length) {
+        Slice.wrappedBuffer(this).getBytes(index, destination, destinationIndex, length);
+    }
+
+    @Override
+    public void getBytes(final int index, final Buffer destination, final int destinationIndex, final int length) {
+        Slice.wrappedBuffer(this).getBytes(index, Slice.wrappedBuffer(destination), destinationIndex, length);
+    }
+
+    private final long memoryAddress;
+    private final int capacity;
+    private int offset;
+    private int filled;
+}
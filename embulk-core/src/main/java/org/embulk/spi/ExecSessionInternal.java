@@ -3,7 +3,9 @@ package org.embulk.spi;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import org.embulk.EmbulkSystemProperties;
@@ -14,7 +16,9 @@ import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
+import org.embulk.exec.BufferMetrics;
 import org.embulk.exec.GuessExecutor;
+import org.embulk.exec.PooledBufferAllocator;
 import org.embulk.jruby.JRubyPluginSource;
 import org.embulk.jruby.LazyScriptingContainerDelegate;
 import org.embulk.jruby.ScriptingContainerDelegate;
@@ -60,6 +64,7 @@ public class ExecSessionInternal extends ExecSession {
     private final TempFileSpace tempFileSpace;
 
     private final boolean preview;
+    private final boolean resumable;
 
     @Deprecated  // TODO: Remove it.
     private interface SessionTask extends Task {
@@ -240,9 +245,10 @@ public class ExecSessionInternal extends ExecSession {
         this.tempFileSpace = tempFileSpaceAllocator.newSpace(ISO8601_BASIC.format(this.transactionTime));
 
         this.preview = false;
+        this.resumable = false;
     }
 
-    private ExecSessionInternal(ExecSessionInternal copy, boolean preview) {
+    private ExecSessionInternal(ExecSessionInternal copy, boolean preview, boolean resumable) {
         this.embulkSystemProperties = copy.embulkSystemProperties;
         this.guessExecutor = copy.guessExecutor;
         this.modelManager = copy.modelManager;
@@ -255,11 +261,19 @@ public class ExecSessionInternal extends ExecSession {
         this.tempFileSpace = copy.tempFileSpace;
 
         this.preview = preview;
+        this.resumable = resumable;
     }
 
     @Override
     public ExecSessionInternal forPreview() {
-        return new ExecSessionInternal(this, true);
+        return new ExecSessionInternal(this, true, this.resumable);
+    }
+
+    /**
+     * Returns a session of a transaction whose resume state may be written to resume it later.
+     */
+    public ExecSessionInternal forResumable() {
+        return new ExecSessionInternal(this, this.preview, true);
     }
 
     @Deprecated
@@ -306,6 +320,26 @@ public class ExecSessionInternal extends ExecSession {
         return bufferAllocator;
     }
 
+    /**
+     * Returns metrics of buffers allocated in this session, or empty if the buffer allocator does not count them.
+     */
+    public Optional<BufferMetrics> getBufferMetrics() {
+        if (this.bufferAllocator instanceof PooledBufferAllocator) {
+            return Optional.of(((PooledBufferAllocator) this.bufferAllocator).getMetrics());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns metrics of buffers allocated in tasks running, keyed by the task names.
+     */
+    public Map<String, BufferMetrics> getTaskBufferMetrics() {
+        if (this.bufferAllocator instanceof PooledBufferAllocator) {
+            return ((PooledBufferAllocator) this.bufferAllocator).getTaskMetrics();
+        }
+        return Collections.emptyMap();
+    }
+
     @Override
     public PageBuilder getPageBuilder(final BufferAllocator allocator, final Schema schema, final PageOutput output) {
         return new PageBuilderImpl(allocator, schema, output);
@@ -356,8 +390,13 @@ public class ExecSessionInternal extends ExecSession {
         return preview;
     }
 
+    public boolean isResumable() {
+        return resumable;
+    }
+
     @Override
     public void cleanup() {
+        this.getBufferMetrics().ifPresent(metrics -> logger.debug("Buffers in the session: {}", metrics));
         this.pluginClassLoaderFactory.clear();
         tempFileSpace.cleanup();
     }
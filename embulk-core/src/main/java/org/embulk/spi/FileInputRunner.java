@@ -2,8 +2,10 @@ package org.embulk.spi;
 
 import static org.embulk.exec.GuessExecutor.createSampleBufferConfigFromExecConfig;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import org.embulk.EmbulkSystemProperties;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
@@ -15,8 +17,17 @@ import org.embulk.config.TaskSource;
 import org.embulk.exec.ConfigurableGuessInputPlugin;
 import org.embulk.exec.GuessExecutor;
 import org.embulk.exec.SamplingParserPlugin;
+import org.embulk.exec.WorkStealingForkJoinPool;
 import org.embulk.plugin.PluginType;
 import org.embulk.spi.util.DecodersInternal;
+import org.embulk.spi.util.InputStreamFileInput;
+import org.embulk.spi.util.LineBoundaries;
+import org.embulk.spi.util.LineDelimiter;
+import org.embulk.spi.util.LineSplittableParserPlugin;
+import org.embulk.spi.util.ReadAheadFileInput;
+import org.embulk.spi.util.SeekableFileInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugin {
     public FileInputRunner(final FileInputPlugin fileInputPlugin, final EmbulkSystemProperties embulkSystemProperties) {
@@ -34,6 +45,34 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
         @Config("parser")
         public ConfigSource getParserConfig();
 
+        @Config("read_ahead_buffers")
+        @ConfigDefault("0")
+        public int getReadAheadBuffers();
+
+        @Config("open_ahead_files")
+        @ConfigDefault("0")
+        public int getOpenAheadFiles();
+
+        @Config("decoder_read_ahead_buffers")
+        @ConfigDefault("0")
+        public int getDecoderReadAheadBuffers();
+
+        @Config("parallel_parsing")
+        @ConfigDefault("false")
+        public boolean getParallelParsing();
+
+        @Config("parallel_parsing_chunk_bytes")
+        @ConfigDefault("67108864")
+        public long getParallelParsingChunkBytes();
+
+        @Config("parallel_parsing_threads")
+        @ConfigDefault("null")
+        public Optional<Integer> getParallelParsingThreads();
+
+        @Config("parallel_parsing_preserve_order")
+        @ConfigDefault("true")
+        public boolean getParallelParsingPreserveOrder();
+
         public void setFileInputTaskSource(TaskSource v);
 
         public TaskSource getFileInputTaskSource();
@@ -130,20 +169,95 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
         List<DecoderPlugin> decoderPlugins = newDecoderPlugins(task);
         ParserPlugin parserPlugin = newParserPlugin(task);
 
-        final TransactionalFileInput tran = fileInputPlugin.open(task.getFileInputTaskSource(), taskIndex);
+        final TransactionalFileInput tran = openAhead(task, fileInputPlugin.open(task.getFileInputTaskSource(), taskIndex));
         try (CloseResource closer = new CloseResource(tran)) {
             try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
-                FileInput fileInput = DecodersInternal.open(decoderPlugins, task.getDecoderTaskSources(), tran);
+                // The decoded input commits, or aborts, the transaction after stopping to read it ahead.
+                final TransactionalFileInput fileInput = DecodersInternal.openWithReadAhead(
+                        decoderPlugins, task.getDecoderTaskSources(), tran, task.getDecoderReadAheadBuffers());
                 closer.closeThis(fileInput);
-                parserPlugin.run(task.getParserTaskSource(), schema, fileInput, output);
+                aborter.abortThis(fileInput);
+                final Optional<WorkStealingForkJoinPool> workStealingPool = WorkStealingForkJoinPool.current();
+                final Optional<ChunkedFileParser> chunkedParser = newChunkedFileParser(task, schema, parserPlugin, fileInput);
+                if (chunkedParser.isPresent()) {
+                    chunkedParser.get().run(parserPlugin, (SeekableFileInput) fileInput, output);
+                } else if (workStealingPool.isPresent()) {
+                    new WorkStealingFileParser(
+                            () -> newParserPlugin(task),
+                            task.getParserTaskSource(),
+                            schema,
+                            workStealingPool.get().getFileBufferBytes(),
+                            workStealingPool.get().getParallelism()).run(parserPlugin, fileInput, output);
+                } else {
+                    parserPlugin.run(task.getParserTaskSource(), schema, fileInput, output);
+                }
 
-                TaskReport report = tran.commit();  // TODO check output.finish() is called. wrap
+                TaskReport report = fileInput.commit();  // TODO check output.finish() is called. wrap
                 aborter.dontAbort();
                 return report;
             }
         }
     }
 
+    // Opens files, and reads buffers, ahead on other threads if open_ahead_files, or read_ahead_buffers, is positive.
+    @SuppressWarnings("deprecation")  // InputStreamFileInput is deprecated.
+    private static TransactionalFileInput openAhead(final RunnerTask task, final TransactionalFileInput tran) {
+        if (task.getOpenAheadFiles() > 0) {
+            if (tran instanceof InputStreamFileInput) {
+                ((InputStreamFileInput) tran).openFilesAhead(task.getOpenAheadFiles());
+            } else {
+                logger.warn("\"open_ahead_files\" is ignored because the file input plugin does not open files with InputStreamFileInput.");
+            }
+        }
+        if (task.getReadAheadBuffers() > 0) {
+            return new ReadAheadFileInput.Transactional(tran, task.getReadAheadBuffers());
+        }
+        return tran;
+    }
+
+    // Returns empty unless parallel_parsing is enabled, the parser splits records by lines, and the input is seekable and
+    // uncompressed, in a supported charset.
+    @SuppressWarnings("deprecation")  // LineDelimiter is deprecated.
+    private Optional<ChunkedFileParser> newChunkedFileParser(
+            final RunnerTask task, final Schema schema, final ParserPlugin parserPlugin, final FileInput fileInput) {
+        if (!task.getParallelParsing()) {
+            return Optional.empty();
+        }
+        if (!(parserPlugin instanceof LineSplittableParserPlugin)) {
+            logger.warn("\"parallel_parsing\" is ignored because the parser plugin does not split records by lines.");
+            return Optional.empty();
+        }
+        final LineSplittableParserPlugin lineSplittable = (LineSplittableParserPlugin) parserPlugin;
+        final TaskSource parserTaskSource = task.getParserTaskSource();
+        if (!lineSplittable.isSplittableByLines(parserTaskSource)) {
+            logger.warn("\"parallel_parsing\" is ignored because records may contain line delimiters with the parser config.");
+            return Optional.empty();
+        }
+        if (!task.getDecoderConfigs().isEmpty() || !(fileInput instanceof SeekableFileInput)) {
+            logger.warn("\"parallel_parsing\" is ignored because the input is decoded, or not seekable.");
+            return Optional.empty();
+        }
+
+        final Charset charset = lineSplittable.getCharsetOfLines(parserTaskSource);
+        if (!LineBoundaries.isSupported(charset)) {
+            logger.warn("\"parallel_parsing\" is ignored because lines in {} cannot be split by bytes.", charset);
+            return Optional.empty();
+        }
+        final Optional<LineDelimiter> lineDelimiterRecognized = lineSplittable.getLineDelimiterRecognized(parserTaskSource);
+        final int headerLines = lineSplittable.getHeaderLines(parserTaskSource);
+
+        return Optional.of(new ChunkedFileParser(
+                () -> newParserPlugin(task),
+                parserTaskSource,
+                schema,
+                LineBoundaries.delimiterOf(lineDelimiterRecognized),
+                lineDelimiterRecognized.isPresent(),
+                headerLines,
+                task.getParallelParsingChunkBytes(),
+                task.getParallelParsingThreads().orElse(Runtime.getRuntime().availableProcessors()),
+                task.getParallelParsingPreserveOrder()));
+    }
+
     @SuppressWarnings("deprecation") // https://github.com/embulk/embulk/issues/1301
     public static TaskSource getFileInputTaskSource(TaskSource runnerTaskSource) {
         return runnerTaskSource.loadTask(RunnerTask.class).getFileInputTaskSource();
@@ -159,6 +273,8 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
         return taskSource.loadTask(RunnerTask.class);
     }
 
+    private static final Logger logger = LoggerFactory.getLogger(FileInputRunner.class);
+
     private final FileInputPlugin fileInputPlugin;
     private final EmbulkSystemProperties embulkSystemProperties;
 }
@@ -10,12 +10,19 @@ import org.embulk.spi.type.Type;
 import org.embulk.spi.type.Types;
 import org.msgpack.value.Value;
 
+/**
+ * Builds pages with writing values directly into the page buffer at the slots of the current record.
+ *
+ * <p>Columns set in the current record are tracked in a bitmask. A column set twice in a record is overwritten,
+ * including its string or JSON reference. A column not set in a record takes over the value of the previous record.
+ */
 public class PageBuilderImpl extends PageBuilder {
     private final BufferAllocator allocator;
     private final PageOutput output;
     private final Schema schema;
     private final int[] columnOffsets;
     private final int fixedRecordSize;
+    private final byte[] columnKinds;
 
     private Buffer buffer;
     private Slice bufferSlice;
@@ -23,11 +30,17 @@ public class PageBuilderImpl extends PageBuilder {
     private int count;
     private int position;
     private final byte[] nullBitSet;
-    private final Row row;
+    private final long[] writtenColumns;
+    private final long[] allColumnsWritten;
     private List<String> stringReferences = new ArrayList<>();
     private List<JsonValue> jsonValueReferences = new ArrayList<>();
     private int referenceSize;
-    private int nextVariableLengthDataOffset;
+
+    // The last record in the previous page, to be taken over by columns not set in the first record of a page.
+    private final byte[] scratch = new byte[12];
+    private final byte[] lastRecord;
+    private final Object[] lastRecordReferences;
+    private boolean hasLastRecord;
 
     public PageBuilderImpl(BufferAllocator allocator, Schema schema, PageOutput output) {
         this.allocator = allocator;
@@ -36,15 +49,27 @@ public class PageBuilderImpl extends PageBuilder {
         this.columnOffsets = PageFormat.columnOffsets(schema);
         this.nullBitSet = new byte[PageFormat.nullBitSetSize(schema)];
         Arrays.fill(nullBitSet, (byte) -1);
-        this.row = Row.newRow(schema);
         this.fixedRecordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
-        this.nextVariableLengthDataOffset = fixedRecordSize;
+
+        this.columnKinds = new byte[schema.getColumnCount()];
+        for (Column column : schema.getColumns()) {
+            columnKinds[column.getIndex()] = kindOf(column.getType());
+        }
+        this.writtenColumns = new long[(schema.getColumnCount() + 63) / 64];
+        this.allColumnsWritten = new long[writtenColumns.length];
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            allColumnsWritten[i >>> 6] |= 1L << i;
+        }
+
+        this.lastRecord = new byte[fixedRecordSize];
+        this.lastRecordReferences = new Object[schema.getColumnCount()];
+        this.hasLastRecord = false;
         newBuffer();
     }
 
     private void newBuffer() {
-        this.buffer = allocator.allocate(PageFormat.PAGE_HEADER_SIZE + fixedRecordSize);
-        this.bufferSlice = Slice.wrappedBuffer(buffer.array(), buffer.offset(), buffer.capacity());
+        this.buffer = PageImpl.allocateBuffer(allocator, PageFormat.PAGE_HEADER_SIZE + fixedRecordSize);
+        this.bufferSlice = Slice.wrappedBuffer(buffer);
         this.count = 0;
         this.position = PageFormat.PAGE_HEADER_SIZE;
         this.stringReferences = new ArrayList<>();
@@ -61,38 +86,44 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void setNull(int columnIndex) {
-        row.setNull(columnIndex);
+        writeNull(columnIndex);
+        markWritten(columnIndex);
     }
 
     public void setBoolean(Column column, boolean value) {
-        // TODO check type?
         setBoolean(column.getIndex(), value);
     }
 
     public void setBoolean(int columnIndex, boolean value) {
-        row.setBoolean(columnIndex, value);
+        checkKind(columnIndex, BOOLEAN);
+        bufferSlice.setByte(getOffset(columnIndex), value ? (byte) 1 : (byte) 0);
+        clearNull(columnIndex);
+        markWritten(columnIndex);
     }
 
     public void setLong(Column column, long value) {
-        // TODO check type?
         setLong(column.getIndex(), value);
     }
 
     public void setLong(int columnIndex, long value) {
-        row.setLong(columnIndex, value);
+        checkKind(columnIndex, LONG);
+        bufferSlice.setLong(getOffset(columnIndex), value);
+        clearNull(columnIndex);
+        markWritten(columnIndex);
     }
 
     public void setDouble(Column column, double value) {
-        // TODO check type?
         setDouble(column.getIndex(), value);
     }
 
     public void setDouble(int columnIndex, double value) {
-        row.setDouble(columnIndex, value);
+        checkKind(columnIndex, DOUBLE);
+        bufferSlice.setDouble(getOffset(columnIndex), value);
+        clearNull(columnIndex);
+        markWritten(columnIndex);
     }
 
     public void setString(Column column, String value) {
-        // TODO check type?
         setString(column.getIndex(), value);
     }
 
@@ -100,7 +131,9 @@ public class PageBuilderImpl extends PageBuilder {
         if (value == null) {
             setNull(columnIndex);
         } else {
-            row.setString(columnIndex, value);
+            checkKind(columnIndex, STRING);
+            writeString(columnIndex, value);
+            markWritten(columnIndex);
         }
     }
 
@@ -113,7 +146,6 @@ public class PageBuilderImpl extends PageBuilder {
 
     @Override
     public void setJson(final Column column, final JsonValue value) {
-        // TODO check type?
         setJson(column.getIndex(), value);
     }
 
@@ -129,19 +161,19 @@ public class PageBuilderImpl extends PageBuilder {
         if (value == null) {
             setNull(columnIndex);
         } else {
-            row.setJson(columnIndex, value);
+            checkKind(columnIndex, JSON);
+            writeJson(columnIndex, value);
+            markWritten(columnIndex);
         }
     }
 
     @Deprecated
     @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1292
     public void setTimestamp(Column column, org.embulk.spi.time.Timestamp value) {
-        // TODO check type?
         this.setTimestamp(column, value.getInstant());
     }
 
     public void setTimestamp(final Column column, final Instant value) {
-        // TODO check type?
         this.setTimestamp(column.getIndex(), value);
     }
 
@@ -155,7 +187,12 @@ public class PageBuilderImpl extends PageBuilder {
         if (value == null) {
             setNull(columnIndex);
         } else {
-            row.setTimestamp(columnIndex, value);
+            checkKind(columnIndex, TIMESTAMP);
+            final int offset = getOffset(columnIndex);
+            bufferSlice.setLong(offset, value.getEpochSecond());
+            bufferSlice.setInt(offset + 8, value.getNano());
+            clearNull(columnIndex);
+            markWritten(columnIndex);
         }
     }
 
@@ -167,70 +204,125 @@ public class PageBuilderImpl extends PageBuilder {
         nullBitSet[columnIndex >>> 3] &= ~(1 << (columnIndex & 7));
     }
 
-    private void writeBoolean(int columnIndex, boolean value) {
-        bufferSlice.setByte(getOffset(columnIndex), value ? (byte) 1 : (byte) 0);
-        clearNull(columnIndex);
+    private boolean isNullInRecord(int columnIndex) {
+        return (nullBitSet[columnIndex >>> 3] & (1 << (columnIndex & 7))) != 0;
     }
 
-    private void writeLong(int columnIndex, long value) {
-        bufferSlice.setLong(getOffset(columnIndex), value);
-        clearNull(columnIndex);
+    private void markWritten(int columnIndex) {
+        writtenColumns[columnIndex >>> 6] |= 1L << columnIndex;
     }
 
-    private void writeDouble(int columnIndex, double value) {
-        bufferSlice.setDouble(getOffset(columnIndex), value);
-        clearNull(columnIndex);
+    private boolean isWritten(int columnIndex) {
+        return (writtenColumns[columnIndex >>> 6] & (1L << columnIndex)) != 0;
     }
 
     private void writeString(int columnIndex, String value) {
-        int index = stringReferences.size();
-        stringReferences.add(value);
-        bufferSlice.setInt(getOffset(columnIndex), index);
-        referenceSize += value.length() * 2 + 4;  // assuming size of char = size of byte * 2 + length
+        final int offset = getOffset(columnIndex);
+        if (isWritten(columnIndex) && !isNullInRecord(columnIndex)) {
+            // Set twice in a record. The reference is overwritten.
+            final String previous = stringReferences.set(bufferSlice.getInt(offset), value);
+            referenceSize += (value.length() - previous.length()) * 2;
+        } else {
+            int index = stringReferences.size();
+            stringReferences.add(value);
+            bufferSlice.setInt(offset, index);
+            referenceSize += value.length() * 2 + 4;  // assuming size of char = size of byte * 2 + length
+        }
         clearNull(columnIndex);
     }
 
     private void writeJson(final int columnIndex, final JsonValue value) {
-        final int index = this.jsonValueReferences.size();
-        this.jsonValueReferences.add(value);
-        this.bufferSlice.setInt(this.getOffset(columnIndex), index);
-        this.referenceSize += value.presumeReferenceSizeInBytes();
+        final int offset = this.getOffset(columnIndex);
+        if (this.isWritten(columnIndex) && !this.isNullInRecord(columnIndex)) {
+            // Set twice in a record. The reference is overwritten.
+            final JsonValue previous = this.jsonValueReferences.set(this.bufferSlice.getInt(offset), value);
+            this.referenceSize += value.presumeReferenceSizeInBytes() - previous.presumeReferenceSizeInBytes();
+        } else {
+            final int index = this.jsonValueReferences.size();
+            this.jsonValueReferences.add(value);
+            this.bufferSlice.setInt(offset, index);
+            this.referenceSize += value.presumeReferenceSizeInBytes();
+        }
         this.clearNull(columnIndex);
     }
 
-    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1292
-    private void writeTimestamp(int columnIndex, Instant value) {
-        int offset = getOffset(columnIndex);
-        bufferSlice.setLong(offset, value.getEpochSecond());
-        bufferSlice.setInt(offset + 8, value.getNano());
-        clearNull(columnIndex);
-    }
-
     private int getOffset(int columnIndex) {
         return position + columnOffsets[columnIndex];
     }
 
     public void addRecord() {
-        // record
-        row.write(this);
+        if (!Arrays.equals(writtenColumns, allColumnsWritten)) {
+            takeOverUnwrittenColumns();
+        }
 
         // record header
-        bufferSlice.setInt(position, nextVariableLengthDataOffset);  // nextVariableLengthDataOffset means record size
+        bufferSlice.setInt(position, fixedRecordSize);  // fixedRecordSize means record size
         bufferSlice.setBytes(position + 4, nullBitSet);
         count++;
 
-        this.position += nextVariableLengthDataOffset;
-        this.nextVariableLengthDataOffset = fixedRecordSize;
+        this.position += fixedRecordSize;
         Arrays.fill(nullBitSet, (byte) -1);
+        Arrays.fill(writtenColumns, 0L);
 
         // flush if next record will not fit in this buffer
-        if (buffer.capacity() < position + nextVariableLengthDataOffset + referenceSize) {
+        if (buffer.capacity() < position + fixedRecordSize + referenceSize) {
             flush();
         }
     }
 
+    private void takeOverUnwrittenColumns() {
+        for (int i = 0; i < columnKinds.length; i++) {
+            if (isWritten(i)) {
+                continue;
+            }
+            if (count > 0) {
+                // From the previous record in this page. References are shared in the page.
+                final int previous = position - fixedRecordSize;
+                if ((bufferSlice.getByte(previous + 4 + (i >>> 3)) & (1 << (i & 7))) == 0) {
+                    final int size = STORAGE_SIZES[columnKinds[i]];
+                    bufferSlice.getBytes(previous + columnOffsets[i], scratch, 0, size);
+                    bufferSlice.setBytes(getOffset(i), scratch, 0, size);
+                    clearNull(i);
+                }
+            } else if (hasLastRecord) {
+                // From the last record in the previous page.
+                if ((lastRecord[4 + (i >>> 3)] & (1 << (i & 7))) == 0) {
+                    if (columnKinds[i] == STRING) {
+                        writeString(i, (String) lastRecordReferences[i]);
+                    } else if (columnKinds[i] == JSON) {
+                        writeJson(i, (JsonValue) lastRecordReferences[i]);
+                    } else {
+                        bufferSlice.setBytes(getOffset(i), lastRecord, columnOffsets[i], STORAGE_SIZES[columnKinds[i]]);
+                        clearNull(i);
+                    }
+                }
+            } else if (columnKinds[i] != STRING && columnKinds[i] != JSON && columnKinds[i] != TIMESTAMP) {
+                // Zero as a default value of the primitive types. The buffer may be reused from a pool.
+                bufferSlice.setBytes(getOffset(i), ZEROS, 0, STORAGE_SIZES[columnKinds[i]]);
+                clearNull(i);
+            }
+        }
+    }
+
+    private void saveLastRecord() {
+        final int last = position - fixedRecordSize;
+        bufferSlice.getBytes(last, lastRecord, 0, fixedRecordSize);
+        for (int i = 0; i < columnKinds.length; i++) {
+            if ((lastRecord[4 + (i >>> 3)] & (1 << (i & 7))) != 0) {
+                lastRecordReferences[i] = null;
+            } else if (columnKinds[i] == STRING) {
+                lastRecordReferences[i] = stringReferences.get(bufferSlice.getInt(last + columnOffsets[i]));
+            } else if (columnKinds[i] == JSON) {
+                lastRecordReferences[i] = jsonValueReferences.get(bufferSlice.getInt(last + columnOffsets[i]));
+            }
+        }
+        hasLastRecord = true;
+    }
+
     private void doFlush() {
         if (buffer != null && count > 0) {
+            saveLastRecord();
+
             // write page header
             bufferSlice.setInt(0, count);
             buffer.limit(position);
@@ -246,431 +338,112 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void flush() {
+        final Buffer pendingBuffer = buffer;
+        final int pendingPosition = position;
+        final List<String> pendingStrings = stringReferences;
+        final List<JsonValue> pendingJsons = jsonValueReferences;
+        final boolean hasPendingValues = count > 0 && hasWrittenColumns();
+        final byte[] pending = hasPendingValues ? new byte[fixedRecordSize] : null;
+        if (hasPendingValues) {
+            // Values set without addRecord yet are carried to the next page.
+            bufferSlice.getBytes(pendingPosition, pending, 0, fixedRecordSize);
+        }
+
         doFlush();
         if (buffer == null) {
             newBuffer();
         }
-    }
-
-    public void finish() {
-        doFlush();
-        output.finish();
-    }
 
-    @Override
-    public void close() {
-        if (buffer != null) {
-            buffer.release();
-            buffer = null;
-            bufferSlice = null;
+        if (hasPendingValues && buffer != pendingBuffer) {
+            restorePendingValues(pending, pendingStrings, pendingJsons);
         }
-        output.close();
     }
 
-    /**
-     * Row is a container to stage values before adding into reference lists such as |stringReferences|.
-     *
-     * |Row| works as a buffer against plugins that may add values incorrectly without |PageBuilderImpl#addRecord|.
-     * It accepts just one value per column while |PageBuilderImpl| can double-store values regardless of columns.
-     * Double-stored values are overwritten.
-     */
-    private static class Row {
-        private static Row newRow(Schema schema) {
-            ColumnValue[] values = new ColumnValue[schema.getColumnCount()];
-            for (Column column : schema.getColumns()) {
-                values[column.getIndex()] = newValue(column);
+    private boolean hasWrittenColumns() {
+        for (long word : writtenColumns) {
+            if (word != 0L) {
+                return true;
             }
-            return new Row(values);
         }
+        return false;
+    }
 
-        private static ColumnValue newValue(Column column) {
-            Type type = column.getType();
-            if (type.equals(Types.BOOLEAN)) {
-                return new BooleanColumnValue(column);
-            } else if (type.equals(Types.DOUBLE)) {
-                return new DoubleColumnValue(column);
-            } else if (type.equals(Types.LONG)) {
-                return new LongColumnValue(column);
-            } else if (type.equals(Types.STRING)) {
-                return new StringColumnValue(column);
-            } else if (type.equals(Types.JSON)) {
-                return new JsonColumnValue(column);
-            } else if (type.equals(Types.TIMESTAMP)) {
-                return new TimestampColumnValue(column);
-            } else {
-                throw new IllegalStateException("Unsupported type " + type.getName());
+    private void restorePendingValues(byte[] pending, List<String> pendingStrings, List<JsonValue> pendingJsons) {
+        final Slice pendingSlice = Slice.wrappedBuffer(pending, 0, pending.length);
+        final long[] written = writtenColumns.clone();
+        Arrays.fill(writtenColumns, 0L);
+        for (int i = 0; i < columnKinds.length; i++) {
+            if ((written[i >>> 6] & (1L << i)) == 0) {
+                continue;
             }
-        }
-
-        private final ColumnValue[] values;
-
-        private Row(ColumnValue[] values) {
-            this.values = values;
-        }
-
-        private void setNull(int columnIndex) {
-            values[columnIndex].setNull();
-        }
-
-        private void setBoolean(int columnIndex, boolean value) {
-            values[columnIndex].setBoolean(value);
-        }
-
-        private void setLong(int columnIndex, long value) {
-            values[columnIndex].setLong(value);
-        }
-
-        private void setDouble(int columnIndex, double value) {
-            values[columnIndex].setDouble(value);
-        }
-
-        private void setString(int columnIndex, String value) {
-            values[columnIndex].setString(value);
-        }
-
-        private void setJson(int columnIndex, final JsonValue value) {
-            values[columnIndex].setJson(value);
-        }
-
-        private void setTimestamp(int columnIndex, Instant value) {
-            values[columnIndex].setTimestamp(value);
-        }
-
-        private void write(PageBuilderImpl pageBuilder) {
-            for (ColumnValue v : values) {
-                v.write(pageBuilder);
+            if (isNullInRecord(i)) {
+                markWritten(i);
+                continue;
             }
-        }
-    }
-
-    private interface ColumnValue {
-        void setBoolean(boolean value);
-
-        void setLong(long value);
-
-        void setDouble(double value);
-
-        void setString(String value);
-
-        void setJson(JsonValue value);
-
-        void setTimestamp(Instant value);
-
-        void setNull();
-
-        void write(PageBuilderImpl pageBuilder);
-    }
-
-    private abstract static class AbstractColumnValue implements ColumnValue {
-        protected final Column column;
-        protected boolean isNull;
-
-        protected AbstractColumnValue(Column column) {
-            this.column = column;
-        }
-
-        public void setBoolean(boolean value) {
-            throw new IllegalStateException("Not reach here");
-        }
-
-        public void setLong(long value) {
-            throw new IllegalStateException("Not reach here");
-        }
-
-        public void setDouble(double value) {
-            throw new IllegalStateException("Not reach here");
-        }
-
-        public void setString(String value) {
-            throw new IllegalStateException("Not reach here");
-        }
-
-        public void setJson(final JsonValue value) {
-            throw new IllegalStateException("Not reach here");
-        }
-
-        public void setTimestamp(Instant value) {
-            throw new IllegalStateException("Not reach here");
-        }
-
-        public void setNull() {
-            isNull = true;
-        }
-
-        public void write(PageBuilderImpl pageBuilder) {
-            if (!isNull) {
-                writeNotNull(pageBuilder);
+            final int index = pendingSlice.getInt(columnOffsets[i]);
+            if (columnKinds[i] == STRING) {
+                writeString(i, pendingStrings.get(index));
+            } else if (columnKinds[i] == JSON) {
+                writeJson(i, pendingJsons.get(index));
             } else {
-                pageBuilder.writeNull(column.getIndex());
+                bufferSlice.setBytes(getOffset(i), pending, columnOffsets[i], STORAGE_SIZES[columnKinds[i]]);
             }
+            markWritten(i);
         }
-
-        protected abstract void writeNotNull(PageBuilderImpl pageBuilder);
     }
 
-    private static class BooleanColumnValue extends AbstractColumnValue {
-        private boolean value;
-
-        BooleanColumnValue(Column column) {
-            super(column);
-        }
-
-        @Override
-        public void setBoolean(boolean value) {
-            this.value = value;
-            this.isNull = false;
-        }
-
-        @Override
-        public void setLong(final long value) {
-            throw new IllegalStateException("Setting a LONG value to a BOOLEAN column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setDouble(final double value) {
-            throw new IllegalStateException("Setting a DOUBLE value to a BOOLEAN column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setString(final String value) {
-            throw new IllegalStateException("Setting a STRING value to a BOOLEAN column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setJson(final JsonValue value) {
-            throw new IllegalStateException("Setting a JSON value to a BOOLEAN column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setTimestamp(final Instant value) {
-            throw new IllegalStateException("Setting a TIMESTAMP value to a BOOLEAN column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeBoolean(column.getIndex(), value);
-        }
-    }
-
-    private static class LongColumnValue extends AbstractColumnValue {
-        private long value;
-
-        LongColumnValue(Column column) {
-            super(column);
-        }
-
-        @Override
-        public void setBoolean(final boolean value) {
-            throw new IllegalStateException("Setting a BOOLEAN value to a LONG column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setLong(long value) {
-            this.value = value;
-            this.isNull = false;
-        }
-
-        @Override
-        public void setDouble(final double value) {
-            throw new IllegalStateException("Setting a DOUBLE value to a LONG column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setString(final String value) {
-            throw new IllegalStateException("Setting a STRING value to a LONG column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setJson(final JsonValue value) {
-            throw new IllegalStateException("Setting a JSON value to a LONG column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setTimestamp(final Instant value) {
-            throw new IllegalStateException("Setting a TIMESTAMP value to a LONG column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeLong(column.getIndex(), value);
-        }
-    }
-
-    private static class DoubleColumnValue extends AbstractColumnValue {
-        private double value;
-
-        DoubleColumnValue(Column column) {
-            super(column);
-        }
-
-        @Override
-        public void setBoolean(final boolean value) {
-            throw new IllegalStateException("Setting a BOOLEAN value to a DOUBLE column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setLong(final long value) {
-            throw new IllegalStateException("Setting a LONG value to a DOUBLE column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setDouble(double value) {
-            this.value = value;
-            this.isNull = false;
-        }
-
-        @Override
-        public void setString(final String value) {
-            throw new IllegalStateException("Setting a STRING value to a DOUBLE column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setJson(final JsonValue value) {
-            throw new IllegalStateException("Setting a JSON value to a DOUBLE column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setTimestamp(final Instant value) {
-            throw new IllegalStateException("Setting a TIMESTAMP value to a DOUBLE column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeDouble(column.getIndex(), value);
-        }
+    public void finish() {
+        doFlush();
+        output.finish();
     }
 
-    private static class StringColumnValue extends AbstractColumnValue {
-        private String value;
-
-        StringColumnValue(Column column) {
-            super(column);
-        }
-
-        @Override
-        public void setBoolean(final boolean value) {
-            throw new IllegalStateException("Setting a BOOLEAN value to a STRING column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setLong(final long value) {
-            throw new IllegalStateException("Setting a LONG value to a STRING column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setDouble(final double value) {
-            throw new IllegalStateException("Setting a DOUBLE value to a STRING column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setString(String value) {
-            this.value = value;
-            this.isNull = false;
-        }
-
-        @Override
-        public void setJson(final JsonValue value) {
-            throw new IllegalStateException("Setting a JSON value to a STRING column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setTimestamp(final Instant value) {
-            throw new IllegalStateException("Setting a TIMESTAMP value to a STRING column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeString(column.getIndex(), value);
+    @Override
+    public void close() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+            bufferSlice = null;
         }
+        output.close();
     }
 
-    private static class JsonColumnValue extends AbstractColumnValue {
-        private JsonValue value;
-
-        JsonColumnValue(Column column) {
-            super(column);
-        }
-
-        @Override
-        public void setBoolean(final boolean value) {
-            throw new IllegalStateException("Setting a BOOLEAN value to a JSON column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setLong(final long value) {
-            throw new IllegalStateException("Setting a LONG value to a JSON column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setDouble(final double value) {
-            throw new IllegalStateException("Setting a DOUBLE value to a JSON column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setString(final String value) {
-            throw new IllegalStateException("Setting a STRING value to a JSON column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setJson(final JsonValue value) {
-            this.value = value;
-            this.isNull = false;
-        }
-
-        @Override
-        public void setTimestamp(final Instant value) {
-            throw new IllegalStateException("Setting a TIMESTAMP value to a JSON column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeJson(column.getIndex(), value);
+    private void checkKind(int columnIndex, byte kind) {
+        if (columnKinds[columnIndex] != kind) {
+            final Column column = schema.getColumn(columnIndex);
+            throw new IllegalStateException(
+                    "Setting a " + KIND_NAMES[kind] + " value to a " + KIND_NAMES[columnKinds[columnIndex]] + " column: "
+                    + column.getName() + ", " + column.getType());
+        }
+    }
+
+    private static byte kindOf(Type type) {
+        if (type.equals(Types.BOOLEAN)) {
+            return BOOLEAN;
+        } else if (type.equals(Types.DOUBLE)) {
+            return DOUBLE;
+        } else if (type.equals(Types.LONG)) {
+            return LONG;
+        } else if (type.equals(Types.STRING)) {
+            return STRING;
+        } else if (type.equals(Types.JSON)) {
+            return JSON;
+        } else if (type.equals(Types.TIMESTAMP)) {
+            return TIMESTAMP;
+        } else {
+            throw new IllegalStateException("Unsupported type " + type.getName());
         }
     }
 
-    private static class TimestampColumnValue extends AbstractColumnValue {
-        private Instant value;
-
-        TimestampColumnValue(Column column) {
-            super(column);
-        }
-
-        @Override
-        public void setBoolean(final boolean value) {
-            throw new IllegalStateException("Setting a BOOLEAN value to a TIMESTAMP column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setLong(final long value) {
-            throw new IllegalStateException("Setting a LONG value to a TIMESTAMP column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setDouble(final double value) {
-            throw new IllegalStateException("Setting a DOUBLE value to a TIMESTAMP column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setString(final String value) {
-            throw new IllegalStateException("Setting a STRING value to a TIMESTAMP column: " + this.column.getName() + ", " + this.column.getType());
-        }
+    private static final byte BOOLEAN = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte JSON = 4;
+    private static final byte TIMESTAMP = 5;
 
-        @Override
-        public void setJson(final JsonValue value) {
-            throw new IllegalStateException("Setting a JSON value to a TIMESTAMP column: " + this.column.getName() + ", " + this.column.getType());
-        }
-
-        @Override
-        public void setTimestamp(Instant value) {
-            this.value = value;
-            this.isNull = false;
-        }
-
-        @Override
-        public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeTimestamp(column.getIndex(), value);
-        }
-    }
+    private static final String[] KIND_NAMES = { "BOOLEAN", "LONG", "DOUBLE", "STRING", "JSON", "TIMESTAMP" };
+    private static final int[] STORAGE_SIZES = { 1, 8, 8, 4, 4, 12 };
+    private static final byte[] ZEROS = new byte[12];
 
     /* TODO for variable-length types
     private void flushAndTakeOverRemaingData()
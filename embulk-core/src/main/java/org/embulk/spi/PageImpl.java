@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.embulk.exec.PooledBufferAllocator;
 import org.embulk.spi.json.JsonValue;
 import org.msgpack.value.ImmutableValue;
 import org.slf4j.Logger;
@@ -44,6 +45,16 @@ public class PageImpl extends Page {
         return new PageImpl(buffer);
     }
 
+    /**
+     * Allocates a buffer for a page. It can be on off-heap memory if the allocator is configured so.
+     */
+    static Buffer allocateBuffer(final BufferAllocator allocator, final int minimumCapacity) {
+        if (allocator instanceof PooledBufferAllocator) {
+            return ((PooledBufferAllocator) allocator).allocatePageBuffer(minimumCapacity);
+        }
+        return allocator.allocate(minimumCapacity);
+    }
+
     @Deprecated
     @Override
     public Page setStringReferences(List<String> values) {
@@ -27,7 +27,7 @@ public class PageReaderImpl extends PageReader {
 
     public static int getRecordCount(Page page) {
         Buffer pageBuffer = page.buffer();
-        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer.array(), pageBuffer.offset(), pageBuffer.capacity());
+        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer);
         return pageSlice.getInt(0);  // see page format
     }
 
@@ -36,8 +36,13 @@ public class PageReaderImpl extends PageReader {
         this.page.buffer().release();
         this.page = SENTINEL;
 
+        if (ColumnarPages.isColumnar(page)) {
+            // A row-based plugin in a chain running in the columnar layout.
+            page = ColumnarPages.toRows(schema, page, Exec.getBufferAllocator());
+        }
+
         Buffer pageBuffer = page.buffer();
-        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer.array(), pageBuffer.offset(), pageBuffer.capacity());
+        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer);
 
         pageRecordCount = pageSlice.getInt(0);  // see page format
         readCount = 0;
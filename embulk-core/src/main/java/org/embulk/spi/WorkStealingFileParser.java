@@ -0,0 +1,249 @@
+package org.embulk.spi;
+
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.BufferAccounting;
+
+/**
+ * Parses files from a {@link FileInput} in an input task, with handing off parsing of each file to another thread.
+ *
+ * <p>It runs only on a {@link org.embulk.exec.WorkStealingForkJoinPool}. A file is read ahead into buffers up to the limit.
+ * If the whole file fits in the limit, its parsing is forked so that an idle thread can steal it while the input task goes
+ * on to the next file. Otherwise, the file is parsed in the input task as usual.
+ *
+ * <p>Up to {@code maxForkedFiles} files forked are left unfinished. The input task waits for the oldest one before reading
+ * ahead another file so that buffers read ahead in the task are bounded. Buffers allocated by parsers forked are counted for
+ * the input task in {@link BufferAccounting}.
+ *
+ * <p>Pages from all the files are sent to the same {@link PageOutput} one by one. The order of records across files is not
+ * preserved. {@link PageOutput#finish()} is called only once after all the files are parsed.
+ */
+final class WorkStealingFileParser {
+    WorkStealingFileParser(
+            final Supplier<ParserPlugin> parserPluginFactory,
+            final TaskSource parserTaskSource,
+            final Schema schema,
+            final long fileBufferBytes,
+            final int maxForkedFiles) {
+        if (maxForkedFiles <= 0) {
+            throw new IllegalArgumentException("maxForkedFiles must be positive: " + maxForkedFiles);
+        }
+        this.parserPluginFactory = parserPluginFactory;
+        this.parserTaskSource = parserTaskSource;
+        this.schema = schema;
+        this.fileBufferBytes = fileBufferBytes;
+        this.maxForkedFiles = maxForkedFiles;
+    }
+
+    void run(final ParserPlugin parserPlugin, final FileInput input, final PageOutput output) {
+        final SharedPageOutput sharedOutput = new SharedPageOutput(output);
+        final ArrayDeque<ForkJoinTask<?>> forkedTasks = new ArrayDeque<>();
+
+        Throwable error = null;
+        try {
+            while (input.nextFile()) {
+                joinForkedTasks(forkedTasks, this.maxForkedFiles - 1);
+
+                final Optional<String> hint = input.hintOfCurrentInputFileNameForLogging();
+                final ArrayDeque<Buffer> readAhead = new ArrayDeque<>();
+                try {
+                    final boolean wholeFileRead = this.readAhead(input, readAhead);
+                    if (wholeFileRead) {
+                        final BufferedFileInput bufferedFile = new BufferedFileInput(readAhead, hint);
+                        readAhead.clear();
+                        final Callable<Void> parse = () -> {
+                            try (final BufferedFileInput file = bufferedFile) {
+                                this.parserPluginFactory.get().run(this.parserTaskSource, this.schema, file, sharedOutput);
+                            }
+                            return null;
+                        };
+                        forkedTasks.addLast(ForkJoinTask.adapt(BufferAccounting.propagate(parse)).fork());
+                    } else {
+                        // The file is too large to hand off. The input task parses it, continuing from the buffers read ahead.
+                        parserPlugin.run(this.parserTaskSource, this.schema, new ContinuedFileInput(readAhead, input), sharedOutput);
+                    }
+                } finally {
+                    releaseAll(readAhead);
+                }
+            }
+        } catch (final RuntimeException | Error ex) {
+            error = ex;
+        }
+
+        while (!forkedTasks.isEmpty()) {
+            try {
+                forkedTasks.removeFirst().join();
+            } catch (final RuntimeException | Error ex) {
+                if (error == null) {
+                    error = ex;
+                } else {
+                    error.addSuppressed(ex);
+                }
+            }
+        }
+
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        output.finish();
+    }
+
+    // Joins forked tasks from the oldest until at most maxPending tasks are left. Tasks already done are also joined.
+    private static void joinForkedTasks(final ArrayDeque<ForkJoinTask<?>> forkedTasks, final int maxPending) {
+        while (!forkedTasks.isEmpty() && (forkedTasks.size() > maxPending || forkedTasks.peekFirst().isDone())) {
+            forkedTasks.removeFirst().join();
+        }
+    }
+
+    // Returns true if the whole file is read within the limit.
+    private boolean readAhead(final FileInput input, final ArrayDeque<Buffer> readAhead) {
+        long bytes = 0;
+        while (bytes < this.fileBufferBytes) {
+            final Buffer buffer = input.poll();
+            if (buffer == null) {
+                return true;
+            }
+            readAhead.addLast(buffer);
+            bytes += buffer.limit();
+        }
+        return false;
+    }
+
+    private static void releaseAll(final ArrayDeque<Buffer> buffers) {
+        while (!buffers.isEmpty()) {
+            buffers.removeFirst().release();
+        }
+    }
+
+    /**
+     * Serializes pages from parsers running concurrently, and leaves {@code finish} and {@code close} to the input task.
+     */
+    private static class SharedPageOutput implements PageOutput {
+        SharedPageOutput(final PageOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public synchronized void add(final Page page) {
+            this.output.add(page);
+        }
+
+        @Override
+        public void finish() {
+            // Finished by WorkStealingFileParser after all parsers.
+        }
+
+        @Override
+        public void close() {
+            // Closed by the input task.
+        }
+
+        private final PageOutput output;
+    }
+
+    /**
+     * A single file all read ahead into buffers.
+     */
+    private static class BufferedFileInput implements FileInput {
+        BufferedFileInput(final ArrayDeque<Buffer> buffers, final Optional<String> hint) {
+            this.buffers = new ArrayDeque<>(buffers);
+            this.hint = hint;
+            this.started = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.started) {
+                releaseAll(this.buffers);
+                return false;
+            }
+            this.started = true;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            if (!this.started) {
+                throw new IllegalStateException("nextFile() must be called before poll()");
+            }
+            return this.buffers.pollFirst();
+        }
+
+        @Override
+        public void close() {
+            releaseAll(this.buffers);
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return this.hint;
+        }
+
+        private final ArrayDeque<Buffer> buffers;
+        private final Optional<String> hint;
+        private boolean started;
+    }
+
+    /**
+     * A single file which continues from buffers read ahead to the rest of the file in the original {@link FileInput}.
+     */
+    private static class ContinuedFileInput implements FileInput {
+        ContinuedFileInput(final ArrayDeque<Buffer> readAhead, final FileInput input) {
+            this.readAhead = readAhead;
+            this.input = input;
+            this.started = false;
+            this.finished = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.started) {
+                this.finished = true;
+                return false;
+            }
+            this.started = true;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            if (!this.started) {
+                throw new IllegalStateException("nextFile() must be called before poll()");
+            }
+            if (this.finished) {
+                return null;
+            }
+            if (!this.readAhead.isEmpty()) {
+                return this.readAhead.removeFirst();
+            }
+            return this.input.poll();
+        }
+
+        @Override
+        public void close() {
+            // The original FileInput is closed by the input task.
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return this.input.hintOfCurrentInputFileNameForLogging();
+        }
+
+        private final ArrayDeque<Buffer> readAhead;
+        private final FileInput input;
+        private boolean started;
+        private boolean finished;
+    }
+
+    private final Supplier<ParserPlugin> parserPluginFactory;
+    private final TaskSource parserTaskSource;
+    private final Schema schema;
+    private final long fileBufferBytes;
+    private final int maxForkedFiles;
+}
@@ -0,0 +1,76 @@
+package org.embulk.spi.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses stringified JSON directly into {@link JsonValue}, without building MessagePack {@link org.msgpack.value.Value} in
+ * the middle as {@link JsonParser} does.
+ *
+ * <p>An instance is not thread-safe. It reuses its working space over documents, and keeps object keys canonicalized so
+ * that repeated keys share the same {@link String} instance across documents. Use {@link #ofCurrentThread()} to reuse an
+ * instance in the current thread, for example, to parse every line of newline-delimited JSON.
+ *
+ * <p>Parse errors are thrown as {@link JsonParseException}.
+ */
+public final class JsonValueParser {
+    public interface Stream extends Closeable {
+        /**
+         * Parses the next JSON value in the stream.
+         *
+         * @return the parsed value, or {@code null} at the end of the stream
+         */
+        JsonValue next() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Creates a parser which canonicalizes object keys.
+     */
+    public JsonValueParser() {
+        this(true);
+    }
+
+    /**
+     * Creates a parser.
+     *
+     * @param canonicalizeKeys  {@code true} to share {@link String} instances of repeated object keys. It should be
+     *     {@code false} if object keys are rarely repeated, such as when keys are IDs.
+     */
+    public JsonValueParser(final boolean canonicalizeKeys) {
+        this.delegate = JsonValueParserDelegate.of(canonicalizeKeys);
+    }
+
+    /**
+     * Returns the parser reused in the current thread, which canonicalizes object keys.
+     */
+    public static JsonValueParser ofCurrentThread() {
+        return CURRENT.get();
+    }
+
+    public Stream open(final InputStream in) throws IOException {
+        return this.delegate.openWithOffsetInJsonPointer(in, null);
+    }
+
+    /**
+     * Opens a stream of values at the offset in JSON Pointer of every JSON value in the input.
+     */
+    public Stream openWithOffsetInJsonPointer(final InputStream in, final String offsetInJsonPointer) throws IOException {
+        return this.delegate.openWithOffsetInJsonPointer(in, offsetInJsonPointer);
+    }
+
+    public JsonValue parse(final String json) {
+        return this.delegate.parseWithOffsetInJsonPointer(json, null);
+    }
+
+    public JsonValue parseWithOffsetInJsonPointer(final String json, final String offsetInJsonPointer) {
+        return this.delegate.parseWithOffsetInJsonPointer(json, offsetInJsonPointer);
+    }
+
+    private static final ThreadLocal<JsonValueParser> CURRENT = ThreadLocal.withInitial(JsonValueParser::new);
+
+    private final JsonValueParserDelegate delegate;
+}
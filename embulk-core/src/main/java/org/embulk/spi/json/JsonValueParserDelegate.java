@@ -0,0 +1,53 @@
+package org.embulk.spi.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import org.embulk.EmbulkDependencyClassLoader;
+
+public abstract class JsonValueParserDelegate {
+    public static JsonValueParserDelegate of(final boolean canonicalizeKeys) {
+        try {
+            return CONSTRUCTOR.newInstance(canonicalizeKeys);
+        } catch (final IllegalAccessException | IllegalArgumentException | InstantiationException ex) {
+            throw new LinkageError("Dependencies for JSON are not loaded correctly: " + CLASS_NAME, ex);
+        } catch (final InvocationTargetException ex) {
+            final Throwable targetException = ex.getTargetException();
+            if (targetException instanceof RuntimeException) {
+                throw (RuntimeException) targetException;
+            } else if (targetException instanceof Error) {
+                throw (Error) targetException;
+            } else {
+                throw new RuntimeException("Unexpected Exception in creating: " + CLASS_NAME, ex);
+            }
+        }
+    }
+
+    public abstract JsonValueParser.Stream openWithOffsetInJsonPointer(final InputStream in, final String offsetInJsonPointer) throws IOException;
+
+    public abstract JsonValue parseWithOffsetInJsonPointer(final String json, final String offsetInJsonPointer);
+
+    @SuppressWarnings("unchecked")
+    private static Class<JsonValueParserDelegate> loadImplClass() {
+        try {
+            return (Class<JsonValueParserDelegate>) CLASS_LOADER.loadClass(CLASS_NAME);
+        } catch (final ClassNotFoundException ex) {
+            throw new LinkageError("Dependencies for JSON are not loaded correctly: " + CLASS_NAME, ex);
+        }
+    }
+
+    private static final ClassLoader CLASS_LOADER = EmbulkDependencyClassLoader.get();
+    private static final String CLASS_NAME = "org.embulk.deps.json.JsonValueParserDelegateImpl";
+
+    static {
+        final Class<JsonValueParserDelegate> clazz = loadImplClass();
+        try {
+            CONSTRUCTOR = clazz.getConstructor(boolean.class);
+        } catch (final NoSuchMethodException ex) {
+            throw new LinkageError("Dependencies for JSON are not loaded correctly: " + CLASS_NAME, ex);
+        }
+    }
+
+    private static final Constructor<JsonValueParserDelegate> CONSTRUCTOR;
+}
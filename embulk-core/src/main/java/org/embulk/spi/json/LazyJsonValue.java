@@ -0,0 +1,247 @@
+package org.embulk.spi.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.msgpack.value.Value;
+
+/**
+ * A {@link JsonValue} which keeps its stringified JSON, and parses it on the first access to its content.
+ *
+ * <p>It is set into a page by {@link org.embulk.spi.PageBuilder#setJson(org.embulk.spi.Column, JsonValue)} as it is, so that
+ * a page holds just the UTF-8 bytes of the JSON instead of a tree of {@link JsonValue}. {@link #toJson()} returns the
+ * original text without parsing it for plugins which pass the JSON through.
+ *
+ * <p>{@link #get(String)} is the supported entry point for plugins which read some paths of the JSON. It parses only the
+ * subtree at a JSON Pointer. A plugin checks a value from
+ * {@link org.embulk.spi.PageReader#getJsonValue(org.embulk.spi.Column)} with {@code instanceof LazyJsonValue}, and reads the
+ * paths through {@link #get(String)} if it is. Otherwise, the value is already parsed.
+ *
+ * <pre>{@code
+ * final JsonValue value = pageReader.getJsonValue(column);
+ * if (value instanceof LazyJsonValue) {
+ *     final Optional<JsonValue> id = ((LazyJsonValue) value).get("/payload/user/id");
+ *     ...
+ * } else {
+ *     final JsonValue id = value.asJsonObject().get("payload").asJsonObject().get("user").asJsonObject().get("id");
+ *     ...
+ * }
+ * }</pre>
+ *
+ * <p>Any other access parses the whole JSON once, and delegates to the parsed {@link JsonValue}. An invalid JSON throws
+ * {@link JsonParseException} at the first access, not when it is created. Note that it is not an instance of the class of
+ * the parsed value, such as {@link JsonObject}. Use {@link #isJsonObject()} and {@link #asJsonObject()} instead of
+ * {@code instanceof JsonObject} and casting.
+ */
+public final class LazyJsonValue implements JsonValue {
+    private LazyJsonValue(final byte[] json) {
+        this.json = json;
+        this.parsed = null;
+    }
+
+    /**
+     * Creates a lazy value of the stringified JSON in UTF-8. The byte array is not copied.
+     */
+    public static LazyJsonValue ofUtf8Bytes(final byte[] json) {
+        return new LazyJsonValue(json);
+    }
+
+    /**
+     * Creates a lazy value of the stringified JSON.
+     */
+    public static LazyJsonValue of(final String json) {
+        return new LazyJsonValue(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the parsed value of the whole JSON.
+     */
+    public JsonValue get() {
+        JsonValue value = this.parsed;
+        if (value == null) {
+            value = this.parseAt(null).orElseThrow(() -> new JsonParseException("Unable to parse empty string"));
+            this.parsed = value;  // Parsed twice at worst in a race.
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value at the JSON Pointer, with building only the subtree at the pointer.
+     *
+     * <p>It is the supported entry point to read a part of the JSON. It does not parse the whole JSON, nor cache the
+     * subtree. It builds the subtree again for each call.
+     *
+     * @param jsonPointer  the JSON Pointer, such as {@code "/payload/user/id"}
+     * @return the value at the pointer, or empty if the pointer does not match
+     */
+    public Optional<JsonValue> get(final String jsonPointer) {
+        if (jsonPointer.isEmpty()) {
+            return Optional.of(this.get());
+        }
+        return this.parseAt(jsonPointer);
+    }
+
+    /**
+     * Returns {@code true} if the JSON has been parsed as a whole.
+     */
+    public boolean isParsed() {
+        return this.parsed != null;
+    }
+
+    @Override
+    public EntityType getEntityType() {
+        if (this.parsed == null) {
+            // The type of a container or a literal is known from its first character without parsing the whole JSON.
+            for (final byte b : this.json) {
+                switch (b) {
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                    case '\n':
+                        continue;
+                    case '{':
+                        return EntityType.OBJECT;
+                    case '[':
+                        return EntityType.ARRAY;
+                    case '"':
+                        return EntityType.STRING;
+                    case 't':
+                    case 'f':
+                        return EntityType.BOOLEAN;
+                    case 'n':
+                        return EntityType.NULL;
+                    default:
+                        // A number needs to be parsed whether it is a long or a double.
+                        return this.get().getEntityType();
+                }
+            }
+        }
+        return this.get().getEntityType();
+    }
+
+    @Override
+    public boolean isJsonNull() {
+        return this.getEntityType() == EntityType.NULL;
+    }
+
+    @Override
+    public boolean isJsonBoolean() {
+        return this.getEntityType() == EntityType.BOOLEAN;
+    }
+
+    @Override
+    public boolean isJsonLong() {
+        return this.getEntityType() == EntityType.LONG;
+    }
+
+    @Override
+    public boolean isJsonDouble() {
+        return this.getEntityType() == EntityType.DOUBLE;
+    }
+
+    @Override
+    public boolean isJsonString() {
+        return this.getEntityType() == EntityType.STRING;
+    }
+
+    @Override
+    public boolean isJsonArray() {
+        return this.getEntityType() == EntityType.ARRAY;
+    }
+
+    @Override
+    public boolean isJsonObject() {
+        return this.getEntityType() == EntityType.OBJECT;
+    }
+
+    @Override
+    public JsonNull asJsonNull() {
+        return this.get().asJsonNull();
+    }
+
+    @Override
+    public JsonBoolean asJsonBoolean() {
+        return this.get().asJsonBoolean();
+    }
+
+    @Override
+    public JsonLong asJsonLong() {
+        return this.get().asJsonLong();
+    }
+
+    @Override
+    public JsonDouble asJsonDouble() {
+        return this.get().asJsonDouble();
+    }
+
+    @Override
+    public JsonString asJsonString() {
+        return this.get().asJsonString();
+    }
+
+    @Override
+    public JsonArray asJsonArray() {
+        return this.get().asJsonArray();
+    }
+
+    @Override
+    public JsonObject asJsonObject() {
+        return this.get().asJsonObject();
+    }
+
+    /**
+     * Returns the size of the UTF-8 bytes, not of the parsed value, as a page holds only the bytes.
+     */
+    @Override
+    public int presumeReferenceSizeInBytes() {
+        return this.json.length + 16;
+    }
+
+    /**
+     * Returns the original stringified JSON without parsing it. It may differ from {@code get().toJson()} in whitespaces
+     * and escapes.
+     */
+    @Override
+    public String toJson() {
+        return new String(this.json, StandardCharsets.UTF_8);
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("deprecation")
+    public Value toMsgpack() {
+        return this.get().toMsgpack();
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (otherObject instanceof LazyJsonValue) {
+            return this.get().equals(((LazyJsonValue) otherObject).get());
+        }
+        return this.get().equals(otherObject);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.get().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.toJson();
+    }
+
+    private Optional<JsonValue> parseAt(final String jsonPointer) {
+        try (final JsonValueParser.Stream stream = JsonValueParser.ofCurrentThread().openWithOffsetInJsonPointer(
+                new ByteArrayInputStream(this.json), jsonPointer)) {
+            return Optional.ofNullable(stream.next());
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);  // Never happens for a byte array.
+        }
+    }
+
+    private final byte[] json;
+    private volatile JsonValue parsed;
+}
@@ -0,0 +1,382 @@
+package org.embulk.spi.time;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses timestamps of a typical fixed-width strptime pattern, such as {@code "%Y-%m-%d %H:%M:%S"}, without the general
+ * formatter.
+ *
+ * <p>A pattern is compiled into a sequence of fixed-width digit fields and literals. {@code %Y}, {@code %m}, {@code %d},
+ * {@code %H}, {@code %M}, {@code %S}, {@code %F}, {@code %T}, {@code %L}, {@code %N}, {@code %z}, and {@code %%} are
+ * supported. {@code %z} is accepted only in {@code +HHMM} and {@code +HH:MM}. The default zone must be UTC or a fixed offset.
+ * Other patterns are not compiled.
+ *
+ * <p>{@link #parse(String)} returns {@code null}, not throwing, for any text which it does not match exactly, or whose fields
+ * are out of the usual ranges, such as a leap second. The caller parses such a text with the general formatter so that the
+ * result is the same as the general formatter in any case.
+ *
+ * <p>The epoch day of the last date parsed is cached so that sorted timestamps do not compute the same epoch day again.
+ *
+ * <p>Compiled patterns are cached by the pattern and the default zone. An instance is thread-safe.
+ */
+final class CompiledTimestampPattern {
+    private CompiledTimestampPattern(final int[] fields, final String[] literals, final int fixedOffsetSeconds) {
+        this.fields = fields;
+        this.literals = literals;
+        this.fixedOffsetSeconds = fixedOffsetSeconds;
+        this.lastDate = new LastDate(-1, 0L);
+    }
+
+    /**
+     * Returns the compiled pattern from the cache, or compiles it.
+     *
+     * @param pattern  the pattern of TimestampParser, optionally prefixed with {@code "ruby:"}
+     * @param defaultZone  the default zone, or {@code null} for UTC
+     * @return the compiled pattern, or empty if the pattern cannot be compiled
+     */
+    static Optional<CompiledTimestampPattern> of(final String pattern, final String defaultZone) {
+        final Key key = new Key(pattern, defaultZone);
+        final Optional<CompiledTimestampPattern> cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Optional<CompiledTimestampPattern> compiled = compile(pattern, defaultZone);
+        if (CACHE.size() < MAX_CACHED_PATTERNS) {
+            CACHE.putIfAbsent(key, compiled);
+        }
+        return compiled;
+    }
+
+    static Optional<CompiledTimestampPattern> compile(final String pattern, final String defaultZone) {
+        final int offset = parseFixedZone(defaultZone);
+        if (offset == INVALID) {
+            return Optional.empty();
+        }
+
+        final String strptime;
+        if (pattern.startsWith("ruby:")) {
+            strptime = pattern.substring(5);
+        } else if (pattern.startsWith("java:")) {
+            return Optional.empty();
+        } else {
+            strptime = pattern;
+        }
+
+        final List<Integer> fields = new ArrayList<>();
+        final List<String> literals = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int seen = 0;
+        for (int i = 0; i < strptime.length(); i++) {
+            final char c = strptime.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i + 1 >= strptime.length()) {
+                return Optional.empty();
+            }
+            final char directive = strptime.charAt(++i);
+            final int[] expanded;
+            switch (directive) {
+                case '%':
+                    literal.append('%');
+                    continue;
+                case 'Y':
+                    expanded = new int[] { YEAR };
+                    break;
+                case 'm':
+                    expanded = new int[] { MONTH };
+                    break;
+                case 'd':
+                    expanded = new int[] { DAY };
+                    break;
+                case 'H':
+                    expanded = new int[] { HOUR };
+                    break;
+                case 'M':
+                    expanded = new int[] { MINUTE };
+                    break;
+                case 'S':
+                    expanded = new int[] { SECOND };
+                    break;
+                case 'L':
+                case 'N':
+                    expanded = new int[] { FRACTION };
+                    break;
+                case 'z':
+                    expanded = new int[] { ZONE };
+                    break;
+                case 'F':
+                    expanded = new int[] { YEAR, MONTH, DAY };
+                    break;
+                case 'T':
+                    expanded = new int[] { HOUR, MINUTE, SECOND };
+                    break;
+                default:
+                    return Optional.empty();
+            }
+            for (int j = 0; j < expanded.length; j++) {
+                final int field = expanded[j];
+                if ((seen & (1 << field)) != 0) {
+                    return Optional.empty();  // The general formatter decides which one wins.
+                }
+                seen |= 1 << field;
+                literals.add(literal.toString());
+                literal = new StringBuilder();
+                fields.add(field);
+                if (j + 1 < expanded.length) {
+                    literal.append(directive == 'F' ? '-' : ':');
+                }
+            }
+        }
+        literals.add(literal.toString());
+
+        final int required = (1 << YEAR) | (1 << MONTH) | (1 << DAY) | (1 << HOUR) | (1 << MINUTE) | (1 << SECOND);
+        if ((seen & required) != required) {
+            return Optional.empty();
+        }
+
+        final int[] fieldArray = new int[fields.size()];
+        for (int i = 0; i < fieldArray.length; i++) {
+            fieldArray[i] = fields.get(i);
+        }
+        return Optional.of(new CompiledTimestampPattern(fieldArray, literals.toArray(new String[0]), offset));
+    }
+
+    /**
+     * Parses the text.
+     *
+     * @return the instant, or {@code null} if the text should be parsed by the general formatter
+     */
+    Instant parse(final String text) {
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nano = 0;
+        int offset = this.fixedOffsetSeconds;
+
+        int position = 0;
+        final int length = text.length();
+        for (int i = 0; i < this.fields.length; i++) {
+            final String literal = this.literals[i];
+            if (!text.startsWith(literal, position)) {
+                return null;
+            }
+            position += literal.length();
+
+            switch (this.fields[i]) {
+                case YEAR:
+                    year = digits(text, position, 4);
+                    position += 4;
+                    break;
+                case MONTH:
+                    month = digits(text, position, 2);
+                    position += 2;
+                    break;
+                case DAY:
+                    day = digits(text, position, 2);
+                    position += 2;
+                    break;
+                case HOUR:
+                    hour = digits(text, position, 2);
+                    position += 2;
+                    break;
+                case MINUTE:
+                    minute = digits(text, position, 2);
+                    position += 2;
+                    break;
+                case SECOND:
+                    second = digits(text, position, 2);
+                    position += 2;
+                    break;
+                case FRACTION: {
+                    int count = 0;
+                    nano = 0;
+                    while (position + count < length && isDigit(text.charAt(position + count))) {
+                        if (count >= 9) {
+                            return null;
+                        }
+                        nano = nano * 10 + (text.charAt(position + count) - '0');
+                        count++;
+                    }
+                    if (count == 0) {
+                        return null;
+                    }
+                    nano *= POWERS_OF_TEN[9 - count];
+                    position += count;
+                    break;
+                }
+                case ZONE: {
+                    if (position + 5 > length) {
+                        return null;
+                    }
+                    final char sign = text.charAt(position);
+                    if (sign != '+' && sign != '-') {
+                        return null;
+                    }
+                    final int zoneHour = digits(text, position + 1, 2);
+                    final int colon = (position + 3 < length && text.charAt(position + 3) == ':') ? 1 : 0;
+                    final int zoneMinute = digits(text, position + 3 + colon, 2);
+                    if (zoneHour < 0 || zoneHour > 23 || zoneMinute < 0 || zoneMinute > 59) {
+                        return null;
+                    }
+                    offset = (sign == '-' ? -1 : 1) * (zoneHour * 3600 + zoneMinute * 60);
+                    position += 5 + colon;
+                    break;
+                }
+                default:
+                    return null;
+            }
+        }
+        final String lastLiteral = this.literals[this.fields.length];
+        if (position + lastLiteral.length() != length || !text.startsWith(lastLiteral, position)) {
+            return null;
+        }
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        final int packedDate = (year * 100 + month) * 100 + day;
+        LastDate last = this.lastDate;
+        if (last.packedDate != packedDate) {
+            last = new LastDate(packedDate, epochDay(year, month, day));
+            this.lastDate = last;  // The holder is immutable so that it is safely replaced without synchronization.
+        }
+        return Instant.ofEpochSecond(last.epochDay * 86400L + hour * 3600 + minute * 60 + second - offset, nano);
+    }
+
+    // Returns a negative value if the characters are not all digits.
+    private static int digits(final String text, final int position, final int count) {
+        if (position + count > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(final char c) {
+        return '0' <= c && c <= '9';
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // The same as LocalDate#toEpochDay() without creating LocalDate.
+    private static long epochDay(final int year, final int month, final int day) {
+        long total = 365L * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!(((year % 4 == 0 && year % 100 != 0) || year % 400 == 0))) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    // Returns the offset in seconds of UTC or a fixed offset such as "+09:00", or INVALID for any other zone.
+    private static int parseFixedZone(final String zone) {
+        if (zone == null || zone.equals("UTC") || zone.equals("Z")) {
+            return 0;
+        }
+        final int length = zone.length();
+        if ((length != 5 && length != 6) || (zone.charAt(0) != '+' && zone.charAt(0) != '-')) {
+            return INVALID;
+        }
+        final int hour = digits(zone, 1, 2);
+        final int minute = (length == 6) ? (zone.charAt(3) == ':' ? digits(zone, 4, 2) : -1) : digits(zone, 3, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return INVALID;
+        }
+        return (zone.charAt(0) == '-' ? -1 : 1) * (hour * 3600 + minute * 60);
+    }
+
+    private static final class LastDate {
+        LastDate(final int packedDate, final long epochDay) {
+            this.packedDate = packedDate;
+            this.epochDay = epochDay;
+        }
+
+        private final int packedDate;
+        private final long epochDay;
+    }
+
+    private static final class Key {
+        Key(final String pattern, final String zone) {
+            this.pattern = pattern;
+            this.zone = zone;
+        }
+
+        @Override
+        public boolean equals(final Object otherObject) {
+            if (!(otherObject instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) otherObject;
+            return this.pattern.equals(other.pattern) && Objects.equals(this.zone, other.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.pattern, this.zone);
+        }
+
+        private final String pattern;
+        private final String zone;
+    }
+
+    private static final int YEAR = 0;
+    private static final int MONTH = 1;
+    private static final int DAY = 2;
+    private static final int HOUR = 3;
+    private static final int MINUTE = 4;
+    private static final int SECOND = 5;
+    private static final int FRACTION = 6;
+    private static final int ZONE = 7;
+
+    private static final int INVALID = Integer.MIN_VALUE;
+
+    private static final int[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000 };
+
+    private static final long DAYS_0000_TO_1970 = (146097L * 5L) - (30L * 365L + 7L);
+
+    private static final int MAX_CACHED_PATTERNS = 1024;
+
+    private static final ConcurrentHashMap<Key, Optional<CompiledTimestampPattern>> CACHE = new ConcurrentHashMap<>();
+
+    private final int[] fields;
+    private final String[] literals;  // literals[i] precedes fields[i]. The last one follows the last field.
+    private final int fixedOffsetSeconds;
+
+    private LastDate lastDate;
+}
@@ -9,6 +9,7 @@ import org.embulk.config.ConfigDefault;
 public class TimestampParser {
     private TimestampParser(final String formatString, final String defaultZoneIdString, final String defaultDateString) {
         this.delegate = TimestampFormatterDelegate.of(formatString, utcToNull(formatString, defaultZoneIdString), defaultDateString);
+        this.compiled = CompiledTimestampPattern.of(formatString, defaultZoneIdString).orElse(null);
         this.defaultZoneIdString = defaultZoneIdString;
     }
 
@@ -54,6 +55,12 @@ public class TimestampParser {
 
     @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1292
     public final Timestamp parse(final String text) throws TimestampParseException {
+        if (this.compiled != null) {
+            final Instant instant = this.compiled.parse(text);
+            if (instant != null) {
+                return Timestamp.ofInstant(instant);
+            }
+        }
         final Instant instant;
         try {
             instant = this.delegate.parse(text);
@@ -63,6 +70,28 @@ public class TimestampParser {
         return Timestamp.ofInstant(instant);
     }
 
+    /**
+     * Parses the text without throwing an exception for an invalid text.
+     *
+     * <p>A text of a typical fixed-width pattern, such as {@code "%Y-%m-%d %H:%M:%S"}, is parsed by a compiled pattern
+     * without the general formatter.
+     *
+     * @return the instant, or {@code null} if the text is invalid
+     */
+    public final Instant parseInstantOrNull(final String text) {
+        if (this.compiled != null) {
+            final Instant instant = this.compiled.parse(text);
+            if (instant != null) {
+                return instant;
+            }
+        }
+        try {
+            return this.delegate.parse(text);
+        } catch (final DateTimeException ex) {
+            return null;
+        }
+    }
+
     private static String utcToNull(final String formatString, final String defaultZoneIdString) {
         if (formatString.startsWith("java:") || formatString.startsWith("ruby:")) {
             if (defaultZoneIdString == null || defaultZoneIdString.equals("UTC")) {
@@ -73,6 +102,7 @@ public class TimestampParser {
     }
 
     private final TimestampFormatterDelegate delegate;
+    private final CompiledTimestampPattern compiled;  // null if the pattern is not compiled.
 
     private final String defaultZoneIdString;  // Saved only for deprecated #getTimeZone().
 }
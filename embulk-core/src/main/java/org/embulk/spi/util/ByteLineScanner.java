@@ -0,0 +1,352 @@
+package org.embulk.spi.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.embulk.exec.Slice;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DirectBuffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * Reads lines from {@link FileInput} byte by byte, for charsets in which CR and LF are never a part of other characters.
+ *
+ * <p>It finds line delimiters in {@link Buffer}s eight bytes at a time, and decodes each line in one call. A line spanning
+ * buffers is copied into a carry buffer. It returns the same lines as {@link LineReader}, or {@link java.io.BufferedReader}
+ * if no line delimiter is specified.
+ *
+ * This class is not thread-safe.
+ */
+@Deprecated  // Externalized to embulk-util-text
+final class ByteLineScanner implements AutoCloseable {
+    ByteLineScanner(final FileInput input, final Charset charset, final LineDelimiter lineDelimiter) {
+        this.input = input;
+        this.charset = charset;
+        this.lineDelimiter = lineDelimiter;
+        this.skipsBom = charset.equals(UTF_8);
+        this.carry = new byte[256];
+        this.skipLf = false;
+        this.buffer = BufferImpl.EMPTY;
+        this.slice = null;
+        this.resetFile();
+    }
+
+    /**
+     * Returns true if lines in the charset can be found byte by byte.
+     *
+     * <p>CR and LF must be encoded into {@code 0x0D} and {@code 0x0A} as they are in ASCII. In addition, the bytes must not
+     * appear in a multi-byte character. It is true for single-byte charsets, and for the multi-byte charsets listed.
+     * Charsets such as UTF-16 and ISO-2022-JP are not supported.
+     */
+    static boolean isSupported(final Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        if (!Arrays.equals(CR_LF, "\r\n".getBytes(charset)) || !"\r\n".equals(new String(CR_LF, charset))) {
+            return false;
+        }
+        if (charset.newEncoder().maxBytesPerChar() <= 1.0f) {
+            return true;
+        }
+        return MULTI_BYTE_CHARSETS.contains(charset.name());
+    }
+
+    boolean nextFile() {
+        this.releaseBuffer();
+        this.resetFile();
+        return this.input.nextFile();
+    }
+
+    String readLine() {
+        this.carryLength = 0;
+        boolean pendingCr = false;  // Only for LineDelimiter.CR: the line in the carry buffer ends with CR.
+
+        while (true) {
+            if (this.position >= this.limit) {
+                if (!this.nextBuffer()) {
+                    if (this.bomIndex < BOM.length) {
+                        this.flushBom();
+                        continue;
+                    }
+                    return this.lastLine(pendingCr);
+                }
+            }
+            if (this.skipLf) {  // It is kept over files as BufferedReader does.
+                this.skipLf = false;
+                if (this.slice.getByte(this.position) == '\n') {
+                    this.position++;
+                    continue;
+                }
+            }
+            if (this.bomIndex < BOM.length) {
+                this.skipBom();
+                continue;
+            }
+            if (pendingCr) {
+                pendingCr = false;
+                if (this.slice.getByte(this.position) != '\n') {
+                    return this.endLine(this.position, 1);  // Drops the CR at the end of the carry buffer.
+                }
+                // CR followed by LF is a part of the line.
+            }
+
+            final int found = this.find(this.position, this.limit);
+            if (found < 0) {
+                this.appendToCarry(this.position, this.limit);
+                this.position = this.limit;
+                continue;
+            }
+
+            if (this.lineDelimiter == null) {
+                this.skipLf = this.slice.getByte(found) == '\r';
+                return this.endLineAndSkip(found, 0);
+            }
+            switch (this.lineDelimiter) {
+                case LF:
+                    if (this.byteBefore(found) != '\r') {
+                        return this.endLineAndSkip(found, 0);
+                    }
+                    break;
+                case CRLF:
+                    if (this.byteBefore(found) == '\r') {
+                        if (found > this.position) {
+                            return this.endLineAndSkip(found - 1, 0);
+                        }
+                        return this.endLineAndSkip(found, 1);  // The CR is at the end of the carry buffer.
+                    }
+                    break;
+                case CR:
+                    if (found + 1 < this.limit) {
+                        if (this.slice.getByte(found + 1) != '\n') {
+                            return this.endLineAndSkip(found, 0);
+                        }
+                        this.appendToCarry(this.position, found + 2);
+                        this.position = found + 2;
+                        continue;
+                    }
+                    this.appendToCarry(this.position, this.limit);
+                    this.position = this.limit;
+                    pendingCr = true;
+                    continue;
+                default:
+                    throw new IllegalStateException("Unsupported line delimiter " + this.lineDelimiter);
+            }
+            // Not a line delimiter. It is a part of the line.
+            this.appendToCarry(this.position, found + 1);
+            this.position = found + 1;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.releaseBuffer();
+        this.input.close();
+    }
+
+    /**
+     * Returns the index of the first byte which can be a line delimiter in [from, to), or {@code -1}.
+     */
+    private int find(final int from, final int to) {
+        final boolean matchesCr = this.lineDelimiter == null || this.lineDelimiter == LineDelimiter.CR;
+        final boolean matchesLf = this.lineDelimiter != LineDelimiter.CR;
+
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            final long word = this.slice.getLong(i);
+            long found = 0L;
+            if (matchesCr) {
+                found |= zeroBytes(word ^ CR_WORD);
+            }
+            if (matchesLf) {
+                found |= zeroBytes(word ^ LF_WORD);
+            }
+            if (found != 0L) {
+                return i + (LITTLE_ENDIAN ? Long.numberOfTrailingZeros(found) : Long.numberOfLeadingZeros(found)) / 8;
+            }
+        }
+        for (; i < to; i++) {
+            final byte b = this.slice.getByte(i);
+            if ((matchesCr && b == '\r') || (matchesLf && b == '\n')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a word in which the highest bit of each byte is set only if the byte is zero in the given word.
+     *
+     * <p>Unlike the common {@code (x - 0x01..) & ~x & 0x80..}, it has no false positives by borrows between bytes.
+     */
+    private static long zeroBytes(final long word) {
+        final long lower = (word & LOW_BITS) + LOW_BITS;
+        return ~(lower | word | LOW_BITS);
+    }
+
+    private byte byteBefore(final int index) {
+        if (index > this.position) {
+            return this.slice.getByte(index - 1);
+        }
+        if (this.carryLength > 0) {
+            return this.carry[this.carryLength - 1];
+        }
+        return 0;
+    }
+
+    /**
+     * Ends the line at {@code end} in the current buffer, and moves the position after the line delimiter.
+     *
+     * <p>The line delimiter starts at {@code end}. It is CR and LF for {@link LineDelimiter#CRLF} unless the CR is
+     * in the carry buffer. {@code dropFromCarry} is the number of bytes of the line delimiter in the carry buffer.
+     */
+    private String endLineAndSkip(final int end, final int dropFromCarry) {
+        final String line = this.endLine(end, dropFromCarry);
+        this.position = end + 1 + (this.lineDelimiter == LineDelimiter.CRLF && dropFromCarry == 0 ? 1 : 0);
+        return line;
+    }
+
+    private String endLine(final int end, final int dropFromCarry) {
+        this.endedWithDelimiter = true;
+        if (this.carryLength == 0) {
+            final String line = this.decode(this.position, end);
+            this.position = end;
+            return line;
+        }
+        this.carryLength -= dropFromCarry;
+        this.appendToCarry(this.position, end);
+        this.position = end;
+        return new String(this.carry, 0, this.carryLength, this.charset);
+    }
+
+    private String lastLine(final boolean pendingCr) {
+        if (pendingCr) {
+            this.endedWithDelimiter = true;
+            return new String(this.carry, 0, this.carryLength - 1, this.charset);
+        }
+        if (this.carryLength > 0) {
+            this.endedWithDelimiter = false;
+            return new String(this.carry, 0, this.carryLength, this.charset);
+        }
+        if (this.lineDelimiter != null && this.endedWithDelimiter) {
+            // LineReader returns an empty line after the last line delimiter.
+            this.endedWithDelimiter = false;
+            return "";
+        }
+        return null;
+    }
+
+    @SuppressWarnings("deprecation")  // Calling Buffer#array().
+    private String decode(final int from, final int to) {
+        if (this.buffer instanceof DirectBuffer) {
+            this.appendToCarry(from, to);
+            final String line = new String(this.carry, 0, this.carryLength, this.charset);
+            this.carryLength = 0;
+            return line;
+        }
+        return new String(this.buffer.array(), this.buffer.offset() + from, to - from, this.charset);
+    }
+
+    private void appendToCarry(final int from, final int to) {
+        final int length = to - from;
+        if (length <= 0) {
+            return;
+        }
+        this.ensureCarry(this.carryLength + length);
+        this.slice.getBytes(from, this.carry, this.carryLength, length);
+        this.carryLength += length;
+    }
+
+    private void ensureCarry(final int capacity) {
+        if (this.carry.length < capacity) {
+            this.carry = Arrays.copyOf(this.carry, Math.max(capacity, this.carry.length * 2));
+        }
+    }
+
+    private void skipBom() {
+        if (this.slice.getByte(this.position) == BOM[this.bomIndex]) {
+            this.position++;
+            this.bomIndex++;
+            return;
+        }
+        this.flushBom();
+    }
+
+    /**
+     * Puts bytes compared with BOM into the carry buffer as they are a part of the line, not a BOM.
+     */
+    private void flushBom() {
+        this.ensureCarry(this.carryLength + this.bomIndex);
+        System.arraycopy(BOM, 0, this.carry, this.carryLength, this.bomIndex);
+        this.carryLength += this.bomIndex;
+        this.bomIndex = BOM.length;
+    }
+
+    private boolean nextBuffer() {
+        while (!this.inputExhausted) {
+            this.releaseBuffer();
+            final Buffer next = this.input.poll();
+            if (next == null) {
+                this.inputExhausted = true;
+                return false;
+            }
+            this.buffer = next;
+            this.slice = Slice.wrappedBuffer(next);
+            this.limit = next.limit();
+            if (this.limit > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void releaseBuffer() {
+        this.buffer.release();
+        this.buffer = BufferImpl.EMPTY;
+        this.slice = null;
+        this.position = 0;
+        this.limit = 0;
+    }
+
+    private void resetFile() {
+        this.carryLength = 0;
+        this.endedWithDelimiter = false;
+        this.inputExhausted = false;
+        this.bomIndex = this.skipsBom ? 0 : BOM.length;
+    }
+
+    private static final byte[] CR_LF = { '\r', '\n' };
+    private static final byte[] BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long CR_WORD = 0x0D0D0D0D0D0D0D0DL;
+    private static final long LF_WORD = 0x0A0A0A0A0A0A0A0AL;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    // Multi-byte charsets whose second or later bytes of a character are never CR nor LF.
+    private static final Set<String> MULTI_BYTE_CHARSETS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "UTF-8", "Shift_JIS", "windows-31j", "EUC-JP", "EUC-KR", "Big5", "GBK", "GB18030")));
+
+    private final FileInput input;
+    private final Charset charset;
+    private final LineDelimiter lineDelimiter;
+    private final boolean skipsBom;
+
+    private Buffer buffer;
+    private Slice slice;
+    private int position;
+    private int limit;
+
+    private byte[] carry;
+    private int carryLength;
+
+    private int bomIndex;
+    private boolean skipLf;  // Only for no line delimiter: the last line ended with CR.
+    private boolean endedWithDelimiter;
+    private boolean inputExhausted;
+}
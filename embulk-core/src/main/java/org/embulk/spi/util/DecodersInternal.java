@@ -3,12 +3,16 @@ package org.embulk.spi.util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
 import org.embulk.plugin.PluginType;
+import org.embulk.spi.Buffer;
 import org.embulk.spi.DecoderPlugin;
 import org.embulk.spi.ExecSessionInternal;
 import org.embulk.spi.FileInput;
+import org.embulk.spi.TransactionalFileInput;
 
 public abstract class DecodersInternal {
     private DecodersInternal() {}
@@ -39,6 +43,69 @@ public abstract class DecodersInternal {
         return in;
     }
 
+    /**
+     * Opens decoders as {@link #open(List, List, FileInput)} does, and runs them on another thread if {@code readAheadBuffers}
+     * is positive, so that decoding goes on while the task thread is parsing. Up to {@code readAheadBuffers} decoded buffers
+     * are read ahead.
+     *
+     * <p>The returned input commits, or aborts, {@code input}. The thread is stopped before that so that it does not read
+     * {@code input} while it is committed, or aborted.
+     */
+    public static TransactionalFileInput openWithReadAhead(
+            final List<DecoderPlugin> plugins,
+            final List<TaskSource> taskSources,
+            final TransactionalFileInput input,
+            final int readAheadBuffers) {
+        if (plugins.isEmpty()) {
+            return input;
+        }
+        final FileInput decoded = open(plugins, taskSources, input);
+        if (readAheadBuffers <= 0) {
+            return new DecodedTransactionalFileInput(decoded, input);
+        }
+        return new ReadAheadFileInput.Transactional(decoded, input, readAheadBuffers);
+    }
+
+    private static class DecodedTransactionalFileInput implements TransactionalFileInput {
+        DecodedTransactionalFileInput(final FileInput decoded, final TransactionalFileInput transaction) {
+            this.decoded = decoded;
+            this.transaction = transaction;
+        }
+
+        @Override
+        public boolean nextFile() {
+            return this.decoded.nextFile();
+        }
+
+        @Override
+        public Buffer poll() {
+            return this.decoded.poll();
+        }
+
+        @Override
+        public void close() {
+            this.decoded.close();
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return this.decoded.hintOfCurrentInputFileNameForLogging();
+        }
+
+        @Override
+        public TaskReport commit() {
+            return this.transaction.commit();
+        }
+
+        @Override
+        public void abort() {
+            this.transaction.abort();
+        }
+
+        private final FileInput decoded;
+        private final TransactionalFileInput transaction;
+    }
+
     private static class RecursiveControl {
         private final List<DecoderPlugin> plugins;
         private final List<ConfigSource> configs;
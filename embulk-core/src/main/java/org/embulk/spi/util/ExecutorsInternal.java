@@ -1,10 +1,13 @@
 package org.embulk.spi.util;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
 import org.embulk.spi.AbortTransactionResource;
+import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.CloseResource;
+import org.embulk.spi.ColumnarPages;
 import org.embulk.spi.ExecSessionInternal;
 import org.embulk.spi.FilterPlugin;
 import org.embulk.spi.InputPlugin;
@@ -41,6 +44,51 @@ public abstract class ExecutorsInternal {
                 callback);
     }
 
+    /**
+     * Processes a task with running each filter, and the output, on its own thread from {@code stageExecutor}.
+     *
+     * <p>Pages are handed off between the stages through bounded queues of {@code queuePages} pages.
+     */
+    public static void processPipelined(ExecSessionInternal exec,
+            ProcessTask task, int taskIndex,
+            ExecutorService stageExecutor, int queuePages,
+            ProcessStateCallback callback) {
+        InputPlugin inputPlugin = exec.newPlugin(InputPlugin.class, task.getInputPluginType());
+        List<FilterPlugin> filterPlugins = FiltersInternal.newFilterPlugins(exec, task.getFilterPluginTypes());
+        OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
+
+        final TransactionalPageOutput tran = outputPlugin.open(task.getOutputTaskSource(), task.getOutputSchema(), taskIndex);
+
+        callback.started();
+        try (CloseResource closer = new CloseResource(tran)) {
+            try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
+                TaskReport inputTaskReport;
+                // The stage threads must be stopped before the output is committed, or aborted.
+                final BufferAllocator columnarAllocator =
+                        ColumnarPages.isSupportedByAll(filterPlugins, outputPlugin) ? exec.getBufferAllocator() : null;
+                try (PipelineStages stages = new PipelineStages(stageExecutor, queuePages, columnarAllocator)) {
+                    PageOutput filtered = stages.open(filterPlugins, task.getFilterTaskSources(), task.getFilterSchemas(), tran);
+                    closer.closeThis(filtered);
+
+                    inputTaskReport = inputPlugin.run(task.getInputTaskSource(), task.getInputSchema(), taskIndex, filtered);
+                    stages.complete();
+                }
+
+                if (inputTaskReport == null) {
+                    inputTaskReport = exec.newTaskReport();
+                }
+                callback.inputCommitted(inputTaskReport);
+
+                TaskReport outputTaskReport = tran.commit();
+                aborter.dontAbort();
+                if (outputTaskReport == null) {
+                    outputTaskReport = exec.newTaskReport();
+                }
+                callback.outputCommitted(outputTaskReport);
+            }
+        }
+    }
+
     public static void process(ExecSessionInternal exec, int taskIndex,
             InputPlugin inputPlugin, Schema inputSchema, TaskSource inputTaskSource,
             List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources,
@@ -54,7 +102,12 @@ public abstract class ExecutorsInternal {
         // essential exception.
         try (CloseResource closer = new CloseResource(tran)) {
             try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
-                PageOutput filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, tran);
+                PageOutput filtered;
+                if (ColumnarPages.isSupportedByAll(filterPlugins, outputPlugin)) {
+                    filtered = FiltersInternal.openColumnar(exec.getBufferAllocator(), filterPlugins, filterTaskSources, filterSchemas, tran);
+                } else {
+                    filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, tran);
+                }
                 closer.closeThis(filtered);
 
                 TaskReport inputTaskReport = inputPlugin.run(inputTaskSource, inputSchema, taskIndex, filtered);
@@ -1,6 +1,7 @@
 package org.embulk.spi.util;
 
 import java.io.InputStream;
+import org.embulk.exec.Slice;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferImpl;
 import org.embulk.spi.FileInput;
@@ -10,6 +11,7 @@ public class FileInputInputStream extends InputStream {
     private final FileInput in;
     private int pos;
     private Buffer buffer = BufferImpl.EMPTY;
+    private Slice slice = null;  // Over the buffer. Built once for each buffer, not for each byte.
 
     public FileInputInputStream(FileInput in) {
         this.in = in;
@@ -29,7 +31,6 @@ public class FileInputInputStream extends InputStream {
         return buffer.limit() - pos;
     }
 
-    @SuppressWarnings("deprecation")  // Calling Buffer#array().
     @Override
     public int read() {
         while (pos >= buffer.limit()) {
@@ -37,7 +38,7 @@ public class FileInputInputStream extends InputStream {
                 return -1;
             }
         }
-        byte b = buffer.array()[buffer.offset() + pos];
+        byte b = slice.getByte(pos);
         pos++;
         if (pos >= buffer.limit()) {
             releaseBuffer();
@@ -85,12 +86,14 @@ public class FileInputInputStream extends InputStream {
             return false;
         }
         buffer = b;
+        slice = Slice.wrappedBuffer(b);
         return true;
     }
 
     private void releaseBuffer() {
         buffer.release();
         buffer = BufferImpl.EMPTY;
+        slice = null;
         pos = 0;
     }
 
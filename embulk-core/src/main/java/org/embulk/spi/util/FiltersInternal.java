@@ -6,6 +6,8 @@ import java.util.List;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskSource;
 import org.embulk.plugin.PluginType;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.ColumnarPages;
 import org.embulk.spi.ExecSessionInternal;
 import org.embulk.spi.FilterPlugin;
 import org.embulk.spi.PageOutput;
@@ -54,6 +56,23 @@ public abstract class FiltersInternal {
         return out;
     }
 
+    /**
+     * Opens filters with converting pages into the columnar layout before each filter and before the output.
+     *
+     * <p>It is for a task where all the filter plugins and the output plugin accept columnar pages.
+     */
+    public static PageOutput openColumnar(BufferAllocator allocator, List<FilterPlugin> plugins, List<TaskSource> taskSources,
+            List<Schema> filterSchemas, PageOutput output) {
+        PageOutput out = ColumnarPages.newColumnarPageOutput(filterSchemas.get(plugins.size()), allocator, output);
+        int pos = plugins.size() - 1;
+        while (pos >= 0) {
+            out = plugins.get(pos).open(taskSources.get(pos), filterSchemas.get(pos), filterSchemas.get(pos + 1), out);
+            out = ColumnarPages.newColumnarPageOutput(filterSchemas.get(pos), allocator, out);
+            pos--;
+        }
+        return out;
+    }
+
     private static class RecursiveControl {
         private final List<FilterPlugin> plugins;
         private final List<ConfigSource> configs;
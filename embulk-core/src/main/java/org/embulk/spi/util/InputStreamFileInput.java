@@ -1,25 +1,49 @@
 package org.embulk.spi.util;
 
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.FileInput;
 
 @Deprecated  // Externalized to embulk-util-file
-public class InputStreamFileInput implements FileInput {
+public class InputStreamFileInput implements SeekableFileInput {
     public static class InputStreamWithHints {
-        public InputStreamWithHints(final InputStream inputStream, final String hintOfCurrentInputFileNameForLogging) {
+        /**
+         * Creates an input stream with a {@link RangeOpener} so that ranges of the file can be read in parallel.
+         */
+        public InputStreamWithHints(
+                final InputStream inputStream,
+                final String hintOfCurrentInputFileNameForLogging,
+                final RangeOpener rangeOpener) {
             this.inputStream = inputStream;
             this.hintOfCurrentInputFileNameForLogging = Optional.ofNullable(hintOfCurrentInputFileNameForLogging);
+            this.rangeOpener = Optional.ofNullable(rangeOpener);
+        }
+
+        public InputStreamWithHints(final InputStream inputStream, final String hintOfCurrentInputFileNameForLogging) {
+            this(inputStream, hintOfCurrentInputFileNameForLogging, null);
         }
 
         public InputStreamWithHints(final InputStream inputStream) {
-            this.inputStream = inputStream;
-            this.hintOfCurrentInputFileNameForLogging = Optional.empty();
+            this(inputStream, null, null);
         }
 
         public InputStream getInputStream() {
@@ -30,8 +54,29 @@ public class InputStreamFileInput implements FileInput {
             return this.hintOfCurrentInputFileNameForLogging;
         }
 
+        public Optional<RangeOpener> getRangeOpener() {
+            return this.rangeOpener;
+        }
+
         private final InputStream inputStream;
         private final Optional<String> hintOfCurrentInputFileNameForLogging;
+        private final Optional<RangeOpener> rangeOpener;
+    }
+
+    /**
+     * Opens ranges of a seekable file, such as a local uncompressed file. Ranges may be opened from multiple threads.
+     */
+    public interface RangeOpener {
+        public long size() throws IOException;
+
+        public InputStream openRange(long offset, long length) throws IOException;
+
+        /**
+         * Creates a {@link RangeOpener} of a local file.
+         */
+        public static RangeOpener ofPath(final Path path) {
+            return new PathRangeOpener(path);
+        }
     }
 
     public interface Provider extends Closeable {
@@ -125,8 +170,220 @@ public class InputStreamFileInput implements FileInput {
         }
     }
 
+    private static class PathRangeOpener implements RangeOpener {
+        PathRangeOpener(final Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return Files.size(this.path);
+        }
+
+        @Override
+        public InputStream openRange(final long offset, final long length) throws IOException {
+            final FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ);
+            try {
+                channel.position(offset);
+            } catch (final IOException ex) {
+                channel.close();
+                throw ex;
+            }
+            return new BoundedInputStream(Channels.newInputStream(channel), length);
+        }
+
+        private final Path path;
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        BoundedInputStream(final InputStream in, final long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b >= 0) {
+                this.remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int n = super.read(b, off, (int) Math.min(len, this.remaining));
+            if (n > 0) {
+                this.remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(Math.min(n, this.remaining));
+            this.remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), this.remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private long remaining;
+    }
+
+    private static class RangeProvider implements Provider {
+        RangeProvider(final RangeOpener opener, final long offset, final long length, final Optional<String> hint) {
+            this.opener = opener;
+            this.offset = offset;
+            this.length = length;
+            this.hint = hint;
+        }
+
+        @Override
+        public InputStreamWithHints openNextWithHints() throws IOException {
+            if (this.opener == null) {
+                return null;
+            }
+            final InputStream stream = this.opener.openRange(this.offset, this.length);
+            this.opener = null;
+            return new InputStreamWithHints(stream, this.hint.orElse(null));
+        }
+
+        @Override
+        public void close() throws IOException {}
+
+        private RangeOpener opener;
+        private final long offset;
+        private final long length;
+        private final Optional<String> hint;
+    }
+
+    /**
+     * Opens next files from the original {@link Provider} ahead on another thread.
+     *
+     * <p>The original provider is called from the thread one by one, in order. Streams opened ahead and not consumed are
+     * closed at {@link #close()}.
+     */
+    private static class OpenAheadProvider implements Provider {
+        OpenAheadProvider(final Provider provider, final int files) {
+            this.provider = provider;
+            this.files = files;
+            this.opening = new ArrayDeque<>();
+            this.executor = null;
+            this.exhausted = false;
+            this.ended = false;
+        }
+
+        @Override
+        public InputStreamWithHints openNextWithHints() throws IOException {
+            if (this.exhausted) {
+                return null;
+            }
+            this.openAhead();
+            final InputStreamWithHints opened = get(this.opening.removeFirst());
+            if (opened == null || opened.getInputStream() == null) {
+                this.exhausted = true;
+            }
+            return opened;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                while (!this.opening.isEmpty()) {
+                    final Future<InputStreamWithHints> next = this.opening.pollFirst();
+                    if (next.cancel(false)) {
+                        continue;
+                    }
+                    try {
+                        final InputStreamWithHints opened = get(next);
+                        if (opened != null && opened.getInputStream() != null) {
+                            opened.getInputStream().close();
+                        }
+                    } catch (final IOException | RuntimeException ex) {
+                        // Ignored. The file is not read anyway.
+                    }
+                }
+            } finally {
+                if (this.executor != null) {
+                    this.executor.shutdown();
+                }
+                this.provider.close();
+            }
+        }
+
+        private void openAhead() {
+            if (this.executor == null) {
+                // The thread is created from the task thread so that it inherits the Exec session.
+                this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "embulk-open-ahead-" + COUNT.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            // The next file, and files to open ahead after it.
+            while (this.opening.size() < this.files + 1) {
+                this.opening.addLast(this.executor.submit(this::openNextInThread));
+            }
+        }
+
+        // Called only from the thread, one by one.
+        private InputStreamWithHints openNextInThread() throws IOException {
+            if (this.ended) {
+                return null;
+            }
+            final InputStreamWithHints opened = this.provider.openNextWithHints();
+            if (opened == null || opened.getInputStream() == null) {
+                this.ended = true;
+            }
+            return opened;
+        }
+
+        private static InputStreamWithHints get(final Future<InputStreamWithHints> future) throws IOException {
+            try {
+                return future.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while opening a file ahead.");
+            } catch (final ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private static final AtomicLong COUNT = new AtomicLong(0);
+
+        private final Provider provider;
+        private final int files;
+        private final ArrayDeque<Future<InputStreamWithHints>> opening;
+        private ExecutorService executor;
+        private boolean exhausted;
+        private boolean ended;  // Accessed only from the thread.
+    }
+
     private final BufferAllocator allocator;
-    private final Provider provider;
+    private Provider provider;
     private InputStreamWithHints current;
 
     public InputStreamFileInput(BufferAllocator allocator, Provider provider) {
@@ -135,6 +392,13 @@ public class InputStreamFileInput implements FileInput {
         this.current = null;
     }
 
+    /**
+     * Creates an input which opens up to {@code openAheadFiles} next files from the provider ahead on another thread.
+     */
+    public InputStreamFileInput(BufferAllocator allocator, Provider provider, int openAheadFiles) {
+        this(allocator, openAheadFiles > 0 ? new OpenAheadProvider(provider, openAheadFiles) : provider);
+    }
+
     public InputStreamFileInput(BufferAllocator allocator, Opener opener) {
         this(allocator, new OpenerProvider(opener));
     }
@@ -201,6 +465,44 @@ public class InputStreamFileInput implements FileInput {
         return this.getHintOfCurrentInputFileNameForLogging();
     }
 
+    /**
+     * Opens up to {@code files} next files from the provider ahead on another thread, so that latency to open files,
+     * such as remote objects, overlaps with reading the current file.
+     *
+     * <p>It must be called before the first {@link #nextFile()}.
+     *
+     * @throws IllegalStateException if a file has already been opened
+     */
+    public void openFilesAhead(final int files) {
+        if (current != null) {
+            throw new IllegalStateException("openFilesAhead must be called before the first nextFile().");
+        }
+        if (files > 0 && !(provider instanceof OpenAheadProvider)) {
+            provider = new OpenAheadProvider(provider, files);
+        }
+    }
+
+    @Override
+    public OptionalLong sizeOfCurrentFile() {
+        if (current == null || !current.getRangeOpener().isPresent()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(current.getRangeOpener().get().size());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public FileInput openRangeOfCurrentFile(final long offset, final long length) {
+        if (current == null || !current.getRangeOpener().isPresent()) {
+            throw new UnsupportedOperationException("Ranges of the current file cannot be read.");
+        }
+        return new InputStreamFileInput(
+                allocator, new RangeProvider(current.getRangeOpener().get(), offset, length, current.getHintOfCurrentInputFileNameForLogging()));
+    }
+
     protected final Optional<String> getHintOfCurrentInputFileNameForLogging() {
         if (current != null) {
             return current.getHintOfCurrentInputFileNameForLogging();
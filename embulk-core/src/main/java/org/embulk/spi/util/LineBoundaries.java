@@ -0,0 +1,96 @@
+package org.embulk.spi.util;
+
+import java.nio.charset.Charset;
+import java.util.Optional;
+import org.embulk.exec.Slice;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * Finds boundaries of lines in a {@link SeekableFileInput} by bytes, to split a file into ranges of whole lines.
+ *
+ * <p>It is internal for {@link org.embulk.spi.FileInputRunner}. Plugins MUST NOT use this class. No any compatibility is guaranteed.
+ */
+public final class LineBoundaries {
+    private LineBoundaries() {
+        // No instantiation.
+    }
+
+    /**
+     * Returns true if line delimiters are found by bytes in the charset, in the same way as {@link LineDecoder}.
+     */
+    public static boolean isSupported(final Charset charset) {
+        return ByteLineScanner.isSupported(charset);
+    }
+
+    /**
+     * Returns bytes of the line delimiter to split at.
+     *
+     * <p>Lines end with any of CR, LF, and CRLF if no delimiter is recognized explicitly. Splitting just after LF is safe
+     * then, but files delimited only by CR are not split.
+     */
+    @SuppressWarnings("deprecation")  // LineDelimiter is deprecated.
+    public static byte[] delimiterOf(final Optional<LineDelimiter> lineDelimiterRecognized) {
+        if (!lineDelimiterRecognized.isPresent()) {
+            return new byte[] { '\n' };
+        }
+        switch (lineDelimiterRecognized.get()) {
+            case CR:
+                return new byte[] { '\r' };
+            case CRLF:
+                return new byte[] { '\r', '\n' };
+            case LF:
+            default:
+                return new byte[] { '\n' };
+        }
+    }
+
+    /**
+     * Returns the position just after the first delimiter which ends at or after {@code from} in the current file.
+     *
+     * @param input  the input whose current file is searched
+     * @param from  the minimum position of the end of the delimiter
+     * @param size  the size of the current file
+     * @param delimiter  the bytes of the delimiter, from {@link #delimiterOf(Optional)}
+     * @return the position just after the delimiter, or {@code size} if not found
+     */
+    public static long next(final SeekableFileInput input, final long from, final long size, final byte[] delimiter) {
+        if (from >= size) {
+            return size;
+        }
+        final long start = Math.max(from - delimiter.length, 0);
+        try (final FileInput range = input.openRangeOfCurrentFile(start, size - start)) {
+            if (!range.nextFile()) {
+                return size;
+            }
+            long position = start;
+            int matched = 0;
+            Buffer buffer;
+            while ((buffer = range.poll()) != null) {
+                try {
+                    final Slice slice = Slice.wrappedBuffer(buffer);
+                    final int limit = buffer.limit();
+                    for (int i = 0; i < limit; i++) {
+                        final byte b = slice.getByte(i);
+                        if (b == delimiter[matched]) {
+                            matched++;
+                        } else {
+                            matched = (b == delimiter[0]) ? 1 : 0;
+                        }
+                        if (matched == delimiter.length) {
+                            final long end = position + i + 1;
+                            if (end >= from) {
+                                return end;
+                            }
+                            matched = 0;
+                        }
+                    }
+                    position += limit;
+                } finally {
+                    buffer.release();
+                }
+            }
+            return size;
+        }
+    }
+}
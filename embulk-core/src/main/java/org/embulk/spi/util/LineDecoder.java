@@ -18,8 +18,6 @@ import org.embulk.spi.FileInput;
 
 @Deprecated  // Externalized to embulk-util-text
 public class LineDecoder implements AutoCloseable, Iterable<String> {
-    // TODO optimize
-
     public static interface DecoderTask extends Task {
         @Config("charset")
         @ConfigDefault("\"utf-8\"")
@@ -36,10 +34,19 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
 
     private final FileInputInputStream inputStream;
     private final BufferedReader reader;
+    private final ByteLineScanner scanner;  // Lines are read byte by byte if not null.
     private final Charset charset;
 
     public LineDecoder(FileInput in, DecoderTask task) {
         this.charset = task.getCharset();
+        if (ByteLineScanner.isSupported(charset)) {
+            this.scanner = new ByteLineScanner(in, charset, task.getLineDelimiterRecognized().orElse(null));
+            this.inputStream = null;
+            this.reader = null;
+            return;
+        }
+
+        this.scanner = null;
         CharsetDecoder decoder = charset
                 .newDecoder()
                 .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
@@ -51,6 +58,9 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
     }
 
     public boolean nextFile() {
+        if (scanner != null) {
+            return scanner.nextFile();  // BOM is skipped by the scanner.
+        }
         boolean has = inputStream.nextFile();
         if (has && charset.equals(UTF_8)) {
             skipBom();
@@ -87,6 +97,9 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
     }
 
     public String poll() {
+        if (scanner != null) {
+            return scanner.readLine();
+        }
         try {
             return reader.readLine();
         } catch (IOException ex) {
@@ -96,6 +109,10 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
     }
 
     public void close() {
+        if (scanner != null) {
+            scanner.close();
+            return;
+        }
         try {
             reader.close();
         } catch (IOException ex) {
@@ -0,0 +1,49 @@
+package org.embulk.spi.util;
+
+import java.nio.charset.Charset;
+import java.util.Optional;
+import org.embulk.config.TaskSource;
+
+/**
+ * A {@link org.embulk.spi.ParserPlugin} which parses each line into records independently from other lines.
+ *
+ * <p>{@link org.embulk.spi.FileInputRunner} splits a large file into ranges of lines, and parses them in parallel if
+ * {@code parallel_parsing} is enabled, and the parser plugin implements this interface. The ranges are parsed by separate
+ * instances of the parser plugin with the same {@link TaskSource}.
+ */
+public interface LineSplittableParserPlugin {
+    /**
+     * Returns true if no records contain line delimiters in them with the task, such as in quoted values of CSV.
+     *
+     * @param taskSource  the task source of the parser plugin
+     * @return true if the file can be split into ranges at any line delimiter
+     */
+    boolean isSplittableByLines(TaskSource taskSource);
+
+    /**
+     * Returns the charset of lines.
+     *
+     * @param taskSource  the task source of the parser plugin
+     * @return the charset of lines
+     */
+    Charset getCharsetOfLines(TaskSource taskSource);
+
+    /**
+     * Returns the line delimiter recognized, or empty if any of CR, LF, and CRLF ends a line.
+     *
+     * @param taskSource  the task source of the parser plugin
+     * @return the line delimiter recognized
+     */
+    @SuppressWarnings("deprecation")  // LineDelimiter is deprecated.
+    Optional<LineDelimiter> getLineDelimiterRecognized(TaskSource taskSource);
+
+    /**
+     * Returns the number of lines which the parser plugin skips at the beginning of a file.
+     *
+     * <p>They are prepended to every range so that the parser plugin skips them as well.
+     *
+     * @param taskSource  the task source of the parser plugin
+     * @return the number of header lines
+     */
+    int getHeaderLines(TaskSource taskSource);
+}
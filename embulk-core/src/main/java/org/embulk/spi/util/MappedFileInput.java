@@ -0,0 +1,294 @@
+package org.embulk.spi.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DirectBuffer;
+import org.embulk.spi.FileInput;
+import sun.misc.Unsafe;
+
+/**
+ * Reads local files through memory-mapping without copying them into buffers.
+ *
+ * <p>A file is mapped in windows of {@code windowBytes} with {@link FileChannel#map}. {@link #poll()} returns a
+ * {@link DirectBuffer} over the next {@code bufferBytes} of the current window, so that decoders and parsers read the page
+ * cache directly. A window is unmapped when this input moves out of it, and all the buffers over it are released. Buffers
+ * are valid until they are released even after this input is closed.
+ *
+ * <p>Buffers from this input are read-only, and have no backing {@code byte[]}. {@link Buffer#array()} and
+ * {@link Buffer#setBytes} throw {@link UnsupportedOperationException}. Use {@link InputStreamFileInput} for plugins that
+ * access {@link Buffer#array()}.
+ *
+ * <p>Ranges of the current file can be read with {@link #openRangeOfCurrentFile(long, long)} so that the file is parsed in
+ * parallel with {@code parallel_parsing}.
+ */
+public class MappedFileInput implements SeekableFileInput {
+    public MappedFileInput(final List<Path> paths, final int bufferBytes, final int windowBytes) {
+        this(paths, 0L, -1L, bufferBytes, windowBytes);
+    }
+
+    public MappedFileInput(final List<Path> paths) {
+        this(paths, DEFAULT_BUFFER_BYTES, DEFAULT_WINDOW_BYTES);
+    }
+
+    private MappedFileInput(final List<Path> paths, final long rangeOffset, final long rangeLength, final int bufferBytes, final int windowBytes) {
+        if (bufferBytes <= 0 || windowBytes < bufferBytes) {
+            throw new IllegalArgumentException(
+                    "bufferBytes must be positive, and windowBytes must not be less than bufferBytes: " + bufferBytes + ", " + windowBytes);
+        }
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+        this.rangeOffset = rangeOffset;
+        this.rangeLength = rangeLength;
+        this.bufferBytes = bufferBytes;
+        this.windowBytes = windowBytes;
+        this.index = -1;
+        this.channel = null;
+        this.start = 0L;
+        this.position = 0L;
+        this.end = 0L;
+        this.window = null;
+    }
+
+    @Override
+    public boolean nextFile() {
+        this.closeCurrentFile();
+        if (this.index >= this.paths.size()) {
+            return false;
+        }
+        this.index++;
+        if (this.index >= this.paths.size()) {
+            return false;
+        }
+        try {
+            this.channel = FileChannel.open(this.paths.get(this.index), StandardOpenOption.READ);
+            final long size = this.channel.size();
+            this.start = Math.min(this.rangeOffset, size);
+            this.position = this.start;
+            this.end = this.rangeLength < 0 ? size : Math.min(size, this.rangeOffset + this.rangeLength);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return true;
+    }
+
+    @Override
+    public Buffer poll() {
+        if (this.channel == null || this.position >= this.end) {
+            return null;
+        }
+        if (this.window == null || this.position >= this.window.end) {
+            this.releaseWindow();
+            this.window = this.map(this.position, (int) Math.min(this.windowBytes, this.end - this.position));
+        }
+        final int length = (int) Math.min(this.bufferBytes, this.window.end - this.position);
+        final Buffer buffer = new MappedBuffer(this.window, (int) (this.position - this.window.start), length);
+        this.position += length;
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        this.closeCurrentFile();
+        this.index = this.paths.size();
+    }
+
+    @Override
+    public Optional<String> hintOfCurrentInputFileNameForLogging() {
+        if (this.index < 0 || this.index >= this.paths.size()) {
+            return Optional.empty();
+        }
+        return Optional.of(this.paths.get(this.index).toString());
+    }
+
+    @Override
+    public OptionalLong sizeOfCurrentFile() {
+        if (this.channel == null) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(this.end - this.start);
+    }
+
+    @Override
+    public FileInput openRangeOfCurrentFile(final long offset, final long length) {
+        if (this.channel == null) {
+            throw new IllegalStateException("nextFile() must be called before openRangeOfCurrentFile()");
+        }
+        return new MappedFileInput(
+                Collections.singletonList(this.paths.get(this.index)),
+                this.start + offset,
+                Math.min(length, this.end - this.start - offset),
+                this.bufferBytes,
+                this.windowBytes);
+    }
+
+    private Window map(final long start, final int length) {
+        try {
+            return new Window(this.channel.map(FileChannel.MapMode.READ_ONLY, start, length), start);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void releaseWindow() {
+        if (this.window != null) {
+            this.window.release();
+            this.window = null;
+        }
+    }
+
+    private void closeCurrentFile() {
+        this.releaseWindow();
+        if (this.channel != null) {
+            try {
+                // The windows mapped remain valid after the channel is closed.
+                this.channel.close();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                this.channel = null;
+            }
+        }
+    }
+
+    /**
+     * A mapped window of a file, unmapped when this input and all the buffers over it release it.
+     */
+    private static class Window {
+        Window(final MappedByteBuffer mapped, final long start) {
+            this.mapped = mapped;
+            this.address = Holder.addressOf(mapped);
+            this.start = start;
+            this.end = start + mapped.capacity();
+            this.references = new AtomicInteger(1);  // Held by MappedFileInput while it reads the window.
+        }
+
+        void retain() {
+            if (this.references.getAndIncrement() <= 0) {
+                throw new IllegalStateException("The mapped window has already been unmapped.");
+            }
+        }
+
+        void release() {
+            if (this.references.decrementAndGet() == 0) {
+                Holder.unmap(this.mapped);
+            }
+        }
+
+        private final MappedByteBuffer mapped;
+        private final long address;
+        private final long start;
+        private final long end;
+        private final AtomicInteger references;
+    }
+
+    /**
+     * A read-only {@link Buffer} over a slice of a mapped window.
+     */
+    private static class MappedBuffer extends DirectBuffer {
+        MappedBuffer(final Window window, final int offsetInWindow, final int length) {
+            super(window.address + offsetInWindow, length);
+            window.retain();
+            this.window = window;
+            this.released = false;
+            this.limit(length);
+        }
+
+        @Override
+        public void setBytes(final int index, final byte[] source, final int sourceIndex, final int length) {
+            throw new UnsupportedOperationException("A buffer of a memory-mapped file is read-only.");
+        }
+
+        @Override
+        public void setBytes(final int index, final Buffer source, final int sourceIndex, final int length) {
+            throw new UnsupportedOperationException("A buffer of a memory-mapped file is read-only.");
+        }
+
+        @Override
+        public void release() {
+            if (!this.released) {
+                this.released = true;
+                this.window.release();
+            }
+        }
+
+        private final Window window;
+        private boolean released;
+    }
+
+    @SuppressWarnings("sunapi")
+    private static class Holder {  // Initialization-on-demand holder idiom.
+        private static final Unsafe unsafe;
+        private static final long addressOffset;
+        private static final Method invokeCleaner;  // Java 9 and later.
+
+        static {
+            try {
+                final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = (Unsafe) field.get(null);
+                addressOffset = unsafe.objectFieldOffset(java.nio.Buffer.class.getDeclaredField("address"));
+            } catch (final ReflectiveOperationException ex) {
+                throw new RuntimeException("sun.misc.Unsafe access not available", ex);
+            }
+
+            Method method;
+            try {
+                method = Unsafe.class.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (final NoSuchMethodException ex) {
+                method = null;
+            }
+            invokeCleaner = method;
+        }
+
+        static long addressOf(final MappedByteBuffer mapped) {
+            return unsafe.getLong(mapped, addressOffset);
+        }
+
+        // Unmaps the buffer immediately. It is left to the garbage collector if it cannot be unmapped explicitly.
+        static void unmap(final MappedByteBuffer mapped) {
+            try {
+                if (invokeCleaner != null) {
+                    invokeCleaner.invoke(unsafe, mapped);
+                } else {
+                    final Method cleaner = mapped.getClass().getMethod("cleaner");
+                    cleaner.setAccessible(true);
+                    final Object cleanerInstance = cleaner.invoke(mapped);
+                    if (cleanerInstance != null) {
+                        cleanerInstance.getClass().getMethod("clean").invoke(cleanerInstance);
+                    }
+                }
+            } catch (final ReflectiveOperationException | RuntimeException ex) {
+                // Unmapped by the garbage collector.
+            }
+        }
+    }
+
+    private static final int DEFAULT_BUFFER_BYTES = 1024 * 1024;
+    private static final int DEFAULT_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private final List<Path> paths;
+    private final long rangeOffset;
+    private final long rangeLength;  // -1 for the whole files.
+    private final int bufferBytes;
+    private final int windowBytes;
+
+    private int index;
+    private FileChannel channel;
+    private long start;  // The start of the current file, or of the range in the current file.
+    private long position;
+    private long end;
+    private Window window;  // The window being read, retained by this input.
+}
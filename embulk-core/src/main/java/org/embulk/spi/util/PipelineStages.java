@@ -0,0 +1,264 @@
+package org.embulk.spi.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.BufferAccounting;
+import org.embulk.exec.SpscRingQueue;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.ColumnarPages;
+import org.embulk.spi.FilterPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+
+/**
+ * Runs each filter, and the output, on its own thread as a pipeline stage in a task.
+ *
+ * <p>Pages are handed off to the next stage through a bounded queue. The upstream waits when the queue is full.
+ * {@link PageOutput#finish()} returns after all the downstream stages finish. An error in a stage is thrown to
+ * the upstream from its next {@link PageOutput#add(Page)} or {@link PageOutput#finish()}.
+ *
+ * <p>{@link #close()} stops all the stage threads. It must be called before the output transaction is committed,
+ * or aborted, so that no stage thread touches the output after that.
+ */
+final class PipelineStages implements AutoCloseable {
+    PipelineStages(final ExecutorService executor, final int queuePages, final BufferAllocator columnarAllocator) {
+        this.executor = executor;
+        this.queuePages = queuePages;
+        this.columnarAllocator = columnarAllocator;
+        this.stages = new ArrayList<>();
+    }
+
+    PageOutput open(
+            final List<FilterPlugin> plugins,
+            final List<TaskSource> taskSources,
+            final List<Schema> filterSchemas,
+            final PageOutput output) {
+        PageOutput out = this.startStage(filterSchemas.get(plugins.size()), output);
+        int pos = plugins.size() - 1;
+        while (pos >= 0) {
+            out = this.startStage(filterSchemas.get(pos),
+                    plugins.get(pos).open(taskSources.get(pos), filterSchemas.get(pos), filterSchemas.get(pos + 1), out));
+            pos--;
+        }
+        return out;
+    }
+
+    /**
+     * Waits for all the stages to process pages queued so far, and stops their threads.
+     */
+    void complete() {
+        // From the head, so that pages flow down to the last stage.
+        for (int i = this.stages.size() - 1; i >= 0; i--) {
+            this.stages.get(i).stop(true);
+        }
+    }
+
+    /**
+     * Stops all the stage threads, discarding pages queued. It does not close the downstream outputs.
+     */
+    @Override
+    public void close() {
+        for (int i = this.stages.size() - 1; i >= 0; i--) {
+            this.stages.get(i).stop(false);
+        }
+    }
+
+    private PageOutput startStage(final Schema schema, final PageOutput downstream) {
+        // Pages are converted into the columnar layout in the stage thread.
+        final PageOutput stageOutput = this.columnarAllocator != null
+                ? ColumnarPages.newColumnarPageOutput(schema, this.columnarAllocator, downstream)
+                : downstream;
+        final Stage stage = new Stage(stageOutput, this.queuePages, this.executor);
+        this.stages.add(stage);
+        return stage;
+    }
+
+    private static class Stage implements PageOutput {
+        Stage(final PageOutput downstream, final int queuePages, final ExecutorService executor) {
+            this.downstream = downstream;
+            this.queue = new SpscRingQueue<>(queuePages);
+            this.stopped = false;
+            this.aborted = false;
+            this.runner = null;
+            this.future = executor.submit(BufferAccounting.propagate(this::processPages));
+        }
+
+        @Override
+        public void add(final Page page) {
+            final boolean queued;
+            try {
+                queued = this.queue.put(page);
+            } catch (final InterruptedException ex) {
+                page.release();
+                throw new RuntimeException(ex);
+            }
+            if (!queued) {
+                page.release();
+                // The queue is closed before the stage thread completes with its error.
+                this.join();
+                this.throwStageError();
+                throw new IllegalStateException("A pipeline stage received a page after it stopped.");
+            }
+        }
+
+        @Override
+        public void finish() {
+            try {
+                this.queue.put(FINISH_PAGE);
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            this.join();
+            this.throwStageError();
+        }
+
+        @Override
+        public void close() {
+            this.stop(false);
+            this.downstream.close();
+        }
+
+        void stop(final boolean graceful) {
+            if (this.stopped) {
+                return;
+            }
+            this.stopped = true;
+            boolean aborting = !graceful;
+            if (graceful) {
+                try {
+                    this.queue.put(STOP_PAGE);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    aborting = true;
+                }
+            }
+            if (aborting) {
+                this.abort();
+            }
+            this.join();
+            // Pages may be left if they are added while the stage is stopping.
+            this.releaseRemaining();
+            if (!aborting) {
+                this.throwStageError();
+            }
+        }
+
+        private Void processPages() throws InterruptedException {
+            synchronized (this) {
+                this.runner = Thread.currentThread();
+            }
+            final Page[] batch = new Page[this.queue.capacity()];
+            try {
+                while (!this.aborted) {
+                    final int count = this.queue.take(batch);
+                    for (int i = 0; i < count; i++) {
+                        final Page page = batch[i];
+                        batch[i] = null;
+                        if (page == FINISH_PAGE) {
+                            this.downstream.finish();
+                            return null;
+                        } else if (page == STOP_PAGE) {
+                            return null;
+                        }
+                        this.downstream.add(page);
+                    }
+                }
+                return null;
+            } finally {
+                synchronized (this) {
+                    this.runner = null;
+                }
+                // Clear the interruption by abort() so that it does not leak to the next task on the pooled thread.
+                Thread.interrupted();
+                this.queue.close();
+                for (int i = 0; i < batch.length; i++) {
+                    if (batch[i] != null) {
+                        releaseIfNotMarker(batch[i]);
+                        batch[i] = null;
+                    }
+                }
+            }
+        }
+
+        private void abort() {
+            this.aborted = true;
+            this.queue.close();
+            synchronized (this) {
+                if (this.runner != null) {
+                    this.runner.interrupt();
+                }
+            }
+        }
+
+        private void join() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    this.future.get();
+                    break;
+                } catch (final ExecutionException ex) {
+                    break;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void releaseRemaining() {
+            Page page;
+            while ((page = this.queue.poll()) != null) {
+                releaseIfNotMarker(page);
+            }
+        }
+
+        private void throwStageError() {
+            if (!this.future.isDone()) {
+                return;
+            }
+            try {
+                this.future.get();
+            } catch (final ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private final PageOutput downstream;
+        private final SpscRingQueue<Page> queue;
+        private final Future<Void> future;
+        private boolean stopped;
+        private volatile boolean aborted;
+        private Thread runner;  // Guarded by this.
+    }
+
+    private static void releaseIfNotMarker(final Page page) {
+        if (page != FINISH_PAGE && page != STOP_PAGE) {
+            page.release();
+        }
+    }
+
+    private static final Page FINISH_PAGE = PageImpl.allocate(0);
+    private static final Page STOP_PAGE = PageImpl.allocate(0);
+
+    private final ExecutorService executor;
+    private final int queuePages;
+    private final BufferAllocator columnarAllocator;  // null for the row layout
+    private final List<Stage> stages;
+}
@@ -0,0 +1,292 @@
+package org.embulk.spi.util;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.embulk.config.TaskReport;
+import org.embulk.exec.BufferAccounting;
+import org.embulk.exec.SpscRingQueue;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.TransactionalFileInput;
+
+/**
+ * Reads a {@link FileInput} ahead on another thread, such as a chain of decoders, and hands off its buffers through a
+ * bounded queue.
+ *
+ * <p>The thread calls {@link FileInput#nextFile()} and {@link FileInput#poll()} of the original input until the queue is
+ * full. {@link #nextFile()} skips buffers left in the current file as the original input does. An error in the thread is
+ * thrown from the next {@link #nextFile()} or {@link #poll()} after the buffers read before the error.
+ *
+ * <p>{@link #close()} stops the thread, and then closes the original input.
+ *
+ * <p>It is internal for {@link org.embulk.spi.FileInputRunner}. Plugins MUST NOT use this class. No any compatibility is guaranteed.
+ */
+public class ReadAheadFileInput implements FileInput {
+    public ReadAheadFileInput(final FileInput input, final int queueBuffers) {
+        this.input = input;
+        this.queue = new SpscRingQueue<>(queueBuffers);
+        this.hints = new ConcurrentLinkedQueue<>();
+        this.batch = new Buffer[queueBuffers];
+        this.batchIndex = 0;
+        this.batchCount = 0;
+        this.currentHint = Optional.empty();
+        this.inFile = false;
+        this.finished = false;
+        this.stopped = false;
+        this.aborted = false;
+        this.error = null;
+        this.runner = null;
+        // The thread is created from the task thread so that it inherits the Exec session.
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "embulk-read-ahead-" + COUNT.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.future = this.executor.submit(BufferAccounting.propagate(this::readAhead));
+    }
+
+    @Override
+    public boolean nextFile() {
+        if (this.finished) {
+            return false;
+        }
+        while (this.inFile) {
+            final Buffer rest = this.poll();
+            if (rest != null) {
+                rest.release();
+            }
+        }
+        final Buffer item = this.take();
+        if (item == END_OF_INPUT) {
+            this.finished = true;
+            return false;
+        } else if (item != START_OF_FILE) {
+            item.release();
+            throw new IllegalStateException("ReadAheadFileInput received a buffer out of a file.");
+        }
+        this.currentHint = this.hints.poll();
+        this.inFile = true;
+        return true;
+    }
+
+    @Override
+    public Buffer poll() {
+        if (!this.inFile) {
+            return null;
+        }
+        final Buffer item = this.take();
+        if (item == END_OF_FILE) {
+            this.inFile = false;
+            return null;
+        } else if (item == START_OF_FILE || item == END_OF_INPUT) {
+            throw new IllegalStateException("ReadAheadFileInput received a marker in a file.");
+        }
+        return item;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.stop();
+        } finally {
+            this.input.close();
+        }
+    }
+
+    /**
+     * Reads a {@link TransactionalFileInput} ahead. The thread is stopped before the transaction is committed, or aborted.
+     */
+    public static class Transactional extends ReadAheadFileInput implements TransactionalFileInput {
+        public Transactional(final TransactionalFileInput input, final int queueBuffers) {
+            this(input, input, queueBuffers);
+        }
+
+        /**
+         * Reads {@code input} ahead, such as decoders on {@code transaction}, which is committed, or aborted, after the
+         * thread is stopped.
+         */
+        public Transactional(final FileInput input, final TransactionalFileInput transaction, final int queueBuffers) {
+            super(input, queueBuffers);
+            this.transactionalInput = transaction;
+        }
+
+        @Override
+        public TaskReport commit() {
+            this.stop();
+            return this.transactionalInput.commit();
+        }
+
+        @Override
+        public void abort() {
+            this.stop();
+            this.transactionalInput.abort();
+        }
+
+        private final TransactionalFileInput transactionalInput;
+    }
+
+    // Stops the thread, and releases buffers read ahead. The original input is left open.
+    final void stop() {
+        if (this.stopped) {
+            return;
+        }
+        this.stopped = true;
+        this.abortReading();
+        this.join();
+        this.executor.shutdown();
+        this.releaseRemaining();
+    }
+
+    @Override
+    public Optional<String> hintOfCurrentInputFileNameForLogging() {
+        return this.currentHint;
+    }
+
+    private Void readAhead() throws InterruptedException {
+        synchronized (this) {
+            this.runner = Thread.currentThread();
+        }
+        try {
+            while (!this.aborted && this.input.nextFile()) {
+                this.hints.add(this.input.hintOfCurrentInputFileNameForLogging());
+                if (!this.queue.put(START_OF_FILE)) {
+                    return null;
+                }
+                Buffer buffer;
+                while ((buffer = this.input.poll()) != null) {
+                    boolean queued = false;
+                    try {
+                        queued = this.queue.put(buffer);
+                    } finally {
+                        if (!queued) {
+                            buffer.release();
+                        }
+                    }
+                    if (!queued) {
+                        return null;
+                    }
+                }
+                if (!this.queue.put(END_OF_FILE)) {
+                    return null;
+                }
+            }
+            this.queue.put(END_OF_INPUT);
+            return null;
+        } catch (final RuntimeException | Error ex) {
+            if (!this.aborted) {
+                this.error = ex;
+                this.queue.put(ERROR);
+            }
+            throw ex;
+        } finally {
+            synchronized (this) {
+                this.runner = null;
+            }
+            // Clear the interruption by abortReading().
+            Thread.interrupted();
+        }
+    }
+
+    private Buffer take() {
+        if (this.batchIndex >= this.batchCount) {
+            try {
+                this.batchCount = this.queue.take(this.batch);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            }
+            this.batchIndex = 0;
+        }
+        final Buffer item = this.batch[this.batchIndex];
+        this.batch[this.batchIndex] = null;
+        this.batchIndex++;
+        if (item == ERROR) {
+            this.batchIndex--;
+            this.batch[this.batchIndex] = ERROR;  // Throws the error again if called again.
+            final Throwable cause = this.error;
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+        return item;
+    }
+
+    private void abortReading() {
+        this.aborted = true;
+        this.queue.close();
+        synchronized (this) {
+            if (this.runner != null) {
+                this.runner.interrupt();
+            }
+        }
+    }
+
+    private void join() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                this.future.get();
+                break;
+            } catch (final ExecutionException ex) {
+                break;
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releaseRemaining() {
+        for (int i = this.batchIndex; i < this.batchCount; i++) {
+            releaseIfNotMarker(this.batch[i]);
+            this.batch[i] = null;
+        }
+        this.batchIndex = this.batchCount;
+        Buffer buffer;
+        while ((buffer = this.queue.poll()) != null) {
+            releaseIfNotMarker(buffer);
+        }
+    }
+
+    private static void releaseIfNotMarker(final Buffer buffer) {
+        if (buffer != null && buffer != START_OF_FILE && buffer != END_OF_FILE && buffer != END_OF_INPUT && buffer != ERROR) {
+            buffer.release();
+        }
+    }
+
+    // Markers are compared by identity.
+    private static final Buffer START_OF_FILE = BufferImpl.allocate(0);
+    private static final Buffer END_OF_FILE = BufferImpl.allocate(0);
+    private static final Buffer END_OF_INPUT = BufferImpl.allocate(0);
+    private static final Buffer ERROR = BufferImpl.allocate(0);
+
+    private static final AtomicLong COUNT = new AtomicLong(0);
+
+    private final FileInput input;
+    private final SpscRingQueue<Buffer> queue;
+    private final ConcurrentLinkedQueue<Optional<String>> hints;
+    private final ExecutorService executor;
+    private final Future<Void> future;
+
+    // Read only by the consumer.
+    private final Buffer[] batch;
+    private int batchIndex;
+    private int batchCount;
+    private Optional<String> currentHint;
+    private boolean inFile;
+    private boolean finished;
+    private boolean stopped;
+
+    private volatile boolean aborted;
+    private volatile Throwable error;
+    private Thread runner;  // Guarded by this.
+}
@@ -0,0 +1,31 @@
+package org.embulk.spi.util;
+
+import java.util.OptionalLong;
+import org.embulk.spi.FileInput;
+
+/**
+ * A {@link FileInput} which can read ranges of bytes of the current file independently from {@link #poll()}.
+ *
+ * <p>{@link org.embulk.spi.FileInputRunner} splits a large file into ranges, and parses them in parallel if
+ * {@code parallel_parsing} is enabled, its {@link FileInput} implements this interface, and the parser plugin implements
+ * {@link LineSplittableParserPlugin}.
+ */
+public interface SeekableFileInput extends FileInput {
+    /**
+     * Returns the size of the current file in bytes.
+     *
+     * @return the size of the current file, or empty if ranges of the current file cannot be read
+     */
+    OptionalLong sizeOfCurrentFile();
+
+    /**
+     * Opens a range of bytes of the current file as a {@link FileInput} which contains just one file.
+     *
+     * <p>It may be called from multiple threads at the same time. The caller closes the {@link FileInput} returned.
+     *
+     * @param offset  the offset of the range in the current file
+     * @param length  the length of the range
+     * @return the range of the current file
+     */
+    FileInput openRangeOfCurrentFile(long offset, long length);
+}
@@ -46,9 +46,10 @@ public class TimestampColumnSetter extends AbstractDynamicColumnSetter {
     @Override
     @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1298
     public void set(String v) {
-        try {
-            pageBuilder.setTimestamp(column, timestampParser.parse(v));
-        } catch (org.embulk.spi.time.TimestampParseException e) {
+        final Instant instant = timestampParser.parseInstantOrNull(v);
+        if (instant != null) {
+            pageBuilder.setTimestamp(column, instant);
+        } else {
             defaultValue.setTimestamp(pageBuilder, column);
         }
     }
@@ -0,0 +1,120 @@
+package org.embulk.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.junit.Test;
+
+public class TestZipIndex {
+    @Test
+    public void testStoredAndDeflated() throws IOException {
+        final ZipIndex index = ZipIndex.of(ByteBuffer.wrap(buildJar()), "test.jar");
+
+        assertEquals(3, index.size());  // The manifest, and two entries. Directories are skipped.
+        assertNull(index.get("org/"));
+        assertTrue(index.get("org/Stored.class").isStored());
+        assertFalse(index.get("org/Deflated.class").isStored());
+        assertArrayEquals(STORED_CONTENT, toBytes(index.getData(index.get("org/Stored.class"))));
+        assertArrayEquals(DEFLATED_CONTENT, toBytes(index.getData(index.get("org/Deflated.class"))));
+        assertEquals("bar", readManifest(index).getMainAttributes().getValue("Foo"));
+    }
+
+    @Test
+    public void testPrefixed() throws IOException {
+        final byte[] prefix = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\nexit 127\n".getBytes(StandardCharsets.UTF_8);
+        final byte[] jar = buildJar();
+        final byte[] prefixed = new byte[prefix.length + jar.length];
+        System.arraycopy(prefix, 0, prefixed, 0, prefix.length);
+        System.arraycopy(jar, 0, prefixed, prefix.length, jar.length);
+
+        final ZipIndex index = ZipIndex.of(ByteBuffer.wrap(prefixed), "test.jar");
+        assertArrayEquals(STORED_CONTENT, toBytes(index.getData(index.get("org/Stored.class"))));
+        assertArrayEquals(DEFLATED_CONTENT, toBytes(index.getData(index.get("org/Deflated.class"))));
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+        final ZipIndex index = ZipIndex.extract(new ByteArrayInputStream(buildJar()), "test.jar");
+
+        assertEquals(3, index.size());
+        assertArrayEquals(STORED_CONTENT, toBytes(index.getData(index.get("org/Stored.class"))));
+        assertArrayEquals(DEFLATED_CONTENT, toBytes(index.getData(index.get("org/Deflated.class"))));
+        assertEquals("bar", readManifest(index).getMainAttributes().getValue("Foo"));
+    }
+
+    @Test
+    public void testNotZip() {
+        try {
+            ZipIndex.of(ByteBuffer.wrap("not a zip".getBytes(StandardCharsets.UTF_8)), "test.jar");
+            fail();
+        } catch (final IOException ex) {
+            assertEquals("Not a ZIP: test.jar", ex.getMessage());
+        }
+    }
+
+    private static byte[] buildJar() throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Foo", "bar");
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final JarOutputStream jar = new JarOutputStream(bytes, manifest)) {
+            jar.putNextEntry(new JarEntry("org/"));
+            jar.closeEntry();
+
+            final JarEntry stored = new JarEntry("org/Stored.class");
+            final CRC32 crc = new CRC32();
+            crc.update(STORED_CONTENT);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_CONTENT.length);
+            stored.setCompressedSize(STORED_CONTENT.length);
+            stored.setCrc(crc.getValue());
+            jar.putNextEntry(stored);
+            jar.write(STORED_CONTENT);
+            jar.closeEntry();
+
+            jar.putNextEntry(new JarEntry("org/Deflated.class"));
+            jar.write(DEFLATED_CONTENT);
+            jar.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Manifest readManifest(final ZipIndex index) throws IOException {
+        return new Manifest(new ByteArrayInputStream(toBytes(index.getData(index.get(JarFile.MANIFEST_NAME)))));
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static final byte[] STORED_CONTENT = "stored content".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] DEFLATED_CONTENT;
+
+    static {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("deflated content ").append(i).append('\n');
+        }
+        DEFLATED_CONTENT = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TestBufferAccounting {
+    @Test
+    public void testCounters() {
+        final BufferAccounting accounting = new BufferAccounting(0L);
+        final BufferAccounting.Allocation first = accounting.allocate(100);
+        final BufferAccounting.Allocation second = accounting.allocate(200);
+        first.release();
+
+        final BufferMetrics metrics = accounting.getMetrics(-1L, Double.NaN);
+        assertEquals(2, metrics.getAllocations());
+        assertEquals(300, metrics.getAllocatedBytes());
+        assertEquals(1, metrics.getLiveBuffers());
+        assertEquals(200, metrics.getLiveBytes());
+        assertEquals(300, metrics.getPeakLiveBytes());
+        second.release();
+    }
+
+    @Test
+    public void testTaskCounters() throws Exception {
+        final BufferAccounting accounting = new BufferAccounting(0L, 1, TimeUnit.SECONDS.toNanos(1));
+        final BufferAccounting.Allocation outside = accounting.allocate(10);
+        try (BufferAccounting.TaskScope scope = accounting.openTask("task-0000")) {
+            final BufferAccounting.Allocation inside = accounting.allocate(100);
+            // Allocations in worker threads are counted for the task if propagated.
+            final BufferAccounting.Allocation inWorker = BufferAccounting.propagate(() -> accounting.allocate(1000)).call();
+
+            final BufferMetrics metrics = accounting.getTaskMetrics().get("task-0000");
+            assertEquals(2, metrics.getAllocations());
+            assertEquals(1100, metrics.getLiveBytes());
+            inside.release();
+            inWorker.release();
+        }
+        assertTrue(accounting.getTaskMetrics().isEmpty());
+        assertEquals(3, accounting.getMetrics(-1L, Double.NaN).getAllocations());
+        outside.release();
+    }
+
+    @Test
+    public void testMemoryLimitWaitsForRelease() throws Exception {
+        final BufferAccounting accounting = new BufferAccounting(150L, 0, TimeUnit.SECONDS.toNanos(10));
+        final BufferAccounting.Allocation first = accounting.allocate(100);
+        final CountDownLatch allocated = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            accounting.allocate(100).release();
+            allocated.countDown();
+        });
+        thread.start();
+
+        assertEquals(false, allocated.await(100, TimeUnit.MILLISECONDS));
+        first.release();
+        assertTrue(allocated.await(10, TimeUnit.SECONDS));
+        thread.join();
+    }
+
+    @Test
+    public void testBufferBiggerThanMemoryLimit() {
+        final BufferAccounting accounting = new BufferAccounting(150L, 0, TimeUnit.SECONDS.toNanos(10));
+        accounting.allocate(1000).release();
+    }
+
+    @Test(expected = BufferAccounting.BufferMemoryLimitExceededException.class)
+    public void testMemoryLimitTimesOut() {
+        final BufferAccounting accounting = new BufferAccounting(150L, 0, TimeUnit.MILLISECONDS.toNanos(10));
+        accounting.allocate(100);
+        accounting.allocate(100);
+    }
+}
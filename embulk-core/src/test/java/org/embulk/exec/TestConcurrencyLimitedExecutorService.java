@@ -0,0 +1,48 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class TestConcurrencyLimitedExecutorService {
+    @Test
+    public void testLimitsConcurrency() throws InterruptedException, ExecutionException {
+        final ExecutorService executor = new ConcurrencyLimitedExecutorService(Executors.newCachedThreadPool(), 3);
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int value = i;
+            futures.add(executor.submit(() -> {
+                final int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                Thread.sleep(10);
+                running.decrementAndGet();
+                return value;
+            }));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get());
+        }
+        assertTrue(maxRunning.get() <= 3);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveConcurrency() {
+        new ConcurrencyLimitedExecutorService(Executors.newCachedThreadPool(), 0);
+    }
+}
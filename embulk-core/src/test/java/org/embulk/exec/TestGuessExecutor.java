@@ -0,0 +1,244 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.ExecSessionInternal;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.GuessPlugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGuessExecutor {
+    @Before
+    public void setUp() {
+        this.exec = ExecSessionInternal
+                .builderInternal(PooledBufferAllocator.create(), new SimpleTempFileSpaceAllocator())
+                .setModelManager(createModelManager())
+                .registerDecoderPlugin("mock_unwrap", MockUnwrapDecoderPlugin.class)
+                .registerGuessPlugin("mock_decoder", MockDecoderGuessPlugin.class)
+                .registerGuessPlugin("mock_a", MockAGuessPlugin.class)
+                .registerGuessPlugin("mock_b", MockBGuessPlugin.class)
+                .build();
+        MockUnwrapDecoderPlugin.OPENED.set(0);
+        MockAGuessPlugin.GUESSED.set(0);
+    }
+
+    @After
+    public void tearDown() {
+        this.exec.cleanup();
+    }
+
+    @Test
+    public void testGuessInRounds() throws Exception {
+        final ConfigDiff guessed = this.guess(1);
+
+        final GuessExecutor.GuessParserPlugin.ConfigSourceList decoders =
+                guessed.get(GuessExecutor.GuessParserPlugin.ConfigSourceList.class, "decoders");
+        assertEquals(1, decoders.size());
+        assertEquals("mock_unwrap", decoders.get(0).get(String.class, "type"));
+        assertEquals("payload", guessed.getNested("parser").get(String.class, "a"));
+        assertEquals("a=payload", guessed.getNested("parser").get(String.class, "b"));
+    }
+
+    @Test
+    public void testParallelGuessMergedAsSequential() throws Exception {
+        final ConfigDiff sequential = this.guess(1);
+        final ConfigDiff parallel = this.guess(3);
+
+        assertEquals(sequential, parallel);
+        // The result of mock_b in the round which mock_a changes the config is discarded as if they ran one by one.
+        assertEquals("a=payload", parallel.getNested("parser").get(String.class, "b"));
+    }
+
+    @Test
+    public void testDecodedSampleCached() throws Exception {
+        this.guess(1);
+        // The sample is decoded once with "mock_unwrap" throughout the rounds.
+        assertEquals(1, MockUnwrapDecoderPlugin.OPENED.get());
+
+        MockUnwrapDecoderPlugin.OPENED.set(0);
+        this.guess(3);
+        assertEquals(1, MockUnwrapDecoderPlugin.OPENED.get());
+    }
+
+    @Test
+    public void testDecodeOnly() throws Exception {
+        ExecInternal.doWith(this.exec, () -> {
+            final ConfigSource config = Exec.newConfigSource()
+                    .set("guess_plugins", Arrays.asList("mock_a"))
+                    .set("orig_config", Exec.newConfigSource())
+                    .set("guess_parser_sample_buffer_bytes", 1024)
+                    .set("guess_parser_decode_only", true);
+            final GuessExecutor.GuessParserPlugin parser = new GuessExecutor.GuessParserPlugin();
+            parser.transaction(config, (taskSource, schema) -> {
+                try {
+                    parser.run(taskSource, null, new SingleBufferFileInput(SAMPLE), null);
+                    fail();
+                } catch (final GuessExecutor.DecodedNoticeError notice) {
+                    final Buffer decoded = notice.getDecodedSample();
+                    assertEquals("Z:payload", toString(decoded));
+                    decoded.release();
+                }
+            });
+            return null;
+        });
+        // Guess plugins do not run only to decode.
+        assertEquals(0, MockAGuessPlugin.GUESSED.get());
+    }
+
+    private ConfigDiff guess(final int guessPluginThreads) throws ExecutionException {
+        return ExecInternal.doWith(this.exec, () -> {
+            final ConfigSource execConfig = Exec.newConfigSource()
+                    .set("guess_plugins", Arrays.asList("mock_decoder", "mock_a", "mock_b"))
+                    .set("guess_plugin_threads", guessPluginThreads);
+            final GuessExecutor guessExecutor = new GuessExecutor(EmbulkSystemProperties.of(new Properties()));
+            return guessExecutor.guessParserConfig(BufferImpl.copyOf(SAMPLE), Exec.newConfigSource(), execConfig);
+        });
+    }
+
+    private static String toString(final Buffer buffer) {
+        final byte[] bytes = new byte[buffer.limit()];
+        buffer.getBytes(0, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private static org.embulk.config.ModelManager createModelManager() {
+        return new org.embulk.config.ModelManager();
+    }
+
+    // Guesses "mock_unwrap" for a sample starting with "Z:".
+    public static class MockDecoderGuessPlugin implements GuessPlugin {
+        @Override
+        public ConfigDiff guess(final ConfigSource config, final Buffer sample) {
+            final ConfigDiff guessed = Exec.newConfigDiff();
+            if (!config.has("decoders") && TestGuessExecutor.toString(sample).startsWith("Z:")) {
+                guessed.set("decoders", Collections.singletonList(Exec.newConfigSource().set("type", "mock_unwrap")));
+            }
+            return guessed;
+        }
+    }
+
+    // Guesses the sample as "a". It is slower than others so that results come out of order.
+    public static class MockAGuessPlugin implements GuessPlugin {
+        @Override
+        public ConfigDiff guess(final ConfigSource config, final Buffer sample) {
+            GUESSED.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            final ConfigDiff guessed = Exec.newConfigDiff();
+            guessed.getNestedOrSetEmpty("parser").set("a", TestGuessExecutor.toString(sample));
+            return guessed;
+        }
+
+        static final AtomicInteger GUESSED = new AtomicInteger(0);
+    }
+
+    // Guesses "b" only once from "a" at that time. The result depends on which round it is merged in.
+    public static class MockBGuessPlugin implements GuessPlugin {
+        @Override
+        public ConfigDiff guess(final ConfigSource config, final Buffer sample) {
+            final ConfigDiff guessed = Exec.newConfigDiff();
+            final ConfigSource parser = config.getNestedOrGetEmpty("parser");
+            if (!parser.has("b")) {
+                guessed.getNestedOrSetEmpty("parser").set("b", "a=" + parser.get(String.class, "a", "none"));
+            }
+            return guessed;
+        }
+    }
+
+    // Removes the first two bytes.
+    public static class MockUnwrapDecoderPlugin implements DecoderPlugin {
+        @Override
+        public void transaction(final ConfigSource config, final DecoderPlugin.Control control) {
+            control.run(Exec.newTaskSource());
+        }
+
+        @Override
+        public FileInput open(final TaskSource taskSource, final FileInput fileInput) {
+            OPENED.incrementAndGet();
+            return new FileInput() {
+                @Override
+                public boolean nextFile() {
+                    return fileInput.nextFile();
+                }
+
+                @Override
+                public Buffer poll() {
+                    final Buffer buffer = fileInput.poll();
+                    if (buffer == null) {
+                        return null;
+                    }
+                    try {
+                        final byte[] bytes = new byte[buffer.limit()];
+                        buffer.getBytes(0, bytes, 0, bytes.length);
+                        return BufferImpl.copyOf(bytes, 2, bytes.length - 2);
+                    } finally {
+                        buffer.release();
+                    }
+                }
+
+                @Override
+                public void close() {
+                    fileInput.close();
+                }
+            };
+        }
+
+        static final AtomicInteger OPENED = new AtomicInteger(0);
+    }
+
+    private static class SingleBufferFileInput implements FileInput {
+        SingleBufferFileInput(final byte[] bytes) {
+            this.buffer = BufferImpl.copyOf(bytes);
+            this.started = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.started) {
+                return false;
+            }
+            this.started = true;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            final Buffer polled = this.buffer;
+            this.buffer = null;
+            return polled;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private Buffer buffer;
+        private boolean started;
+    }
+
+    private static final byte[] SAMPLE = "Z:payload".getBytes(StandardCharsets.UTF_8);
+
+    private ExecSessionInternal exec;
+}
@@ -0,0 +1,200 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.OutputPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.embulk.spi.ProcessState;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TaskState;
+import org.embulk.spi.TransactionalPageOutput;
+import org.embulk.spi.type.Types;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestLocalExecutorPlugin {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testResumeSkipsCommittedOutputTasks() {
+        final MockProcessState state = new MockProcessState(1, 3);
+        final TaskReport committed = Exec.newTaskReport().set("attempt", "previous");
+        state.getOutputTaskState(1).setTaskReport(committed);
+
+        final MockOutputPlugin outputPlugin = new MockOutputPlugin(3);
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try (LocalExecutorPlugin.ScatterTransactionalPageOutput tran =
+                     new LocalExecutorPlugin.ScatterTransactionalPageOutput(state, 0, 3, ScatterRouting.ROUND_ROBIN)) {
+            tran.openOutputs(outputPlugin, SCHEMA, Exec.newTaskSource());
+            tran.openFilters(Collections.emptyList(), Collections.singletonList(SCHEMA), Collections.emptyList(), null);
+            tran.startWorkers(executor, 2);
+            for (int i = 1; i <= 6; i++) {
+                tran.add(PageImpl.allocate(i));  // The size identifies the page.
+            }
+            tran.finish();
+            tran.commit();
+        } finally {
+            executor.shutdown();
+        }
+
+        // Pages are routed as in the previous attempt. Pages for the committed output task are skipped.
+        assertEquals(Arrays.asList(1, 4), outputPlugin.outputs[0].pageSizes);
+        assertNull(outputPlugin.outputs[1]);
+        assertEquals(Arrays.asList(3, 6), outputPlugin.outputs[2].pageSizes);
+
+        assertSame(committed, state.getOutputTaskState(1).getTaskReport().get());
+        assertTrue(state.getOutputTaskState(0).isCommitted());
+        assertTrue(state.getOutputTaskState(2).isCommitted());
+    }
+
+    @Test
+    public void testRejectPartialResumeWithLoadAwareRouting() {
+        final MockProcessState state = new MockProcessState(1, 3);
+        state.getOutputTaskState(1).setTaskReport(Exec.newTaskReport());
+
+        final MockOutputPlugin outputPlugin = new MockOutputPlugin(3);
+        try (LocalExecutorPlugin.ScatterTransactionalPageOutput tran =
+                     new LocalExecutorPlugin.ScatterTransactionalPageOutput(state, 0, 3, ScatterRouting.LEAST_QUEUED)) {
+            tran.openOutputs(outputPlugin, SCHEMA, Exec.newTaskSource());
+            fail();
+        } catch (final IllegalStateException ex) {
+            // Expected.
+        }
+        assertFalse(state.getOutputTaskState(0).isCommitted());
+        assertFalse(state.getOutputTaskState(2).isCommitted());
+    }
+
+    @Test
+    public void testRejectLoadAwareRoutingWhenResumable() throws Exception {
+        final LocalExecutorPlugin executorPlugin = new LocalExecutorPlugin(EmbulkSystemProperties.of(new Properties()));
+        final ConfigSource config = Exec.newConfigSource()
+                .set("min_output_tasks", 4)
+                .set("scatter_routing", "least_queued");
+
+        final List<Integer> outputTaskCounts = new ArrayList<>();
+        executorPlugin.transaction(config, SCHEMA, 1, (schema, outputTaskCount, executor) -> outputTaskCounts.add(outputTaskCount));
+        assertEquals(Arrays.asList(4), outputTaskCounts);
+
+        try {
+            ExecInternal.doWith(this.runtime.getExec().forResumable(), () -> {
+                executorPlugin.transaction(config, SCHEMA, 1, (schema, outputTaskCount, executor) -> fail());
+                return null;
+            });
+            fail();
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ConfigException);
+        }
+    }
+
+    private static class MockProcessState implements ProcessState {
+        MockProcessState(final int inputTaskCount, final int outputTaskCount) {
+            this.initialize(inputTaskCount, outputTaskCount);
+        }
+
+        @Override
+        public void initialize(final int inputTaskCount, final int outputTaskCount) {
+            this.inputTaskStates = new ArrayList<>();
+            for (int i = 0; i < inputTaskCount; i++) {
+                this.inputTaskStates.add(new TaskState());
+            }
+            this.outputTaskStates = new ArrayList<>();
+            for (int i = 0; i < outputTaskCount; i++) {
+                this.outputTaskStates.add(new TaskState());
+            }
+        }
+
+        @Override
+        public TaskState getInputTaskState(final int inputTaskIndex) {
+            return this.inputTaskStates.get(inputTaskIndex);
+        }
+
+        @Override
+        public TaskState getOutputTaskState(final int outputTaskIndex) {
+            return this.outputTaskStates.get(outputTaskIndex);
+        }
+
+        private List<TaskState> inputTaskStates;
+        private List<TaskState> outputTaskStates;
+    }
+
+    private static class MockOutputPlugin implements OutputPlugin {
+        MockOutputPlugin(final int taskCount) {
+            this.outputs = new MockOutput[taskCount];
+        }
+
+        @Override
+        public ConfigDiff transaction(final ConfigSource config, final Schema schema, final int taskCount, final OutputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConfigDiff resume(final TaskSource taskSource, final Schema schema, final int taskCount, final OutputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanup(final TaskSource taskSource, final Schema schema, final int taskCount, final List<TaskReport> successTaskReports) {
+        }
+
+        @Override
+        public TransactionalPageOutput open(final TaskSource taskSource, final Schema schema, final int taskIndex) {
+            this.outputs[taskIndex] = new MockOutput();
+            return this.outputs[taskIndex];
+        }
+
+        private final MockOutput[] outputs;
+    }
+
+    private static class MockOutput implements TransactionalPageOutput {
+        @Override
+        public void add(final Page page) {
+            this.pageSizes.add(page.buffer().capacity());
+            page.release();
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void abort() {
+        }
+
+        @Override
+        public TaskReport commit() {
+            return Exec.newTaskReport();
+        }
+
+        private final List<Integer> pageSizes = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private static final Schema SCHEMA = Schema.builder().add("c0", Types.STRING).build();
+}
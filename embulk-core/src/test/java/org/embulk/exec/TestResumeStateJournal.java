@@ -0,0 +1,112 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import org.embulk.config.ModelManager;
+import org.embulk.config.TaskReport;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestResumeStateJournal {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReplay() throws Exception {
+        final ModelManager model = ExecInternal.getModelManager();
+        final Path path = this.temporaryFolder.getRoot().toPath().resolve("resume.yml.journal");
+
+        final ResumeStateJournal journal = new ResumeStateJournal(path);
+        journal.start(newResumeState(Optional.of(report(0)), Optional.empty(), Optional.empty()), model);
+        journal.appendInputTaskReport(2, report(2));
+        journal.appendOutputTaskReport(0, report(10));
+        journal.close();
+
+        final ResumeState replayed = ResumeStateJournal.replay(path, model).get();
+        assertEquals(Arrays.asList(Optional.of(report(0)), Optional.empty(), Optional.of(report(2))), replayed.getInputTaskReports());
+        assertEquals(Arrays.asList(Optional.of(report(10))), replayed.getOutputTaskReports());
+        assertEquals(1, replayed.getInputSchema().size());
+        assertEquals("2024-01-02 03:04:05 UTC", replayed.getExecSessionConfigSource().get(String.class, "transaction_time"));
+    }
+
+    @Test
+    public void testIgnoreUnterminatedLine() throws Exception {
+        final ModelManager model = ExecInternal.getModelManager();
+        final Path path = this.temporaryFolder.getRoot().toPath().resolve("resume.yml.journal");
+
+        final ResumeStateJournal journal = new ResumeStateJournal(path);
+        journal.start(newResumeState(Optional.empty(), Optional.empty(), Optional.empty()), model);
+        journal.appendInputTaskReport(1, report(1));
+        journal.close();
+        Files.write(path, "I 2 {\"file\":".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        final ResumeState replayed = ResumeStateJournal.replay(path, model).get();
+        assertEquals(Arrays.asList(Optional.empty(), Optional.of(report(1)), Optional.empty()), replayed.getInputTaskReports());
+    }
+
+    @Test
+    public void testRestartCompacts() throws Exception {
+        final ModelManager model = ExecInternal.getModelManager();
+        final Path path = this.temporaryFolder.getRoot().toPath().resolve("resume.yml.journal");
+
+        final ResumeStateJournal journal = new ResumeStateJournal(path);
+        journal.start(newResumeState(Optional.empty(), Optional.empty(), Optional.empty()), model);
+        journal.appendInputTaskReport(0, report(0));
+        journal.close();
+
+        final ResumeStateJournal resumed = new ResumeStateJournal(path);
+        resumed.start(ResumeStateJournal.replay(path, model).get(), model);
+        assertEquals(1, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+        resumed.appendInputTaskReport(1, report(1));
+        resumed.close();
+
+        final ResumeState replayed = ResumeStateJournal.replay(path, model).get();
+        assertEquals(Arrays.asList(Optional.of(report(0)), Optional.of(report(1)), Optional.empty()), replayed.getInputTaskReports());
+    }
+
+    @Test
+    public void testNoJournal() throws Exception {
+        final Path path = this.temporaryFolder.getRoot().toPath().resolve("resume.yml.journal");
+        assertFalse(ResumeStateJournal.replay(path, ExecInternal.getModelManager()).isPresent());
+
+        final ResumeStateJournal journal = new ResumeStateJournal(path);
+        journal.start(newResumeState(Optional.empty(), Optional.empty(), Optional.empty()), ExecInternal.getModelManager());
+        assertTrue(Files.exists(path));
+        journal.delete();
+        assertFalse(Files.exists(path));
+    }
+
+    private static ResumeState newResumeState(
+            final Optional<TaskReport> input0, final Optional<TaskReport> input1, final Optional<TaskReport> input2) {
+        final Schema schema = Schema.builder().add("c0", Types.STRING).build();
+        return new ResumeState(
+                Exec.newConfigSource().set("transaction_time", "2024-01-02 03:04:05 UTC"),
+                Exec.newTaskSource().set("in", "x"),
+                Exec.newTaskSource().set("out", "y"),
+                schema,
+                schema,
+                Arrays.asList(input0, input1, input2),
+                Arrays.asList(Optional.<TaskReport>empty()));
+    }
+
+    private static TaskReport report(final int index) {
+        return Exec.newTaskReport().set("file", "file" + index);
+    }
+}
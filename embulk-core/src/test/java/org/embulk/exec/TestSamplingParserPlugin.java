@@ -0,0 +1,168 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileInputPlugin;
+import org.embulk.spi.FileInputRunner;
+import org.embulk.spi.TransactionalFileInput;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestSamplingParserPlugin {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testParallelSampleOfFirstTaskWithEnoughSample() {
+        // Tasks 2 and 4 read enough sample. The sample of task 2 is taken in both ways.
+        assertSameSample(new int[] { 10, 30, 100, 20, 50, 0, 60, 5 }, 4);
+    }
+
+    @Test
+    public void testParallelSampleOfLargestTask() {
+        // No tasks read enough sample. The largest, the earliest among the same size, is taken in both ways.
+        assertSameSample(new int[] { 10, 30, 0, 20, 30, 5 }, 3);
+    }
+
+    @Test
+    public void testInputPluginPerThread() {
+        final AtomicInteger plugins = new AtomicInteger(0);
+        final AtomicBoolean sharedConcurrently = new AtomicBoolean(false);
+        final int[] sizes = new int[] { 10, 10, 10, 10, 10, 10, 10, 10, 100 };
+
+        final Buffer sample = SamplingParserPlugin.runFileInputSampling(
+                newRunner(sizes, null, null),
+                () -> newRunner(sizes, plugins, sharedConcurrently),
+                Exec.newConfigSource(),
+                Exec.newConfigSource().set("sample_threads", 4));
+        sample.release();
+
+        assertFalse(sharedConcurrently.get());
+        assertTrue(plugins.get() >= 1 && plugins.get() <= 4);
+    }
+
+    private static void assertSameSample(final int[] sizes, final int threads) {
+        final byte[] sequential = sample(sizes, 1);
+        final byte[] parallel = sample(sizes, threads);
+        assertArrayEquals(sequential, parallel);
+    }
+
+    private static byte[] sample(final int[] sizes, final int threads) {
+        final Buffer sample = SamplingParserPlugin.runFileInputSampling(
+                newRunner(sizes, null, null),
+                () -> newRunner(sizes, null, null),
+                Exec.newConfigSource(),
+                Exec.newConfigSource().set("sample_threads", threads));
+        try {
+            final byte[] bytes = new byte[sample.limit()];
+            sample.getBytes(0, bytes, 0, bytes.length);
+            return bytes;
+        } finally {
+            sample.release();
+        }
+    }
+
+    private static FileInputRunner newRunner(final int[] sizes, final AtomicInteger plugins, final AtomicBoolean sharedConcurrently) {
+        if (plugins != null) {
+            plugins.incrementAndGet();
+        }
+        return new FileInputRunner(new MockFileInputPlugin(sizes, sharedConcurrently), EmbulkSystemProperties.of(new Properties()));
+    }
+
+    // Task i reads a file of sizes[i] bytes filled with ('a' + i).
+    private static class MockFileInputPlugin implements FileInputPlugin {
+        MockFileInputPlugin(final int[] sizes, final AtomicBoolean sharedConcurrently) {
+            this.sizes = sizes;
+            this.sharedConcurrently = sharedConcurrently;
+            this.opened = new AtomicInteger(0);
+        }
+
+        @Override
+        public ConfigDiff transaction(final ConfigSource config, final FileInputPlugin.Control control) {
+            control.run(Exec.newTaskSource(), this.sizes.length);
+            return Exec.newConfigDiff();
+        }
+
+        @Override
+        public ConfigDiff resume(final TaskSource taskSource, final int taskCount, final FileInputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanup(final TaskSource taskSource, final int taskCount, final List<TaskReport> successTaskReports) {
+        }
+
+        @Override
+        public TransactionalFileInput open(final TaskSource taskSource, final int taskIndex) {
+            if (this.opened.incrementAndGet() > 1 && this.sharedConcurrently != null) {
+                this.sharedConcurrently.set(true);
+            }
+            final byte[] content = new byte[this.sizes[taskIndex]];
+            Arrays.fill(content, (byte) ('a' + taskIndex));
+            return new TransactionalFileInput() {
+                @Override
+                public boolean nextFile() {
+                    if (this.started) {
+                        return false;
+                    }
+                    this.started = true;
+                    return true;
+                }
+
+                @Override
+                public Buffer poll() {
+                    if (this.polled) {
+                        return null;
+                    }
+                    this.polled = true;
+                    try {
+                        Thread.sleep(5);  // So that tasks overlap.
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    final Buffer buffer = BufferImpl.allocate(content.length);
+                    buffer.setBytes(0, content, 0, content.length);
+                    buffer.limit(content.length);
+                    return buffer;
+                }
+
+                @Override
+                public void close() {
+                    opened.decrementAndGet();
+                }
+
+                @Override
+                public void abort() {
+                }
+
+                @Override
+                public TaskReport commit() {
+                    return Exec.newTaskReport();
+                }
+
+                private boolean started = false;
+                private boolean polled = false;
+            };
+        }
+
+        private final int[] sizes;
+        private final AtomicBoolean sharedConcurrently;
+        private final AtomicInteger opened;
+    }
+}
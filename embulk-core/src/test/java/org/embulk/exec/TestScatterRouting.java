@@ -0,0 +1,98 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.embulk.config.ConfigException;
+import org.junit.Test;
+
+public class TestScatterRouting {
+    @Test
+    public void testOf() {
+        assertSame(ScatterRouting.ROUND_ROBIN, ScatterRouting.of("round_robin"));
+        assertSame(ScatterRouting.LEAST_QUEUED, ScatterRouting.of("least_queued"));
+        assertSame(ScatterRouting.BYTES_BALANCED, ScatterRouting.of("BYTES_BALANCED"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testOfUnknown() {
+        ScatterRouting.of("random");
+    }
+
+    @Test
+    public void testRoundRobin() {
+        final MockWorkers workers = new MockWorkers(new int[] { 3, 0, 0 }, new long[] { 0, 0, 0 });
+        assertEquals(0, ScatterRouting.ROUND_ROBIN.route(workers, 0));
+        assertEquals(1, ScatterRouting.ROUND_ROBIN.route(workers, 1));
+        assertEquals(2, ScatterRouting.ROUND_ROBIN.route(workers, 2));
+        assertEquals(0, ScatterRouting.ROUND_ROBIN.route(workers, 3));
+    }
+
+    @Test
+    public void testLeastQueued() {
+        final MockWorkers workers = new MockWorkers(new int[] { 3, 1, 2 }, new long[] { 0, 0, 0 });
+        assertEquals(1, ScatterRouting.LEAST_QUEUED.route(workers, 0));
+        assertEquals(1, ScatterRouting.LEAST_QUEUED.route(workers, 2));
+
+        workers.queuedPages[1] = 4;
+        assertEquals(2, ScatterRouting.LEAST_QUEUED.route(workers, 0));
+
+        workers.available[2] = false;
+        assertEquals(0, ScatterRouting.LEAST_QUEUED.route(workers, 0));
+    }
+
+    @Test
+    public void testLeastQueuedTieStartsFromRoundRobin() {
+        final MockWorkers workers = new MockWorkers(new int[] { 0, 0, 0 }, new long[] { 0, 0, 0 });
+        assertEquals(0, ScatterRouting.LEAST_QUEUED.route(workers, 0));
+        assertEquals(1, ScatterRouting.LEAST_QUEUED.route(workers, 1));
+        assertEquals(2, ScatterRouting.LEAST_QUEUED.route(workers, 5));
+    }
+
+    @Test
+    public void testBytesBalanced() {
+        final MockWorkers workers = new MockWorkers(new int[] { 0, 0, 0 }, new long[] { 300, 100, 200 });
+        assertEquals(1, ScatterRouting.BYTES_BALANCED.route(workers, 0));
+
+        workers.addedBytes[1] = 400;
+        assertEquals(2, ScatterRouting.BYTES_BALANCED.route(workers, 0));
+
+        workers.available[2] = false;
+        assertEquals(0, ScatterRouting.BYTES_BALANCED.route(workers, 0));
+    }
+
+    private static class MockWorkers implements ScatterRouting.Workers {
+        MockWorkers(final int[] queuedPages, final long[] addedBytes) {
+            this.queuedPages = queuedPages;
+            this.addedBytes = addedBytes;
+            this.available = new boolean[queuedPages.length];
+            for (int i = 0; i < this.available.length; i++) {
+                this.available[i] = true;
+            }
+        }
+
+        @Override
+        public int count() {
+            return this.queuedPages.length;
+        }
+
+        @Override
+        public boolean isAvailable(final int index) {
+            return this.available[index];
+        }
+
+        @Override
+        public int getQueuedPages(final int index) {
+            return this.queuedPages[index];
+        }
+
+        @Override
+        public long getAddedBytes(final int index) {
+            return this.addedBytes[index];
+        }
+
+        final int[] queuedPages;
+        final long[] addedBytes;
+        final boolean[] available;
+    }
+}
@@ -0,0 +1,108 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class TestSpscRingQueue {
+    @Test
+    public void testOfferAndPoll() {
+        final SpscRingQueue<String> queue = new SpscRingQueue<>(2);
+        assertTrue(queue.offer("a"));
+        assertTrue(queue.offer("b"));
+        assertFalse(queue.offer("c"));
+        assertEquals(2, queue.size());
+
+        assertEquals("a", queue.poll());
+        assertTrue(queue.offer("c"));
+        assertEquals("b", queue.poll());
+        assertEquals("c", queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testDrainTo() {
+        final SpscRingQueue<Integer> queue = new SpscRingQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+
+        final Integer[] batch = new Integer[3];
+        assertEquals(3, queue.drainTo(batch));
+        assertEquals(Integer.valueOf(0), batch[0]);
+        assertEquals(Integer.valueOf(1), batch[1]);
+        assertEquals(Integer.valueOf(2), batch[2]);
+        assertEquals(1, queue.drainTo(batch));
+        assertEquals(Integer.valueOf(3), batch[0]);
+        assertEquals(0, queue.drainTo(batch));
+    }
+
+    @Test
+    public void testPutAfterClose() throws InterruptedException {
+        final SpscRingQueue<String> queue = new SpscRingQueue<>(1);
+        assertTrue(queue.put("a"));
+        queue.close();
+        assertFalse(queue.put("b"));
+        assertEquals("a", queue.poll());
+    }
+
+    @Test
+    public void testCloseWakesUpWaitingProducer() throws InterruptedException {
+        final SpscRingQueue<String> queue = new SpscRingQueue<>(1);
+        assertTrue(queue.put("a"));
+
+        final AtomicReference<Boolean> result = new AtomicReference<>();
+        final Thread producer = new Thread(() -> {
+            try {
+                result.set(queue.put("b"));
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        producer.start();
+        Thread.sleep(100);
+        queue.close();
+        producer.join(10000);
+
+        assertFalse(producer.isAlive());
+        assertEquals(Boolean.FALSE, result.get());
+    }
+
+    @Test
+    public void testHandOffInOrder() throws InterruptedException {
+        final int count = 100000;
+        final SpscRingQueue<Integer> queue = new SpscRingQueue<>(3);
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread consumer = new Thread(() -> {
+            final Integer[] batch = new Integer[3];
+            try {
+                int expected = 0;
+                while (expected < count) {
+                    final int taken = queue.take(batch);
+                    for (int i = 0; i < taken; i++) {
+                        assertEquals(Integer.valueOf(expected), batch[i]);
+                        expected++;
+                    }
+                }
+            } catch (final Throwable ex) {
+                error.set(ex);
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(queue.put(i));
+        }
+        consumer.join(60000);
+
+        assertFalse(consumer.isAlive());
+        assertNull(error.get());
+        assertNull(queue.poll());
+    }
+}
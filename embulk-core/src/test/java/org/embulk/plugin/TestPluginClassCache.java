@@ -0,0 +1,61 @@
+package org.embulk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.Test;
+
+public class TestPluginClassCache {
+    @Test
+    public void testLoadOnce() throws Exception {
+        final PluginClassCache<String> cache = new PluginClassCache<>();
+        final AtomicInteger loaded = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Class<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    return cache.computeIfAbsent("foo", () -> {
+                        loaded.incrementAndGet();
+                        LockSupport.parkNanos(50_000_000L);  // Other threads look up the key meanwhile.
+                        return String.class;
+                    });
+                }));
+            }
+            latch.countDown();
+            for (final Future<Class<?>> future : futures) {
+                assertSame(String.class, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loaded.get());
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        final PluginClassCache<String> cache = new PluginClassCache<>();
+        try {
+            cache.computeIfAbsent("foo", () -> {
+                throw new PluginSourceNotMatchException("not found");
+            });
+            fail();
+        } catch (final PluginSourceNotMatchException ex) {
+            assertEquals("not found", ex.getMessage());
+        }
+        assertSame(Integer.class, cache.computeIfAbsent("foo", () -> Integer.class));
+        assertSame(Integer.class, cache.computeIfAbsent("foo", () -> Long.class));
+    }
+}
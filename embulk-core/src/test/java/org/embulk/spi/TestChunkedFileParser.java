@@ -0,0 +1,450 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.WorkStealingForkJoinPool;
+import org.embulk.spi.util.SeekableFileInput;
+import org.junit.Test;
+
+public class TestChunkedFileParser {
+    @Test
+    public void testSameAsSingleThreadedParse() {
+        final String file = numberedLines("v", 50, "\n");
+        final List<String> expected = parseSingleThreaded(file, 0, false);
+        assertEquals(50, expected.size());
+
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        newParser(ranges, 0, false, 16, 3, true).run(new MockLineParserPlugin(0, false, 0), input, output);
+
+        assertEquals(expected, output.values);
+        assertTrue("Ranges parsed: " + ranges.size(), ranges.size() > 2);
+        assertEquals(file.length(), ranges.stream().mapToInt(String::length).sum());
+        assertEquals(1, output.finished);
+        assertEquals(0, input.liveBuffers.get());
+        assertEquals(0, input.openRanges.get());
+    }
+
+    @Test
+    public void testRangesSplitAtLineDelimiters() {
+        // Lines of various lengths so that chunks end in the middle of lines.
+        final StringBuilder file = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            file.append(String.join("", Collections.nCopies(i % 7, "x"))).append(i).append("\n");
+        }
+        final MockSeekableFileInput input = new MockSeekableFileInput(file.toString());
+        final MockPageOutput output = new MockPageOutput();
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        newParser(ranges, 0, false, 10, 2, true).run(new MockLineParserPlugin(0, false, 0), input, output);
+
+        assertEquals(parseSingleThreaded(file.toString(), 0, false), output.values);
+        assertTrue(ranges.size() > 2);
+        for (final String range : ranges) {
+            assertTrue("A range ends in the middle of a line: " + range, range.endsWith("\n"));
+        }
+    }
+
+    @Test
+    public void testHeaderPrependedToRanges() {
+        final String file = "name\n" + numberedLines("v", 30, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        newParser(ranges, 1, false, 16, 3, true).run(new MockLineParserPlugin(1, false, 0), input, output);
+
+        // The header is skipped in every range, and no records at the beginning of ranges are skipped instead.
+        assertEquals(parseSingleThreaded(file, 1, false), output.values);
+        assertEquals(30, output.values.size());
+        assertTrue(ranges.size() > 2);
+        for (final String range : ranges) {
+            assertTrue("A range without the header: " + range, range.startsWith("name\n"));
+            assertFalse("The header in the body of a range: " + range, range.substring(5).contains("name"));
+        }
+    }
+
+    @Test
+    public void testExplicitDelimiterDroppedAtRangeEnds() {
+        final String file = numberedLines("v", 30, "\r\n");
+        final List<String> expected = parseSingleThreaded(file, 0, true);
+        // An empty line follows the last delimiter with the explicit delimiter.
+        assertEquals("", expected.get(expected.size() - 1));
+
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        newParser(ranges, 0, true, 16, 3, true).run(new MockLineParserPlugin(0, true, 0), input, output);
+
+        // Empty lines are not found at the end of every range, but only at the end of the file.
+        assertEquals(expected, output.values);
+        assertTrue(ranges.size() > 2);
+        assertEquals(1, ranges.stream().filter(range -> range.endsWith("\r\n")).count());
+    }
+
+    @Test
+    public void testUnorderedOutput() {
+        final String file = numberedLines("v", 60, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        new ChunkedFileParser(slowerEarlierParsers(), null, null, new byte[] { '\n' }, false, 0, 16, 4, false)
+                .run(new MockLineParserPlugin(0, false, 0), input, output);
+
+        final List<String> expected = parseSingleThreaded(file, 0, false);
+        // Records are sent as soon as parsed, and later ranges are sent first.
+        assertNotEquals(expected, output.values);
+        final List<String> sorted = new ArrayList<>(output.values);
+        Collections.sort(sorted);
+        final List<String> expectedSorted = new ArrayList<>(expected);
+        Collections.sort(expectedSorted);
+        assertEquals(expectedSorted, sorted);
+        assertEquals(1, output.finished);
+        assertEquals(0, input.openRanges.get());
+    }
+
+    @Test
+    public void testOrderedOutput() {
+        final String file = numberedLines("v", 60, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        new ChunkedFileParser(slowerEarlierParsers(), null, null, new byte[] { '\n' }, false, 0, 16, 4, true)
+                .run(new MockLineParserPlugin(0, false, 0), input, output);
+
+        assertEquals(parseSingleThreaded(file, 0, false), output.values);
+        assertEquals(1, output.finished);
+        assertEquals(0, input.openRanges.get());
+        assertEquals(0, MockLineParserPlugin.LIVE_PAGES.get());
+    }
+
+    @Test
+    public void testOrderedOutputOnWorkStealingPool() {
+        final String file = numberedLines("v", 60, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        final ChunkedFileParser parser =
+                new ChunkedFileParser(slowerEarlierParsers(), null, null, new byte[] { '\n' }, false, 0, 16, 4, true);
+
+        final WorkStealingForkJoinPool pool = new WorkStealingForkJoinPool(4, 16);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> parser.run(new MockLineParserPlugin(0, false, 0), input, output)));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(parseSingleThreaded(file, 0, false), output.values);
+        assertEquals(1, output.finished);
+        assertEquals(0, input.openRanges.get());
+    }
+
+    @Test
+    public void testSmallFilesParsedInInputTask() {
+        final String large = numberedLines("v", 10, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput("a\nb\n", "c\n", large);
+        input.sizeUnknownAt = 2;  // The large file is not split without its size.
+        final MockPageOutput output = new MockPageOutput();
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        newParser(ranges, 0, false, 16, 3, true).run(new MockLineParserPlugin(0, false, 0), input, output);
+
+        final List<String> expected = new ArrayList<>(Arrays.asList("a", "b", "c"));
+        expected.addAll(parseSingleThreaded(large, 0, false));
+        assertEquals(expected, output.values);
+        assertTrue(ranges.isEmpty());
+        assertEquals(1, output.finished);
+    }
+
+    @Test
+    public void testErrorInRange() {
+        final String file = numberedLines("v", 20, "\n") + "error\n" + numberedLines("w", 20, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+
+        try {
+            newParser(new ArrayList<>(), 0, false, 16, 3, true).run(new MockLineParserPlugin(0, false, 0), input, output);
+            fail();
+        } catch (final IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("emulated"));
+        }
+        // Only records before the error are sent. Pages held for ranges after the error are released.
+        assertTrue(output.values.size() <= 20);
+        assertEquals(parseSingleThreaded(numberedLines("v", 20, "\n"), 0, false).subList(0, output.values.size()), output.values);
+        assertEquals(0, output.finished);
+        assertEquals(0, input.liveBuffers.get());
+        assertEquals(0, input.openRanges.get());
+        assertEquals(0, MockLineParserPlugin.LIVE_PAGES.get());
+    }
+
+    @Test
+    public void testErrorInOutput() {
+        final String file = numberedLines("v", 50, "\n");
+        final MockSeekableFileInput input = new MockSeekableFileInput(file);
+        final MockPageOutput output = new MockPageOutput();
+        output.failAt = 5;
+
+        try {
+            newParser(new ArrayList<>(), 0, false, 16, 3, true).run(new MockLineParserPlugin(0, false, 0), input, output);
+            fail();
+        } catch (final IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("emulated"));
+        }
+        assertEquals(5, output.values.size());
+        assertEquals(0, output.finished);
+        assertEquals(0, input.openRanges.get());
+        assertEquals(0, MockLineParserPlugin.LIVE_PAGES.get());
+    }
+
+    // Creates parsers of which earlier ones are slower so that later ranges are parsed first.
+    private static Supplier<ParserPlugin> slowerEarlierParsers() {
+        final AtomicInteger created = new AtomicInteger(0);
+        return () -> new MockLineParserPlugin(0, false, Math.max(0, 40 - 10 * created.getAndIncrement()));
+    }
+
+    private static ChunkedFileParser newParser(
+            final List<String> ranges,
+            final int headerLines,
+            final boolean delimiterExplicit,
+            final long chunkBytes,
+            final int parallelism,
+            final boolean preserveOrder) {
+        return new ChunkedFileParser(
+                () -> new MockLineParserPlugin(headerLines, delimiterExplicit, 0, ranges), null, null, delimiterExplicit ? new byte[] { '\r', '\n' } : new byte[] { '\n' }, delimiterExplicit,
+                headerLines, chunkBytes, parallelism, preserveOrder);
+    }
+
+    private static List<String> parseSingleThreaded(final String file, final int headerLines, final boolean delimiterExplicit) {
+        final MockPageOutput output = new MockPageOutput();
+        new MockLineParserPlugin(headerLines, delimiterExplicit, 0).run(null, null, new MockSeekableFileInput(file), output);
+        return output.values;
+    }
+
+    private static String numberedLines(final String prefix, final int count, final String delimiter) {
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            lines.append(prefix).append(i).append(delimiter);
+        }
+        return lines.toString();
+    }
+
+    private static byte[] readAll(final FileInput input) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Buffer buffer;
+        while ((buffer = input.poll()) != null) {
+            final byte[] b = new byte[buffer.limit()];
+            buffer.getBytes(0, b, 0, b.length);
+            buffer.release();
+            bytes.write(b, 0, b.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Parses each line into a page, which refers the line as a string, as a parser with LineDecoder does. Any of CR, LF,
+    // and CRLF ends a line unless the delimiter is explicit, then an empty line follows the last delimiter.
+    private static class MockLineParserPlugin implements ParserPlugin {
+        MockLineParserPlugin(final int headerLines, final boolean delimiterExplicit, final long sleepMillis) {
+            this(headerLines, delimiterExplicit, sleepMillis, new ArrayList<>());
+        }
+
+        MockLineParserPlugin(final int headerLines, final boolean delimiterExplicit, final long sleepMillis, final List<String> parsed) {
+            this.headerLines = headerLines;
+            this.delimiterExplicit = delimiterExplicit;
+            this.sleepMillis = sleepMillis;
+            this.parsed = parsed;
+        }
+
+        @Override
+        public void transaction(final ConfigSource config, final ParserPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void run(final TaskSource taskSource, final Schema schema, final FileInput input, final PageOutput output) {
+            while (input.nextFile()) {
+                final String content = new String(readAll(input), StandardCharsets.UTF_8);
+                this.parsed.add(content);
+                final List<String> lines;
+                if (this.delimiterExplicit) {
+                    lines = Arrays.asList(content.split("\r\n", -1));
+                } else {
+                    lines = Arrays.asList(content.split("\r\n|\r|\n"));
+                }
+                if (this.sleepMillis > 0) {
+                    try {
+                        Thread.sleep(this.sleepMillis);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                for (final String line : lines.subList(Math.min(this.headerLines, lines.size()), lines.size())) {
+                    if ("error".equals(line)) {
+                        throw new IllegalStateException("emulated at a line");
+                    }
+                    LIVE_PAGES.incrementAndGet();
+                    output.add(new PageImpl(BufferImpl.allocate(0)) {
+                            @Override
+                            public void release() {
+                                LIVE_PAGES.decrementAndGet();
+                            }
+                        }.setStringReferences(Arrays.asList(line)));
+                }
+            }
+        }
+
+        static final AtomicInteger LIVE_PAGES = new AtomicInteger(0);
+
+        private final int headerLines;
+        private final boolean delimiterExplicit;
+        private final long sleepMillis;
+        private final List<String> parsed;  // Contents of files parsed.
+    }
+
+    private static class MockPageOutput implements PageOutput {
+        @Override
+        public synchronized void add(final Page page) {
+            if (this.values.size() == this.failAt) {
+                page.release();
+                throw new IllegalStateException("emulated in output");
+            }
+            this.values.add(page.getStringReference(0));
+            page.release();
+        }
+
+        @Override
+        public void finish() {
+            this.finished++;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final List<String> values = new ArrayList<>();
+        private int finished = 0;
+        private int failAt = -1;
+    }
+
+    // Files in buffers of 5 bytes at most. A range of the current file is read independently.
+    private static class MockSeekableFileInput implements SeekableFileInput {
+        MockSeekableFileInput(final String... files) {
+            this.files = new ArrayList<>();
+            for (final String file : files) {
+                this.files.add(file.getBytes(StandardCharsets.UTF_8));
+            }
+            this.index = -1;
+            this.position = 0;
+            this.sizeUnknownAt = -1;
+            this.liveBuffers = new AtomicInteger(0);
+            this.openRanges = new AtomicInteger(0);
+        }
+
+        @Override
+        public boolean nextFile() {
+            this.index++;
+            this.position = 0;
+            return this.index < this.files.size();
+        }
+
+        @Override
+        public Buffer poll() {
+            final byte[] file = this.files.get(this.index);
+            if (this.position >= file.length) {
+                return null;
+            }
+            final int length = Math.min(5, file.length - this.position);
+            final Buffer buffer = this.newBuffer(file, this.position, length);
+            this.position += length;
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return Optional.of("file-" + this.index);
+        }
+
+        @Override
+        public OptionalLong sizeOfCurrentFile() {
+            if (this.index == this.sizeUnknownAt) {
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(this.files.get(this.index).length);
+        }
+
+        @Override
+        public FileInput openRangeOfCurrentFile(final long offset, final long length) {
+            final byte[] file = this.files.get(this.index);
+            final int start = (int) Math.min(offset, file.length);
+            final int end = (int) Math.min(offset + length, file.length);
+            this.openRanges.incrementAndGet();
+            return new FileInput() {
+                @Override
+                public boolean nextFile() {
+                    if (this.started) {
+                        return false;
+                    }
+                    this.started = true;
+                    return true;
+                }
+
+                @Override
+                public Buffer poll() {
+                    if (this.position >= end) {
+                        return null;
+                    }
+                    final int bufferLength = Math.min(5, end - this.position);
+                    final Buffer buffer = newBuffer(file, this.position, bufferLength);
+                    this.position += bufferLength;
+                    return buffer;
+                }
+
+                @Override
+                public void close() {
+                    if (!this.closed) {
+                        this.closed = true;
+                        openRanges.decrementAndGet();
+                    }
+                }
+
+                private boolean started = false;
+                private boolean closed = false;
+                private int position = start;
+            };
+        }
+
+        private Buffer newBuffer(final byte[] file, final int offset, final int length) {
+            this.liveBuffers.incrementAndGet();
+            final Buffer buffer = new BufferImpl(Arrays.copyOfRange(file, offset, offset + length), 0, length) {
+                    @Override
+                    public void release() {
+                        liveBuffers.decrementAndGet();
+                    }
+                };
+            buffer.limit(length);
+            return buffer;
+        }
+
+        private final List<byte[]> files;
+        private int index;
+        private int position;
+        private int sizeUnknownAt;
+        private final AtomicInteger liveBuffers;
+        private final AtomicInteger openRanges;
+    }
+}
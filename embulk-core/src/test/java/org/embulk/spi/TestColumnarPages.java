@@ -0,0 +1,184 @@
+package org.embulk.spi;
+
+import static org.embulk.spi.type.Types.BOOLEAN;
+import static org.embulk.spi.type.Types.DOUBLE;
+import static org.embulk.spi.type.Types.JSON;
+import static org.embulk.spi.type.Types.LONG;
+import static org.embulk.spi.type.Types.STRING;
+import static org.embulk.spi.type.Types.TIMESTAMP;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import org.embulk.spi.json.JsonLong;
+import org.embulk.spi.json.JsonString;
+import org.embulk.spi.json.JsonValue;
+import org.embulk.test.EmbulkTestRuntime;
+import org.embulk.test.TestPageBuilderReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestColumnarPages {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private BufferAllocator bufferAllocator;
+    private Schema schema;
+
+    @Before
+    public void setup() {
+        this.bufferAllocator = runtime.getBufferAllocator();
+        this.schema = Schema.builder()
+                .add("c0", BOOLEAN)
+                .add("c1", LONG)
+                .add("c2", DOUBLE)
+                .add("c3", STRING)
+                .add("c4", TIMESTAMP)
+                .add("c5", JSON)
+                .build();
+    }
+
+    @Test
+    public void testVectors() {
+        final Page page = ColumnarPages.toColumnar(this.schema, this.buildPage(), this.bufferAllocator);
+        assertTrue(ColumnarPages.isColumnar(page));
+
+        try (final ColumnarPageReader reader = new ColumnarPageReader(this.schema, this.bufferAllocator)) {
+            reader.setPage(page);
+            assertEquals(3, reader.getRecordCount());
+
+            final boolean[] nulls = new boolean[3];
+            reader.getNulls(this.schema.getColumn(1), nulls);
+            assertArrayEquals(new boolean[] { false, true, false }, nulls);
+
+            final boolean[] booleans = new boolean[3];
+            reader.getBooleans(this.schema.getColumn(0), booleans);
+            assertArrayEquals(new boolean[] { true, false, false }, booleans);
+
+            final long[] longs = new long[3];
+            assertEquals(3, reader.getLongs(this.schema.getColumn(1), longs));
+            assertArrayEquals(new long[] { 1L, 0L, Long.MAX_VALUE }, longs);
+
+            final double[] doubles = new double[3];
+            reader.getDoubles(this.schema.getColumn(2), doubles);
+            assertArrayEquals(new double[] { 0.5, 1.5, 2.5 }, doubles, 0.0);
+
+            final String[] strings = new String[3];
+            reader.getStrings(this.schema.getColumn(3), strings);
+            assertArrayEquals(new String[] { "a", "b", "a" }, strings);
+            assertEquals(2, ((PageImpl) page).getStringReferencesInternal().size());  // Deduplicated.
+
+            final Instant[] instants = new Instant[3];
+            reader.getTimestampInstants(this.schema.getColumn(4), instants);
+            assertArrayEquals(new Instant[] { Instant.ofEpochSecond(10, 5), null, Instant.ofEpochSecond(-1, 999) }, instants);
+
+            final JsonValue[] jsons = new JsonValue[3];
+            reader.getJsonValues(this.schema.getColumn(5), jsons);
+            assertArrayEquals(new JsonValue[] { JsonLong.of(42L), JsonString.of("x"), null }, jsons);
+        }
+    }
+
+    @Test
+    public void testRowPageIsConvertedBySetPage() {
+        try (final ColumnarPageReader reader = new ColumnarPageReader(this.schema, this.bufferAllocator)) {
+            reader.setPage(this.buildPage());
+            final long[] longs = new long[3];
+            reader.getLongs(this.schema.getColumn(1), longs);
+            assertArrayEquals(new long[] { 1L, 0L, Long.MAX_VALUE }, longs);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        try (final ColumnarPageReader reader = new ColumnarPageReader(this.schema, this.bufferAllocator)) {
+            reader.setPage(this.buildPage());
+            reader.getLongs(this.schema.getColumn(2), new long[3]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortDestination() {
+        try (final ColumnarPageReader reader = new ColumnarPageReader(this.schema, this.bufferAllocator)) {
+            reader.setPage(this.buildPage());
+            reader.getLongs(this.schema.getColumn(1), new long[2]);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Page columnar = ColumnarPages.toColumnar(this.schema, this.buildPage(), this.bufferAllocator);
+        final Page rows = ColumnarPages.toRows(this.schema, columnar, this.bufferAllocator);
+        assertFalse(ColumnarPages.isColumnar(rows));
+        this.checkRows(rows);
+    }
+
+    @Test
+    public void testPageReaderReadsColumnarPage() {
+        this.checkRows(ColumnarPages.toColumnar(this.schema, this.buildPage(), this.bufferAllocator));
+    }
+
+    private void checkRows(final Page page) {
+        try (final PageReader reader = new PageReader(this.schema)) {
+            reader.setPage(page);
+
+            assertTrue(reader.nextRecord());
+            assertTrue(reader.getBoolean(0));
+            assertEquals(1L, reader.getLong(1));
+            assertEquals(0.5, reader.getDouble(2), 0.0);
+            assertEquals("a", reader.getString(3));
+            assertEquals(Instant.ofEpochSecond(10, 5), reader.getTimestampInstant(4));
+            assertEquals(JsonLong.of(42L), reader.getJsonValue(5));
+
+            assertTrue(reader.nextRecord());
+            assertTrue(reader.isNull(1));
+            assertEquals("b", reader.getString(3));
+            assertTrue(reader.isNull(4));
+
+            assertTrue(reader.nextRecord());
+            assertEquals(Long.MAX_VALUE, reader.getLong(1));
+            assertEquals("a", reader.getString(3));
+            assertNull(reader.getJsonValue(5));
+
+            assertFalse(reader.nextRecord());
+        }
+    }
+
+    private Page buildPage() {
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        try (final PageBuilder builder = new PageBuilder(this.bufferAllocator, this.schema, output)) {
+            builder.setBoolean(0, true);
+            builder.setLong(1, 1L);
+            builder.setDouble(2, 0.5);
+            builder.setString(3, "a");
+            builder.setTimestamp(4, Instant.ofEpochSecond(10, 5));
+            builder.setJson(5, JsonLong.of(42L));
+            builder.addRecord();
+
+            builder.setBoolean(0, false);
+            builder.setNull(1);
+            builder.setDouble(2, 1.5);
+            builder.setString(3, "b");
+            builder.setNull(4);
+            builder.setJson(5, JsonString.of("x"));
+            builder.addRecord();
+
+            builder.setBoolean(0, false);
+            builder.setLong(1, Long.MAX_VALUE);
+            builder.setDouble(2, 2.5);
+            builder.setString(3, "a");
+            builder.setTimestamp(4, Instant.ofEpochSecond(-1, 999));
+            builder.setNull(5);
+            builder.addRecord();
+
+            builder.flush();
+        }
+        final List<Page> pages = output.pages;
+        assertEquals(1, pages.size());
+        return pages.get(0);
+    }
+}
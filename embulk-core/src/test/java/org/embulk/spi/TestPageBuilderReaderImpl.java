@@ -8,14 +8,20 @@ import static org.embulk.spi.type.Types.STRING;
 import static org.embulk.spi.type.Types.TIMESTAMP;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.msgpack.value.ValueFactory.newBoolean;
 import static org.msgpack.value.ValueFactory.newInteger;
 import static org.msgpack.value.ValueFactory.newMap;
 import static org.msgpack.value.ValueFactory.newString;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import org.embulk.spi.json.JsonLong;
+import org.embulk.spi.json.JsonValue;
+import org.embulk.spi.json.LazyJsonValue;
 import org.embulk.test.EmbulkTestRuntime;
 import org.embulk.test.TestPageBuilderReader;
 import org.junit.After;
@@ -333,6 +339,126 @@ public class TestPageBuilderReaderImpl {
         reader.close();
     }
 
+    @Test
+    public void testLazyJsonValue() {
+        final Schema schema = Schema.builder().add("col1", JSON).build();
+        final String json = "{\"payload\":{\"user\":{\"id\":12,\"name\":\"embulk\"},\"tags\":[\"p\",\"q\",\"r\"]}}";
+
+        // A page holds just 2 records if the reference size counts the raw bytes of each value, plus 16 for the reference.
+        // It would hold only 1 record if it counted more, such as a parsed tree, and 3 or more records if it counted far less.
+        final int fixedRecordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
+        final int capacity = PageFormat.PAGE_HEADER_SIZE + fixedRecordSize * 2 + json.getBytes(StandardCharsets.UTF_8).length + 16;
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(capacity);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return BufferImpl.allocate(Math.max(capacity, minimumCapacity));
+            }
+        };
+
+        final LazyJsonValue[] values = new LazyJsonValue[4];
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        builder = new PageBuilder(bufferAllocator, schema, output);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = LazyJsonValue.of(json);
+            builder.setJson(0, values[i]);
+            builder.addRecord();
+        }
+        builder.finish();
+        builder.close();
+        assertEquals(2, output.pages.size());
+
+        reader = new PageReader(schema);
+        int index = 0;
+        for (final Page page : output.pages) {
+            reader.setPage(page);
+            while (reader.nextRecord()) {
+                final JsonValue value = reader.getJsonValue(0);
+                assertTrue(value instanceof LazyJsonValue);
+                assertSame(values[index], value);
+                assertEquals(json, value.toJson());
+                assertEquals(Optional.of(JsonLong.of(12L)), ((LazyJsonValue) value).get("/payload/user/id"));
+                assertFalse(((LazyJsonValue) value).isParsed());
+                index++;
+            }
+        }
+        assertEquals(values.length, index);
+
+        // getJson converts the value into msgpack, and it parses the whole JSON.
+        reader.setPage(output.pages.get(0));
+        assertTrue(reader.nextRecord());
+        assertEquals(values[0].get().toMsgpack(), reader.getJson(0));
+        reader.close();
+    }
+
+    @Test
+    public void testUnsetColumnsTakeOverPreviousRecord() {
+        // One record in a page so that values are taken over across pages too.
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(1);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return BufferImpl.allocate(minimumCapacity);
+            }
+        };
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        Schema schema = Schema.builder()
+                .add("col0", LONG)
+                .add("col1", STRING)
+                .add("col2", TIMESTAMP)
+                .build();
+
+        builder = new PageBuilder(bufferAllocator, schema, output);
+        builder.setLong(0, 1L);
+        builder.setString(1, "v1");
+        builder.setNull(2);
+        builder.addRecord();
+        builder.setLong(0, 2L);
+        builder.addRecord();
+        builder.setString(1, "v2");
+        builder.setTimestamp(2, Instant.ofEpochSecond(3));
+        builder.addRecord();
+        builder.finish();
+        builder.close();
+
+        assertEquals(3, output.pages.size());
+        reader = new PageReader(schema);
+
+        reader.setPage(output.pages.get(0));
+        assertTrue(reader.nextRecord());
+        assertEquals(1L, reader.getLong(0));
+        assertEquals("v1", reader.getString(1));
+        assertTrue(reader.isNull(2));
+
+        reader.setPage(output.pages.get(1));
+        assertTrue(reader.nextRecord());
+        assertEquals(2L, reader.getLong(0));
+        assertEquals("v1", reader.getString(1));
+        assertTrue(reader.isNull(2));
+
+        reader.setPage(output.pages.get(2));
+        assertTrue(reader.nextRecord());
+        assertEquals(2L, reader.getLong(0));
+        assertEquals("v2", reader.getString(1));
+        assertEquals(Instant.ofEpochSecond(3), reader.getTimestampInstant(2));
+        reader.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSetValueOfWrongType() {
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        this.builder = new PageBuilder(bufferAllocator, Schema.builder().add("col1", STRING).build(), output);
+        builder.setLong(0, 1L);
+    }
+
     @Test
     public void testRepeatableClose() {
         final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
@@ -0,0 +1,276 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.exec.BufferAccounting;
+import org.embulk.exec.WorkStealingForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestWorkStealingFileParser {
+    @Before
+    public void setUp() {
+        this.pool = new WorkStealingForkJoinPool(4, 16);
+    }
+
+    @After
+    public void tearDown() {
+        this.pool.shutdownNow();
+    }
+
+    @Test
+    public void testPagesFromForks() {
+        final MockFileInput input = new MockFileInput(Arrays.asList(
+                Arrays.asList("a"),
+                Arrays.asList("b", "c"),
+                Arrays.asList("d0123456789", "e0123456789", "f"),  // Larger than the limit. Parsed in the input task.
+                Arrays.<String>asList(),
+                Arrays.asList("g")));
+        final MockPageOutput output = new MockPageOutput();
+        final AtomicInteger forkedParsers = new AtomicInteger(0);
+        final WorkStealingFileParser parser = new WorkStealingFileParser(() -> {
+            forkedParsers.incrementAndGet();
+            return new MockParserPlugin(0);
+        }, null, null, 16, 2);
+
+        this.pool.invoke(ForkJoinTask.adapt(() -> parser.run(new MockParserPlugin(0), input, output)));
+
+        final List<String> values = new ArrayList<>(output.values);
+        Collections.sort(values);
+        assertEquals(Arrays.asList("a", "b", "c", "d0123456789", "e0123456789", "f", "g"), values);
+        assertEquals(1, output.finished);
+        assertEquals(4, forkedParsers.get());
+        assertEquals(0, input.live.get());
+    }
+
+    @Test
+    public void testErrorInFork() {
+        final MockFileInput input = new MockFileInput(Arrays.asList(
+                Arrays.asList("a"),
+                Arrays.asList("error"),
+                Arrays.asList("b", "c"),
+                Arrays.asList("d")));
+        final MockPageOutput output = new MockPageOutput();
+        final WorkStealingFileParser parser = new WorkStealingFileParser(() -> new MockParserPlugin(0), null, null, 16, 2);
+
+        try {
+            this.pool.invoke(ForkJoinTask.adapt(() -> parser.run(new MockParserPlugin(0), input, output)));
+            fail();
+        } catch (final IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("emulated"));
+        }
+        assertEquals(0, output.finished);
+        assertEquals(0, input.live.get());
+    }
+
+    @Test
+    public void testErrorInInputTask() {
+        final MockFileInput input = new MockFileInput(Arrays.asList(
+                Arrays.asList("a"),
+                Arrays.asList("b"),
+                Arrays.asList("c")));
+        input.failAtFile = 2;
+        final MockPageOutput output = new MockPageOutput();
+        final WorkStealingFileParser parser = new WorkStealingFileParser(() -> new MockParserPlugin(0), null, null, 16, 2);
+
+        try {
+            this.pool.invoke(ForkJoinTask.adapt(() -> parser.run(new MockParserPlugin(0), input, output)));
+            fail();
+        } catch (final IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("emulated"));
+        }
+        // Files forked before the error are parsed.
+        final List<String> values = new ArrayList<>(output.values);
+        Collections.sort(values);
+        assertEquals(Arrays.asList("a", "b"), values);
+        assertEquals(0, output.finished);
+        assertEquals(0, input.live.get());
+    }
+
+    @Test
+    public void testForkedFilesBounded() {
+        final List<List<String>> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(Arrays.asList("v" + i));
+        }
+        final MockFileInput input = new MockFileInput(files);
+        final MockPageOutput output = new MockPageOutput();
+        final WorkStealingFileParser parser = new WorkStealingFileParser(() -> new MockParserPlugin(5), null, null, 16, 2);
+
+        this.pool.invoke(ForkJoinTask.adapt(() -> parser.run(new MockParserPlugin(5), input, output)));
+
+        assertEquals(20, output.values.size());
+        assertEquals(0, input.live.get());
+        // Up to two files forked, including a file being read ahead, are left unparsed.
+        assertTrue("Buffers left unparsed at most: " + input.maxLive.get(), input.maxLive.get() <= 2);
+    }
+
+    @Test
+    public void testBufferAccountingPropagatedToForks() {
+        final BufferAccounting accounting = new BufferAccounting(0);
+        final MockFileInput input = new MockFileInput(Arrays.asList(
+                Arrays.asList("a"),
+                Arrays.asList("b"),
+                Arrays.asList("c")));
+        final MockPageOutput output = new MockPageOutput();
+        final WorkStealingFileParser parser = new WorkStealingFileParser(() -> new MockParserPlugin(0) {
+                @Override
+                public void run(final TaskSource taskSource, final Schema schema, final FileInput input, final PageOutput output) {
+                    accounting.allocate(10).release();
+                    super.run(taskSource, schema, input, output);
+                }
+            }, null, null, 16, 2);
+
+        final long allocations = this.pool.invoke(ForkJoinTask.adapt(() -> {
+            try (final BufferAccounting.TaskScope scope = accounting.openTask("input-0")) {
+                parser.run(new MockParserPlugin(0), input, output);
+                return accounting.getTaskMetrics().get("input-0").getAllocations();
+            }
+        }));
+
+        assertEquals(3L, allocations);
+        assertEquals(3, output.values.size());
+    }
+
+    @Test
+    public void testInvalidMaxForkedFiles() {
+        try {
+            new WorkStealingFileParser(() -> new MockParserPlugin(0), null, null, 16, 0);
+            fail();
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    private static String read(final Buffer buffer) {
+        final byte[] bytes = new byte[buffer.limit()];
+        buffer.getBytes(0, bytes, 0, bytes.length);
+        buffer.release();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Adds a page for each buffer, which refers the content as a string. It throws at a buffer of "error".
+    private static class MockParserPlugin implements ParserPlugin {
+        MockParserPlugin(final long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void transaction(final ConfigSource config, final ParserPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void run(final TaskSource taskSource, final Schema schema, final FileInput input, final PageOutput output) {
+            while (input.nextFile()) {
+                Buffer buffer;
+                while ((buffer = input.poll()) != null) {
+                    if (this.sleepMillis > 0) {
+                        try {
+                            Thread.sleep(this.sleepMillis);
+                        } catch (final InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    final String value = read(buffer);
+                    if ("error".equals(value)) {
+                        throw new IllegalStateException("emulated in " + input.hintOfCurrentInputFileNameForLogging().get());
+                    }
+                    output.add(PageImpl.allocate(0).setStringReferences(Arrays.asList(value)));
+                }
+            }
+        }
+
+        private final long sleepMillis;
+    }
+
+    private static class MockPageOutput implements PageOutput {
+        @Override
+        public void add(final Page page) {
+            this.values.add(page.getStringReference(0));
+            page.release();
+        }
+
+        @Override
+        public void finish() {
+            this.finished++;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final List<String> values = Collections.synchronizedList(new ArrayList<>());
+        private volatile int finished = 0;
+    }
+
+    private static class MockFileInput implements FileInput {
+        MockFileInput(final List<List<String>> files) {
+            this.files = new ArrayDeque<>(files);
+            this.current = null;
+            this.index = -1;
+            this.failAtFile = -1;
+            this.live = new AtomicInteger(0);
+            this.maxLive = new AtomicInteger(0);
+        }
+
+        @Override
+        public boolean nextFile() {
+            this.current = this.files.isEmpty() ? null : new ArrayDeque<>(this.files.removeFirst());
+            this.index++;
+            if (this.index == this.failAtFile) {
+                throw new IllegalStateException("emulated in file-" + this.index);
+            }
+            return this.current != null;
+        }
+
+        @Override
+        public Buffer poll() {
+            if (this.current == null || this.current.isEmpty()) {
+                return null;
+            }
+            this.maxLive.accumulateAndGet(this.live.incrementAndGet(), Math::max);
+            final byte[] bytes = this.current.removeFirst().getBytes(StandardCharsets.UTF_8);
+            final Buffer buffer = new BufferImpl(bytes, 0, bytes.length) {
+                    @Override
+                    public void release() {
+                        live.decrementAndGet();
+                    }
+                };
+            buffer.limit(bytes.length);
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return Optional.of("file-" + this.index);
+        }
+
+        private final ArrayDeque<List<String>> files;
+        private ArrayDeque<String> current;
+        private int index;
+        private int failAtFile;
+        private final AtomicInteger live;
+        private final AtomicInteger maxLive;
+    }
+
+    private WorkStealingForkJoinPool pool;
+}
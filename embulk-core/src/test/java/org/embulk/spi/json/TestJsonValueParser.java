@@ -0,0 +1,80 @@
+package org.embulk.spi.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TestJsonValueParser {
+    @Test
+    public void testScalars() throws Exception {
+        final JsonValueParser parser = new JsonValueParser();
+        assertEquals(JsonString.of("foobar"), parser.parse("\"foobar\""));
+        assertEquals(JsonLong.of(12345L), parser.parse("12345"));
+        assertEquals(JsonDouble.of(1.5), parser.parse("1.5"));
+        assertEquals(JsonBoolean.TRUE, parser.parse("true"));
+        assertEquals(JsonNull.NULL, parser.parse("null"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testStringUnquoted() throws Exception {
+        new JsonValueParser().parse("foobar");
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testUnexpectedEnd() throws Exception {
+        new JsonValueParser().parse("{\"a\": [1, 2");
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        final JsonValueParser parser = new JsonValueParser(false);
+        final String json = "{\"a\":[1,[2,3],{\"b\":[]}],\"c\":{\"d\":\"e\"},\"f\":[[],[null]]}";
+        assertEquals(json, parser.parse(json).toJson());
+        // The working space is reused for the next document.
+        assertEquals("[4,[5],6]", parser.parse("[4, [5], 6]").toJson());
+    }
+
+    @Test
+    public void testSameAsJsonParser() throws Exception {
+        @SuppressWarnings("deprecation")
+        final JsonParser msgpackParser = new JsonParser();
+        final String json = "{\"a\":1234567890123,\"b\":[1.0e3,-1],\"c\":\"\\u3042\"}";
+        assertEquals(JsonValue.fromMsgpack(msgpackParser.parse(json)), new JsonValueParser().parse(json));
+    }
+
+    @Test
+    public void testParseMultipleJsons() throws Exception {
+        final JsonValueParser parser = new JsonValueParser();
+        try (final JsonValueParser.Stream stream = parser.open(toInputStream("{\"col1\": 1}{\"col1\": [2]}"))) {
+            assertEquals("{\"col1\":1}", stream.next().toJson());
+            assertEquals("{\"col1\":[2]}", stream.next().toJson());
+            assertNull(stream.next());
+        }
+    }
+
+    @Test
+    public void testParseWithPointer() throws Exception {
+        final JsonValueParser parser = new JsonValueParser();
+        assertEquals(JsonLong.of(2L), parser.parseWithOffsetInJsonPointer("{\"a\": [{\"b\": 1}, {\"b\": 2}]}", "/a/1/b"));
+        try (final JsonValueParser.Stream stream = parser.openWithOffsetInJsonPointer(
+                toInputStream("{\"a\": {\"b\": 1}}{\"a\": {\"b\": 2}}"), "/a/b")) {
+            assertEquals(JsonLong.of(1L), stream.next());
+            assertEquals(JsonLong.of(2L), stream.next());
+            assertNull(stream.next());
+        }
+    }
+
+    @Test
+    public void testOfCurrentThread() throws Exception {
+        assertSame(JsonValueParser.ofCurrentThread(), JsonValueParser.ofCurrentThread());
+    }
+
+    private static InputStream toInputStream(final String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,49 @@
+package org.embulk.spi.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import org.junit.Test;
+
+public class TestLazyJsonValue {
+    @Test
+    public void testToJsonWithoutParsing() {
+        final LazyJsonValue value = LazyJsonValue.of("{ \"a\": [1, 2], \"b\": \"c\" }");
+        assertEquals("{ \"a\": [1, 2], \"b\": \"c\" }", value.toJson());
+        assertTrue(value.isJsonObject());
+        assertEquals(JsonValue.EntityType.OBJECT, value.getEntityType());
+        assertFalse(value.isParsed());
+    }
+
+    @Test
+    public void testGet() {
+        final LazyJsonValue value = LazyJsonValue.of("{\"a\": [1, 2], \"b\": \"c\"}");
+        assertEquals("{\"a\":[1,2],\"b\":\"c\"}", value.asJsonObject().toJson());
+        assertTrue(value.isParsed());
+        assertEquals(new JsonValueParser().parse("{\"a\": [1, 2], \"b\": \"c\"}"), value);
+    }
+
+    @Test
+    public void testGetWithPointer() {
+        final LazyJsonValue value = LazyJsonValue.of("{\"payload\": {\"user\": {\"id\": 12, \"name\": \"x\"}, \"tags\": [\"p\", \"q\"]}}");
+        assertEquals(Optional.of(JsonLong.of(12L)), value.get("/payload/user/id"));
+        assertEquals(Optional.of(JsonString.of("q")), value.get("/payload/tags/1"));
+        assertEquals(Optional.empty(), value.get("/payload/missing"));
+        assertFalse(value.isParsed());
+    }
+
+    @Test
+    public void testNumbers() {
+        assertEquals(JsonValue.EntityType.LONG, LazyJsonValue.of(" 12").getEntityType());
+        assertEquals(JsonValue.EntityType.DOUBLE, LazyJsonValue.of("-1.5").getEntityType());
+        assertEquals(JsonValue.EntityType.NULL, LazyJsonValue.of("null").getEntityType());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testInvalidOnAccess() {
+        final LazyJsonValue value = LazyJsonValue.of("{\"a\": ");
+        value.asJsonObject();
+    }
+}
@@ -0,0 +1,142 @@
+package org.embulk.spi.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import org.junit.Test;
+
+public class TestCompiledTimestampPattern {
+    @Test
+    public void testCompile() {
+        assertTrue(CompiledTimestampPattern.compile("%Y-%m-%d %H:%M:%S", "UTC").isPresent());
+        assertTrue(CompiledTimestampPattern.compile("ruby:%F %T.%N %z", null).isPresent());
+        assertTrue(CompiledTimestampPattern.compile("%Y%m%d%H%M%S", "+09:00").isPresent());
+
+        assertFalse(CompiledTimestampPattern.compile("java:yyyy-MM-dd HH:mm:ss", "UTC").isPresent());
+        assertFalse(CompiledTimestampPattern.compile("%Y-%m-%d", "UTC").isPresent());  // No time.
+        assertFalse(CompiledTimestampPattern.compile("%b %d %Y %H:%M:%S", "UTC").isPresent());
+        assertFalse(CompiledTimestampPattern.compile("%Y-%m-%d %H:%M:%S", "Asia/Tokyo").isPresent());
+    }
+
+    @Test
+    public void testCache() {
+        assertSame(CompiledTimestampPattern.of("%Y-%m-%d %H:%M:%S", "UTC").get(),
+                   CompiledTimestampPattern.of("%Y-%m-%d %H:%M:%S", "UTC").get());
+    }
+
+    @Test
+    public void testParse() {
+        final CompiledTimestampPattern pattern = CompiledTimestampPattern.compile("%Y-%m-%d %H:%M:%S", "UTC").get();
+        assertEquals(Instant.parse("2024-01-02T03:04:05Z"), pattern.parse("2024-01-02 03:04:05"));
+        assertEquals(Instant.parse("2024-01-02T03:04:06Z"), pattern.parse("2024-01-02 03:04:06"));  // The same date.
+        assertEquals(Instant.parse("2024-02-29T23:59:59Z"), pattern.parse("2024-02-29 23:59:59"));
+        assertEquals(Instant.parse("1969-12-31T00:00:00Z"), pattern.parse("1969-12-31 00:00:00"));
+    }
+
+    @Test
+    public void testParseEveryDay() {
+        final CompiledTimestampPattern pattern = CompiledTimestampPattern.compile("%Y%m%d%H%M%S", "-05:30").get();
+        LocalDateTime dateTime = LocalDateTime.of(1899, 12, 25, 13, 45, 10);
+        while (dateTime.getYear() < 2101) {
+            final String text = String.format("%04d%02d%02d%02d%02d%02d", dateTime.getYear(), dateTime.getMonthValue(),
+                    dateTime.getDayOfMonth(), dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond());
+            assertEquals(text, dateTime.toInstant(ZoneOffset.ofHoursMinutes(-5, -30)), pattern.parse(text));
+            dateTime = dateTime.plusHours(17);
+        }
+    }
+
+    @Test
+    public void testParseFractionAndZone() {
+        final CompiledTimestampPattern pattern = CompiledTimestampPattern.compile("%Y-%m-%d %H:%M:%S.%N %z", "UTC").get();
+        assertEquals(Instant.parse("2024-01-01T18:04:05.123456789Z"), pattern.parse("2024-01-02 03:04:05.123456789 +0900"));
+        assertEquals(Instant.parse("2024-01-02T04:34:05.120Z"), pattern.parse("2024-01-02 03:04:05.12 -01:30"));
+    }
+
+    @Test
+    public void testSameAsGeneralFormatter() {
+        final String[] patterns = {
+            "%Y-%m-%d %H:%M:%S",
+            "%Y%m%d%H%M%S",
+            "%F %T",
+            "%Y-%m-%dT%H:%M:%S.%N",
+            "%Y-%m-%d %H:%M:%S.%L",
+            "%Y-%m-%d %H:%M:%S %z",
+            "%Y-%m-%d %H:%M:%S.%N %z",
+            "%d/%m/%Y %H:%M:%S %%",
+        };
+        final String[] zones = { null, "UTC", "+09:00", "-05:30", "-12:00" };
+        final Random random = new Random(20241017L);
+        for (final String basePattern : patterns) {
+            for (final String prefix : new String[] { "", "ruby:" }) {
+                final String pattern = prefix + basePattern;
+                for (final String zone : zones) {
+                    final CompiledTimestampPattern compiled = CompiledTimestampPattern.compile(pattern, zone).get();
+                    final TimestampFormatterDelegate general = TimestampFormatterDelegate.of(pattern, toGeneralZone(pattern, zone));
+                    for (int i = 0; i < 200; i++) {
+                        final String text = randomText(basePattern, random);
+                        final Instant instant = compiled.parse(text);
+                        assertNotNull(pattern + " (" + zone + "): " + text, instant);
+                        assertEquals(pattern + " (" + zone + "): " + text, general.parse(text), instant);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNotParsed() {
+        final CompiledTimestampPattern pattern = CompiledTimestampPattern.compile("%Y-%m-%d %H:%M:%S", "UTC").get();
+        assertNull(pattern.parse("2024-1-02 03:04:05"));
+        assertNull(pattern.parse("2024-01-02 03:04:05 "));
+        assertNull(pattern.parse("2024-01-02  03:04:05"));
+        assertNull(pattern.parse("2024-02-30 03:04:05"));
+        assertNull(pattern.parse("2024-01-02 03:04:60"));  // Leap seconds are left to the general formatter.
+        assertNull(pattern.parse("2024-01-02 24:00:00"));
+        assertNull(pattern.parse("2024-01-02"));
+        assertNull(pattern.parse(""));
+    }
+
+    // Passes the default zone to the general formatter as TimestampParser does.
+    private static String toGeneralZone(final String pattern, final String zone) {
+        if (pattern.startsWith("ruby:") && "UTC".equals(zone)) {
+            return null;
+        }
+        return zone;
+    }
+
+    // Generates a text of the pattern with a random date from 1600 to 2400, including dates before the epoch.
+    private static String randomText(final String pattern, final Random random) {
+        final LocalDateTime dateTime = LocalDateTime.of(1600, 1, 1, 0, 0, 0).plusSeconds((long) (random.nextDouble() * 800 * 365.2425 * 86400));
+        final String fraction;
+        if (pattern.contains("%L")) {
+            fraction = String.format("%03d", random.nextInt(1000));
+        } else {
+            final int digits = 1 + random.nextInt(9);
+            fraction = String.format("%0" + digits + "d", random.nextInt((int) Math.min(Integer.MAX_VALUE, Math.pow(10, digits))));
+        }
+        final int zoneMinutes = (random.nextInt(24 * 4 + 1) - 12 * 4) * 15;
+        final String zone = String.format(random.nextBoolean() ? "%s%02d%02d" : "%s%02d:%02d",
+                zoneMinutes < 0 ? "-" : "+", Math.abs(zoneMinutes) / 60, Math.abs(zoneMinutes) % 60);
+        return pattern
+                .replace("%F", "%Y-%m-%d")
+                .replace("%T", "%H:%M:%S")
+                .replace("%Y", String.format("%04d", dateTime.getYear()))
+                .replace("%m", String.format("%02d", dateTime.getMonthValue()))
+                .replace("%d", String.format("%02d", dateTime.getDayOfMonth()))
+                .replace("%H", String.format("%02d", dateTime.getHour()))
+                .replace("%M", String.format("%02d", dateTime.getMinute()))
+                .replace("%S", String.format("%02d", dateTime.getSecond()))
+                .replace("%N", fraction)
+                .replace("%L", fraction)
+                .replace("%z", zone)
+                .replace("%%", "%");
+    }
+}
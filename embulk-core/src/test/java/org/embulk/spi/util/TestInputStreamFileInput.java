@@ -0,0 +1,111 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.spi.Buffer;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestInputStreamFileInput {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testOpenFilesAhead() {
+        final MockProvider provider = new MockProvider(Arrays.asList("a", "b", "c", "d"));
+        final InputStreamFileInput input = new InputStreamFileInput(runtime.getBufferAllocator(), provider, 2);
+        for (final String expected : Arrays.asList("a", "b", "c", "d")) {
+            assertTrue(input.nextFile());
+            assertEquals(expected, read(input.poll()));
+            assertNull(input.poll());
+        }
+        assertFalse(input.nextFile());
+        assertFalse(input.nextFile());
+        input.close();
+
+        assertEquals(5, provider.calls);  // Not called after the provider returns null.
+        assertEquals(4, provider.closedStreams.size());
+        assertTrue(provider.closed);
+    }
+
+    @Test
+    public void testCloseStreamsOpenedAhead() {
+        final MockProvider provider = new MockProvider(Arrays.asList("a", "b", "c", "d"));
+        final InputStreamFileInput input = new InputStreamFileInput(runtime.getBufferAllocator(), provider);
+        input.openFilesAhead(2);
+        assertTrue(input.nextFile());
+        assertEquals("a", read(input.poll()));
+        input.close();
+
+        // Files opened ahead are closed as well as the current file. "d" is not opened.
+        assertTrue(provider.closedStreams.contains("a"));
+        assertEquals(provider.openedStreams, provider.closedStreams);
+        assertFalse(provider.openedStreams.contains("d"));
+        assertTrue(provider.closed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpenFilesAheadAfterNextFile() {
+        final InputStreamFileInput input = new InputStreamFileInput(
+                runtime.getBufferAllocator(), new MockProvider(Collections.singletonList("a")));
+        input.nextFile();
+        input.openFilesAhead(1);
+    }
+
+    private static String read(final Buffer buffer) {
+        final byte[] bytes = new byte[buffer.limit()];
+        buffer.getBytes(0, bytes, 0, bytes.length);
+        buffer.release();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class MockProvider implements InputStreamFileInput.Provider {
+        MockProvider(final List<String> contents) {
+            this.contents = new ArrayList<>(contents);
+            this.openedStreams = Collections.synchronizedList(new ArrayList<>());
+            this.closedStreams = Collections.synchronizedList(new ArrayList<>());
+            this.calls = 0;
+            this.closed = false;
+        }
+
+        @Override
+        public InputStream openNext() {
+            this.calls++;
+            if (this.contents.isEmpty()) {
+                return null;
+            }
+            final String content = this.contents.remove(0);
+            this.openedStreams.add(content);
+            return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) {
+                @Override
+                public void close() throws IOException {
+                    closedStreams.add(content);
+                    super.close();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        private final List<String> contents;
+        private final List<String> openedStreams;
+        private final List<String> closedStreams;
+        private volatile int calls;
+        private volatile boolean closed;
+    }
+}
@@ -0,0 +1,127 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestLineBoundaries {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testDelimiterOf() {
+        assertArrayEquals(new byte[] { '\n' }, LineBoundaries.delimiterOf(Optional.empty()));
+        assertArrayEquals(new byte[] { '\n' }, LineBoundaries.delimiterOf(Optional.of(LineDelimiter.LF)));
+        assertArrayEquals(new byte[] { '\r' }, LineBoundaries.delimiterOf(Optional.of(LineDelimiter.CR)));
+        assertArrayEquals(new byte[] { '\r', '\n' }, LineBoundaries.delimiterOf(Optional.of(LineDelimiter.CRLF)));
+    }
+
+    @Test
+    public void testIsSupported() {
+        assertTrue(LineBoundaries.isSupported(StandardCharsets.UTF_8));
+        assertTrue(LineBoundaries.isSupported(StandardCharsets.ISO_8859_1));
+        assertFalse(LineBoundaries.isSupported(StandardCharsets.UTF_16));
+    }
+
+    @Test
+    public void testNext() {
+        final byte[] data = "abc\ndef\r\nghi\njkl".getBytes(StandardCharsets.UTF_8);
+        final SeekableFileInput input = open(data);
+        final byte[] lf = LineBoundaries.delimiterOf(Optional.empty());
+
+        assertEquals(4, LineBoundaries.next(input, 1, data.length, lf));
+        assertEquals(4, LineBoundaries.next(input, 4, data.length, lf));  // The delimiter ends just at the position.
+        assertEquals(9, LineBoundaries.next(input, 5, data.length, lf));
+        assertEquals(13, LineBoundaries.next(input, 10, data.length, lf));
+        assertEquals(data.length, LineBoundaries.next(input, 14, data.length, lf));  // Not found.
+        assertEquals(data.length, LineBoundaries.next(input, data.length, data.length, lf));
+
+        final byte[] crlf = LineBoundaries.delimiterOf(Optional.of(LineDelimiter.CRLF));
+        assertEquals(9, LineBoundaries.next(input, 1, data.length, crlf));
+        assertEquals(9, LineBoundaries.next(input, 9, data.length, crlf));
+        assertEquals(data.length, LineBoundaries.next(input, 10, data.length, crlf));
+        input.close();
+    }
+
+    @Test
+    public void testOpenRangeOfCurrentFile() {
+        final byte[] data = "abc\ndef\nghi\n".getBytes(StandardCharsets.UTF_8);
+        final SeekableFileInput input = open(data);
+        assertEquals(data.length, input.sizeOfCurrentFile().getAsLong());
+        assertEquals("def\n", readRange(input.openRangeOfCurrentFile(4, 4)));
+        assertEquals("ghi\n", readRange(input.openRangeOfCurrentFile(8, 100)));
+
+        // Reading ranges does not move the current file.
+        assertEquals("abc\ndef\nghi\n", readAll(input));
+    }
+
+    @Test
+    public void testNotSeekable() {
+        final InputStreamFileInput input = new InputStreamFileInput(
+                runtime.getBufferAllocator(), new ByteArrayInputStream("abc\n".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(input.nextFile());
+        assertFalse(input.sizeOfCurrentFile().isPresent());
+        input.close();
+    }
+
+    private SeekableFileInput open(final byte[] data) {
+        final InputStreamFileInput.RangeOpener opener = new InputStreamFileInput.RangeOpener() {
+                @Override
+                public long size() {
+                    return data.length;
+                }
+
+                @Override
+                public InputStream openRange(final long offset, final long length) {
+                    return new ByteArrayInputStream(data, (int) offset, (int) Math.min(length, data.length - offset));
+                }
+            };
+        final InputStreamFileInput input = new InputStreamFileInput(runtime.getBufferAllocator(), new InputStreamFileInput.Provider() {
+                private boolean opened = false;
+
+                @Override
+                public InputStreamFileInput.InputStreamWithHints openNextWithHints() {
+                    if (this.opened) {
+                        return null;
+                    }
+                    this.opened = true;
+                    return new InputStreamFileInput.InputStreamWithHints(new ByteArrayInputStream(data), "data", opener);
+                }
+
+                @Override
+                public void close() {}
+            });
+        assertTrue(input.nextFile());
+        return input;
+    }
+
+    private static String readRange(final FileInput range) {
+        assertTrue(range.nextFile());
+        return readAll(range);
+    }
+
+    // Reads the rest of the current file, and closes the input.
+    @SuppressWarnings("deprecation")  // Calling Buffer#array().
+    private static String readAll(final FileInput input) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Buffer buffer;
+        while ((buffer = input.poll()) != null) {
+            out.write(buffer.array(), buffer.offset(), buffer.limit());
+            buffer.release();
+        }
+        input.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -274,4 +274,34 @@ public class TestLineDecoder {
                 bufferList(StandardCharsets.UTF_8, "test1\r\ntest2\rtest3\ntest4"));
         assertEquals(TestUtils.listOf("test1", "test2\rtest3\ntest4"), decoded);
     }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testDecodeWithLineDelimiterRecognizedOverChunks() throws Exception {
+        assertEquals(TestUtils.listOf("test1\r\ntest2", "test3\ntest4"), doDecode(
+                StandardCharsets.UTF_8, Newline.CRLF, LineDelimiter.CR,
+                bufferList(StandardCharsets.UTF_8, "test1\r", "\ntest2\r", "test3\ntest4")));
+        assertEquals(TestUtils.listOf("test1\r\ntest2\rtest3", "test4"), doDecode(
+                StandardCharsets.UTF_8, Newline.CRLF, LineDelimiter.LF,
+                bufferList(StandardCharsets.UTF_8, "test1\r", "\ntest2\rtest3", "\ntest4")));
+        assertEquals(TestUtils.listOf("test1", "test2\rtest3\ntest4", ""), doDecode(
+                StandardCharsets.UTF_8, Newline.CRLF, LineDelimiter.CRLF,
+                bufferList(StandardCharsets.UTF_8, "test1\r", "\ntest2\r", "test3\ntest4\r", "\n")));
+    }
+
+    @Test
+    public void testDecodeLongLinesOverChunks() throws Exception {
+        final String longLine = "0123456789abcdefghijklmnopqrstuvwxyz,\u3042\u3044\u3046";
+        assertEquals(TestUtils.listOf(longLine, longLine, longLine), doDecode(
+                StandardCharsets.UTF_8, Newline.LF,
+                bufferList(StandardCharsets.UTF_8, longLine + "\n" + longLine.substring(0, 20), longLine.substring(20) + "\r", "\n" + longLine)));
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testDecodeUTF8WithBom() throws Exception {
+        assertEquals(TestUtils.listOf("test1", "test2"), doDecode(
+                StandardCharsets.UTF_8, Newline.LF,
+                bufferList(StandardCharsets.UTF_8, "\uFEFFtest1\n", "test2")));
+    }
 }
@@ -0,0 +1,125 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DirectBuffer;
+import org.embulk.spi.FileInput;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestMappedFileInput {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadFiles() throws IOException {
+        final Path first = this.write("first", "abcdefghijklmnopqrstuvwxyz");
+        final Path empty = this.write("empty", "");
+        final Path second = this.write("second", "0123456789");
+
+        // Windows of 8 bytes are split into buffers of 3, 3, and 2 bytes.
+        try (final MappedFileInput input = new MappedFileInput(Arrays.asList(first, empty, second), 3, 8)) {
+            assertTrue(input.nextFile());
+            assertEquals(Optional.of(first.toString()), input.hintOfCurrentInputFileNameForLogging());
+            assertEquals(26L, input.sizeOfCurrentFile().getAsLong());
+            final List<String> buffers = new ArrayList<>();
+            Buffer buffer;
+            while ((buffer = input.poll()) != null) {
+                assertTrue(buffer instanceof DirectBuffer);
+                buffers.add(read(buffer));
+            }
+            assertEquals(Arrays.asList("abc", "def", "gh", "ijk", "lmn", "op", "qrs", "tuv", "wx", "yz"), buffers);
+
+            assertTrue(input.nextFile());
+            assertNull(input.poll());
+
+            assertTrue(input.nextFile());
+            assertEquals("0123456789", readAll(input));
+            assertFalse(input.nextFile());
+            assertFalse(input.nextFile());
+        }
+    }
+
+    @Test
+    public void testBuffersAfterClose() throws IOException {
+        final Path path = this.write("file", "abcdefghij");
+        final Buffer buffer;
+        try (final MappedFileInput input = new MappedFileInput(Arrays.asList(path), 4, 16)) {
+            assertTrue(input.nextFile());
+            buffer = input.poll();
+        }
+        assertEquals("abcd", read(buffer));  // The window is unmapped when the buffer is released.
+    }
+
+    @Test
+    public void testOpenRangeOfCurrentFile() throws IOException {
+        final Path path = this.write("file", "abc\ndef\nghi\n");
+        try (final MappedFileInput input = new MappedFileInput(Arrays.asList(path), 2, 4)) {
+            assertTrue(input.nextFile());
+            try (final FileInput range = input.openRangeOfCurrentFile(4, 5)) {
+                assertTrue(range.nextFile());
+                assertEquals("def\ng", readAll(range));
+                assertFalse(range.nextFile());
+            }
+            try (final FileInput range = input.openRangeOfCurrentFile(8, 100)) {
+                assertTrue(range.nextFile());
+                assertEquals("ghi\n", readAll(range));
+            }
+
+            // Reading ranges does not move the current file.
+            assertEquals("abc\ndef\nghi\n", readAll(input));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws IOException {
+        final Path path = this.write("file", "abc");
+        try (final MappedFileInput input = new MappedFileInput(Arrays.asList(path))) {
+            assertTrue(input.nextFile());
+            final Buffer buffer = input.poll();
+            try {
+                buffer.setBytes(0, new byte[] { 'x' }, 0, 1);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    private Path write(final String name, final String content) throws IOException {
+        return Files.write(this.temporaryFolder.newFile(name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(final Buffer buffer) {
+        final byte[] bytes = new byte[buffer.limit()];
+        buffer.getBytes(0, bytes, 0, bytes.length);
+        buffer.release();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Reads the rest of the current file.
+    private static String readAll(final FileInput input) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Buffer buffer;
+        while ((buffer = input.poll()) != null) {
+            final byte[] bytes = new byte[buffer.limit()];
+            buffer.getBytes(0, bytes, 0, bytes.length);
+            buffer.release();
+            out.write(bytes, 0, bytes.length);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
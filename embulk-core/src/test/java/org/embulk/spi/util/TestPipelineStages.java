@@ -0,0 +1,266 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.FilterPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPipelineStages {
+    @Before
+    public void setUp() {
+        this.executor = Executors.newCachedThreadPool();
+        this.livePages = new AtomicInteger(0);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderedDeliveryThroughStages() {
+        final List<FilterPlugin> filters = Arrays.asList(new MockFilterPlugin("a", -1), new MockFilterPlugin("b", -1), new MockFilterPlugin("c", -1));
+        final MockPageOutput output = new MockPageOutput(null);
+
+        try (final PipelineStages stages = new PipelineStages(this.executor, 2, null)) {
+            final PageOutput head = stages.open(filters, taskSources(filters), schemas(filters), output);
+            for (int i = 0; i < 200; i++) {
+                head.add(this.newPage(String.valueOf(i)));
+            }
+            head.finish();
+            stages.complete();
+        }
+
+        assertEquals(200, output.values.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i + ":a:b:c", output.values.get(i));
+        }
+        assertEquals(1, output.finished.get());
+        assertEquals(0, this.livePages.get());
+    }
+
+    @Test
+    public void testErrorInMiddleStageThrownToUpstream() {
+        final List<FilterPlugin> filters = Arrays.asList(new MockFilterPlugin("a", -1), new MockFilterPlugin("b", 10), new MockFilterPlugin("c", -1));
+        final MockPageOutput output = new MockPageOutput(null);
+
+        try (final PipelineStages stages = new PipelineStages(this.executor, 2, null)) {
+            final PageOutput head = stages.open(filters, taskSources(filters), schemas(filters), output);
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    head.add(this.newPage(String.valueOf(i)));
+                }
+                head.finish();
+                fail();
+            } catch (final IllegalStateException ex) {
+                // The error of the stage, not that the stage has stopped.
+                assertEquals("emulated in b", ex.getMessage());
+            }
+        }
+
+        // Pages before the error are delivered in order, and the output is not finished.
+        assertTrue(output.values.size() <= 10);
+        for (int i = 0; i < output.values.size(); i++) {
+            assertEquals(i + ":a:b:c", output.values.get(i));
+        }
+        assertEquals(0, output.finished.get());
+        assertEquals(0, this.livePages.get());
+    }
+
+    @Test
+    public void testErrorInMiddleStageThrownFromFinish() {
+        final List<FilterPlugin> filters = Arrays.asList(new MockFilterPlugin("a", -1), new MockFilterPlugin("b", 3), new MockFilterPlugin("c", -1));
+        final MockPageOutput output = new MockPageOutput(null);
+
+        try (final PipelineStages stages = new PipelineStages(this.executor, 8, null)) {
+            final PageOutput head = stages.open(filters, taskSources(filters), schemas(filters), output);
+            for (int i = 0; i < 5; i++) {
+                head.add(this.newPage(String.valueOf(i)));  // The queues have room for all of them.
+            }
+            try {
+                head.finish();
+                fail();
+            } catch (final IllegalStateException ex) {
+                assertEquals("emulated in b", ex.getMessage());
+            }
+        }
+
+        // Pages queued downstream of the error are discarded by close().
+        assertEquals(Arrays.asList("0:a:b:c", "1:a:b:c", "2:a:b:c").subList(0, output.values.size()), output.values);
+        assertEquals(0, output.finished.get());
+        assertEquals(0, this.livePages.get());
+    }
+
+    @Test
+    public void testCloseDuringBlockedPut() throws Exception {
+        final List<FilterPlugin> filters = Arrays.asList(new MockFilterPlugin("a", -1), new MockFilterPlugin("b", -1));
+        final CountDownLatch outputBlocked = new CountDownLatch(1);
+        final MockPageOutput output = new MockPageOutput(outputBlocked);
+        final AtomicReference<Throwable> upstreamError = new AtomicReference<>();
+        final AtomicInteger added = new AtomicInteger(0);
+
+        final PipelineStages stages = new PipelineStages(this.executor, 2, null);
+        final PageOutput head = stages.open(filters, taskSources(filters), schemas(filters), output);
+        final Thread upstream = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    head.add(this.newPage(String.valueOf(i)));
+                    added.incrementAndGet();
+                }
+                head.finish();
+            } catch (final RuntimeException ex) {
+                upstreamError.set(ex);
+            }
+        });
+        upstream.start();
+
+        // Waits until all the queues are full, and the upstream is blocked to put a page into the head.
+        assertTrue(outputBlocked.await(10, TimeUnit.SECONDS));
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        int lastAdded = -1;
+        while (lastAdded != added.get() || upstream.getState() != Thread.State.WAITING) {
+            assertTrue("The upstream is not blocked.", System.nanoTime() < deadline);
+            lastAdded = added.get();
+            Thread.sleep(20);
+        }
+        assertTrue(added.get() < 100);
+        assertTrue(this.livePages.get() > 1);
+
+        stages.close();
+        upstream.join(10000);
+
+        assertFalse(upstream.isAlive());
+        assertTrue(upstreamError.get() != null);
+        assertEquals(0, output.finished.get());
+        // Pages queued in every stage, and the page being put, are released.
+        assertEquals(0, this.livePages.get());
+    }
+
+    private Page newPage(final String value) {
+        this.livePages.incrementAndGet();
+        final AtomicInteger livePages = this.livePages;
+        return new PageImpl(BufferImpl.allocate(0)) {
+            @Override
+            public void release() {
+                livePages.decrementAndGet();
+            }
+        }.setStringReferences(Arrays.asList(value));
+    }
+
+    private static List<TaskSource> taskSources(final List<FilterPlugin> filters) {
+        return Collections.nCopies(filters.size(), (TaskSource) null);
+    }
+
+    private static List<Schema> schemas(final List<FilterPlugin> filters) {
+        return Collections.nCopies(filters.size() + 1, (Schema) null);
+    }
+
+    // Appends ":name" to the value of each page into a new page. It throws at the page of the index if not negative.
+    private class MockFilterPlugin implements FilterPlugin {
+        MockFilterPlugin(final String name, final int failAt) {
+            this.name = name;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void transaction(final ConfigSource config, final Schema inputSchema, final FilterPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PageOutput open(final TaskSource taskSource, final Schema inputSchema, final Schema outputSchema, final PageOutput output) {
+            return new PageOutput() {
+                @Override
+                public void add(final Page page) {
+                    final String value;
+                    try {
+                        value = page.getStringReference(0);
+                    } finally {
+                        page.release();
+                    }
+                    if (this.index++ == MockFilterPlugin.this.failAt) {
+                        throw new IllegalStateException("emulated in " + MockFilterPlugin.this.name);
+                    }
+                    output.add(newPage(value + ":" + MockFilterPlugin.this.name));
+                }
+
+                @Override
+                public void finish() {
+                    output.finish();
+                }
+
+                @Override
+                public void close() {
+                    output.close();
+                }
+
+                private int index = 0;
+            };
+        }
+
+        private final String name;
+        private final int failAt;
+    }
+
+    // Blocks at the first page until interrupted if blocked is not null.
+    private static class MockPageOutput implements PageOutput {
+        MockPageOutput(final CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public void add(final Page page) {
+            try {
+                if (this.blocked != null) {
+                    this.blocked.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (final InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+                this.values.add(page.getStringReference(0));
+            } finally {
+                page.release();
+            }
+        }
+
+        @Override
+        public void finish() {
+            this.finished.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final CountDownLatch blocked;
+        private final List<String> values = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger finished = new AtomicInteger(0);
+    }
+
+    private ExecutorService executor;
+    private AtomicInteger livePages;
+}
@@ -0,0 +1,271 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.AbortTransactionResource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.TransactionalFileInput;
+import org.junit.Test;
+
+public class TestReadAheadFileInput {
+    @Test
+    public void testReadAhead() {
+        final MockFileInput mock = new MockFileInput(Arrays.asList(
+                Arrays.asList("a", "b", "c"),
+                Arrays.<String>asList(),
+                Arrays.asList("d")));
+        try (final ReadAheadFileInput input = new ReadAheadFileInput(mock, 2)) {
+            assertTrue(input.nextFile());
+            assertEquals(Optional.of("file-0"), input.hintOfCurrentInputFileNameForLogging());
+            assertEquals("a", read(input.poll()));
+            assertEquals("b", read(input.poll()));
+            assertEquals("c", read(input.poll()));
+            assertNull(input.poll());
+            assertNull(input.poll());
+            assertTrue(input.nextFile());
+            assertEquals(Optional.of("file-1"), input.hintOfCurrentInputFileNameForLogging());
+            assertNull(input.poll());
+            assertTrue(input.nextFile());
+            assertEquals("d", read(input.poll()));
+            assertNull(input.poll());
+            assertFalse(input.nextFile());
+            assertFalse(input.nextFile());
+        }
+        assertTrue(mock.closed);
+        assertEquals(0, mock.live.get());
+    }
+
+    @Test
+    public void testSkipRestOfFile() {
+        final MockFileInput mock = new MockFileInput(Arrays.asList(
+                Arrays.asList("a", "b", "c"),
+                Arrays.asList("d")));
+        try (final ReadAheadFileInput input = new ReadAheadFileInput(mock, 1)) {
+            assertTrue(input.nextFile());
+            assertEquals("a", read(input.poll()));
+            assertTrue(input.nextFile());
+            assertEquals("d", read(input.poll()));
+        }
+        assertEquals(0, mock.live.get());
+    }
+
+    @Test
+    public void testCloseInTheMiddle() {
+        final MockFileInput mock = new MockFileInput(Arrays.asList(
+                Arrays.asList("a", "b", "c", "d", "e", "f")));
+        try (final ReadAheadFileInput input = new ReadAheadFileInput(mock, 2)) {
+            assertTrue(input.nextFile());
+            assertEquals("a", read(input.poll()));
+        }
+        assertTrue(mock.closed);
+        assertEquals(0, mock.live.get());
+    }
+
+    @Test
+    public void testError() {
+        final MockFileInput mock = new MockFileInput(Arrays.asList(
+                Arrays.asList("a", "b")));
+        mock.failAt = 2;
+        try (final ReadAheadFileInput input = new ReadAheadFileInput(mock, 4)) {
+            assertTrue(input.nextFile());
+            assertEquals("a", read(input.poll()));
+            assertEquals("b", read(input.poll()));
+            try {
+                input.poll();
+                fail();
+            } catch (final IllegalStateException ex) {
+                assertEquals("emulated", ex.getMessage());
+            }
+        }
+        assertEquals(0, mock.live.get());
+    }
+
+    @Test
+    public void testParserErrorWithDecoderReadAhead() {
+        final MockTransactionalFileInput mock = new MockTransactionalFileInput(Arrays.asList(
+                Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h")));
+        mock.pollMillis = 20;
+        // As FileInputRunner does, with "read_ahead_buffers" and "decoder_read_ahead_buffers".
+        try (final TransactionalFileInput input = DecodersInternal.openWithReadAhead(
+                     Arrays.asList(new PassThroughDecoderPlugin()),
+                     Arrays.asList((TaskSource) null),
+                     new ReadAheadFileInput.Transactional(mock, 2),
+                     16);
+                 final AbortTransactionResource aborter = new AbortTransactionResource(input)) {
+            assertTrue(input.nextFile());
+            assertEquals("a", read(input.poll()));
+            throw new IllegalStateException("emulated in parser");
+        } catch (final IllegalStateException ex) {
+            assertEquals("emulated in parser", ex.getMessage());
+        }
+        assertTrue(mock.aborted);
+        assertFalse(mock.readAfterCompleted);
+        assertTrue(mock.closed);
+        assertEquals(0, mock.live.get());
+    }
+
+    @Test
+    public void testParserErrorWithDecoderReadAheadOnly() {
+        final MockTransactionalFileInput mock = new MockTransactionalFileInput(Arrays.asList(
+                Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h")));
+        mock.pollMillis = 20;
+        try (final TransactionalFileInput input = DecodersInternal.openWithReadAhead(
+                     Arrays.asList(new PassThroughDecoderPlugin()), Arrays.asList((TaskSource) null), mock, 16);
+                 final AbortTransactionResource aborter = new AbortTransactionResource(input)) {
+            assertTrue(input.nextFile());
+            assertEquals("a", read(input.poll()));
+            throw new IllegalStateException("emulated in parser");
+        } catch (final IllegalStateException ex) {
+            assertEquals("emulated in parser", ex.getMessage());
+        }
+        assertTrue(mock.aborted);
+        assertFalse(mock.readAfterCompleted);
+        assertTrue(mock.closed);
+        assertEquals(0, mock.live.get());
+    }
+
+    private static String read(final Buffer buffer) {
+        final byte[] bytes = new byte[buffer.limit()];
+        buffer.getBytes(0, bytes, 0, bytes.length);
+        buffer.release();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class MockFileInput implements FileInput {
+        MockFileInput(final List<List<String>> files) {
+            this.files = new ArrayDeque<>(files);
+            this.current = null;
+            this.index = -1;
+            this.polled = 0;
+            this.failAt = -1;
+            this.live = new AtomicInteger(0);
+            this.closed = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            this.current = this.files.isEmpty() ? null : new ArrayDeque<>(this.files.removeFirst());
+            this.index++;
+            return this.current != null;
+        }
+
+        @Override
+        public Buffer poll() {
+            if (this.pollMillis > 0) {
+                try {
+                    Thread.sleep(this.pollMillis);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (this.polled++ == this.failAt) {
+                throw new IllegalStateException("emulated");
+            }
+            if (this.current == null || this.current.isEmpty()) {
+                return null;
+            }
+            this.live.incrementAndGet();
+            final byte[] bytes = this.current.removeFirst().getBytes(StandardCharsets.UTF_8);
+            final Buffer buffer = new BufferImpl(bytes, 0, bytes.length) {
+                    @Override
+                    public void release() {
+                        live.decrementAndGet();
+                    }
+                };
+            buffer.limit(bytes.length);
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return Optional.of("file-" + this.index);
+        }
+
+        private final ArrayDeque<List<String>> files;
+        private ArrayDeque<String> current;
+        private int index;
+        private int polled;
+        private int failAt;
+        long pollMillis;
+        final AtomicInteger live;
+        boolean closed;
+    }
+
+    private static class MockTransactionalFileInput extends MockFileInput implements TransactionalFileInput {
+        MockTransactionalFileInput(final List<List<String>> files) {
+            super(files);
+            this.aborted = false;
+            this.completed = false;
+            this.readAfterCompleted = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            this.checkNotCompleted();
+            return super.nextFile();
+        }
+
+        @Override
+        public Buffer poll() {
+            this.checkNotCompleted();
+            final Buffer buffer = super.poll();
+            this.checkNotCompleted();
+            return buffer;
+        }
+
+        @Override
+        public void abort() {
+            this.completed = true;
+            this.aborted = true;
+        }
+
+        @Override
+        public TaskReport commit() {
+            this.completed = true;
+            return null;
+        }
+
+        private void checkNotCompleted() {
+            if (this.completed) {
+                this.readAfterCompleted = true;
+            }
+        }
+
+        private volatile boolean aborted;
+        private volatile boolean completed;
+        private volatile boolean readAfterCompleted;
+    }
+
+    private static class PassThroughDecoderPlugin implements DecoderPlugin {
+        @Override
+        public void transaction(final ConfigSource config, final DecoderPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileInput open(final TaskSource taskSource, final FileInput fileInput) {
+            return fileInput;
+        }
+    }
+}
@@ -1,15 +1,32 @@
 package org.embulk.deps.buffer;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolArenaMetric;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import java.util.List;
+import org.embulk.exec.BufferAccounting;
+import org.embulk.exec.BufferMetrics;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DirectBuffer;
 
 public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAllocator {
     public PooledBufferAllocatorImpl(final int pageSize) {
+        this(pageSize, false);
+    }
+
+    public PooledBufferAllocatorImpl(final int pageSize, final boolean directPages) {
+        this(pageSize, directPages, 0L);
+    }
+
+    public PooledBufferAllocatorImpl(final int pageSize, final boolean directPages, final long memoryLimit) {
+        super(memoryLimit);
         this.pageSize = pageSize;
+        this.directPages = directPages;
 
         // PooledByteBufAllocator(preferDirect = false): buffers are allocated on Java heap.
+        // Buffers of pages are allocated explicitly from its direct arenas if directPages is true.
         //
         // Embulk's PooledBufferAllocator respects Netty's default parameters although
         // Netty's default parameters have had some changes in its history.
@@ -37,14 +54,102 @@ public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAlloc
         while (size < minimumCapacity) {
             size *= 2;
         }
-        return new BufferBasedOnNettyByteBuf(nettyByteBufAllocator.buffer(size));
+        final BufferAccounting.Allocation allocation = this.accounting().allocate(size);
+        try {
+            return new BufferBasedOnNettyByteBuf(nettyByteBufAllocator.buffer(size), allocation);
+        } catch (final RuntimeException | Error ex) {
+            this.accounting().cancel(allocation);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Buffer allocatePageBuffer(final int minimumCapacity) {
+        if (!this.directPages) {
+            return this.allocate(minimumCapacity);
+        }
+        int size = this.pageSize;
+        while (size < minimumCapacity) {
+            size *= 2;
+        }
+        final BufferAccounting.Allocation allocation = this.accounting().allocate(size);
+        final ByteBuf byteBuf;
+        try {
+            byteBuf = this.nettyByteBufAllocator.directBuffer(size);
+        } catch (final RuntimeException | Error ex) {
+            this.accounting().cancel(allocation);
+            throw ex;
+        }
+        if (!byteBuf.hasMemoryAddress()) {
+            // Netty cannot expose the address without sun.misc.Unsafe. Pages fall back to Java heap then.
+            byteBuf.release();
+            this.accounting().cancel(allocation);
+            return this.allocate(minimumCapacity);
+        }
+        return new DirectBufferBasedOnNettyByteBuf(byteBuf, allocation);
+    }
+
+    /**
+     * Returns metrics of buffers allocated, with memory used by Netty's arenas, and the ratio of allocations not huge, which are from chunks of the arenas.
+     */
+    @Override
+    public BufferMetrics getMetrics() {
+        final PooledByteBufAllocatorMetric metric = this.nettyByteBufAllocator.metric();
+        final long allocations = countAllocations(metric.heapArenas()) + countAllocations(metric.directArenas());
+        final long hugeAllocations = countHugeAllocations(metric.heapArenas()) + countHugeAllocations(metric.directArenas());
+        final double pooledAllocationRatio = allocations > 0 ? (double) (allocations - hugeAllocations) / allocations : Double.NaN;
+        return this.accounting().getMetrics(metric.usedHeapMemory() + metric.usedDirectMemory(), pooledAllocationRatio);
+    }
+
+    private static long countAllocations(final List<PoolArenaMetric> arenas) {
+        long count = 0;
+        for (final PoolArenaMetric arena : arenas) {
+            count += arena.numAllocations();
+        }
+        return count;
+    }
+
+    private static long countHugeAllocations(final List<PoolArenaMetric> arenas) {
+        long count = 0;
+        for (final PoolArenaMetric arena : arenas) {
+            count += arena.numHugeAllocations();
+        }
+        return count;
     }
 
     private static class BufferBasedOnNettyByteBuf extends BufferImpl {
-        private BufferBasedOnNettyByteBuf(final ByteBuf internalNettyByteBuf) {
+        private BufferBasedOnNettyByteBuf(final ByteBuf internalNettyByteBuf, final BufferAccounting.Allocation allocation) {
             super(internalNettyByteBuf.array(), internalNettyByteBuf.arrayOffset(), internalNettyByteBuf.capacity());
 
             this.internalNettyByteBuf = internalNettyByteBuf;
+            this.allocation = allocation;
+            this.alreadyReleasedAt = null;
+        }
+
+        @Override
+        public void release() {
+            if (this.alreadyReleasedAt != null) {
+                new BufferDoubleReleasedException(this.alreadyReleasedAt).printStackTrace();
+            }
+            if (this.internalNettyByteBuf != null) {
+                this.internalNettyByteBuf.release();
+                this.internalNettyByteBuf = null;
+                this.allocation.release();
+                this.alreadyReleasedAt = new Throwable();
+            }
+        }
+
+        private ByteBuf internalNettyByteBuf;
+        private final BufferAccounting.Allocation allocation;
+        private Throwable alreadyReleasedAt;
+    }
+
+    private static class DirectBufferBasedOnNettyByteBuf extends DirectBuffer {
+        private DirectBufferBasedOnNettyByteBuf(final ByteBuf internalNettyByteBuf, final BufferAccounting.Allocation allocation) {
+            super(internalNettyByteBuf.memoryAddress(), internalNettyByteBuf.capacity());
+
+            this.internalNettyByteBuf = internalNettyByteBuf;
+            this.allocation = allocation;
             this.alreadyReleasedAt = null;
         }
 
@@ -56,11 +161,13 @@ public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAlloc
             if (this.internalNettyByteBuf != null) {
                 this.internalNettyByteBuf.release();
                 this.internalNettyByteBuf = null;
+                this.allocation.release();
                 this.alreadyReleasedAt = new Throwable();
             }
         }
 
         private ByteBuf internalNettyByteBuf;
+        private final BufferAccounting.Allocation allocation;
         private Throwable alreadyReleasedAt;
     }
 
@@ -72,4 +179,5 @@ public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAlloc
 
     private final PooledByteBufAllocator nettyByteBufAllocator;
     private final int pageSize;
+    private final boolean directPages;
 }
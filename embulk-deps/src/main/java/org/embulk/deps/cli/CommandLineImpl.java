@@ -69,6 +69,8 @@ final class CommandLineImpl extends org.embulk.cli.CommandLine {
                 return ofCommand(command, originalArgs, 1, 1, MKBUNDLE_OPTIONS, MKBUNDLE_USAGE, MKBUNDLE_HEADER, logger);
             case SELFUPDATE:
                 return ofCommand(command, originalArgs, 1, 1, SELFUPDATE_OPTIONS, SELFUPDATE_USAGE, SELFUPDATE_HEADER, logger);
+            case CDS:
+                return ofCommand(command, originalArgs, 2, 2, CDS_OPTIONS, CDS_USAGE, CDS_HEADER, logger);
             default:
                 throw new IllegalStateException("'" + commandString + "' is recognized, but unexpectedly unknown.");
         }
@@ -396,6 +398,7 @@ final class CommandLineImpl extends org.embulk.cli.CommandLine {
             + "   example      Create example files for a quick trial of Embulk.\n"
             + "   license      Print out the license notice.\n"
             + "   selfupdate   Upgrade Embulk to the specified version.\n"
+            + "   cds          Dump a class data sharing archive for faster startup.\n"
             + "   gem          Run \"gem\" to install a RubyGem plugin.\n"
             + "   mkbundle     Create a new plugin bundle environment.\n"
             + "   bundle       Update a plugin bundle environment.\n\n";
@@ -621,6 +624,19 @@ final class CommandLineImpl extends org.embulk.cli.CommandLine {
             + "\"embulk selfupdate\" upgrades Embulk to the specified version.\n"
             + "\n";
 
+    private static final String CDS_USAGE = "embulk [common options] cds [command options] <archive.jsa> <config.yml>";
+
+    private static final OptionsWithPlaceholders CDS_OPTIONS = PLUGIN_OPTIONS.clone();
+
+    private static final String CDS_HEADER =
+            "\n"
+            + "\"embulk cds\" dumps a class data sharing archive by running \"embulk preview\" with <config.yml>. "
+            + "It requires Java 13 or later.\n"
+            + "\n"
+            + "Run Embulk with the archive by the same Java for faster startup:\n"
+            + "   $ java -XX:SharedArchiveFile=<archive.jsa> -jar embulk.jar run ...\n"
+            + "\n";
+
     private final boolean isValid;
     private final Command command;
     private final List<String> args;
@@ -1,5 +1,6 @@
 package org.embulk.deps.config;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
@@ -7,8 +8,10 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.embulk.config.Config;
@@ -19,13 +22,23 @@ class TaskInvocationHandler implements InvocationHandler {
     private final ModelManagerDelegateImpl model;
 
     private final Class<?> iface;
-    private final Map<String, Object> objects;
+    private final Layout layout;
+    private final Object[] values;  // Indexed by the slot of each field. null if the field is not set.
 
     @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
     public TaskInvocationHandler(ModelManagerDelegateImpl model, Class<?> iface, Map<String, Object> objects) {
         this.model = model;
         this.iface = iface;
-        this.objects = objects;
+        this.layout = LAYOUTS.get(iface);
+        this.values = new Object[this.layout.fieldNames.length];
+        for (final Map.Entry<String, Object> entry : objects.entrySet()) {
+            final Integer slot = this.layout.slots.get(entry.getKey());
+            if (slot == null) {
+                throw new IllegalArgumentException(String.format(
+                        "FATAL: Expected to be a bug in Embulk. Field '%s' is not in %s.", entry.getKey(), iface.toString()));
+            }
+            this.values[slot] = entry.getValue();
+        }
     }
 
     /**
@@ -47,139 +60,261 @@ class TaskInvocationHandler implements InvocationHandler {
         return Collections.unmodifiableList(builder);
     }
 
-    // visible for ModelManagerDelegateImpl.AccessorSerializer
+    // visible for TaskSerDe.TaskSerializer
+    //
+    // The map is built from the slots for each call. It is not for getters and setters.
     Map<String, Object> getObjects() {
+        final LinkedHashMap<String, Object> objects = new LinkedHashMap<>();
+        for (int slot = 0; slot < this.values.length; slot++) {
+            if (this.values[slot] != null) {
+                objects.put(this.layout.fieldNames[slot], this.values[slot]);
+            }
+        }
         return objects;
     }
 
-    protected Object invokeGetter(Method method, String fieldName) {
-        return objects.get(fieldName);
+    protected Object invokeGetter(Method method, int slot) {
+        return this.values[slot];
     }
 
-    protected void invokeSetter(Method method, String fieldName, Object value) {
-        if (value == null) {
-            objects.remove(fieldName);
-        } else {
-            objects.put(fieldName, value);
-        }
-    }
-
-    private Map<String, Object> getSerializableFields() {
-        return new HashMap<String, Object>(objects);
+    protected void invokeSetter(Method method, int slot, Object value) {
+        this.values[slot] = value;  // Setting null unsets the field.
     }
 
     protected TaskSource invokeDump() {
-        return new DataSourceImpl(model, model.writeObjectAsObjectNode(getSerializableFields()));
+        return new DataSourceImpl(model, model.writeObjectAsObjectNode(getObjects()));
     }
 
     protected String invokeToString() {
         StringBuilder sb = new StringBuilder();
         sb.append(iface.getName());
-        sb.append(getSerializableFields());
+        sb.append(getObjects());
         return sb.toString();
     }
 
     protected int invokeHashCode() {
-        return objects.hashCode();
+        // Same as Map#hashCode of getObjects() so that it is consistent with invokeEquals.
+        int hashCode = 0;
+        for (int slot = 0; slot < this.values.length; slot++) {
+            if (this.values[slot] != null) {
+                hashCode += this.layout.fieldNames[slot].hashCode() ^ this.values[slot].hashCode();
+            }
+        }
+        return hashCode;
     }
 
     protected boolean invokeEquals(Object other) {
-        return (other instanceof TaskInvocationHandler)
-                && objects.equals(((TaskInvocationHandler) other).objects);
+        if (!(other instanceof TaskInvocationHandler)) {
+            return false;
+        }
+        final TaskInvocationHandler otherHandler = (TaskInvocationHandler) other;
+        if (this.layout == otherHandler.layout) {
+            return Arrays.equals(this.values, otherHandler.values);
+        }
+        return getObjects().equals(otherHandler.getObjects());
     }
 
     public Object invoke(Object proxy, Method method, Object[] args) {
-        String methodName = method.getName();
+        // The way to invoke is resolved once for each method of each Task interface when its layout is built.
+        Invoker invoker = this.layout.invokers.get(method);
+        if (invoker == null) {
+            // Not expected as the layout covers all the methods of the interface, but resolved for each call just in case.
+            invoker = resolveInvoker(method, this.layout.slots);
+        }
+        return invoker.invoke(this, proxy, args);
+    }
+
+    /**
+     * The slots of fields, and the invokers of methods, of a Task interface.
+     *
+     * <p>A slot is assigned to each field name of getters and setters. A getter or a setter reads or writes the slot
+     * of the Object array in the handler, without looking up the field name for each call.
+     */
+    private static final class Layout {
+        private Layout(final Class<?> iface) {
+            final LinkedHashMap<String, Integer> slots = new LinkedHashMap<>();
+            for (final Method method : iface.getMethods()) {
+                String fieldName = getterFieldNameOrNull(method.getName());
+                if (fieldName == null) {
+                    fieldName = setterFieldNameOrNull(method.getName());
+                }
+                if (fieldName != null) {
+                    slots.putIfAbsent(fieldName, slots.size());
+                }
+            }
+            this.slots = Collections.unmodifiableMap(slots);
+            this.fieldNames = slots.keySet().toArray(new String[slots.size()]);
+
+            // Never modified after built so that it is read from multiple threads.
+            final HashMap<Method, Invoker> invokers = new HashMap<>();
+            for (final Method method : iface.getMethods()) {
+                invokers.put(method, resolveInvoker(method, this.slots));
+            }
+            for (final Method method : OBJECT_METHODS) {
+                // Proxy passes Methods of java.lang.Object for equals, hashCode, and toString.
+                invokers.putIfAbsent(method, resolveInvoker(method, this.slots));
+            }
+            this.invokers = invokers;
+        }
+
+        private final Map<String, Integer> slots;
+        private final String[] fieldNames;
+        private final HashMap<Method, Invoker> invokers;
+    }
+
+    @FunctionalInterface
+    private interface Invoker {
+        Object invoke(TaskInvocationHandler handler, Object proxy, Object[] args);
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private static Invoker resolveInvoker(final Method method, final Map<String, Integer> slots) {
+        final String methodName = method.getName();
 
         switch (methodName) {
             case "validate":
-                checkArgumentLength(method, 0, methodName);
-                model.validate(proxy);
-                return proxy;
+                if (!hasExpectedArgumentLength(method, 0)) {
+                    return throwing(method, 0, methodName);
+                }
+                return (handler, proxy, args) -> {
+                    handler.model.validate(proxy);
+                    return proxy;
+                };
 
             case "dump":
-                checkArgumentLength(method, 0, methodName);
-                return invokeDump();
+                if (!hasExpectedArgumentLength(method, 0)) {
+                    return throwing(method, 0, methodName);
+                }
+                return (handler, proxy, args) -> handler.invokeDump();
 
             case "toString":
-                checkArgumentLength(method, 0, methodName);
-                return invokeToString();
+                if (!hasExpectedArgumentLength(method, 0)) {
+                    return throwing(method, 0, methodName);
+                }
+                return (handler, proxy, args) -> handler.invokeToString();
 
             case "hashCode":
-                checkArgumentLength(method, 0, methodName);
-                return invokeHashCode();
+                if (!hasExpectedArgumentLength(method, 0)) {
+                    return throwing(method, 0, methodName);
+                }
+                return (handler, proxy, args) -> handler.invokeHashCode();
 
             case "equals":
-                checkArgumentLength(method, 1, methodName);
-                if (args[0] instanceof Proxy) {
-                    Object otherHandler = Proxy.getInvocationHandler(args[0]);
-                    return invokeEquals(otherHandler);
+                if (!hasExpectedArgumentLength(method, 1)) {
+                    return throwing(method, 1, methodName);
                 }
-                return false;
+                return (handler, proxy, args) -> {
+                    if (args[0] instanceof Proxy) {
+                        Object otherHandler = Proxy.getInvocationHandler(args[0]);
+                        return handler.invokeEquals(otherHandler);
+                    }
+                    return false;
+                };
 
             default: {
-                String fieldName;
-                fieldName = getterFieldNameOrNull(methodName);
-                if (fieldName != null) {
-                    if (method.isDefault() && !this.objects.containsKey(fieldName)) {
-                        // If and only if the method has default implementation, and @Config is not annotated there,
-                        // it is tried to call the default implementation directly without proxying.
-                        //
-                        // methodWithDefaultImpl.invoke(proxy) without this hack would cause infinite recursive calls.
-                        //
-                        // See hints:
-                        // https://rmannibucau.wordpress.com/2014/03/27/java-8-default-interface-methods-and-jdk-dynamic-proxies/
-                        // https://stackoverflow.com/questions/22614746/how-do-i-invoke-java-8-default-methods-reflectively
-                        //
-                        // This hack is required to support `org.joda.time.DateTimeZone` in some Tasks, for example
-                        // TimestampParser.Task and TimestampParser.TimestampColumnOption.
-                        //
-                        // TODO: Remove the hack once a cleaner way is found, or Joda-Time is finally removed.
-                        // https://github.com/embulk/embulk/issues/890
-                        if (CONSTRUCTOR_MethodHandles_Lookup != null) {
-                            synchronized (CONSTRUCTOR_MethodHandles_Lookup) {
-                                boolean hasSetAccessible = false;
-                                try {
-                                    CONSTRUCTOR_MethodHandles_Lookup.setAccessible(true);
-                                    hasSetAccessible = true;
-                                } catch (SecurityException ex) {
-                                    // Skip handling default implementation in case of errors.
-                                }
-
-                                if (hasSetAccessible) {
-                                    try {
-                                        return CONSTRUCTOR_MethodHandles_Lookup
-                                                .newInstance(
-                                                        method.getDeclaringClass(),
-                                                        MethodHandles.Lookup.PUBLIC
-                                                                | MethodHandles.Lookup.PRIVATE
-                                                                | MethodHandles.Lookup.PROTECTED
-                                                                | MethodHandles.Lookup.PACKAGE)
-                                                .unreflectSpecial(method, method.getDeclaringClass())
-                                                .bindTo(proxy)
-                                                .invokeWithArguments();
-                                    } catch (Throwable ex) {
-                                        // Skip handling default implementation in case of errors.
-                                    } finally {
-                                        CONSTRUCTOR_MethodHandles_Lookup.setAccessible(false);
-                                    }
+                final String getterFieldName = getterFieldNameOrNull(methodName);
+                if (getterFieldName != null) {
+                    if (!hasExpectedArgumentLength(method, 0)) {
+                        return throwing(method, 0, methodName);
+                    }
+                    final int slot = slots.get(getterFieldName);
+                    final MethodHandle defaultImplementation = method.isDefault() ? unreflectDefaultImplementation(method) : null;
+                    if (defaultImplementation != null) {
+                        return (handler, proxy, args) -> {
+                            if (handler.values[slot] == null) {
+                                // If and only if the method has default implementation, and @Config is not annotated
+                                // there, the default implementation is called directly without proxying.
+                                final Object value = invokeDefaultImplementation(defaultImplementation, proxy);
+                                if (value != DEFAULT_IMPLEMENTATION_FAILED) {
+                                    return value;
                                 }
                             }
-                        }
+                            return handler.invokeGetter(method, slot);
+                        };
                     }
-                    checkArgumentLength(method, 0, methodName);
-                    return invokeGetter(method, fieldName);
+                    return (handler, proxy, args) -> handler.invokeGetter(method, slot);
                 }
-                fieldName = setterFieldNameOrNull(methodName);
-                if (fieldName != null) {
-                    checkArgumentLength(method, 1, methodName);
-                    invokeSetter(method, fieldName, args[0]);
-                    return this;
+                final String setterFieldName = setterFieldNameOrNull(methodName);
+                if (setterFieldName != null) {
+                    if (!hasExpectedArgumentLength(method, 1)) {
+                        return throwing(method, 1, methodName);
+                    }
+                    final int slot = slots.get(setterFieldName);
+                    return (handler, proxy, args) -> {
+                        handler.invokeSetter(method, slot, args[0]);
+                        return handler;
+                    };
+                }
+            }
+        }
+
+        return (handler, proxy, args) -> {
+            throw new IllegalArgumentException(String.format("Undefined method '%s'", methodName));
+        };
+    }
+
+    private static Invoker throwing(final Method method, final int expected, final String methodName) {
+        return (handler, proxy, args) -> {
+            checkArgumentLength(method, expected, methodName);
+            throw new IllegalStateException("Unreachable");
+        };
+    }
+
+    /**
+     * Returns a method handle to call the default implementation of the method, or {@code null} if unavailable.
+     *
+     * <p>methodWithDefaultImpl.invoke(proxy) without this hack would cause infinite recursive calls.
+     *
+     * <p>See hints:
+     * https://rmannibucau.wordpress.com/2014/03/27/java-8-default-interface-methods-and-jdk-dynamic-proxies/
+     * https://stackoverflow.com/questions/22614746/how-do-i-invoke-java-8-default-methods-reflectively
+     *
+     * <p>This hack is required to support `org.joda.time.DateTimeZone` in some Tasks, for example
+     * TimestampParser.Task and TimestampParser.TimestampColumnOption.
+     *
+     * <p>TODO: Remove the hack once a cleaner way is found, or Joda-Time is finally removed.
+     * https://github.com/embulk/embulk/issues/890
+     */
+    private static MethodHandle unreflectDefaultImplementation(final Method method) {
+        if (CONSTRUCTOR_MethodHandles_Lookup == null) {
+            return null;
+        }
+        synchronized (CONSTRUCTOR_MethodHandles_Lookup) {
+            boolean hasSetAccessible = false;
+            try {
+                CONSTRUCTOR_MethodHandles_Lookup.setAccessible(true);
+                hasSetAccessible = true;
+            } catch (SecurityException ex) {
+                // Skip handling default implementation in case of errors.
+            }
+
+            if (hasSetAccessible) {
+                try {
+                    return CONSTRUCTOR_MethodHandles_Lookup
+                            .newInstance(
+                                    method.getDeclaringClass(),
+                                    MethodHandles.Lookup.PUBLIC
+                                            | MethodHandles.Lookup.PRIVATE
+                                            | MethodHandles.Lookup.PROTECTED
+                                            | MethodHandles.Lookup.PACKAGE)
+                            .unreflectSpecial(method, method.getDeclaringClass());
+                } catch (Throwable ex) {
+                    // Skip handling default implementation in case of errors.
+                } finally {
+                    CONSTRUCTOR_MethodHandles_Lookup.setAccessible(false);
                 }
             }
         }
+        return null;
+    }
 
-        throw new IllegalArgumentException(String.format("Undefined method '%s'", methodName));
+    private static Object invokeDefaultImplementation(final MethodHandle defaultImplementation, final Object proxy) {
+        try {
+            return defaultImplementation.invoke(proxy);
+        } catch (Throwable ex) {
+            // Skip handling default implementation in case of errors.
+            return DEFAULT_IMPLEMENTATION_FAILED;
+        }
     }
 
     private static String getterFieldNameOrNull(String methodName) {
@@ -220,4 +355,27 @@ class TaskInvocationHandler implements InvocationHandler {
     }
 
     private static final Constructor<MethodHandles.Lookup> CONSTRUCTOR_MethodHandles_Lookup;
+
+    private static final Object DEFAULT_IMPLEMENTATION_FAILED = new Object();
+
+    private static final Method[] OBJECT_METHODS;
+
+    static {
+        try {
+            OBJECT_METHODS = new Method[] {
+                Object.class.getMethod("equals", Object.class),
+                Object.class.getMethod("hashCode"),
+                Object.class.getMethod("toString"),
+            };
+        } catch (final NoSuchMethodException ex) {
+            throw new LinkageError("java.lang.Object does not have equals, hashCode, or toString.", ex);
+        }
+    }
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+            @Override
+            protected Layout computeValue(final Class<?> iface) {
+                return new Layout(iface);
+            }
+        };
 }
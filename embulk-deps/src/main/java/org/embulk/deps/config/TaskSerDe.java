@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -103,7 +104,8 @@ class TaskSerDe {
                     } else {
                         newValue = oldValue;
                     }
-                    newValue.add(new FieldEntry(fieldName, fieldType, defaultJsonString));
+                    newValue.add(new FieldEntry(
+                            fieldName, fieldType, this.nestedObjectMapper.getTypeFactory().constructType(fieldType), defaultJsonString));
                     return newValue;
                 });
             }
@@ -128,7 +130,7 @@ class TaskSerDe {
         @SuppressWarnings("unchecked")
         public T deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
             Map<String, Object> objects = new ConcurrentHashMap<String, Object>();
-            final ArrayList<Map.Entry<String, FieldEntry>> unusedMappings = new ArrayList<>();
+            final LinkedHashSet<Map.Entry<String, FieldEntry>> unusedMappings = new LinkedHashSet<>();
             for (final Map.Entry<String, List<FieldEntry>> entry : this.mappings.entrySet()) {
                 for (final FieldEntry fieldEntry : entry.getValue()) {
                     unusedMappings.add(new AbstractMap.SimpleImmutableEntry(entry.getKey(), fieldEntry));
@@ -152,7 +154,7 @@ class TaskSerDe {
                 } else {
                     final JsonNode children = nestedObjectMapper.readValue(jp, JsonNode.class);
                     for (final FieldEntry field : fields) {
-                        final Object value = nestedObjectMapper.convertValue(children, new GenericTypeReference(field.getType()));
+                        final Object value = nestedObjectMapper.convertValue(children, field.getJavaType());
                         if (value == null) {
                             throw new JsonMappingException("Setting null to a task field is not allowed. Use Optional<T> to represent null.");
                         }
@@ -173,7 +175,7 @@ class TaskSerDe {
             for (final Map.Entry<String, FieldEntry> unused : unusedMappings) {
                 FieldEntry field = unused.getValue();
                 if (field.getDefaultJsonString().isPresent()) {
-                    Object value = nestedObjectMapper.readValue(field.getDefaultJsonString().get(), new GenericTypeReference(field.getType()));
+                    Object value = nestedObjectMapper.readValue(field.getDefaultJsonString().get(), field.getJavaType());
                     if (value == null) {
                         throw new JsonMappingException("Setting null to a task field is not allowed. Use Optional<T> to represent null.");
                     }
@@ -192,11 +194,13 @@ class TaskSerDe {
         private static class FieldEntry {
             private final String name;
             private final Type type;
+            private final JavaType javaType;  // Resolved once as resolving a generic type is not cheap for every task.
             private final Optional<String> defaultJsonString;
 
-            public FieldEntry(String name, Type type, Optional<String> defaultJsonString) {
+            public FieldEntry(String name, Type type, JavaType javaType, Optional<String> defaultJsonString) {
                 this.name = name;
                 this.type = type;
+                this.javaType = javaType;
                 this.defaultJsonString = defaultJsonString;
             }
 
@@ -208,6 +212,10 @@ class TaskSerDe {
                 return type;
             }
 
+            public JavaType getJavaType() {
+                return javaType;
+            }
+
             public Optional<String> getDefaultJsonString() {
                 return defaultJsonString;
             }
@@ -0,0 +1,246 @@
+package org.embulk.deps.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.JsonPointerBasedFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.embulk.spi.json.JsonArray;
+import org.embulk.spi.json.JsonBoolean;
+import org.embulk.spi.json.JsonDouble;
+import org.embulk.spi.json.JsonLong;
+import org.embulk.spi.json.JsonNull;
+import org.embulk.spi.json.JsonObject;
+import org.embulk.spi.json.JsonString;
+import org.embulk.spi.json.JsonValue;
+import org.embulk.spi.json.JsonValueParser;
+import org.msgpack.value.ValueFactory;
+
+/**
+ * Parses a stringified JSON to {@link org.embulk.spi.json.JsonValue} directly from Jackson tokens.
+ *
+ * <p>It is not thread-safe. Elements of arrays are collected in a stack reused over documents.
+ */
+public class JsonValueParserDelegateImpl extends org.embulk.spi.json.JsonValueParserDelegate {
+    /**
+     * Creates a {@link JsonValueParserDelegateImpl} instance.
+     *
+     * @param canonicalizeKeys  {@code true} to canonicalize object keys in the symbol table of its own {@link JsonFactory}
+     */
+    public JsonValueParserDelegateImpl(final boolean canonicalizeKeys) {
+        this.factory = new JsonFactory();
+        this.factory.enable(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS);
+        this.factory.enable(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS);
+        this.factory.configure(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES, canonicalizeKeys);
+        // Canonical keys are shared through the symbol table of the factory without String#intern() of the JVM.
+        this.factory.disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+        this.elements = new ArrayList<>();
+    }
+
+    /**
+     * Parses the stringified JSON {@link java.io.InputStream} with the specified offset to {@link JsonValueParser.Stream}.
+     *
+     * @param in  stringified JSON {@link java.io.InputStream} to parse
+     * @param offsetInJsonPointer  offset in JSON Pointer to parse, or {@code null} to parse whole values
+     * @return a stream of parsed {@link org.embulk.spi.json.JsonValue}
+     */
+    @Override
+    public JsonValueParser.Stream openWithOffsetInJsonPointer(final InputStream in, final String offsetInJsonPointer) throws IOException {
+        final com.fasterxml.jackson.core.JsonParser parser;
+        try {
+            parser = wrapWithPointerFilter(this.factory.createParser(in), Optional.ofNullable(offsetInJsonPointer));
+        } catch (final IOException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new org.embulk.spi.json.JsonParseException("Failed to parse JSON", ex);
+        }
+        return new StreamParseContext(parser);
+    }
+
+    /**
+     * Parses the stringified JSON {@link java.lang.String} with the specified offset to {@link org.embulk.spi.json.JsonValue}.
+     *
+     * @param json  stringified JSON to parse
+     * @param offsetInJsonPointer  offset in JSON Pointer to parse, or {@code null} to parse the whole value
+     * @return parsed {@link org.embulk.spi.json.JsonValue}
+     */
+    @Override
+    public JsonValue parseWithOffsetInJsonPointer(final String json, final String offsetInJsonPointer) {
+        final com.fasterxml.jackson.core.JsonParser parser;
+        try {
+            parser = wrapWithPointerFilter(this.factory.createParser(json), Optional.ofNullable(offsetInJsonPointer));
+        } catch (final Exception ex) {
+            throw new org.embulk.spi.json.JsonParseException("Failed to parse JSON: " + sampleJsonString(json), ex);
+        }
+
+        try {
+            final JsonValue value = this.next(parser, json);
+            if (value == null) {
+                throw new org.embulk.spi.json.JsonParseException("Unable to parse empty string");
+            }
+            return value;
+        } catch (final IOException ex) {
+            throw new org.embulk.spi.json.JsonParseException("Failed to parse JSON: " + sampleJsonString(json), ex);
+        } finally {
+            try {
+                parser.close();
+            } catch (final IOException ex) {
+                // Never happens for String.
+            }
+        }
+    }
+
+    private class StreamParseContext implements JsonValueParser.Stream {
+        StreamParseContext(final com.fasterxml.jackson.core.JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public JsonValue next() throws IOException {
+            return JsonValueParserDelegateImpl.this.next(this.parser, null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.parser.close();
+        }
+
+        private final com.fasterxml.jackson.core.JsonParser parser;
+    }
+
+    // json is null for a stream.
+    private JsonValue next(final com.fasterxml.jackson.core.JsonParser parser, final String json) throws IOException {
+        try {
+            final JsonToken token = parser.nextToken();
+            if (token == null) {
+                return null;
+            }
+            return this.jsonTokenToValue(parser, token, json);
+        } catch (final com.fasterxml.jackson.core.JsonParseException ex) {
+            throw new org.embulk.spi.json.JsonParseException("Failed to parse JSON: " + sampleJsonString(json), ex);
+        } catch (final IOException ex) {
+            throw ex;
+        } catch (final org.embulk.spi.json.JsonParseException ex) {
+            throw ex;
+        } catch (final RuntimeException ex) {
+            throw new org.embulk.spi.json.JsonParseException("Failed to parse JSON: " + sampleJsonString(json), ex);
+        } finally {
+            this.elements.clear();
+        }
+    }
+
+    @SuppressWarnings("checkstyle:FallThrough")
+    private JsonValue jsonTokenToValue(final com.fasterxml.jackson.core.JsonParser parser, final JsonToken token, final String json)
+            throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return JsonNull.NULL;
+            case VALUE_TRUE:
+                return JsonBoolean.TRUE;
+            case VALUE_FALSE:
+                return JsonBoolean.FALSE;
+            case VALUE_NUMBER_FLOAT:
+                return JsonDouble.of(parser.getDoubleValue());
+            case VALUE_NUMBER_INT:
+                if (parser.getNumberType() == com.fasterxml.jackson.core.JsonParser.NumberType.BIG_INTEGER) {
+                    // Converted in the same way as JsonParser does through MessagePack.
+                    return JsonValue.fromMsgpack(ValueFactory.newInteger(parser.getBigIntegerValue()));
+                }
+                return JsonLong.of(parser.getLongValue());
+            case VALUE_STRING:
+                return JsonString.of(parser.getText());
+            case START_ARRAY: {
+                // Elements are stacked on the elements of the outer arrays.
+                final int base = this.elements.size();
+                while (true) {
+                    final JsonToken nextToken = parser.nextToken();
+                    if (nextToken == JsonToken.END_ARRAY) {
+                        final List<JsonValue> array = this.elements.subList(base, this.elements.size());
+                        final JsonValue[] values = array.toArray(new JsonValue[array.size()]);
+                        array.clear();
+                        return JsonArray.of(values);
+                    } else if (nextToken == null) {
+                        throw new org.embulk.spi.json.JsonParseException(
+                                "Unexpected end of JSON at "
+                                        + parser.getTokenLocation()
+                                        + " while expecting an element of an array: "
+                                        + sampleJsonString(json));
+                    }
+                    this.elements.add(this.jsonTokenToValue(parser, nextToken, json));
+                }
+            }
+            // Never fall through from the previous branch of START_ARRAY.
+            case START_OBJECT:
+                final Map<String, JsonValue> map = new LinkedHashMap<>();
+                while (true) {
+                    final JsonToken nextToken = parser.nextToken();
+                    if (nextToken == JsonToken.END_OBJECT) {
+                        return JsonObject.ofMap(map);
+                    } else if (nextToken == null) {
+                        throw new org.embulk.spi.json.JsonParseException(
+                                "Unexpected end of JSON at "
+                                        + parser.getTokenLocation()
+                                        + " while expecting a key of object: "
+                                        + sampleJsonString(json));
+                    }
+                    final String key = parser.getCurrentName();
+                    if (key == null) {
+                        throw new org.embulk.spi.json.JsonParseException(
+                                "Unexpected token "
+                                        + nextToken
+                                        + " at "
+                                        + parser.getTokenLocation()
+                                        + ": "
+                                        + sampleJsonString(json));
+                    }
+                    final JsonToken nextNextToken = parser.nextToken();
+                    if (nextNextToken == null) {
+                        throw new org.embulk.spi.json.JsonParseException(
+                                "Unexpected end of JSON at "
+                                        + parser.getTokenLocation()
+                                        + " while expecting a value of object: "
+                                        + sampleJsonString(json));
+                    }
+                    map.put(key, this.jsonTokenToValue(parser, nextNextToken, json));
+                }
+            // Never fall through from the previous branch of START_OBJECT.
+            case VALUE_EMBEDDED_OBJECT:
+            case FIELD_NAME:
+            case END_ARRAY:
+            case END_OBJECT:
+            case NOT_AVAILABLE:
+            default:
+                throw new org.embulk.spi.json.JsonParseException(
+                        "Unexpected token " + token + " at " + parser.getTokenLocation() + ": " + sampleJsonString(json));
+        }
+    }
+
+    private static com.fasterxml.jackson.core.JsonParser wrapWithPointerFilter(
+            final com.fasterxml.jackson.core.JsonParser baseParser, final Optional<String> offsetInJsonPointer) {
+        return offsetInJsonPointer.<com.fasterxml.jackson.core.JsonParser>map(pointer -> new FilteringParserDelegate(
+                baseParser,
+                new JsonPointerBasedFilter(pointer),
+                false,
+                true  // Allow multiple matches
+                )).orElse(baseParser);
+    }
+
+    private static String sampleJsonString(final String json) {
+        if (json == null) {
+            return "in";
+        } else if (json.length() < 100) {
+            return json;
+        } else {
+            return json.substring(0, 97) + "...";
+        }
+    }
+
+    private final JsonFactory factory;
+    private final ArrayList<JsonValue> elements;  // Reused over documents.
+}
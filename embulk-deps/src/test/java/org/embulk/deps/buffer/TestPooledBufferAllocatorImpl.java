@@ -1,8 +1,14 @@
 package org.embulk.deps.buffer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import org.embulk.exec.BufferMetrics;
 import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DirectBuffer;
 import org.junit.Test;
 
 public class TestPooledBufferAllocatorImpl {
@@ -33,4 +39,54 @@ public class TestPooledBufferAllocatorImpl {
         buffer.release();
         buffer.release();  // To printStackTrace of the first release, but no errors.
     }
+
+    @Test
+    public void testDirectPages() throws Exception {
+        final PooledBufferAllocatorImpl allocator = new PooledBufferAllocatorImpl(4096, true);
+        final Buffer pageBuffer = allocator.allocatePageBuffer(10000);
+        assertTrue(pageBuffer instanceof DirectBuffer);
+        assertEquals(16384, pageBuffer.capacity());
+
+        pageBuffer.setBytes(100, new byte[] { 1, 2, 3 }, 0, 3);
+        final Buffer heapBuffer = BufferImpl.allocate(8);
+        pageBuffer.getBytes(100, heapBuffer, 2, 3);
+        final byte[] bytes = new byte[8];
+        heapBuffer.getBytes(0, bytes, 0, 8);
+        assertArrayEquals(new byte[] { 0, 0, 1, 2, 3, 0, 0, 0 }, bytes);
+
+        // Buffers other than pages stay on Java heap so that plugins can access Buffer#array().
+        final Buffer fileBuffer = allocator.allocate();
+        assertFalse(fileBuffer instanceof DirectBuffer);
+
+        fileBuffer.release();
+        pageBuffer.release();
+    }
+
+    @Test
+    public void testHeapPages() throws Exception {
+        final PooledBufferAllocatorImpl allocator = new PooledBufferAllocatorImpl(4096, false);
+        final Buffer pageBuffer = allocator.allocatePageBuffer(10000);
+        assertFalse(pageBuffer instanceof DirectBuffer);
+        pageBuffer.release();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final PooledBufferAllocatorImpl allocator = new PooledBufferAllocatorImpl(4096);
+        final Buffer first = allocator.allocate();
+        final Buffer second = allocator.allocate(10000);
+        first.release();
+
+        final BufferMetrics metrics = allocator.getMetrics();
+        assertEquals(2, metrics.getAllocations());
+        assertEquals(4096 + 16384, metrics.getAllocatedBytes());
+        assertEquals(1, metrics.getLiveBuffers());
+        assertEquals(16384, metrics.getLiveBytes());
+        assertEquals(4096 + 16384, metrics.getPeakLiveBytes());
+        assertEquals(1.0, metrics.getPooledAllocationRatio(), 0.0);
+
+        second.release();
+        second.release();  // Not counted twice.
+        assertEquals(0, allocator.getMetrics().getLiveBuffers());
+    }
 }
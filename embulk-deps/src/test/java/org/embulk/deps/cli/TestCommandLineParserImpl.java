@@ -67,6 +67,7 @@ public class TestCommandLineParserImpl {
                 + "   example      Create example files for a quick trial of Embulk." + NEWLINE
                 + "   license      Print out the license notice." + NEWLINE
                 + "   selfupdate   Upgrade Embulk to the specified version." + NEWLINE
+                + "   cds          Dump a class data sharing archive for faster startup." + NEWLINE
                 + "   gem          Run \"gem\" to install a RubyGem plugin." + NEWLINE
                 + "   mkbundle     Create a new plugin bundle environment." + NEWLINE
                 + "   bundle       Update a plugin bundle environment." + NEWLINE
@@ -146,6 +147,7 @@ public class TestCommandLineParserImpl {
                 + "   example      Create example files for a quick trial of Embulk." + NEWLINE
                 + "   license      Print out the license notice." + NEWLINE
                 + "   selfupdate   Upgrade Embulk to the specified version." + NEWLINE
+                + "   cds          Dump a class data sharing archive for faster startup." + NEWLINE
                 + "   gem          Run \"gem\" to install a RubyGem plugin." + NEWLINE
                 + "   mkbundle     Create a new plugin bundle environment." + NEWLINE
                 + "   bundle       Update a plugin bundle environment." + NEWLINE
@@ -0,0 +1,97 @@
+package org.embulk.deps.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.embulk.config.Config;
+import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.Task;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestTaskInvocationHandler {
+    private static interface NameTask extends Task {
+        public String getFirst();
+
+        public void setFirst(String v);
+
+        public String getLast();
+
+        public void setLast(String v);
+
+        public default String getFull() {
+            return this.getFirst() + " " + this.getLast();
+        }
+
+        public void setFull(String v);
+    }
+
+    private static interface ConfiguredDefaultTask extends Task {
+        @Config("name")
+        @ConfigDefault("\"configured\"")
+        public default String getName() {
+            return "implemented";
+        }
+    }
+
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testDefaultGetterWithoutStoredValue() {
+        final NameTask task = this.newNameTask();
+        assertEquals("embulk core", task.getFull());
+        assertEquals("embulk core", task.getFull());  // Through the cached invoker.
+
+        task.setLast("deps");
+        assertEquals("embulk deps", task.getFull());
+    }
+
+    @Test
+    public void testDefaultGetterWithStoredValue() {
+        final NameTask task = this.newNameTask();
+        task.setFull("stored");
+        assertEquals("stored", task.getFull());
+        assertEquals("stored", task.getFull());  // Through the cached invoker.
+
+        task.setFull(null);
+        assertEquals("embulk core", task.getFull());
+    }
+
+    @Test
+    public void testDefaultGetterWithConfig() {
+        final ConfigSource config = Exec.newConfigSource();
+        assertEquals("configured", config.loadConfig(ConfiguredDefaultTask.class).getName());
+
+        config.set("name", "given");
+        assertEquals("given", config.loadConfig(ConfiguredDefaultTask.class).getName());
+    }
+
+    @Test
+    public void testStoredValueOfDefaultGetterInDumpAndEquals() {
+        final NameTask task = this.newNameTask();
+        final NameTask other = this.newNameTask();
+        assertFalse(task.dump().has("Full"));
+        assertTrue(task.equals(other));
+
+        task.setFull("stored");
+        assertEquals("stored", task.dump().get(String.class, "Full"));
+        assertFalse(task.equals(other));
+
+        other.setFull("stored");
+        assertTrue(task.equals(other));
+        assertTrue(task.hashCode() == other.hashCode());
+    }
+
+    private NameTask newNameTask() {
+        final TaskSource taskSource = Exec.newTaskSource();
+        taskSource.set("First", "embulk");
+        taskSource.set("Last", "core");
+        return taskSource.loadTask(NameTask.class);
+    }
+}